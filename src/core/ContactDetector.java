@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the connectivity of all hosts in two phases. First, a detection
+ * pass finds the links that should go down and up without modifying any
+ * host (see {@link NetworkInterface#detectLinkChanges()}). This pass can be
+ * run in parallel. Then the changes are applied serially in interface
+ * address order: first all the link downs and then all the link ups, so
+ * the routers and connection listeners are informed in the same order
+ * regardless of the number of threads. Each interface's link downs are
+ * applied in the order of its connections and its link ups in the order
+ * of the other interface's address. Interfaces that don't support
+ * two-phase updates are updated normally after that.
+ * <P>A detector can also record the link changes it applies, so that a
+ * follower detector (see {@link #ContactDetector(List, ContactDetector)})
+ * can apply the same changes to another set of hosts that are in the same
+ * locations. This is used by the router planes (see {@link RouterPlanes}).
+ * </P>
+ */
+public class ContactDetector {
+	/** how many detection tasks are created for each thread */
+	private static final int TASKS_PER_THREAD = 8;
+
+	private List<DTNHost> hosts;
+	/** pool for the detection pass (or null if it's run by the caller) */
+	private ForkJoinPool pool;
+	private int nrofThreads;
+	/** interfaces taking part in the current two-phase update */
+	private List<NetworkInterface> detecting;
+	/** interfaces that are updated normally */
+	private List<NetworkInterface> others;
+	/** max nrof interfaces handled by a single detection task */
+	private int taskSize;
+	/** are the applied link changes recorded for followers */
+	private boolean recording;
+	/** interfaces of the link downs applied in the last update (pairs) */
+	private List<NetworkInterface> linkDowns;
+	/** interfaces of the link ups applied in the last update (pairs) */
+	private List<NetworkInterface> linkUps;
+	/** the detector whose link changes this detector applies (or null) */
+	private ContactDetector leader;
+	/** interfaces of the hosts indexed by their address (for followers) */
+	private NetworkInterface[] interfaces;
+
+	/**
+	 * Constructor.
+	 * @param hosts The hosts whose connectivity is updated (ordered by
+	 * their address)
+	 * @param nrofThreads Number of threads used for the detection pass
+	 */
+	public ContactDetector(List<DTNHost> hosts, int nrofThreads) {
+		this.hosts = hosts;
+		this.nrofThreads = nrofThreads;
+		this.detecting = new ArrayList<NetworkInterface>();
+		this.others = new ArrayList<NetworkInterface>();
+		if (nrofThreads > 1) {
+			this.pool = new ForkJoinPool(nrofThreads);
+		}
+	}
+
+	/**
+	 * Creates a follower detector that doesn't detect the links by itself
+	 * but applies the link changes of another detector to its hosts. The
+	 * hosts must have the same addresses, interfaces and locations as the
+	 * hosts of the other detector, and the other detector must be updated
+	 * (and record its changes) before this detector is updated.
+	 * @param hosts The hosts whose connectivity is updated (ordered by
+	 * their address)
+	 * @param leader The detector whose link changes are applied
+	 */
+	public ContactDetector(List<DTNHost> hosts, ContactDetector leader) {
+		this(hosts, 1);
+		this.leader = leader;
+	}
+
+	/**
+	 * Sets whether the link changes of the updates are recorded for the
+	 * follower detectors
+	 * @param recording If true, the changes are recorded
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+		if (recording && this.linkDowns == null) {
+			this.linkDowns = new ArrayList<NetworkInterface>();
+			this.linkUps = new ArrayList<NetworkInterface>();
+		}
+	}
+
+	/**
+	 * Updates the connections of all active hosts
+	 */
+	public void update() {
+		if (this.leader != null) {
+			follow();
+			return;
+		}
+		this.detecting.clear();
+		this.others.clear();
+		if (this.recording) {
+			this.linkDowns.clear();
+			this.linkUps.clear();
+		}
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			if (!host.isActive()) {
+				continue;
+			}
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.supportsTwoPhaseUpdate()) {
+					ni.beginLinkDetection();
+					this.detecting.add(ni);
+				}
+				else {
+					this.others.add(ni);
+				}
+			}
+		}
+
+		detect();
+
+		for (int i=0, n = detecting.size(); i < n; i++) {
+			NetworkInterface ni = detecting.get(i);
+			for (Connection con : ni.getDetectedLinkDowns()) {
+				if (this.recording) {
+					this.linkDowns.add(ni);
+					this.linkDowns.add(con.getOtherInterface(ni));
+				}
+				ni.applyLinkDown(con);
+			}
+		}
+		for (int i=0, n = detecting.size(); i < n; i++) {
+			NetworkInterface ni = detecting.get(i);
+			for (NetworkInterface other : ni.getDetectedLinkUps()) {
+				if (this.recording) {
+					this.linkUps.add(ni);
+					this.linkUps.add(other);
+				}
+				/* skips the links the other end already created */
+				ni.createConnection(other);
+			}
+		}
+		for (int i=0, n = detecting.size(); i < n; i++) {
+			detecting.get(i).finishLinkUpdate();
+		}
+
+		for (int i=0, n = others.size(); i < n; i++) {
+			others.get(i).update();
+		}
+	}
+
+	/**
+	 * Applies the link changes the leader recorded in its last update to
+	 * the hosts of this detector and updates the interfaces that don't
+	 * support two-phase updates normally
+	 */
+	private void follow() {
+		List<NetworkInterface> downs = leader.linkDowns;
+		for (int i=0, n = downs.size(); i < n; i += 2) {
+			NetworkInterface ni = getInterface(downs.get(i));
+			NetworkInterface other = getInterface(downs.get(i+1));
+			for (Connection con : ni.getConnections()) {
+				if (con.getOtherInterface(ni) == other) {
+					ni.applyLinkDown(con);
+					break;
+				}
+			}
+		}
+		List<NetworkInterface> ups = leader.linkUps;
+		for (int i=0, n = ups.size(); i < n; i += 2) {
+			getInterface(ups.get(i)).createConnection(
+					getInterface(ups.get(i+1)));
+		}
+		for (int i=0, n = leader.detecting.size(); i < n; i++) {
+			getInterface(leader.detecting.get(i)).finishLinkUpdate();
+		}
+
+		this.others.clear();
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			if (!host.isActive()) {
+				continue;
+			}
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!ni.supportsTwoPhaseUpdate()) {
+					this.others.add(ni);
+				}
+			}
+		}
+		for (int i=0, n = others.size(); i < n; i++) {
+			others.get(i).update();
+		}
+	}
+
+	/**
+	 * Returns the interface of this detector's hosts that has the same
+	 * address as the given interface of the leader's hosts
+	 * @param leaderNi The leader's interface
+	 * @return The interface with the same address
+	 * @throws SimError if there's no interface with the same address
+	 */
+	private NetworkInterface getInterface(NetworkInterface leaderNi) {
+		if (this.interfaces == null) {
+			List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+			for (DTNHost host : hosts) {
+				all.addAll(host.getInterfaces());
+			}
+			int max = -1;
+			for (NetworkInterface ni : all) {
+				max = Math.max(max, ni.getAddress());
+			}
+			this.interfaces = new NetworkInterface[max + 1];
+			for (NetworkInterface ni : all) {
+				this.interfaces[ni.getAddress()] = ni;
+			}
+		}
+
+		int address = leaderNi.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			throw new SimError("No interface with address " + address +
+					" to follow " + leaderNi);
+		}
+		return interfaces[address];
+	}
+
+	/**
+	 * Runs the detection pass for all the interfaces taking part in the
+	 * update
+	 */
+	private void detect() {
+		if (this.pool == null) {
+			for (int i=0, n = detecting.size(); i < n; i++) {
+				detecting.get(i).detectLinkChanges();
+			}
+			return;
+		}
+
+		this.taskSize = Math.max(1,
+				detecting.size() / (nrofThreads * TASKS_PER_THREAD));
+		this.pool.invoke(new DetectTask(0, detecting.size()));
+	}
+
+	/**
+	 * Stops the threads of the detection pass. The detector can't be
+	 * updated after this.
+	 */
+	public void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	/**
+	 * Task that runs the detection pass for a range of interfaces,
+	 * splitting the range into subtasks if it is too big.
+	 */
+	private class DetectTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int start;
+		private int end;
+
+		/**
+		 * Constructor.
+		 * @param start Index of the first interface
+		 * @param end Index after the last interface
+		 */
+		public DetectTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= taskSize) {
+				for (int i = start; i < end; i++) {
+					detecting.get(i).detectLinkChanges();
+				}
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new DetectTask(start, middle),
+					new DetectTask(middle, end));
+		}
+	}
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Updates the connectivity of hosts using the exact times when the hosts
+ * come within and go out of each other's radio range during a move step.
+ * The hosts' moves are traced (see {@link MoveTrace}) and, for every pair
+ * of interfaces that may be in range during the step, the range crossing
+ * times are solved in closed form from the piecewise-linear movement. The
+ * link changes are then applied in time order with the simulation clock
+ * set to the time of each change, so connection listeners (e.g., contact
+ * time reports) and routers see the exact contact start and end times
+ * even if the update interval is long. Contacts that start and end
+ * within a single step are found too.
+ * <P>Only interfaces that support two-phase updates
+ * ({@link NetworkInterface#supportsTwoPhaseUpdate()}) and scan
+ * continuously are handled this way. The rest of the interfaces are
+ * updated normally after the link changes have been applied.</P>
+ */
+public class ContactPredictor {
+	private List<DTNHost> hosts;
+	/** interfaces whose links are predicted, grouped by interface type */
+	private Map<String, List<NetworkInterface>> predicted;
+	/** all predicted interfaces and whether their host is active */
+	private Map<NetworkInterface, Boolean> isActive;
+	/** interfaces that are updated normally */
+	private List<NetworkInterface> others;
+	/** link changes found for the current step */
+	private List<LinkEvent> events;
+	/** bounding boxes of the interfaces' last moves (reused every step) */
+	private double[] boxes;
+	/** packed (grid cell, interface) entries (reused every step) */
+	private long[] cellEntries;
+	/** packed candidate interface pairs (reused every step) */
+	private long[] pairs;
+
+	/** max number of grid cells for finding the candidate pairs */
+	private static final long MAX_CELLS = Integer.MAX_VALUE;
+	/** initial size of the reused arrays */
+	private static final int INITIAL_SIZE = 64;
+
+	/**
+	 * Constructor. Turns on move tracing for all the hosts.
+	 * @param hosts The hosts whose connectivity is updated (ordered by
+	 * their address)
+	 */
+	public ContactPredictor(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.predicted = new LinkedHashMap<String, List<NetworkInterface>>();
+		this.isActive = new IdentityHashMap<NetworkInterface, Boolean>();
+		this.others = new ArrayList<NetworkInterface>();
+		this.events = new ArrayList<LinkEvent>();
+		this.boxes = new double[INITIAL_SIZE];
+		this.cellEntries = new long[INITIAL_SIZE];
+		this.pairs = new long[INITIAL_SIZE];
+
+		for (DTNHost host : hosts) {
+			host.setMoveTracing(true);
+		}
+	}
+
+	/**
+	 * Updates the connections of all hosts after a move step that ended at
+	 * the current simulation time
+	 * @param stepLength Length of the move step (seconds)
+	 */
+	public void update(double stepLength) {
+		double endTime = SimClock.getTime();
+		double startTime = endTime - stepLength;
+
+		collectInterfaces();
+		this.events.clear();
+
+		/* existing links: when (if) do they go down */
+		for (List<NetworkInterface> group : predicted.values()) {
+			for (NetworkInterface ni : group) {
+				for (Connection con : ni.getConnections()) {
+					NetworkInterface other = con.getOtherInterface(ni);
+					if (ni.getAddress() < other.getAddress() &&
+							isActive.containsKey(other)) {
+						boolean canConnect = isActive.get(ni) &&
+							isActive.get(other);
+						predict(ni, other, true, canConnect, startTime,
+								stepLength);
+					}
+				}
+			}
+		}
+
+		/* new links between the interfaces that may come close enough */
+		for (List<NetworkInterface> group : predicted.values()) {
+			for (int k=0, n = findCandidatePairs(group); k < n; k++) {
+				long pair = this.pairs[k];
+				NetworkInterface ni = group.get((int)(pair >>> 32));
+				NetworkInterface other = group.get((int)pair);
+				if (isActive.get(ni) && isActive.get(other) &&
+						!ni.isConnected(other)) {
+					predict(ni, other, false, true, startTime, stepLength);
+				}
+			}
+		}
+
+		Collections.sort(this.events);
+		SimClock clock = SimClock.getInstance();
+		for (LinkEvent e : this.events) {
+			clock.setTime(e.time);
+			if (e.up) {
+				e.from.createConnection(e.to);
+			}
+			else {
+				e.from.destroyConnection(e.to);
+			}
+		}
+		clock.setTime(endTime);
+
+		for (List<NetworkInterface> group : predicted.values()) {
+			for (NetworkInterface ni : group) {
+				ni.finishLinkUpdate();
+			}
+		}
+		for (NetworkInterface ni : this.others) {
+			ni.update();
+		}
+	}
+
+	/**
+	 * Collects the interfaces whose links are predicted and the ones that
+	 * are updated normally
+	 */
+	private void collectInterfaces() {
+		this.predicted.clear();
+		this.isActive.clear();
+		this.others.clear();
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			boolean active = host.isActive();
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.supportsTwoPhaseUpdate() &&
+						ni.getScanInterval() == 0) {
+					List<NetworkInterface> group =
+						predicted.get(ni.getInterfaceType());
+					if (group == null) {
+						group = new ArrayList<NetworkInterface>();
+						predicted.put(ni.getInterfaceType(), group);
+					}
+					group.add(ni);
+					isActive.put(ni, active);
+				}
+				else if (active) {
+					this.others.add(ni);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the pairs of interfaces whose hosts' bounding boxes of the
+	 * last move (extended by the radio range) overlap. The boxes are put
+	 * to a uniform grid and only boxes sharing a grid cell are compared.
+	 * The grid cells are found by sorting (cell, interface) entries packed
+	 * to longs, so no tables are created for the step.
+	 * @param group The interfaces (of the same type)
+	 * @return Number of pairs found. The pairs are in the start of
+	 * {@link #pairs} in ascending order as longs whose upper half is the
+	 * group index of the first interface and lower half the index of the
+	 * second one.
+	 */
+	private int findCandidatePairs(List<NetworkInterface> group) {
+		int n = group.size();
+		if (n < 2) {
+			return 0;
+		}
+		if (this.boxes.length < n * 4) {
+			this.boxes = new double[n * 4];
+		}
+		double[] boxes = this.boxes;
+		double maxRange = 0;
+		double sumSize = 0;
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+
+		for (NetworkInterface ni : group) {
+			maxRange = Math.max(maxRange, ni.getTransmitRange());
+		}
+		for (int i=0; i < n; i++) {
+			MoveTrace t = group.get(i).getHost().getMoveTrace();
+			double margin = group.get(i).getTransmitRange() / 2;
+			boxes[i*4] = t.getMinX() - margin;
+			boxes[i*4 + 1] = t.getMinY() - margin;
+			boxes[i*4 + 2] = t.getMaxX() + margin;
+			boxes[i*4 + 3] = t.getMaxY() + margin;
+			sumSize += Math.max(boxes[i*4 + 2] - boxes[i*4],
+					boxes[i*4 + 3] - boxes[i*4 + 1]);
+			minX = Math.min(minX, boxes[i*4]);
+			minY = Math.min(minY, boxes[i*4 + 1]);
+			maxX = Math.max(maxX, boxes[i*4 + 2]);
+			maxY = Math.max(maxY, boxes[i*4 + 3]);
+		}
+
+		double cellSize = Math.max(maxRange, sumSize / n);
+		cellSize = Math.max(cellSize, 1);
+		long firstCol, firstRow, cols, rows;
+		while (true) { /* grow the cells until their indexes fit an int */
+			firstCol = (long)Math.floor(minX / cellSize);
+			firstRow = (long)Math.floor(minY / cellSize);
+			cols = (long)Math.floor(maxX / cellSize) - firstCol + 1;
+			rows = (long)Math.floor(maxY / cellSize) - firstRow + 1;
+			if ((double)cols * rows <= MAX_CELLS) {
+				break;
+			}
+			cellSize *= 2;
+		}
+
+		int nrofEntries = 0;
+		for (int i=0; i < n; i++) {
+			long minCol = (long)Math.floor(boxes[i*4] / cellSize) - firstCol;
+			long minRow = (long)Math.floor(boxes[i*4+1] / cellSize) - firstRow;
+			long maxCol = (long)Math.floor(boxes[i*4+2] / cellSize) - firstCol;
+			long maxRow = (long)Math.floor(boxes[i*4+3] / cellSize) - firstRow;
+			for (long row = minRow; row <= maxRow; row++) {
+				for (long col = minCol; col <= maxCol; col++) {
+					if (nrofEntries == this.cellEntries.length) {
+						this.cellEntries = Arrays.copyOf(this.cellEntries,
+								nrofEntries * 2);
+					}
+					this.cellEntries[nrofEntries++] =
+						((row * cols + col) << 32) | i;
+				}
+			}
+		}
+		long[] entries = this.cellEntries;
+		Arrays.sort(entries, 0, nrofEntries);
+
+		int nrofPairs = 0;
+		int start = 0;
+		while (start < nrofEntries) {
+			/* entries[start..end) are the interfaces in the same cell */
+			long cell = entries[start] >>> 32;
+			int end = start + 1;
+			while (end < nrofEntries && (entries[end] >>> 32) == cell) {
+				end++;
+			}
+			for (int a = start; a < end; a++) {
+				int i = (int)entries[a];
+				for (int b = a + 1; b < end; b++) {
+					int j = (int)entries[b];
+					if (boxes[i*4] <= boxes[j*4 + 2] &&
+							boxes[j*4] <= boxes[i*4 + 2] &&
+							boxes[i*4 + 1] <= boxes[j*4 + 3] &&
+							boxes[j*4 + 1] <= boxes[i*4 + 3]) {
+						if (nrofPairs == this.pairs.length) {
+							this.pairs = Arrays.copyOf(this.pairs,
+									nrofPairs * 2);
+						}
+						this.pairs[nrofPairs++] = ((long)i << 32) | j;
+					}
+				}
+			}
+			start = end;
+		}
+
+		/* pairs that share more than one cell were found more than once */
+		Arrays.sort(this.pairs, 0, nrofPairs);
+		int unique = 0;
+		for (int k=0; k < nrofPairs; k++) {
+			if (unique == 0 || this.pairs[unique - 1] != this.pairs[k]) {
+				this.pairs[unique++] = this.pairs[k];
+			}
+		}
+		return unique;
+	}
+
+	/**
+	 * Predicts the link changes of a pair of interfaces during the step
+	 * and adds them to the event list
+	 * @param ni The interface with the smaller address
+	 * @param other The other interface
+	 * @param connected Are the interfaces connected at the start
+	 * @param canConnect Can the interfaces get connected during the step
+	 * @param startTime Simulation time of the start of the step
+	 * @param stepLength Length of the step
+	 */
+	private void predict(NetworkInterface ni, NetworkInterface other,
+			boolean connected, boolean canConnect, double startTime,
+			double stepLength) {
+		double range = Math.min(ni.getTransmitRange(),
+				other.getTransmitRange());
+		List<Double> times = new ArrayList<Double>();
+		List<Boolean> ups = new ArrayList<Boolean>();
+
+		findRangeCrossings(ni.getHost().getMoveTrace(),
+				other.getHost().getMoveTrace(), range, stepLength,
+				connected, canConnect, times, ups);
+
+		NetworkInterface from = ni;
+		NetworkInterface to = other;
+		if (other.getAddress() < ni.getAddress()) {
+			from = other;
+			to = ni;
+		}
+		for (int i=0, n = times.size(); i < n; i++) {
+			this.events.add(new LinkEvent(startTime + times.get(i), from, to,
+					ups.get(i)));
+		}
+	}
+
+	/**
+	 * Finds the times when the distance of two hosts moving along the given
+	 * traces crosses the given range. Within each interval where both
+	 * hosts move linearly, the times are the roots of a quadratic
+	 * equation.
+	 * @param a Trace of the first host
+	 * @param b Trace of the second host
+	 * @param range The range
+	 * @param stepLength Length of the traced step
+	 * @param connected Are the hosts in range (connected) at the start
+	 * @param canConnect Can the hosts come in range (get connected); if
+	 * false, only the first exit from the range is reported
+	 * @param times The list where the crossing times (relative to the start
+	 * of the step) are added
+	 * @param ups The list where the directions of the crossings are added
+	 * (true for entering the range, false for exiting it)
+	 */
+	public static void findRangeCrossings(MoveTrace a, MoveTrace b,
+			double range, double stepLength, boolean connected,
+			boolean canConnect, List<Double> times, List<Boolean> ups) {
+		double rangeSq = range * range;
+		boolean inside = connected;
+		int ia = 0;
+		int ib = 0;
+		double start = 0;
+
+		while (start < stepLength) {
+			if (!inside && !canConnect) {
+				return;
+			}
+			/* end of the interval: next point in either trace */
+			while (ia < a.size() && a.getTime(ia) <= start) {
+				ia++;
+			}
+			while (ib < b.size() && b.getTime(ib) <= start) {
+				ib++;
+			}
+			double end = stepLength;
+			if (ia < a.size()) {
+				end = Math.min(end, a.getTime(ia));
+			}
+			if (ib < b.size()) {
+				end = Math.min(end, b.getTime(ib));
+			}
+			double length = end - start;
+
+			double dx = a.getXAt(start) - b.getXAt(start);
+			double dy = a.getYAt(start) - b.getYAt(start);
+			double vx = (a.getXAt(end) - b.getXAt(end) - dx) / length;
+			double vy = (a.getYAt(end) - b.getYAt(end) - dy) / length;
+			double c = dx * dx + dy * dy - rangeSq;
+
+			boolean inRange = c <= 0;
+			if (inRange != inside && (canConnect || !inRange)) {
+				times.add(start);
+				ups.add(inRange);
+				inside = inRange;
+			}
+
+			double qa = vx * vx + vy * vy;
+			double qb = 2 * (dx * vx + dy * vy);
+			double disc = qb * qb - 4 * qa * c;
+			if (qa > 0 && disc > 0) {
+				double sqrtDisc = Math.sqrt(disc);
+				double enter = (-qb - sqrtDisc) / (2 * qa);
+				double exit = (-qb + sqrtDisc) / (2 * qa);
+				if (!inside && canConnect && enter > 0 && enter < length) {
+					times.add(start + enter);
+					ups.add(true);
+					inside = true;
+				}
+				if (inside && exit > 0 && exit < length) {
+					times.add(start + exit);
+					ups.add(false);
+					inside = false;
+				}
+			}
+
+			start = end;
+		}
+
+		/* make sure the final state matches the end locations */
+		double dx = a.getXAt(stepLength) - b.getXAt(stepLength);
+		double dy = a.getYAt(stepLength) - b.getYAt(stepLength);
+		boolean inRange = dx * dx + dy * dy <= rangeSq;
+		if (inRange != inside && (canConnect || !inRange)) {
+			times.add(stepLength);
+			ups.add(inRange);
+		}
+	}
+
+	/**
+	 * A predicted link change
+	 */
+	private static class LinkEvent implements Comparable<LinkEvent> {
+		private double time;
+		/** the interface with the smaller address */
+		private NetworkInterface from;
+		private NetworkInterface to;
+		/** true for link up, false for link down */
+		private boolean up;
+
+		public LinkEvent(double time, NetworkInterface from,
+				NetworkInterface to, boolean up) {
+			this.time = time;
+			this.from = from;
+			this.to = to;
+			this.up = up;
+		}
+
+		public int compareTo(LinkEvent other) {
+			if (this.time != other.time) {
+				return (this.time < other.time ? -1 : 1);
+			}
+			if (this.from != other.from) {
+				return this.from.getAddress() - other.from.getAddress();
+			}
+			return this.to.getAddress() - other.to.getAddress();
+		}
+	}
+}
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.*;
 
 import movement.MovementModel;
@@ -17,7 +18,8 @@ import routing.community.Duration;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private static int nextAddress = 0;
     private int address;
@@ -31,8 +33,13 @@ public class DTNHost implements Comparable<DTNHost> {
     private double speed;
     private double nextTimeToMove;
     private String name;
-    private List<MessageListener> msgListeners;
-    private List<MovementListener> movListeners;
+    private transient List<MessageListener> msgListeners;
+    private transient List<MovementListener> movListeners;
+    /** new destinations not yet reported to the movement listeners (or null
+     * if the listeners are informed immediately) */
+    private List<Tuple<Coord, Double>> bufferedDestinations;
+    /** trace of the last move step (or null if moves are not traced) */
+    private MoveTrace moveTrace;
     private List<NetworkInterface> net;
     private ModuleCommunicationBus comBus;
 
@@ -91,7 +98,7 @@ public class DTNHost implements Comparable<DTNHost> {
         this.movListeners = movLs;
 
         // create instances by replicating the prototypes
-        this.movement = mmProto.replicate();
+        this.movement = mmProto.replicate(this.address);
         this.movement.setComBus(comBus);
         setRouter(mRouterProto.replicate());
 
@@ -150,11 +157,28 @@ public class DTNHost implements Comparable<DTNHost> {
      *
      * @param router The router to set
      */
-    private void setRouter(MessageRouter router) {
+    void setRouter(MessageRouter router) {
         router.init(this, msgListeners);
         this.router = router;
     }
 
+    /**
+     * Restores the state of this host that is not saved in snapshots (see
+     * {@link Snapshot}). The listeners are taken from the host with the same
+     * address in a newly created scenario.
+     *
+     * @param host The host of the new scenario
+     * @param appListeners Application listeners of the new scenario
+     */
+    void restore(DTNHost host, List<ApplicationListener> appListeners) {
+        this.msgListeners = host.msgListeners;
+        this.movListeners = host.movListeners;
+        for (int i = 0, n = net.size(); i < n; i++) {
+            net.get(i).restore(host.net.get(i));
+        }
+        this.router.setListeners(msgListeners, appListeners);
+    }
+
     /**
      * Returns the router of this host
      *
@@ -373,9 +397,11 @@ public class DTNHost implements Comparable<DTNHost> {
         }
 
         if (simulateConnections) {
+            int previous = SimProfiler.enter(SimProfiler.CONNECTIVITY);
             for (NetworkInterface i : net) {
                 i.update();
             }
+            SimProfiler.exit(previous);
         }
         this.router.update();
     }
@@ -388,9 +414,14 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     public void move(double timeIncrement) {
         double possibleMovement;
+        double maxMovement;
+        double stepSpeed;
         double distance;
         double dx, dy;
 
+        if (this.moveTrace != null) {
+            this.moveTrace.start(this.location);
+        }
         if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
             return;
         }
@@ -401,12 +432,18 @@ public class DTNHost implements Comparable<DTNHost> {
         }
 
         possibleMovement = timeIncrement * speed;
+        maxMovement = possibleMovement;
+        stepSpeed = speed;
         distance = this.location.distance(this.destination);
 
         while (possibleMovement >= distance) {
             // node can move past its next destination
             this.location.setLocation(this.destination); // snap to destination
             possibleMovement -= distance;
+            if (this.moveTrace != null && stepSpeed > 0) {
+                this.moveTrace.add((maxMovement - possibleMovement) / stepSpeed,
+                        this.location);
+            }
             if (!setNextWaypoint()) { // get a new waypoint
                 return; // no more waypoints left
             }
@@ -419,6 +456,64 @@ public class DTNHost implements Comparable<DTNHost> {
         dy = (possibleMovement / distance) * (this.destination.getY()
                 - this.location.getY());
         this.location.translate(dx, dy);
+        if (this.moveTrace != null) {
+            this.moveTrace.add(timeIncrement, this.location);
+        }
+    }
+
+    /**
+     * Sets whether the moves of this host should be traced
+     * (see {@link #getMoveTrace()})
+     *
+     * @param trace True if the moves should be traced
+     */
+    public void setMoveTracing(boolean trace) {
+        if (trace && this.moveTrace == null) {
+            this.moveTrace = new MoveTrace();
+            this.moveTrace.start(this.location);
+        }
+        else if (!trace) {
+            this.moveTrace = null;
+        }
+    }
+
+    /**
+     * Returns the trace of the last move step of this host
+     *
+     * @return The trace or null if the moves are not traced
+     */
+    public MoveTrace getMoveTrace() {
+        return this.moveTrace;
+    }
+
+    /**
+     * Returns the earliest simulation time when this host needs to be moved
+     * or updated even if nothing else happens before that (i.e., the host
+     * starts moving or {@link #nextUpdateTime()} is due). If the host is
+     * moving at the moment, the current time is returned.
+     *
+     * @return The earliest time when this host needs to be updated
+     */
+    public double nextActivityTime() {
+        double now = SimClock.getTime();
+
+        if (this.path != null || this.nextTimeToMove <= now) {
+            return now; // moving or about to start moving
+        }
+
+        return Math.min(this.nextTimeToMove, nextUpdateTime());
+    }
+
+    /**
+     * Returns the next simulation time when this host needs to be updated
+     * even if no connection or message event concerns it before that (i.e.,
+     * its activeness may change or its router requests an update).
+     *
+     * @return The next time this host needs an update
+     */
+    public double nextUpdateTime() {
+        return Math.min(this.movement.nextActivenessChange(),
+                this.router.nextUpdateTime());
     }
 
     /**
@@ -442,7 +537,11 @@ public class DTNHost implements Comparable<DTNHost> {
         this.destination = path.getNextWaypoint();
         this.speed = path.getSpeed();
 
-        if (this.movListeners != null) {
+        if (this.bufferedDestinations != null) {
+            this.bufferedDestinations.add(
+                    new Tuple<Coord, Double>(this.destination, this.speed));
+        }
+        else if (this.movListeners != null) {
             for (MovementListener l : this.movListeners) {
                 l.newDestination(this, this.destination, this.speed);
             }
@@ -451,6 +550,54 @@ public class DTNHost implements Comparable<DTNHost> {
         return true;
     }
 
+    /**
+     * Returns true if this host can be moved concurrently with other hosts
+     * (see {@link MovementModel#canMoveInParallel()}).
+     *
+     * @return True if the host can be moved in parallel
+     */
+    public boolean canMoveInParallel() {
+        return this.movement.canMoveInParallel();
+    }
+
+    /**
+     * Sets whether new destinations should be reported to the movement
+     * listeners immediately or buffered until
+     * {@link #flushMovementEvents()} is called. Buffering is used when
+     * hosts are moved in parallel.
+     *
+     * @param buffer True if the events should be buffered
+     */
+    public void setMovementEventBuffering(boolean buffer) {
+        if (buffer && this.bufferedDestinations == null) {
+            this.bufferedDestinations = new ArrayList<Tuple<Coord, Double>>();
+        }
+        else if (!buffer) {
+            flushMovementEvents();
+            this.bufferedDestinations = null;
+        }
+    }
+
+    /**
+     * Reports all the buffered new destinations to the movement listeners
+     * in the order they were received.
+     */
+    public void flushMovementEvents() {
+        if (this.bufferedDestinations == null ||
+                this.bufferedDestinations.isEmpty()) {
+            return;
+        }
+
+        if (this.movListeners != null) {
+            for (Tuple<Coord, Double> t : this.bufferedDestinations) {
+                for (MovementListener l : this.movListeners) {
+                    l.newDestination(this, t.getKey(), t.getValue());
+                }
+            }
+        }
+        this.bufferedDestinations.clear();
+    }
+
     /**
      * Sends a message from this host to another host
      *
@@ -472,6 +619,18 @@ public class DTNHost implements Comparable<DTNHost> {
     public int receiveMessage(Message m, DTNHost from) {
         int retVal = this.router.receiveMessage(m, from);
 
+        FlightRecorderEvents.TransferStart event =
+                new FlightRecorderEvents.TransferStart();
+        if (event.shouldCommit()) {
+            event.simTime = SimClock.getTime();
+            event.messageId = m.getId();
+            event.size = m.getSize();
+            event.from = from.getAddress();
+            event.to = this.address;
+            event.code = retVal;
+            event.commit();
+        }
+
         if (retVal == MessageRouter.RCV_OK) {
             m.addNodeOnPath(this);	// add this node on the messages path
         }
@@ -497,7 +656,18 @@ public class DTNHost implements Comparable<DTNHost> {
      * @param from From who the message was from
      */
     public void messageTransferred(String id, DTNHost from) {
-        this.router.messageTransferred(id, from);
+        Message m = this.router.messageTransferred(id, from);
+
+        FlightRecorderEvents.TransferDone event =
+                new FlightRecorderEvents.TransferDone();
+        if (event.shouldCommit()) {
+            event.simTime = SimClock.getTime();
+            event.messageId = id;
+            event.size = m == null ? -1 : m.getSize();
+            event.from = from.getAddress();
+            event.to = this.address;
+            event.commit();
+        }
     }
 
     /**
@@ -9,6 +9,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
+import report.Report;
 import ui.DTNSimTextUI;
 
 /**
@@ -20,6 +21,12 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode runs, the runs are
+	 * run concurrently using the number of threads given after the option */
+	public static final String PARALLEL_FLAG = "-p";
+	/** If this option ({@value}) follows the batch mode runs, the runs are
+	 * run in lock-step as router planes of a single simulation */
+	public static final String PLANES_FLAG = "-l";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -37,6 +44,11 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the number of runs can be followed by 
+	 * {@value #PARALLEL_FLAG} and the number of runs to run concurrently
+	 * (see {@link ParallelBatchRunner}), or by {@value #PLANES_FLAG} to run
+	 * all the runs as router planes of one simulation that share the
+	 * movement and contacts of the first run (see {@link RouterPlanes}).
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -45,6 +57,8 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofThreads = 1;
+		boolean routerPlanes = false;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -58,6 +72,14 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                    if (args.length > 3 && args[2].equals(PARALLEL_FLAG)) {
+                    	nrofThreads = parseNrofThreads(args[3]);
+                    	firstConfIndex = 4;
+                    }
+                    else if (args.length > 2 && args[2].equals(PLANES_FLAG)) {
+                    	routerPlanes = true;
+                    	firstConfIndex = 3;
+                    }
                 }
 			}
 			else { /* GUI mode */				
@@ -74,9 +96,31 @@ public class DTNSim {
 			confFiles = new String[] {null};
 		}
 		
-		initSettings(confFiles, firstConfIndex);
+		initSettings(confFiles, firstConfIndex, true);
 		
-		if (batchMode) {
+		if (batchMode && nrofThreads > 1) {
+			long startTime = System.currentTimeMillis();
+			int nrofFailed = new ParallelBatchRunner(confFiles, firstConfIndex).
+				run(nrofRuns[0], nrofRuns[1], nrofThreads);
+			double duration = (System.currentTimeMillis() - startTime)/1000.0;
+			print("---\nAll done in " + String.format("%.2f", duration) + "s");
+			if (nrofFailed > 0) {
+				print(nrofFailed + " run(s) failed");
+				System.exit(-1);
+			}
+		}
+		else if (batchMode && routerPlanes) {
+			long startTime = System.currentTimeMillis();
+			print("Runs " + (nrofRuns[0]+1) + "-" + nrofRuns[1] + 
+					" as router planes");
+			Settings.setRunIndex(nrofRuns[0]);
+			DTNSimTextUI ui = new DTNSimTextUI();
+			ui.setRouterPlaneRuns(nrofRuns[0], nrofRuns[1]);
+			ui.start();
+			double duration = (System.currentTimeMillis() - startTime)/1000.0;
+			print("---\nAll done in " + String.format("%.2f", duration) + "s");
+		}
+		else if (batchMode) {
 			long startTime = System.currentTimeMillis();
 			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
 				print("Run " + (i+1) + "/" + nrofRuns[1]);
@@ -93,12 +137,47 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs a single batch mode run. Used by {@link ParallelBatchRunner} for 
+	 * running the simulation in a class loader of its own, so the classes'
+	 * static state doesn't need resetting.
+	 * @param confFiles File name paths where to read the settings
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex Index of the run
+	 * @param ownReportDir If true, the reports are written to a subdirectory
+	 * of the report directory named by 
+	 * {@link ParallelBatchRunner#getRunDirName(int)}
+	 */
+	public static void runIsolated(String[] confFiles, int firstConfIndex,
+			int runIndex, boolean ownReportDir) {
+		java.util.Locale.setDefault(java.util.Locale.US);
+		initSettings(confFiles, firstConfIndex, false);
+		Settings.setRunIndex(runIndex);
+		
+		if (ownReportDir) {
+			String reportDir = new Settings().getSetting(
+					Report.REPORTDIR_SETTING);
+			if (!reportDir.endsWith("/")) {
+				reportDir += "/";
+			}
+			Settings.props.setProperty(Report.REPORTDIR_SETTING, reportDir + 
+					ParallelBatchRunner.getRunDirName(runIndex) + "/");
+		}
+		
+		DTNSimTextUI ui = new DTNSimTextUI();
+		ui.setExitOnError(false);
+		ui.start();
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
 	 * @param firstIndex Index of the first config file name
+	 * @param exitOnError If true, an error in the settings exits the JVM,
+	 * otherwise the error is thrown
 	 */
-	private static void initSettings(String[] confFiles, int firstIndex) {
+	private static void initSettings(String[] confFiles, int firstIndex,
+			boolean exitOnError) {
 		int i = firstIndex;
 
         if (i >= confFiles.length) {
@@ -112,6 +191,9 @@ public class DTNSim {
 			}
 		}
 		catch (SettingsError er) {
+			if (!exitOnError) {
+				throw er;
+			}
 			try {
 				Integer.parseInt(confFiles[i]);
 			}
@@ -216,6 +298,27 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of concurrent batch runs from a command line 
+	 * argument
+	 * @param arg The argument to parse
+	 * @return The number of threads
+	 */
+	private static int parseNrofThreads(String arg) {
+		int nrof = 0;
+		try {
+			nrof = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			nrof = 0;
+		}
+		if (nrof < 1) {
+			System.err.println("Invalid argument '" + arg + "' for the " + 
+					"number of concurrent runs");
+			System.exit(-1);
+		}
+		return nrof;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
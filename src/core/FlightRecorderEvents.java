@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <P>Java Flight Recorder events of the simulator. The events connect the
+ * measurements of a flight recording (e.g., allocations and garbage
+ * collections) to what happens in the simulation: updates, contacts,
+ * message transfers, buffer evictions and report flushes.</P>
+ * <P>All the events are disabled by default, so a flight recording started
+ * with the default JDK settings doesn't contain them, and a disabled event
+ * costs only an enabled check. The events can be enabled with the settings
+ * file <TT>toolkit/one.jfc</TT>, e.g.:<BR>
+ * <TT>java -XX:StartFlightRecording=settings=toolkit/one.jfc,filename=one.jfr
+ * core.DTNSim ...</TT><BR>
+ * or in JDK Mission Control's recording wizard.</P>
+ * <P>The events are created and committed with the usual idiom: create the
+ * event, check {@link Event#shouldCommit()} and only then fill in the fields
+ * and commit it.</P>
+ */
+public class FlightRecorderEvents {
+	/** category of all the simulator events */
+	private static final String CATEGORY = "ONE Simulator";
+
+	/**
+	 * One update of the world (see {@link World#update()})
+	 */
+	@Name("one.SimTick")
+	@Label("Simulation Update")
+	@Description("One update interval of the simulation")
+	@Category({CATEGORY, "Simulation"})
+	@Enabled(false)
+	@StackTrace(false)
+	public static class SimTick extends Event {
+		@Label("Simulation Time")
+		@Description("Simulation time at the end of the update")
+		public double simTime;
+		@Label("Hosts Updated")
+		@Description("Number of host updates during the update")
+		public int hostsUpdated;
+		@Label("Events Processed")
+		@Description("Number of external events processed during the update")
+		public int eventsProcessed;
+	}
+
+	/**
+	 * Base class of the contact events
+	 */
+	@Category({CATEGORY, "Connectivity"})
+	@Enabled(false)
+	@StackTrace(false)
+	abstract static class ContactEvent extends Event {
+		@Label("Simulation Time")
+		public double simTime;
+		@Label("Host")
+		@Description("Address of the host whose interface connected")
+		public int host;
+		@Label("Peer")
+		@Description("Address of the other host")
+		public int peer;
+		@Label("Interface")
+		@Description("Interface type of the connecting interface")
+		public String interfaceType;
+	}
+
+	/**
+	 * A connection between two hosts went up
+	 */
+	@Name("one.ContactUp")
+	@Label("Contact Up")
+	public static class ContactUp extends ContactEvent { }
+
+	/**
+	 * A connection between two hosts went down
+	 */
+	@Name("one.ContactDown")
+	@Label("Contact Down")
+	public static class ContactDown extends ContactEvent { }
+
+	/**
+	 * Base class of the message transfer events
+	 */
+	@Category({CATEGORY, "Transfers"})
+	@Enabled(false)
+	@StackTrace(false)
+	abstract static class TransferEvent extends Event {
+		@Label("Simulation Time")
+		public double simTime;
+		@Label("Message")
+		public String messageId;
+		@Label("Message Size")
+		@DataAmount
+		public int size;
+		@Label("From")
+		@Description("Address of the sending host")
+		public int from;
+		@Label("To")
+		@Description("Address of the receiving host")
+		public int to;
+	}
+
+	/**
+	 * A host was offered a message. The event is committed also when the
+	 * receiving router denies the message; the code tells the result.
+	 */
+	@Name("one.TransferStart")
+	@Label("Transfer Start")
+	@Description("A message was offered to a host")
+	public static class TransferStart extends TransferEvent {
+		@Label("Result Code")
+		@Description("Result of receiving the message: 0 (RCV_OK), " +
+				"negative codes are denials (e.g., -1 DENIED_OLD, " +
+				"-2 DENIED_NO_SPACE) and positive codes are router specific " +
+				"try-later codes")
+		public int code;
+	}
+
+	/**
+	 * A message transfer was completed
+	 */
+	@Name("one.TransferDone")
+	@Label("Transfer Done")
+	public static class TransferDone extends TransferEvent { }
+
+	/**
+	 * A message transfer was aborted
+	 */
+	@Name("one.TransferAbort")
+	@Label("Transfer Abort")
+	public static class TransferAbort extends TransferEvent {
+		@Label("Bytes Remaining")
+		@Description("Bytes that were left of the transfer (-1 if unknown)")
+		@DataAmount
+		public int bytesRemaining;
+	}
+
+	/**
+	 * A message was dropped from a buffer to make room for a new message
+	 */
+	@Name("one.BufferEviction")
+	@Label("Buffer Eviction")
+	@Description("A message was dropped to make room for another message")
+	@Category({CATEGORY, "Buffers"})
+	@Enabled(false)
+	@StackTrace(false)
+	public static class BufferEviction extends Event {
+		@Label("Simulation Time")
+		public double simTime;
+		@Label("Host")
+		public int host;
+		@Label("Message")
+		@Description("ID of the dropped message")
+		public String messageId;
+		@Label("Message Size")
+		@DataAmount
+		public int size;
+		@Label("Space Needed")
+		@Description("Size of the message room was made for")
+		@DataAmount
+		public int needed;
+		@Label("Free Buffer")
+		@Description("Free buffer space before the message was dropped")
+		@DataAmount
+		public long freeBuffer;
+	}
+
+	/**
+	 * A report wrote its results when the simulation was done
+	 */
+	@Name("one.ReportFlush")
+	@Label("Report Flush")
+	@Description("A report finished and wrote its results")
+	@Category({CATEGORY, "Reports"})
+	@Enabled(false)
+	@StackTrace(false)
+	public static class ReportFlush extends Event {
+		@Label("Report")
+		public String report;
+	}
+}
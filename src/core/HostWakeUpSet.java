@@ -0,0 +1,229 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Set of hosts that need to be updated. Used by the {@link World} when
+ * hosts are updated on demand instead of updating all hosts after every
+ * event. A host is woken up when a connection or a message event concerns
+ * it (this class listens to those events), or at a requested time (e.g.,
+ * when a transfer completes or the router requests a periodic check).
+ */
+public class HostWakeUpSet implements ConnectionListener, MessageListener {
+	/** all hosts indexed by their address (minus the smallest address) */
+	private DTNHost[] hosts;
+	/** smallest address of the hosts */
+	private int minAddress;
+	/** is the host with the index awake */
+	private boolean[] isAwake;
+	/** hosts that are awake */
+	private List<DTNHost> awakeHosts;
+	/** earliest pending timed wake up of each host (by index) */
+	private double[] wakeUpTimes;
+	/** timed wake ups ordered by time */
+	private PriorityQueue<WakeUp> timedWakeUps;
+
+	/**
+	 * Creates a new wake up set where all the hosts are awake.
+	 * @param hosts The hosts
+	 */
+	public HostWakeUpSet(List<DTNHost> hosts) {
+		int maxAddress = 0;
+		this.minAddress = Integer.MAX_VALUE;
+		for (DTNHost host : hosts) {
+			minAddress = Math.min(minAddress, host.getAddress());
+			maxAddress = Math.max(maxAddress, host.getAddress());
+		}
+		int size = hosts.isEmpty() ? 0 : maxAddress - minAddress + 1;
+
+		this.hosts = new DTNHost[size];
+		for (DTNHost host : hosts) {
+			this.hosts[host.getAddress() - minAddress] = host;
+		}
+		this.isAwake = new boolean[size];
+		this.awakeHosts = new ArrayList<DTNHost>(hosts.size());
+		this.wakeUpTimes = new double[size];
+		Arrays.fill(this.wakeUpTimes, Double.MAX_VALUE);
+		this.timedWakeUps = new PriorityQueue<WakeUp>();
+		wakeUpAll();
+	}
+
+	/**
+	 * Wakes up a host. The host is updated in the next update round.
+	 * @param host The host to wake up
+	 */
+	public void wakeUp(DTNHost host) {
+		int index = host.getAddress() - this.minAddress;
+		if (!this.isAwake[index]) {
+			this.isAwake[index] = true;
+			this.awakeHosts.add(host);
+		}
+	}
+
+	/**
+	 * Wakes up all hosts
+	 */
+	public void wakeUpAll() {
+		for (DTNHost host : this.hosts) {
+			if (host != null) {
+				wakeUp(host);
+			}
+		}
+	}
+
+	/**
+	 * Wakes up a host at the given time. If an earlier wake up is already
+	 * pending for the host, nothing is done (the host is expected to request
+	 * a new wake up when it is updated).
+	 * @param host The host to wake up
+	 * @param time The sim time when the host should be woken up
+	 */
+	public void wakeUpAt(DTNHost host, double time) {
+		int index = host.getAddress() - this.minAddress;
+		if (time < this.wakeUpTimes[index]) {
+			this.wakeUpTimes[index] = time;
+			this.timedWakeUps.add(new WakeUp(time, index));
+		}
+	}
+
+	/**
+	 * Returns the time of the next pending timed wake up
+	 * @return The time of the next wake up or Double.MAX_VALUE if there
+	 * are no pending wake ups
+	 */
+	public double nextWakeUpTime() {
+		WakeUp next = this.timedWakeUps.peek();
+		while (next != null && next.isStale()) {
+			this.timedWakeUps.poll();
+			next = this.timedWakeUps.peek();
+		}
+		return (next == null ? Double.MAX_VALUE : next.time);
+	}
+
+	/**
+	 * Wakes up the hosts whose timed wake up is due, and returns all hosts
+	 * that are awake ordered by their address. All the returned hosts are
+	 * put to sleep.
+	 * @return The hosts that were awake
+	 */
+	public List<DTNHost> takeAwakeHosts() {
+		double now = SimClock.getTime();
+		while (nextWakeUpTime() <= now) {
+			WakeUp w = this.timedWakeUps.poll();
+			this.wakeUpTimes[w.index] = Double.MAX_VALUE;
+			wakeUp(this.hosts[w.index]);
+		}
+
+		List<DTNHost> awake = this.awakeHosts;
+		this.awakeHosts = new ArrayList<DTNHost>();
+		for (DTNHost host : awake) {
+			this.isAwake[host.getAddress() - this.minAddress] = false;
+		}
+		Collections.sort(awake);
+
+		return awake;
+	}
+
+	/**
+	 * Replaces the hosts of this set with the hosts restored from a snapshot
+	 * (see {@link Snapshot}). The pending wake ups are not saved in 
+	 * snapshots, so all the hosts are woken up.
+	 * @param hosts The restored hosts (with the same addresses as the hosts
+	 * of this set)
+	 */
+	void replaceHosts(List<DTNHost> hosts) {
+		for (DTNHost host : hosts) {
+			this.hosts[host.getAddress() - this.minAddress] = host;
+		}
+		Arrays.fill(this.isAwake, false);
+		this.awakeHosts.clear();
+		Arrays.fill(this.wakeUpTimes, Double.MAX_VALUE);
+		this.timedWakeUps.clear();
+		wakeUpAll();
+	}
+
+	/**
+	 * Wakes up the host and all the hosts it is connected to
+	 * @param host The host
+	 */
+	private void wakeUpWithNeighbors(DTNHost host) {
+		wakeUp(host);
+		for (Connection con : host.getConnections()) {
+			wakeUp(con.getOtherNode(host));
+		}
+	}
+
+	// ConnectionListener and MessageListener implementations
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		wakeUp(host1);
+		wakeUp(host2);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		wakeUp(host1);
+		wakeUp(host2);
+	}
+
+	public void newMessage(Message m) {
+		wakeUp(m.getFrom());
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		wakeUp(from);
+		wakeUp(to);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		wakeUp(where);
+	}
+
+	/* hosts that were waiting for the busy ones may now start transfers */
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		wakeUpWithNeighbors(from);
+		wakeUpWithNeighbors(to);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		wakeUpWithNeighbors(from);
+		wakeUpWithNeighbors(to);
+	}
+
+	/**
+	 * A timed wake up request
+	 */
+	private class WakeUp implements Comparable<WakeUp> {
+		private double time;
+		private int index;
+
+		public WakeUp(double time, int index) {
+			this.time = time;
+			this.index = index;
+		}
+
+		/**
+		 * Returns true if an earlier wake up has replaced this one
+		 * @return true if this wake up is not valid anymore
+		 */
+		public boolean isStale() {
+			return wakeUpTimes[index] != this.time;
+		}
+
+		public int compareTo(WakeUp other) {
+			if (this.time == other.time) {
+				return this.index - other.index;
+			}
+			return (this.time < other.time ? -1 : 1);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive int keys. The entries are stored in two arrays
+ * with open addressing (linear probing), so a lookup doesn't box the key or
+ * follow any entry objects. Null values are not supported: a null value
+ * marks a free slot. The values are iterated in the order their keys were
+ * added to the map (like in a LinkedHashMap), so the order doesn't depend
+ * on the hash slots of the keys. Replacing the value of a key doesn't
+ * change the order.
+ * @param <V> Type of the values
+ */
+public class IntHashMap<V> implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** capacity of the smallest table */
+	private static final int MIN_CAPACITY = 16;
+	/** slot value of a missing link */
+	private static final int NONE = -1;
+
+	private int[] keys;
+	private Object[] values;
+	/** slot of the previous entry in insertion order (or NONE) */
+	private int[] prev;
+	/** slot of the next entry in insertion order (or NONE) */
+	private int[] next;
+	/** slot of the first entry in insertion order (or NONE) */
+	private int head;
+	/** slot of the last entry in insertion order (or NONE) */
+	private int tail;
+	private int size;
+	/** capacity - 1 (the capacity is a power of two) */
+	private int mask;
+	/** number of structural modifications (for the iterators) */
+	private transient int modCount;
+	private transient Collection<V> valuesView;
+
+	/**
+	 * Creates a new, empty map
+	 */
+	public IntHashMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * Creates a new, empty map
+	 * @param expectedSize How many entries the map is expected to hold
+	 */
+	public IntHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.prev = new int[capacity];
+		this.next = new int[capacity];
+		this.head = NONE;
+		this.tail = NONE;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the home slot of a key
+	 */
+	private int home(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the slot of a key or the free slot where the key would go
+	 */
+	private int slot(int key) {
+		int i = home(key);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the map doesn't contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		return (V)values[slot(key)];
+	}
+
+	/**
+	 * Returns true if the map contains a key
+	 * @param key The key
+	 * @return true if the map contains the key
+	 */
+	public boolean containsKey(int key) {
+		return values[slot(key)] != null;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The previous value of the key or null if there wasn't one
+	 * @throws IllegalArgumentException if the value is null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		int i = slot(key);
+		V old = (V)values[i];
+		keys[i] = key;
+		values[i] = value;
+		if (old == null) {
+			link(i);
+			size++;
+			modCount++;
+			if (size * 2 > values.length) {
+				rehash(values.length * 2);
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The removed value or null if the map didn't contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int i = slot(key);
+		V old = (V)values[i];
+		if (old == null) {
+			return null;
+		}
+		unlink(i);
+		values[i] = null;
+		size--;
+		modCount++;
+
+		/* move back the following entries that can't be found anymore
+		 * because of the freed slot */
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int h = home(keys[j]);
+			boolean reachable = (j > i) ? (h > i && h <= j) :
+				(h > i || h <= j);
+			if (!reachable) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				move(j, i);
+				i = j;
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Adds the entry of a slot to the end of the insertion order
+	 */
+	private void link(int i) {
+		prev[i] = tail;
+		next[i] = NONE;
+		if (tail == NONE) {
+			head = i;
+		}
+		else {
+			next[tail] = i;
+		}
+		tail = i;
+	}
+
+	/**
+	 * Removes the entry of a slot from the insertion order
+	 */
+	private void unlink(int i) {
+		if (prev[i] == NONE) {
+			head = next[i];
+		}
+		else {
+			next[prev[i]] = next[i];
+		}
+		if (next[i] == NONE) {
+			tail = prev[i];
+		}
+		else {
+			prev[next[i]] = prev[i];
+		}
+	}
+
+	/**
+	 * Moves the place of an entry in the insertion order from a slot to
+	 * another (when the entry itself is moved)
+	 */
+	private void move(int from, int to) {
+		prev[to] = prev[from];
+		next[to] = next[from];
+		if (prev[to] == NONE) {
+			head = to;
+		}
+		else {
+			next[prev[to]] = to;
+		}
+		if (next[to] == NONE) {
+			tail = to;
+		}
+		else {
+			prev[next[to]] = to;
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		int[] oldNext = this.next;
+		int first = this.head;
+		allocate(capacity);
+		/* the entries are added in insertion order to keep the order */
+		for (int i = first; i != NONE; i = oldNext[i]) {
+			int j = slot(oldKeys[i]);
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+			link(j);
+		}
+	}
+
+	/**
+	 * Returns the number of entries in the map
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all the entries
+	 */
+	public void clear() {
+		if (this.size > 0) {
+			Arrays.fill(this.values, null);
+			this.head = NONE;
+			this.tail = NONE;
+			this.size = 0;
+			this.modCount++;
+		}
+	}
+
+	/**
+	 * Returns the values of the map as a collection in insertion order.
+	 * The collection is a view that reflects the changes of the map. It
+	 * can't be modified, and its iterators throw
+	 * ConcurrentModificationException if the map is modified while
+	 * iterating (except by changing the value of a key).
+	 * @return The values
+	 */
+	public Collection<V> values() {
+		if (this.valuesView == null) {
+			this.valuesView = new AbstractCollection<V>() {
+				@Override
+				public Iterator<V> iterator() {
+					return new ValueIterator();
+				}
+
+				@Override
+				public int size() {
+					return IntHashMap.this.size;
+				}
+			};
+		}
+		return this.valuesView;
+	}
+
+	/**
+	 * Iterator over the values of the map in insertion order
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private int nextSlot = head;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			return nextSlot != NONE;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (nextSlot == NONE) {
+				throw new NoSuchElementException();
+			}
+			V value = (V)values[nextSlot];
+			nextSlot = next[nextSlot];
+			return value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
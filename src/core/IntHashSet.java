@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Hash set of primitive ints. The values are stored in an array with open
+ * addressing (linear probing), so adding a value or checking if the set
+ * contains it doesn't box the value. The set can't contain
+ * Integer.MIN_VALUE, which marks the free slots.
+ */
+public class IntHashSet implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** capacity of the smallest table */
+	private static final int MIN_CAPACITY = 16;
+	/** value of the free slots */
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] table;
+	private int size;
+	/** capacity - 1 (the capacity is a power of two) */
+	private int mask;
+
+	/**
+	 * Creates a new, empty set
+	 */
+	public IntHashSet() {
+		allocate(MIN_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		this.table = new int[capacity];
+		Arrays.fill(this.table, FREE);
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the home slot of a value
+	 */
+	private int home(int value) {
+		int h = value * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the slot of a value or the free slot where the value would go
+	 */
+	private int slot(int value) {
+		int i = home(value);
+		while (table[i] != FREE && table[i] != value) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value The value to add
+	 * @return true if the set didn't contain the value already
+	 * @throws IllegalArgumentException if the value is Integer.MIN_VALUE
+	 */
+	public boolean add(int value) {
+		if (value == FREE) {
+			throw new IllegalArgumentException("Can't add " + value);
+		}
+		int i = slot(value);
+		if (table[i] == value) {
+			return false;
+		}
+		table[i] = value;
+		size++;
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all the values of another set to this set
+	 * @param other The other set
+	 */
+	public void addAll(IntHashSet other) {
+		for (int value : other.table) {
+			if (value != FREE) {
+				add(value);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the set contains a value
+	 * @param value The value
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(int value) {
+		return value != FREE && table[slot(value)] == value;
+	}
+
+	/**
+	 * Removes a value from the set
+	 * @param value The value to remove
+	 * @return true if the set contained the value
+	 */
+	public boolean remove(int value) {
+		if (value == FREE) {
+			return false;
+		}
+		int i = slot(value);
+		if (table[i] != value) {
+			return false;
+		}
+		table[i] = FREE;
+		size--;
+
+		/* move back the following values that can't be found anymore
+		 * because of the freed slot */
+		for (int j = (i + 1) & mask; table[j] != FREE; j = (j + 1) & mask) {
+			int h = home(table[j]);
+			boolean reachable = (j > i) ? (h > i && h <= j) :
+				(h > i || h <= j);
+			if (!reachable) {
+				table[i] = table[j];
+				table[j] = FREE;
+				i = j;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = this.table;
+		allocate(capacity);
+		for (int value : old) {
+			if (value != FREE) {
+				table[slot(value)] = value;
+			}
+		}
+	}
+
+	/**
+	 * Returns the values of the set in an array (in no particular order)
+	 * @return The values
+	 */
+	public int[] toArray() {
+		int[] result = new int[size];
+		int n = 0;
+		for (int value : table) {
+			if (value != FREE) {
+				result[n++] = value;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return The number of values
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the set is empty
+	 * @return true if the set is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all the values
+	 */
+	public void clear() {
+		Arrays.fill(this.table, FREE);
+		this.size = 0;
+	}
+}
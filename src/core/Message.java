@@ -4,50 +4,50 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.RandomAccess;
 
 /**
  * A message that is created at a node or passed between nodes.
+ * <P>All replicates of a message share an immutable header (id, source,
+ * destination, size, creation time, TTL, response size, request and
+ * application ID) and the beginning of their path: the path is a linked list
+ * of hops from the last hop towards the source, so adding a hop to a
+ * replicate doesn't copy or change the path of the other replicates. The
+ * properties are shared too and copied only when a replicate updates them.
+ * Only the receive time and the unique ID are stored per replicate.</P>
+ * <P>The ID of a message is interned when the message is created, so the
+ * message has also an integer index (see {@link #getIndex()}) that can be
+ * used as a key instead of the ID.</P>
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
-	private DTNHost from;
-	private DTNHost to;
-	/** Identifier of the message */
-	private String id;
-	/** Size of the message (bytes) */
-	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
+	/** Data that is shared by all replicates of the message */
+	private Header header;
+	/** Last node this message has passed */
+	private Hop path;
+	/** The path as a list (created when first requested) */
+	private transient List<DTNHost> hops;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
 	private double timeReceived;
-	/** The time when this message was created */
-	private double timeCreated;
-	/** Initial TTL of the message */
-	private int initTtl;
-	
-	/** if a response to this message is required, this is the size of the 
-	 * response message (or 0 if no response is requested) */
-	private int responseSize;
-	/** if this message is a response message, this is set to the request msg*/
-	private Message requestMsg;
 	
 	/** Container for generic message properties. Note that all values
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
-	
-	/** Application ID of the application that created the message */
-	private String	appID;
+	/** True if the properties map may be shared with other replicates
+	 * (and must be copied before it's modified) */
+	private boolean propertiesShared;
 	
 	static {
 		reset();
@@ -63,31 +63,41 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
-		this.from = from;
-		this.to = to;
-		this.id = id;
-		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.header = new Header(from, to, id, MessageIdInterner.intern(id),
+				size, SimClock.getTime());
 		this.uniqueId = nextUniqueId;
-		
-		this.timeCreated = SimClock.getTime();
-		this.timeReceived = this.timeCreated;
-		this.initTtl = INFINITE_TTL;
-		this.responseSize = 0;
-		this.requestMsg = null;
+		this.timeReceived = this.header.timeCreated;
 		this.properties = null;
-		this.appID = null;
 		
 		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	
+	/**
+	 * Creates a replicate of a message. The replicate shares the header, the
+	 * path and the properties of the original message.
+	 * @param m The message to replicate
+	 */
+	private Message(Message m) {
+		this.header = m.header;
+		this.path = m.path;
+		this.uniqueId = nextUniqueId;
+		this.timeReceived = SimClock.getTime();
+		if (m.properties != null) {
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
+		}
+		
+		Message.nextUniqueId++;
+	}
+	
 	/**
 	 * Returns the node this message is originally from
 	 * @return the node this message is originally from
 	 */
 	public DTNHost getFrom() {
-		return this.from;
+		return this.header.from;
 	}
 
 	/**
@@ -95,7 +105,7 @@ public class Message implements Comparable<Message> {
 	 * @return the node this message is originally to
 	 */
 	public DTNHost getTo() {
-		return this.to;
+		return this.header.to;
 	}
 
 	/**
@@ -103,7 +113,15 @@ public class Message implements Comparable<Message> {
 	 * @return The message id
 	 */
 	public String getId() {
-		return this.id;
+		return this.header.id;
+	}
+	
+	/**
+	 * Returns the index of the message's ID (see {@link MessageIdInterner})
+	 * @return The index of the ID
+	 */
+	public int getIndex() {
+		return this.header.index;
 	}
 	
 	/**
@@ -120,7 +138,7 @@ public class Message implements Comparable<Message> {
 	 * @return the size of the message
 	 */
 	public int getSize() {
-		return this.size;
+		return this.header.size;
 	}
 
 	/**
@@ -128,15 +146,19 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new Hop(node, this.path);
+		this.hops = null;
 	}
 	
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The (unmodifiable) list of nodes, starting from the source
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.hops == null) {
+			this.hops = new HopList(this.path);
+		}
+		return this.hops;
 	}
 	
 	/**
@@ -144,7 +166,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.path.length -1;
 	}
 	
 	/** 
@@ -154,16 +176,29 @@ public class Message implements Comparable<Message> {
 	 * @return The TTL (minutes)
 	 */
 	public int getTtl() {
-		if (this.initTtl == INFINITE_TTL) {
+		Header h = this.header;
+		if (h.initTtl == INFINITE_TTL) {
 			return Integer.MAX_VALUE;
 		}
 		else {
-			return (int)( ((this.initTtl * 60) -
-					(SimClock.getTime()-this.timeCreated)) /60.0 );
+			return (int)( ((h.initTtl * 60) -
+					(SimClock.getTime()-h.timeCreated)) /60.0 );
 		}
 	}
 	
 	
+	/**
+	 * Returns the simulation time when the TTL of the message passes
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		Header h = this.header;
+		if (h.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return h.timeCreated + h.initTtl * 60;
+	}
+	
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -171,7 +206,8 @@ public class Message implements Comparable<Message> {
 	 * @param ttl The time-to-live to set
 	 */
 	public void setTtl(int ttl) {
-		this.initTtl = ttl;
+		this.header = new Header(this.header);
+		this.header.initTtl = ttl;
 	}
 	
 	/**
@@ -195,7 +231,7 @@ public class Message implements Comparable<Message> {
 	 * @return the time when this message was created
 	 */
 	public double getCreationTime() {
-		return this.timeCreated;
+		return this.header.timeCreated;
 	}
 	
 	/**
@@ -203,7 +239,8 @@ public class Message implements Comparable<Message> {
 	 * @param request The request message
 	 */
 	public void setRequest(Message request) {
-		this.requestMsg = request;
+		this.header = new Header(this.header);
+		this.header.requestMsg = request;
 	}
 	
 	/**
@@ -212,7 +249,7 @@ public class Message implements Comparable<Message> {
 	 * @return the message this message is response to
 	 */
 	public Message getRequest() {
-		return this.requestMsg;
+		return this.header.requestMsg;
 	}
 	
 	/**
@@ -220,7 +257,7 @@ public class Message implements Comparable<Message> {
 	 * @return true if this message is a response message
 	 */
 	public boolean isResponse() {
-		return this.requestMsg != null;
+		return this.header.requestMsg != null;
 	}
 	
 	/**
@@ -229,7 +266,8 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the response message
 	 */
 	public void setResponseSize(int size) {
-		this.responseSize = size;
+		this.header = new Header(this.header);
+		this.header.responseSize = size;
 	}
 	
 	/**
@@ -238,7 +276,7 @@ public class Message implements Comparable<Message> {
 	 * @return the size of the requested response message
 	 */
 	public int getResponseSize() {
-		return responseSize;
+		return this.header.responseSize;
 	}
 	
 	/**
@@ -246,28 +284,23 @@ public class Message implements Comparable<Message> {
 	 * @return a string representation of the message
 	 */
 	public String toString () {
-		return id;
+		return this.header.id;
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
-	 * introduced to this class, most likely they should be copied here too
-	 * (unless done in constructor).
+	 * Copies message data from other message. The header, the path and the
+	 * properties are shared with the other message, as they are when the
+	 * message is replicated.
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
-		this.timeCreated = m.timeCreated;
-		this.responseSize = m.responseSize;
-		this.requestMsg  = m.requestMsg;
-		this.initTtl = m.initTtl;
-		this.appID = m.appID;
-		
+		this.header = m.header;
+		this.path = m.path;
+		this.hops = null;
+		this.properties = m.properties;
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 	
@@ -316,7 +349,12 @@ public class Message implements Comparable<Message> {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
-		}		
+		}
+		else if (this.propertiesShared) {
+			/* copy-on-write: the other replicates keep the old values */
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
+		}
 
 		this.properties.put(key, value);
 	}
@@ -326,9 +364,7 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
-		m.copyFrom(this);
-		return m;
+		return new Message(this);
 	}
 	
 	/**
@@ -346,18 +382,128 @@ public class Message implements Comparable<Message> {
 		nextUniqueId = 0;
 	}
 
+	/**
+	 * Returns the unique ID the next created message will get
+	 * @return The next unique ID
+	 */
+	static int getNextUniqueId() {
+		return nextUniqueId;
+	}
+
+	/**
+	 * Sets the unique ID the next created message will get. Used when a
+	 * simulation is restored from a snapshot.
+	 * @param id The next unique ID
+	 */
+	static void setNextUniqueId(int id) {
+		nextUniqueId = id;
+	}
+
 	/**
 	 * @return the appID
 	 */
 	public String getAppID() {
-		return appID;
+		return this.header.appID;
 	}
 
 	/**
 	 * @param appID the appID to set
 	 */
 	public void setAppID(String appID) {
-		this.appID = appID;
+		this.header = new Header(this.header);
+		this.header.appID = appID;
 	}
 	
+	/**
+	 * Data that is the same for all replicates of a message. A header is
+	 * never modified after it's shared; setters of the message replace the
+	 * header of the message with a modified copy.
+	 */
+	private static class Header implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final DTNHost from;
+		private final DTNHost to;
+		/** Identifier of the message */
+		private final String id;
+		/** Index of the identifier */
+		private final int index;
+		/** Size of the message (bytes) */
+		private final int size;
+		/** The time when this message was created */
+		private final double timeCreated;
+		/** Initial TTL of the message */
+		private int initTtl;
+		/** if a response to this message is required, this is the size of
+		 * the response message (or 0 if no response is requested) */
+		private int responseSize;
+		/** if this message is a response message, this is set to the
+		 * request msg */
+		private Message requestMsg;
+		/** Application ID of the application that created the message */
+		private String appID;
+		
+		private Header(DTNHost from, DTNHost to, String id, int index,
+				int size, double timeCreated) {
+			this.from = from;
+			this.to = to;
+			this.id = id;
+			this.index = index;
+			this.size = size;
+			this.timeCreated = timeCreated;
+			this.initTtl = INFINITE_TTL;
+		}
+		
+		private Header(Header h) {
+			this(h.from, h.to, h.id, h.index, h.size, h.timeCreated);
+			this.initTtl = h.initTtl;
+			this.responseSize = h.responseSize;
+			this.requestMsg = h.requestMsg;
+			this.appID = h.appID;
+		}
+	}
+	
+	/**
+	 * A node on the path of a message. Replicates of a message share the
+	 * hops they have in common.
+	 */
+	private static class Hop implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final DTNHost node;
+		/** The previous node on the path (or null for the source) */
+		private final Hop previous;
+		/** Number of nodes on the path up to and including this node */
+		private final int length;
+		
+		private Hop(DTNHost node, Hop previous) {
+			this.node = node;
+			this.previous = previous;
+			this.length = previous == null ? 1 : previous.length + 1;
+		}
+	}
+	
+	/**
+	 * Unmodifiable list view of a path. The nodes are copied to an array
+	 * when the list is created.
+	 */
+	private static class HopList extends AbstractList<DTNHost>
+			implements RandomAccess {
+		private final DTNHost[] nodes;
+		
+		private HopList(Hop last) {
+			this.nodes = new DTNHost[last.length];
+			for (Hop h = last; h != null; h = h.previous) {
+				this.nodes[h.length - 1] = h.node;
+			}
+		}
+		
+		@Override
+		public DTNHost get(int index) {
+			return this.nodes[index];
+		}
+		
+		@Override
+		public int size() {
+			return this.nodes.length;
+		}
+	}
 }
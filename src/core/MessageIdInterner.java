@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Gives every message ID a dense integer index. A message gets the index of
+ * its ID when it's created and all the replicates of the message share it,
+ * so the routers and reports can keep their per-message data in tables
+ * keyed by the index (see {@link IntHashMap} and {@link IntHashSet})
+ * instead of hashing the ID strings. The first interned ID gets index 0,
+ * the next one 1, etc.
+ * <P>The interner is not thread safe: IDs should be interned only by the
+ * simulation thread (i.e., when messages are created). Other threads can
+ * use the indexes of the messages.</P>
+ */
+public class MessageIdInterner {
+	/** indexes of the interned IDs */
+	private static HashMap<String, Integer> indexes;
+	/** the interned IDs in index order */
+	private static ArrayList<String> ids;
+
+	static {
+		reset();
+		DTNSim.registerForReset(MessageIdInterner.class.getCanonicalName());
+	}
+
+	/**
+	 * Returns the index of a message ID. If the ID hasn't been interned
+	 * yet, it gets the next free index.
+	 * @param id The message ID
+	 * @return The index of the ID
+	 */
+	public static int intern(String id) {
+		Integer index = indexes.get(id);
+		if (index == null) {
+			index = ids.size();
+			indexes.put(id, index);
+			ids.add(id);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of an interned message ID
+	 * @param id The message ID
+	 * @return The index of the ID or -1 if the ID hasn't been interned
+	 */
+	public static int indexOf(String id) {
+		Integer index = indexes.get(id);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the message ID of an index
+	 * @param index The index
+	 * @return The message ID
+	 * @throws IndexOutOfBoundsException if no ID has the index
+	 */
+	public static String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns the number of interned IDs (and the next free index)
+	 * @return The number of interned IDs
+	 */
+	public static int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Returns the interned IDs in index order. Used when a snapshot of the
+	 * simulation is saved.
+	 * @return The interned IDs
+	 */
+	static List<String> getIds() {
+		return new ArrayList<String>(ids);
+	}
+
+	/**
+	 * Replaces the interned IDs with the given IDs, so that the IDs get the
+	 * indexes they had when the snapshot was saved.
+	 * @param savedIds The IDs in index order
+	 */
+	static void restore(List<String> savedIds) {
+		reset();
+		for (String id : savedIds) {
+			intern(id);
+		}
+	}
+
+	/**
+	 * Forgets all the interned IDs
+	 */
+	public static void reset() {
+		indexes = new HashMap<String, Integer>();
+		ids = new ArrayList<String>();
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Piecewise-linear trace of a host's movement during one move step. The
+ * trace contains the location of the host at the start of the step and
+ * at every waypoint the host reached during the step, each with the time
+ * (relative to the start of the step) when the host was there. Between
+ * the points the host moves linearly, and after the last point it stays
+ * still until the end of the step.
+ */
+public class MoveTrace implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** how many points are reserved initially */
+	private static final int INITIAL_SIZE = 4;
+
+	private double[] times;
+	private double[] xs;
+	private double[] ys;
+	private int size;
+
+	/**
+	 * Creates a new empty trace
+	 */
+	public MoveTrace() {
+		this.times = new double[INITIAL_SIZE];
+		this.xs = new double[INITIAL_SIZE];
+		this.ys = new double[INITIAL_SIZE];
+		this.size = 0;
+	}
+
+	/**
+	 * Clears the trace and starts it from the given location
+	 * @param location The location at the start of the step
+	 */
+	public void start(Coord location) {
+		this.size = 0;
+		add(0, location);
+	}
+
+	/**
+	 * Adds a new point to the end of the trace
+	 * @param time Time (from the start of the step) when the host was at
+	 * the location
+	 * @param location The location
+	 */
+	public void add(double time, Coord location) {
+		if (this.size == this.times.length) {
+			int newSize = this.size * 2;
+			this.times = Arrays.copyOf(this.times, newSize);
+			this.xs = Arrays.copyOf(this.xs, newSize);
+			this.ys = Arrays.copyOf(this.ys, newSize);
+		}
+		this.times[size] = time;
+		this.xs[size] = location.getX();
+		this.ys[size] = location.getY();
+		this.size++;
+	}
+
+	/**
+	 * Returns the number of points in the trace
+	 * @return the number of points in the trace
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the time of a point
+	 * @param index Index of the point
+	 * @return The time (from the start of the step)
+	 */
+	public double getTime(int index) {
+		return this.times[index];
+	}
+
+	/**
+	 * Returns the x coordinate of a point
+	 * @param index Index of the point
+	 * @return The x coordinate
+	 */
+	public double getX(int index) {
+		return this.xs[index];
+	}
+
+	/**
+	 * Returns the y coordinate of a point
+	 * @param index Index of the point
+	 * @return The y coordinate
+	 */
+	public double getY(int index) {
+		return this.ys[index];
+	}
+
+	/**
+	 * Returns the index of the segment of the trace the given time falls
+	 * in, i.e., the index of the last point whose time is not after the
+	 * given time
+	 * @param time The time (from the start of the step)
+	 * @return Index of the segment's start point
+	 */
+	public int segmentAt(double time) {
+		int i = 0;
+		while (i + 1 < this.size && this.times[i + 1] <= time) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the x coordinate at the given time
+	 * @param time The time (from the start of the step)
+	 * @return The x coordinate of the host at that time
+	 */
+	public double getXAt(double time) {
+		return interpolate(this.xs, segmentAt(time), time);
+	}
+
+	/**
+	 * Returns the y coordinate at the given time
+	 * @param time The time (from the start of the step)
+	 * @return The y coordinate of the host at that time
+	 */
+	public double getYAt(double time) {
+		return interpolate(this.ys, segmentAt(time), time);
+	}
+
+	/**
+	 * Interpolates a coordinate value linearly within a segment
+	 * @param values The coordinate values of the points
+	 * @param i Index of the segment's start point
+	 * @param time The time
+	 * @return The interpolated value
+	 */
+	private double interpolate(double[] values, int i, double time) {
+		if (i + 1 >= this.size || this.times[i + 1] <= this.times[i]) {
+			return values[i];
+		}
+		double fraction = (time - this.times[i]) /
+			(this.times[i + 1] - this.times[i]);
+		if (fraction > 1) {
+			fraction = 1;
+		}
+		return values[i] + fraction * (values[i + 1] - values[i]);
+	}
+
+	/**
+	 * Returns the smallest x coordinate of the trace
+	 * @return the smallest x coordinate of the trace
+	 */
+	public double getMinX() {
+		return min(this.xs);
+	}
+
+	/**
+	 * Returns the largest x coordinate of the trace
+	 * @return the largest x coordinate of the trace
+	 */
+	public double getMaxX() {
+		return max(this.xs);
+	}
+
+	/**
+	 * Returns the smallest y coordinate of the trace
+	 * @return the smallest y coordinate of the trace
+	 */
+	public double getMinY() {
+		return min(this.ys);
+	}
+
+	/**
+	 * Returns the largest y coordinate of the trace
+	 * @return the largest y coordinate of the trace
+	 */
+	public double getMaxY() {
+		return max(this.ys);
+	}
+
+	private double min(double[] values) {
+		double min = Double.MAX_VALUE;
+		for (int i=0; i < this.size; i++) {
+			min = Math.min(min, values[i]);
+		}
+		return min;
+	}
+
+	private double max(double[] values) {
+		double max = -Double.MAX_VALUE;
+		for (int i=0; i < this.size; i++) {
+			max = Math.max(max, values[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns a string representation of the trace
+	 * @return a string representation of the trace
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < this.size; i++) {
+			sb.append("(" + times[i] + ": " + xs[i] + "," + ys[i] + ")");
+		}
+		return sb.toString();
+	}
+}
@@ -4,17 +4,23 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.InterfaceVisitor;
+import interfaces.MultiResolutionOptimizer;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener,
+		Serializable {
+	private static final long serialVersionUID = 1L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -40,7 +46,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	protected String interfacetype;
 	protected List<Connection> connections; // connected hosts
-	private List<ConnectionListener> cListeners = null; // list of listeners
+	private transient List<ConnectionListener> cListeners = null; // list of listeners
 	private int address; // network interface address
 	protected double transmitRange;
 	protected int transmitSpeed;
@@ -49,6 +55,28 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private double scanInterval;
 	private double lastScanTime;
 
+	/** is the interface taking part in the current two-phase connectivity
+	 * update (see {@link #beginLinkDetection()}) */
+	private boolean detectingLinks;
+	/** is the interface scanning in the current two-phase update */
+	private boolean scanningThisRound;
+	/** interfaces found by the last detection pass to connect to */
+	private List<NetworkInterface> linkUps;
+	/** connections found by the last detection pass to tear down */
+	private List<Connection> linkDowns;
+	/** visitor that finds the link ups in the detection pass */
+	private transient InterfaceVisitor linkUpFinder;
+	/** visitor that connects to the near interfaces (created when needed)*/
+	private transient InterfaceVisitor connector;
+
+	/** orders interfaces by their address */
+	private static final Comparator<NetworkInterface> ADDRESS_ORDER =
+		new Comparator<NetworkInterface>() {
+			public int compare(NetworkInterface i1, NetworkInterface i2) {
+				return i1.address - i2.address;
+			}
+		};
+
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
@@ -124,8 +152,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
-				this.interfacetype.hashCode(), transmitRange);
+		optimizer = MultiResolutionOptimizer.getOptimizer(
+				this.interfacetype, transmitRange);
 		optimizer.addInterface(this);		
 	}
 
@@ -144,6 +172,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.cListeners = cListeners;
 	}
 
+	/**
+	 * Restores the connection listeners, which are not saved in snapshots
+	 * (see {@link Snapshot}), by taking them from the given interface
+	 * @param ni The interface of a new scenario to take the listeners from
+	 */
+	void restore(NetworkInterface ni) {
+		this.cListeners = ni.cListeners;
+	}
+
 	/**
 	 * Returns a new network interface address and increments the address for
 	 * subsequent calls.
@@ -177,6 +214,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.transmitSpeed;
 	}
 
+	/**
+	 * Returns the scanning interval of this network layer
+	 * @return the scanning interval, or 0.0 if the interface scans
+	 * continuously
+	 */
+	public double getScanInterval() {
+		return this.scanInterval;
+	}
+
 	/**
 	 * Returns a list of currently connected connections
 	 * @return a list of currently connected connections
@@ -230,6 +276,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.connections.add(con);
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
+		FlightRecorderEvents.ContactUp event =
+			new FlightRecorderEvents.ContactUp();
+		if (event.shouldCommit()) {
+			event.simTime = SimClock.getTime();
+			event.host = this.host.getAddress();
+			event.peer = anotherInterface.getHost().getAddress();
+			event.interfaceType = this.interfacetype;
+			event.commit();
+		}
+
 		// set up bidirectional connection
 		anotherInterface.getConnections().add(con);
 
@@ -248,6 +304,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		con.setUpState(false);
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
+		FlightRecorderEvents.ContactDown event =
+			new FlightRecorderEvents.ContactDown();
+		if (event.shouldCommit()) {
+			event.simTime = SimClock.getTime();
+			event.host = this.host.getAddress();
+			event.peer = anotherInterface.getHost().getAddress();
+			event.interfaceType = this.interfacetype;
+			event.commit();
+		}
+
 		// tear down bidirectional connection
 		if (!anotherInterface.getConnections().remove(con)) {
 			throw new SimError("No connection " + con + " found in " +
@@ -309,6 +375,126 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Tries to connect to every interface the connectivity optimizer finds
+	 * near this interface (see {@link #connect(NetworkInterface)}).
+	 */
+	protected void connectToNearInterfaces() {
+		if (this.connector == null) {
+			this.connector = new InterfaceVisitor() {
+				public void visit(NetworkInterface other) {
+					connect(other);
+				}
+			};
+		}
+		optimizer.visitNearInterfaces(this, this.connector);
+	}
+
+	/**
+	 * Returns true if this interface can update its connections in two 
+	 * phases: a side-effect-free detection pass that can be run in parallel
+	 * for all interfaces (see {@link #detectLinkChanges()}) and a serial 
+	 * pass that applies the changes. This implementation returns false.
+	 * @return True if two-phase connectivity updates are supported
+	 */
+	public boolean supportsTwoPhaseUpdate() {
+		return false;
+	}
+
+	/**
+	 * Starts a two-phase connectivity update by updating the location of
+	 * this interface in the connectivity optimizer and checking whether the
+	 * interface is scanning. Must be called for all the interfaces taking
+	 * part in the update before {@link #detectLinkChanges()} is called for
+	 * any of them.
+	 */
+	public void beginLinkDetection() {
+		optimizer.updateLocation(this);
+		this.scanningThisRound = isScanning();
+		this.detectingLinks = true;
+	}
+
+	/**
+	 * Finds the connections that should be torn down because the hosts are
+	 * out of range, and the interfaces this interface should connect to. 
+	 * Doesn't modify the state of any host or interface (other than the 
+	 * results of this detection) so it can be run concurrently for all
+	 * interfaces. A connection is reported only by the interface with the
+	 * smaller address if both ends take part in the update. The link downs
+	 * are in the order of this interface's connections (the order the
+	 * normal update tears them down in) and the link ups are ordered by the
+	 * other interface's address.
+	 */
+	public void detectLinkChanges() {
+		if (this.linkUps == null) {
+			this.linkUps = new ArrayList<NetworkInterface>();
+			this.linkDowns = new ArrayList<Connection>();
+		}
+		this.linkUps.clear();
+		this.linkDowns.clear();
+
+		for (int i=0, n = this.connections.size(); i < n; i++) {
+			Connection con = this.connections.get(i);
+			NetworkInterface other = con.getOtherInterface(this);
+			if ((!other.detectingLinks || this.address < other.address) &&
+					!isWithinRange(other)) {
+				this.linkDowns.add(con);
+			}
+		}
+
+		if (!this.scanningThisRound) {
+			return;
+		}
+		if (this.linkUpFinder == null) {
+			this.linkUpFinder = new InterfaceVisitor() {
+				public void visit(NetworkInterface other) {
+					if (other != NetworkInterface.this &&
+							other.getHost().isActive() &&
+							isWithinRange(other) && !isConnected(other)) {
+						linkUps.add(other);
+					}
+				}
+			};
+		}
+		optimizer.visitNearInterfaces(this, this.linkUpFinder);
+		Collections.sort(this.linkUps, ADDRESS_ORDER);
+	}
+
+	/**
+	 * Returns the interfaces the last detection pass found to connect to
+	 * @return The interfaces ordered by their address
+	 */
+	List<NetworkInterface> getDetectedLinkUps() {
+		return this.linkUps;
+	}
+
+	/**
+	 * Returns the connections the last detection pass found to tear down
+	 * @return The connections in the order of this interface's connections
+	 */
+	List<Connection> getDetectedLinkDowns() {
+		return this.linkDowns;
+	}
+
+	/**
+	 * Tears down a connection of this interface found by the detection pass
+	 * @param con The connection to tear down
+	 */
+	void applyLinkDown(Connection con) {
+		disconnect(con, con.getOtherInterface(this));
+		this.connections.remove(con);
+	}
+
+	/**
+	 * Finishes a two-phase connectivity update after all the link changes 
+	 * have been applied. Subclasses that e.g. recalculate their transmit
+	 * speed based on the connections should override this method and call
+	 * this implementation.
+	 */
+	public void finishLinkUpdate() {
+		this.detectingLinks = false;
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
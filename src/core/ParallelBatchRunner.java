@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs batch mode simulation runs concurrently. Every run is loaded with
+ * its own class loader, so each run has its own copy of all the static
+ * state of the simulator (simulation clock, settings, address counters,
+ * random number generators, etc.) and the runs can't affect each other.
+ * Since a new run starts from freshly loaded classes, its results are the
+ * same as the results of the same run index in a sequential batch.
+ * <P>The reports of every run are written to their own subdirectory
+ * (<CODE>run_N</CODE>, where N is the run number) of the report directory
+ * (see {@link DTNSim#runIsolated(String[], int, int, boolean)}).</P>
+ */
+public class ParallelBatchRunner {
+	/** Name of the method that is called in the isolated class loaders */
+	private static final String RUN_METHOD_NAME = "runIsolated";
+
+	private String[] confFiles;
+	private int firstConfIndex;
+	private URL[] classPath;
+	private int nrofFailed;
+
+	/**
+	 * Constructor.
+	 * @param confFiles Command line arguments that contain the settings
+	 * files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 */
+	public ParallelBatchRunner(String[] confFiles, int firstConfIndex) {
+		this.confFiles = confFiles;
+		this.firstConfIndex = firstConfIndex;
+		this.classPath = getClassPath();
+	}
+
+	/**
+	 * Returns the class path of the simulator as URLs
+	 * @return The class path
+	 */
+	private static URL[] getClassPath() {
+		String[] entries = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		try {
+			for (int i=0; i < entries.length; i++) {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			}
+		} catch (MalformedURLException e) {
+			throw new SimError("Invalid class path entry: " + e.getMessage(),
+					e);
+		}
+		return urls;
+	}
+
+	/**
+	 * Runs the given run indexes using the given number of threads and
+	 * waits until all of them are done
+	 * @param firstRun Index of the first run
+	 * @param lastRun Index of the last run + 1
+	 * @param nrofThreads How many runs are run concurrently
+	 * @return Number of runs that failed
+	 */
+	public int run(int firstRun, final int lastRun, int nrofThreads) {
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		for (int i=firstRun; i < lastRun; i++) {
+			final int runIndex = i;
+			executor.execute(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex+1) + "/" + lastRun + " started");
+					if (runIsolated(runIndex)) {
+						print("Run " + (runIndex+1) + "/" + lastRun + " done");
+					}
+				}
+			});
+		}
+
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				/* wait for all the runs to finish */
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			throw new SimError("Interrupted while waiting for the runs", e);
+		}
+		synchronized (this) {
+			return nrofFailed;
+		}
+	}
+
+	/**
+	 * Runs one run index with its own class loader
+	 * @param runIndex The run index
+	 * @return True if the run succeeded, false if it failed
+	 */
+	private boolean runIsolated(int runIndex) {
+		/* the parent is above the application class loader, so all the
+		 * simulator classes are loaded again by the new loader */
+		URLClassLoader loader = new URLClassLoader(classPath,
+				ClassLoader.getSystemClassLoader().getParent());
+		Thread thread = Thread.currentThread();
+		ClassLoader oldContextLoader = thread.getContextClassLoader();
+
+		try {
+			thread.setContextClassLoader(loader);
+			Class<?> simClass = loader.loadClass(DTNSim.class.getName());
+			Method m = simClass.getMethod(RUN_METHOD_NAME, String[].class,
+					int.class, int.class, boolean.class);
+			m.invoke(null, confFiles, firstConfIndex, runIndex, true);
+			return true;
+		} catch (InvocationTargetException e) {
+			failed(runIndex, e.getCause());
+		} catch (Exception e) {
+			failed(runIndex, e);
+		} finally {
+			thread.setContextClassLoader(oldContextLoader);
+			try {
+				loader.close();
+			} catch (IOException e) {
+				/* nothing to do; the run is over */
+			}
+		}
+		return false;
+	}
+
+	private synchronized void failed(int runIndex, Throwable cause) {
+		nrofFailed++;
+		System.err.println("Run " + (runIndex+1) + " failed: " + cause);
+		cause.printStackTrace();
+	}
+
+	private static synchronized void print(String txt) {
+		System.out.println(txt);
+	}
+
+	/**
+	 * Returns the name of the run index's report directory relative to the
+	 * main report directory
+	 * @param runIndex The run index
+	 * @return The directory name
+	 */
+	public static String getRunDirName(int runIndex) {
+		return "run_" + (runIndex + 1);
+	}
+}
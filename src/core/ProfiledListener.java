@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Listener that passes all the events to another listener (typically a
+ * report) and charges the time spent handling them to the listener's own
+ * phase in {@link SimProfiler}. Only the events of the listener interfaces
+ * the wrapped listener implements should be passed to this listener.
+ */
+public class ProfiledListener implements MessageListener, ConnectionListener,
+		UpdateListener, MovementListener, ApplicationListener {
+	private Object listener;
+	private int phase;
+
+	/**
+	 * Constructor.
+	 * @param listener The listener to pass the events to
+	 * @param name Name of the listener's phase
+	 */
+	public ProfiledListener(Object listener, String name) {
+		this.listener = listener;
+		this.phase = SimProfiler.addPhase(name);
+	}
+
+	public void newMessage(Message m) {
+		int previous = SimProfiler.enter(phase);
+		((MessageListener)listener).newMessage(m);
+		SimProfiler.exit(previous);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		int previous = SimProfiler.enter(phase);
+		((MessageListener)listener).messageTransferStarted(m, from, to);
+		SimProfiler.exit(previous);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		int previous = SimProfiler.enter(phase);
+		((MessageListener)listener).messageDeleted(m, where, dropped);
+		SimProfiler.exit(previous);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		int previous = SimProfiler.enter(phase);
+		((MessageListener)listener).messageTransferAborted(m, from, to);
+		SimProfiler.exit(previous);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		int previous = SimProfiler.enter(phase);
+		((MessageListener)listener).messageTransferred(m, from, to,
+				firstDelivery);
+		SimProfiler.exit(previous);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		int previous = SimProfiler.enter(phase);
+		((ConnectionListener)listener).hostsConnected(host1, host2);
+		SimProfiler.exit(previous);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		int previous = SimProfiler.enter(phase);
+		((ConnectionListener)listener).hostsDisconnected(host1, host2);
+		SimProfiler.exit(previous);
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		int previous = SimProfiler.enter(phase);
+		((UpdateListener)listener).updated(hosts);
+		SimProfiler.exit(previous);
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		int previous = SimProfiler.enter(phase);
+		((MovementListener)listener).newDestination(host, destination, speed);
+		SimProfiler.exit(previous);
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		int previous = SimProfiler.enter(phase);
+		((MovementListener)listener).initialLocation(host, location);
+		SimProfiler.exit(previous);
+	}
+
+	public void gotEvent(String event, Object params, Application app,
+			DTNHost host) {
+		int previous = SimProfiler.enter(phase);
+		((ApplicationListener)listener).gotEvent(event, params, app, host);
+		SimProfiler.exit(previous);
+	}
+}
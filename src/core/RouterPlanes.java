@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import interfaces.ConnectivityGrid;
+import interfaces.MultiResolutionOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several routing variants ("router planes") of the same scenario in
+ * lock-step. Only the first plane moves its hosts and detects the link
+ * changes. The hosts of the other planes mirror the locations of the first
+ * plane's hosts (see {@link movement.MirrorMovement}) and the same link
+ * downs and ups are applied to them (see {@link ContactDetector}). Each
+ * plane has its own hosts, routers, message buffers, event queues and
+ * reports, so every plane gets the same contacts but routes its messages
+ * independently.
+ * <P>Every plane is created from the settings of its own run index (see
+ * {@link Settings#setRunIndex(int)}), so the variants are defined with run
+ * index arrays just like the runs of a batch. The planes must have the same
+ * hosts and interfaces, and the connections must be simulated. The link
+ * changes are detected in two phases (see
+ * {@link World#TWO_PHASE_CONNECTIVITY_S}), so the results of each plane are
+ * the same as the results of a separate run with two-phase connectivity.
+ * </P>
+ * <P>Limitations: movement listeners of the other planes only see the
+ * initial locations of the hosts, the planes' interfaces should have the
+ * same scan intervals, and if the planes' events are due at different
+ * times, a plane can see the link changes of an update interval before the
+ * end of the interval (when another plane processes its events).</P>
+ */
+public class RouterPlanes {
+	/** scenarios of the planes (the first is the leader) */
+	private List<SimScenario> scenarios;
+	/** run indexes of the planes */
+	private List<Integer> runIndexes;
+	/** worlds of the planes */
+	private List<World> worlds;
+	/** did the plane process an event at the current time */
+	private boolean[] processed;
+
+	/**
+	 * Constructor.
+	 * @param leader The scenario of the first plane. Its world is updated
+	 * through the planes from now on.
+	 * @param leaderRunIndex Run index of the first plane
+	 * @throws SettingsError if the scenario doesn't support router planes
+	 */
+	public RouterPlanes(SimScenario leader, int leaderRunIndex) {
+		this.scenarios = new ArrayList<SimScenario>();
+		this.runIndexes = new ArrayList<Integer>();
+		this.worlds = new ArrayList<World>();
+		this.processed = new boolean[0];
+		leader.getWorld().setRouterPlanes(this);
+		add(leader, leaderRunIndex);
+	}
+
+	private void add(SimScenario scen, int runIndex) {
+		this.scenarios.add(scen);
+		this.runIndexes.add(runIndex);
+		this.worlds.add(scen.getWorld());
+		this.processed = new boolean[worlds.size()];
+	}
+
+	/**
+	 * Creates a new plane from the settings of a run index. The new plane
+	 * is left active (see {@link #activate(int)}).
+	 * @param runIndex The run index
+	 * @return The scenario of the new plane
+	 * @throws SimError if the plane's hosts don't match the first plane
+	 */
+	public SimScenario addPlane(int runIndex) {
+		SimScenario leader = scenarios.get(0);
+		Settings.setRunIndex(runIndex);
+		/* the new plane gets the same addresses and its own connectivity
+		 * optimizers */
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		MultiResolutionOptimizer.reset();
+
+		SimScenario scen = SimScenario.createPlane(leader);
+		if (scen.getHosts().size() != leader.getHosts().size()) {
+			throw new SimError("Router plane of run " + (runIndex + 1) +
+					" has " + scen.getHosts().size() + " hosts but the " +
+					"first plane has " + leader.getHosts().size());
+		}
+		scen.getWorld().followContacts(leader.getWorld());
+		add(scen, runIndex);
+		return scen;
+	}
+
+	/**
+	 * Returns the number of planes
+	 * @return The number of planes
+	 */
+	public int getNrofPlanes() {
+		return this.scenarios.size();
+	}
+
+	/**
+	 * Makes a plane the active one: its settings and scenario are used by
+	 * the classes that query them while the simulation runs (e.g. the
+	 * reports)
+	 * @param plane Index of the plane
+	 */
+	public void activate(int plane) {
+		Settings.switchRunIndex(runIndexes.get(plane));
+		SimScenario.setInstance(scenarios.get(plane));
+	}
+
+	/**
+	 * Stops the threads of the worlds of all the planes (see
+	 * {@link World#shutdown()})
+	 */
+	public void shutdown() {
+		for (World w : this.worlds) {
+			w.shutdown();
+		}
+	}
+
+	/**
+	 * Runs one update interval in all the planes. The events of all planes
+	 * are processed in time order, and the connectivity of all planes is
+	 * updated whenever any plane processes an event. The first plane is
+	 * left active.
+	 * @param updateInterval Length of the interval
+	 */
+	void update(double updateInterval) {
+		SimClock clock = SimClock.getInstance();
+		World leader = worlds.get(0);
+		double runUntil = SimClock.getTime() + updateInterval;
+		int nrofPlanes = worlds.size();
+
+		while (true) {
+			double next = Double.MAX_VALUE;
+			for (int i=0; i < nrofPlanes; i++) {
+				next = Math.min(next, worlds.get(i).getNextEventTime());
+			}
+			if (next > runUntil) {
+				break;
+			}
+
+			clock.setTime(next);
+			for (int i=0; i < nrofPlanes; i++) {
+				World w = worlds.get(i);
+				processed[i] = w.getNextEventTime() == next;
+				if (processed[i]) {
+					activate(i);
+					w.processNextEvent();
+				}
+			}
+			updateConnectivity();
+			for (int i=0; i < nrofPlanes; i++) {
+				if (processed[i]) {
+					activate(i);
+					worlds.get(i).updateHosts(false);
+				}
+			}
+		}
+
+		activate(0);
+		leader.moveHosts(updateInterval);
+		mirrorLocations();
+		clock.setTime(runUntil);
+
+		updateConnectivity();
+		for (int i=0; i < nrofPlanes; i++) {
+			activate(i);
+			worlds.get(i).updateHosts(false);
+			worlds.get(i).informUpdateListeners();
+		}
+		activate(0);
+	}
+
+	/**
+	 * Updates the connectivity of all planes (the first plane first, since
+	 * the others follow its link changes)
+	 */
+	private void updateConnectivity() {
+		for (int i=0, n = worlds.size(); i < n; i++) {
+			activate(i);
+			worlds.get(i).updateConnectivity();
+		}
+	}
+
+	/**
+	 * Copies the locations of the first plane's hosts to the other planes
+	 */
+	private void mirrorLocations() {
+		List<DTNHost> leaderHosts = scenarios.get(0).getHosts();
+		for (int i=1, n = scenarios.size(); i < n; i++) {
+			List<DTNHost> hosts = scenarios.get(i).getHosts();
+			for (int j=0, m = hosts.size(); j < m; j++) {
+				hosts.get(j).getLocation().setLocation(
+						leaderHosts.get(j).getLocation());
+			}
+		}
+	}
+}
@@ -114,6 +114,16 @@ public class Settings {
         writtenSettings.clear();
     }
 
+    /**
+     * Switches between the run indexes of concurrently simulated runs (see
+     * {@link RouterPlanes}). Unlike {@link #setRunIndex(int)}, doesn't
+     * start a new run in the settings output.
+     * @param index The run index to use for subsequent settings calls
+     */
+    static void switchRunIndex(int index) {
+        runIndex = index;
+    }
+
     /**
      * Checks that the given integer array contains a valid range. I.e., the
      * length of the array must be two and
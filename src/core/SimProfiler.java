@@ -0,0 +1,263 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how the wall clock time of a simulation is divided between the
+ * phases of the simulation (movement, connectivity, routers, events and
+ * each report). The time is always charged to exactly one phase: entering
+ * a phase (see {@link #enter(int)}) pauses the phase that was running, and
+ * exiting it (see {@link #exit(int)}) resumes the paused phase. So e.g. the
+ * time a report spends handling a message event is not included in the
+ * router update that caused the event, and the times of all phases add up
+ * to the total time. The time that is not spent in any phase (e.g., in the
+ * user interface) is charged to the {@link #OTHER} phase.
+ * <P>Profiling is enabled with the {@link #ENABLED_S} setting. When it is
+ * disabled, entering and exiting phases only checks a flag.</P>
+ */
+public class SimProfiler {
+	/** profiler settings namespace ({@value}) */
+	public static final String PROFILER_NS = "Profiler";
+	/**
+	 * Should the simulation be profiled -setting id ({@value}). Boolean
+	 * (true/false) variable. If true, the phase times are printed with the
+	 * progress of the text UI and at the end of the simulation.
+	 * Default is {@link #DEF_ENABLED}.
+	 */
+	public static final String ENABLED_S = "enabled";
+	/**
+	 * File where the phase times are written at the end of the simulation
+	 * -setting id ({@value}). The value supports value filling. If not
+	 * defined, the times are only printed. The file has a comment line for
+	 * the scenario name, the simulation time and the wall clock time,
+	 * followed by a header line and a tab separated line (phase name,
+	 * number of calls, time in nanoseconds and share of the total time)
+	 * for every phase.
+	 */
+	public static final String OUTPUT_FILE_S = "outputFile";
+	/** default value for the enabled setting ({@value}) */
+	public static final boolean DEF_ENABLED = false;
+
+	/** phase of the time not spent in any other phase */
+	public static final int OTHER = 0;
+	/** phase for moving the hosts */
+	public static final int MOVEMENT = 1;
+	/** phase for updating the interfaces and connections */
+	public static final int CONNECTIVITY = 2;
+	/** phase for updating the routers */
+	public static final int ROUTERS = 3;
+	/** phase for processing the external events */
+	public static final int EVENTS = 4;
+	/** phase for the update listeners that are not profiled separately */
+	public static final int UPDATE_LISTENERS = 5;
+
+	private static final String[] FIXED_PHASES = {"other", "movement",
+		"connectivity", "routers", "events", "update listeners"};
+
+	private static boolean enabled;
+	private static List<String> names;
+	private static long[] times;
+	private static long[] calls;
+	/** the phase the time is currently charged to */
+	private static int current;
+	/** wall clock time (ns) when the current phase was entered/resumed */
+	private static long lastSwitch;
+	/** wall clock time (ns) when profiling was started */
+	private static long startTime;
+
+	static {
+		DTNSim.registerForReset(SimProfiler.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the profiler: disables it and removes all the added phases
+	 */
+	public static void reset() {
+		enabled = false;
+		names = new ArrayList<String>();
+		for (String name : FIXED_PHASES) {
+			names.add(name);
+		}
+		times = new long[names.size()];
+		calls = new long[names.size()];
+		current = OTHER;
+	}
+
+	/**
+	 * Returns true if profiling is requested in the settings
+	 * @return true if profiling is requested
+	 */
+	public static boolean isRequested() {
+		Settings s = new Settings(PROFILER_NS);
+		return s.contains(ENABLED_S) ? s.getBoolean(ENABLED_S) : DEF_ENABLED;
+	}
+
+	/**
+	 * Returns true if the profiler is measuring at the moment
+	 * @return true if the profiler is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds a new phase (or returns an existing phase with the same name)
+	 * @param name Name of the phase
+	 * @return The phase's ID for {@link #enter(int)}
+	 */
+	public static int addPhase(String name) {
+		int phase = names.indexOf(name);
+		if (phase >= 0) {
+			return phase;
+		}
+		names.add(name);
+		long[] newTimes = new long[names.size()];
+		long[] newCalls = new long[names.size()];
+		System.arraycopy(times, 0, newTimes, 0, times.length);
+		System.arraycopy(calls, 0, newCalls, 0, calls.length);
+		times = newTimes;
+		calls = newCalls;
+		return names.size() - 1;
+	}
+
+	/**
+	 * Starts measuring. All the times and counts are zeroed.
+	 */
+	public static void start() {
+		times = new long[names.size()];
+		calls = new long[names.size()];
+		current = OTHER;
+		startTime = System.nanoTime();
+		lastSwitch = startTime;
+		enabled = true;
+	}
+
+	/**
+	 * Stops measuring. The times measured so far are kept.
+	 */
+	public static void stop() {
+		if (enabled) {
+			charge();
+			enabled = false;
+		}
+	}
+
+	/**
+	 * Enters a phase. The time is charged to that phase until the phase is
+	 * exited or another phase is entered.
+	 * @param phase The phase
+	 * @return The phase that was running, for {@link #exit(int)}
+	 */
+	public static int enter(int phase) {
+		if (!enabled) {
+			return OTHER;
+		}
+		int previous = current;
+		charge();
+		current = phase;
+		calls[phase]++;
+		return previous;
+	}
+
+	/**
+	 * Exits the current phase and resumes the given phase
+	 * @param previous The phase returned by {@link #enter(int)}
+	 */
+	public static void exit(int previous) {
+		if (!enabled) {
+			return;
+		}
+		charge();
+		current = previous;
+	}
+
+	/**
+	 * Charges the time since the last phase switch to the current phase
+	 */
+	private static void charge() {
+		long now = System.nanoTime();
+		times[current] += now - lastSwitch;
+		lastSwitch = now;
+	}
+
+	/**
+	 * Returns the total measured time
+	 * @return The total time in nanoseconds
+	 */
+	private static long getTotalTime() {
+		if (enabled) {
+			charge();
+		}
+		long total = 0;
+		for (long t : times) {
+			total += t;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the measured times as a table for printing
+	 * @return The table
+	 */
+	public static String getTable() {
+		long total = Math.max(1, getTotalTime());
+		StringBuilder sb = new StringBuilder(String.format(
+				"%-32s %12s %10s %7s %10s%n", "phase", "calls", "time (s)",
+				"share", "us/call"));
+		for (int i=0, n = names.size(); i < n; i++) {
+			if (times[i] == 0 && calls[i] == 0) {
+				continue;
+			}
+			sb.append(String.format("%-32s %12d %10.3f %6.1f%% %10s%n",
+					names.get(i), calls[i], times[i] / 1e9,
+					100.0 * times[i] / total, calls[i] == 0 ? "-" :
+						String.format("%.2f", times[i] / 1e3 / calls[i])));
+		}
+		sb.append(String.format("%-32s %12s %10.3f", "total", "",
+				total / 1e9));
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the measured times to the file defined in the settings (if
+	 * any)
+	 * @param scenarioName Name of the simulated scenario
+	 * @throws SimError if the file can't be written
+	 */
+	public static void writeOutput(String scenarioName) {
+		Settings s = new Settings(PROFILER_NS);
+		if (!s.contains(OUTPUT_FILE_S)) {
+			return;
+		}
+		File file = new File(s.valueFillString(s.getSetting(OUTPUT_FILE_S)));
+		long total = Math.max(1, getTotalTime());
+
+		PrintWriter out;
+		try {
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			out = new PrintWriter(file);
+		} catch (FileNotFoundException e) {
+			throw new SimError("Can't write profiler output file " + file +
+					": " + e.getMessage(), e);
+		}
+		out.println("# scenario=" + scenarioName + " simTime=" +
+				SimClock.getTime() + " wallTime=" + (total / 1e9));
+		out.println("phase\tcalls\ttimeNs\tshare");
+		for (int i=0, n = names.size(); i < n; i++) {
+			out.println(names.get(i) + "\t" + calls[i] + "\t" + times[i] +
+					"\t" + String.format("%.4f", (double)times[i] / total));
+		}
+		out.close();
+	}
+}
@@ -7,12 +7,15 @@ package core;
 import input.EventQueue;
 import input.EventQueueHandler;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 import movement.MapBasedMovement;
+import movement.MirrorMovement;
 import movement.MovementModel;
+import movement.TrajectoryRecorder;
 import movement.map.SimMap;
 import routing.MessageRouter;
 
@@ -119,6 +122,10 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Scenario whose hosts this scenario's hosts mirror (or null) */
+	private SimScenario leader;
+	/** Recorder of the hosts' trajectories (or null if not recorded) */
+	private TrajectoryRecorder trajectoryRecorder;
 
 	static {
 		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
@@ -133,6 +140,17 @@ public class SimScenario implements Serializable {
 	 * Creates a scenario based on Settings object.
 	 */
 	protected SimScenario() {
+		this(null);
+	}
+
+	/**
+	 * Creates a scenario based on Settings object.
+	 * @param leader If not null, the hosts of the new scenario don't move
+	 * by themselves but mirror the locations of the leader's hosts
+	 * (see {@link movement.MirrorMovement})
+	 */
+	private SimScenario(SimScenario leader) {
+		this.leader = leader;
 		Settings s = new Settings(SCENARIO_NS);
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 
@@ -155,6 +173,14 @@ public class SimScenario implements Serializable {
 		this.appListeners = new ArrayList<ApplicationListener>();
 		this.eqHandler = new EventQueueHandler();
 
+		Settings recSettings = new Settings(TrajectoryRecorder.RECORDER_NS);
+		if (leader == null && 
+				recSettings.contains(TrajectoryRecorder.FILE_S)) {
+			this.trajectoryRecorder = new TrajectoryRecorder(new File(
+					recSettings.valueFillString(recSettings.getSetting(
+							TrajectoryRecorder.FILE_S))));
+		}
+
 		/* TODO: check size from movement models */
 		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
 		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 2);
@@ -166,6 +192,18 @@ public class SimScenario implements Serializable {
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
 				updateListeners, simulateConnections, 
 				eqHandler.getEventQueues());
+
+		HostWakeUpSet wakeUps = this.world.getWakeUpSet();
+		if (wakeUps != null) { /* hosts are woken up by their events */
+			addConnectionListener(wakeUps);
+			addMessageListener(wakeUps);
+		}
+		World.StateChangeListener stateChanges =
+			this.world.getStateChangeListener();
+		if (stateChanges != null) { /* events end idle intervals */
+			addConnectionListener(stateChanges);
+			addMessageListener(stateChanges);
+		}
 	}
 	
 	/**
@@ -178,6 +216,26 @@ public class SimScenario implements Serializable {
 		return myinstance;
 	}
 
+	/**
+	 * Creates a new scenario whose hosts mirror the hosts of another
+	 * scenario (see {@link RouterPlanes}) and sets it as the current
+	 * instance.
+	 * @param leader The scenario whose hosts are mirrored
+	 * @return The new scenario
+	 */
+	static SimScenario createPlane(SimScenario leader) {
+		myinstance = new SimScenario(leader);
+		return myinstance;
+	}
+
+	/**
+	 * Sets the scenario that {@link #getInstance()} returns
+	 * @param scen The scenario
+	 */
+	static void setInstance(SimScenario scen) {
+		myinstance = scen;
+	}
+
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -338,9 +396,14 @@ public class SimScenario implements Serializable {
 			int appCount;
 
 			// creates prototypes of MessageRouter and MovementModel
-			MovementModel mmProto = 
-				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
-						s.getSetting(MOVEMENT_MODEL_S));
+			MovementModel mmProto;
+			if (this.leader != null) {
+				mmProto = new MirrorMovement(leader.getHosts());
+			}
+			else {
+				mmProto = (MovementModel)s.createIntializedObject(
+						MM_PACKAGE + s.getSetting(MOVEMENT_MODEL_S));
+			}
 			MessageRouter mRouterProto = 
 				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
 						s.getSetting(ROUTER_S));
@@ -393,6 +456,13 @@ public class SimScenario implements Serializable {
 			if (mmProto instanceof MapBasedMovement) {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
+			else if (this.leader != null) {
+				this.simMap = leader.getMap();
+			}
+
+			if (this.trajectoryRecorder != null) {
+				mmProto = this.trajectoryRecorder.record(mmProto);
+			}
 
 			// creates hosts of ith group
 			for (int j=0; j<nrofHosts; j++) {
@@ -408,6 +478,14 @@ public class SimScenario implements Serializable {
 		}
 	}
 
+	/**
+	 * Returns the recorder of the hosts' trajectories
+	 * @return The recorder or null if the trajectories are not recorded
+	 */
+	public TrajectoryRecorder getTrajectoryRecorder() {
+		return this.trajectoryRecorder;
+	}
+
 	/**
 	 * Returns the list of nodes for this scenario.
 	 * @return the list of nodes for this scenario.
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot of the state of a running simulation. A snapshot contains the
+ * hosts (with their locations, movement models, paths, routers, message
+ * buffers, interfaces and connections), the connectivity optimizers of the
+ * interfaces, the random number generators of the
+ * movement models and event generators, the read positions of the external
+ * event queues, the scheduled updates and the simulation time. Snapshots are
+ * written to gzip compressed files using Java serialization.
+ * <P>A simulation can be started from a snapshot instead of from the
+ * beginning (see {@link #LOAD_FILE_S}). The scenario is first created from
+ * the settings as usual, and then its hosts, event queues and the state of
+ * the world are replaced with the ones of the snapshot. The settings must
+ * define the same hosts and event queues as the settings of the saved
+ * simulation. If {@link #NEW_ROUTERS_S} is true, the routers of the
+ * settings are used instead of the saved ones, so a single warmed up
+ * snapshot can be used to run different routing variants.</P>
+ * <P>Reports are not part of the snapshot; the reports of a restored
+ * simulation only see the events after the restore. Static state that the
+ * simulator classes use only when the scenario is created (e.g., the random
+ * number generators for creating movement models) is not saved either.</P>
+ */
+public class Snapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** snapshot settings namespace ({@value}) */
+	public static final String SNAPSHOT_NS = "Snapshot";
+	/**
+	 * File where a snapshot is saved -setting id ({@value}). If defined, a
+	 * snapshot is saved once during the simulation. The value supports
+	 * value filling (see {@link Settings#valueFillString(String)}).
+	 */
+	public static final String SAVE_FILE_S = "saveFile";
+	/**
+	 * Simulation time when the snapshot is saved -setting id ({@value}).
+	 * The snapshot is saved at the end of the first update interval that
+	 * ends at or after this time. Default is {@link #DEF_SAVE_TIME}, i.e.,
+	 * right after the movement model warmup.
+	 */
+	public static final String SAVE_TIME_S = "saveTime";
+	/**
+	 * File where the snapshot to start the simulation from is read
+	 * -setting id ({@value}). If defined, the movement model warmup is not
+	 * run. The value supports value filling.
+	 */
+	public static final String LOAD_FILE_S = "loadFile";
+	/**
+	 * Should the routers of the loaded snapshot be replaced with new routers
+	 * created from the settings -setting id ({@value}). Boolean (true/false)
+	 * variable. The new routers start with empty buffers and the transfers
+	 * that were ongoing in the snapshot are dropped.
+	 * Default is {@link #DEF_NEW_ROUTERS}.
+	 */
+	public static final String NEW_ROUTERS_S = "newRouters";
+	/** default value for the save time ({@value}) */
+	public static final double DEF_SAVE_TIME = 0;
+	/** default value for the new routers setting ({@value}) */
+	public static final boolean DEF_NEW_ROUTERS = false;
+
+	/** stack size for the threads that write and read snapshots. The host
+	 * and map graphs are serialized recursively, so a big stack is needed.*/
+	private static final long STACK_SIZE = 512L * 1024 * 1024;
+
+	private double simTime;
+	private int nextMessageId;
+	private List<String> messageIds;
+	private List<DTNHost> hosts;
+	private List<DTNHost> updateOrder;
+	private ScheduledUpdatesQueue scheduledUpdates;
+	private List<EventQueue> eventQueues;
+
+	/**
+	 * Creates a snapshot of the current state of a scenario
+	 * @param scen The scenario
+	 */
+	public Snapshot(SimScenario scen) {
+		World world = scen.getWorld();
+		this.simTime = SimClock.getTime();
+		this.nextMessageId = Message.getNextUniqueId();
+		this.messageIds = MessageIdInterner.getIds();
+		this.hosts = new ArrayList<DTNHost>(scen.getHosts());
+		this.updateOrder = world.getUpdateOrder();
+		this.scheduledUpdates = world.getScheduledUpdates();
+		this.eventQueues = 
+			new ArrayList<EventQueue>(scen.getExternalEvents());
+	}
+
+	/**
+	 * Returns the simulation time of the snapshot
+	 * @return The simulation time of the snapshot
+	 */
+	public double getSimTime() {
+		return this.simTime;
+	}
+
+	/**
+	 * Writes this snapshot to a file
+	 * @param file The file to write to
+	 * @throws SimError if the snapshot could not be written
+	 */
+	public void write(final File file) {
+		runWithBigStack(new Runnable() {
+			public void run() {
+				try {
+					ObjectOutputStream out = new ObjectOutputStream(
+							new GZIPOutputStream(new BufferedOutputStream(
+									new FileOutputStream(file))));
+					out.writeObject(Snapshot.this);
+					out.close();
+				} catch (NotSerializableException e) {
+					throw new SimError("Can't save a snapshot: class " +
+							e.getMessage() + " doesn't support snapshots", e);
+				} catch (IOException e) {
+					throw new SimError("Can't write snapshot file " + file +
+							": " + e.getMessage(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads a snapshot from a file
+	 * @param file The file to read from
+	 * @return The snapshot
+	 * @throws SimError if the snapshot could not be read
+	 */
+	public static Snapshot read(final File file) {
+		final List<Snapshot> result = new ArrayList<Snapshot>(1);
+		runWithBigStack(new Runnable() {
+			public void run() {
+				try {
+					ObjectInputStream in = new ObjectInputStream(
+							new GZIPInputStream(new BufferedInputStream(
+									new FileInputStream(file))));
+					result.add((Snapshot)in.readObject());
+					in.close();
+				} catch (InvalidClassException e) {
+					throw new SimError("Snapshot file " + file + " was " +
+							"saved by a different version of " + e.classname,
+							e);
+				} catch (IOException e) {
+					throw new SimError("Can't read snapshot file " + file +
+							": " + e.getMessage(), e);
+				} catch (ClassNotFoundException e) {
+					throw new SimError("Can't read snapshot file " + file +
+							": unknown class " + e.getMessage(), e);
+				}
+			}
+		});
+		return result.get(0);
+	}
+
+	/**
+	 * Runs a task in a new thread with a big stack and waits for it to
+	 * finish. Exceptions and errors thrown by the task are re-thrown.
+	 * @param task The task to run
+	 */
+	private static void runWithBigStack(Runnable task) {
+		final Throwable[] error = new Throwable[1];
+		final Runnable r = task;
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					r.run();
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "snapshot", STACK_SIZE);
+
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while handling a snapshot", e);
+		}
+
+		if (error[0] instanceof RuntimeException) {
+			throw (RuntimeException)error[0];
+		}
+		else if (error[0] != null) {
+			throw (Error)error[0];
+		}
+	}
+
+	/**
+	 * Replaces the state of a newly created scenario with the state of this
+	 * snapshot. The scenario must have the same number of hosts and event
+	 * queues as the scenario of the snapshot.
+	 * @param scen The scenario
+	 * @param newRouters If true, the routers of the scenario's hosts are
+	 * used instead of the routers of the snapshot
+	 * @throws SimError if the scenario doesn't match the snapshot
+	 */
+	public void restore(SimScenario scen, boolean newRouters) {
+		List<DTNHost> current = scen.getHosts();
+		List<EventQueue> queues = scen.getExternalEvents();
+		if (current.size() != this.hosts.size()) {
+			throw new SimError("The snapshot has " + this.hosts.size() +
+					" hosts but the scenario has " + current.size());
+		}
+		if (queues.size() != this.eventQueues.size()) {
+			throw new SimError("The snapshot has " + this.eventQueues.size() +
+					" event queues but the scenario has " + queues.size());
+		}
+
+		for (int i=0, n = current.size(); i < n; i++) {
+			DTNHost host = current.get(i);
+			DTNHost restored = this.hosts.get(i);
+			if (host.getAddress() != restored.getAddress()) {
+				throw new SimError("Address of host " + restored + " in the " +
+						"snapshot doesn't match the scenario's host " + host);
+			}
+			restored.restore(host, scen.getApplicationListeners());
+			if (newRouters) {
+				restored.setRouter(host.getRouter());
+			}
+			current.set(i, restored);
+		}
+
+		if (newRouters) {
+			/* the new routers don't know the ongoing transfers */
+			for (DTNHost host : current) {
+				for (Connection con : host.getConnections()) {
+					if (con.getMessage() != null) {
+						con.clearMsgOnFly();
+					}
+				}
+			}
+			for (DTNHost host : current) {
+				for (Connection con : host.getConnections()) {
+					host.connectionUp(con);
+				}
+			}
+		}
+
+		for (int i=0, n = queues.size(); i < n; i++) {
+			queues.set(i, this.eventQueues.get(i));
+		}
+
+		SimClock.getInstance().setTime(this.simTime);
+		Message.setNextUniqueId(this.nextMessageId);
+		MessageIdInterner.restore(this.messageIds);
+		scen.getWorld().restore(this.updateOrder, this.scheduledUpdates,
+				queues);
+	}
+
+	/**
+	 * Update listener that saves a snapshot once the simulation time has
+	 * reached the save time.
+	 */
+	public static class Saver implements UpdateListener {
+		private File file;
+		private double saveTime;
+		private boolean saved;
+
+		/**
+		 * Constructor.
+		 * @param file The file to save the snapshot to
+		 * @param saveTime The time when the snapshot should be saved
+		 */
+		public Saver(File file, double saveTime) {
+			this.file = file;
+			this.saveTime = saveTime;
+			this.saved = false;
+		}
+
+		public void updated(List<DTNHost> hosts) {
+			if (!this.saved && SimClock.getTime() >= this.saveTime) {
+				new Snapshot(SimScenario.getInstance()).write(this.file);
+				this.saved = true;
+			}
+		}
+	}
+}
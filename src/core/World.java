@@ -6,13 +6,17 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
+import interfaces.MultiResolutionOptimizer;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -28,6 +32,9 @@ public class World {
 	 * slower simulation.
 	 * Default value is {@link #DEF_CON_CELL_SIZE_MULT}.
 	 * Smallest accepted value is 2.
+	 * The uniform grids of {@link MultiResolutionOptimizer} use the value
+	 * only if the setting is defined (with the same smallest value); without
+	 * it, their cell size is the biggest radio range.
 	 * @see ConnectivityGrid
 	 */
 	public static final String CELL_SIZE_MULT_S = "cellSizeMult";
@@ -37,15 +44,112 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the world skip over idle update intervals and advance the time
+	 * straight to the interval of the next due event -setting id ({@value}).
+	 * Boolean (true/false) variable. An interval is idle if no external or
+	 * scheduled event, transfer completion, movement or router check is due 
+	 * in it and the previous interval did not change the state of any host. 
+	 * Skipped intervals are not moved, but the update listeners are informed
+	 * of every skipped interval just like of a normal one, so the results
+	 * are the same as without skipping. If there are no update listeners,
+	 * the time is advanced to the next due interval in one step. In this
+	 * mode a randomized update order (see {@link #RANDOMIZE_UPDATES_S}) is
+	 * shuffled starting from the address order every time, so that the
+	 * order depends only on the time and not on the number of intervals
+	 * that were skipped.
+	 * Only used if connections are not simulated (see 
+	 * {@link SimScenario#SIM_CON_S}).
+	 * Default is {@link #DEF_NEXT_EVENT_ADVANCE}.
+	 */
+	public static final String NEXT_EVENT_ADVANCE_S = "nextEventAdvance";
+	/**
+	 * Should hosts be updated on demand -setting id ({@value}). Boolean 
+	 * (true/false) variable. If true, only the hosts that are woken up are
+	 * updated after an event and at the end of an update interval instead
+	 * of updating all hosts. Hosts are woken up by connection and message 
+	 * events concerning them, when their transfer completes, and when their
+	 * router requests an update (see {@link HostWakeUpSet}). Only used if
+	 * connections are not simulated. Routers that need to be updated on every
+	 * interval even without such events should use the default value 
+	 * ({@link #DEF_DEMAND_DRIVEN_UPDATES}).
+	 */
+	public static final String DEMAND_DRIVEN_UPDATES_S = "demandDrivenUpdates";
+	/**
+	 * Number of threads used for moving the hosts -setting id ({@value}).
+	 * Integer value. If bigger than one, hosts whose movement model can be
+	 * moved in parallel (see 
+	 * {@link movement.MovementModel#canMoveInParallel()}) are
+	 * moved concurrently and the rest of the hosts after them. Movement 
+	 * listeners are informed in host address order after all hosts have 
+	 * moved, so the results don't depend on the number of threads.
+	 * Default is {@link #DEF_MOVEMENT_THREADS}.
+	 */
+	public static final String MOVEMENT_THREADS_S = "movementThreads";
+	/**
+	 * Should the connectivity of all hosts be updated in two phases before
+	 * updating the routers -setting id ({@value}). Boolean (true/false) 
+	 * variable. If true, the link changes of all hosts are first detected
+	 * (possibly in parallel) and then applied in interface address order
+	 * (see {@link ContactDetector}), and only after that the routers are 
+	 * updated. If false, the interfaces and the router of each host are
+	 * updated together, one host at a time.
+	 * Default is {@link #DEF_TWO_PHASE_CONNECTIVITY}.
+	 */
+	public static final String TWO_PHASE_CONNECTIVITY_S = 
+		"twoPhaseConnectivity";
+	/**
+	 * Number of threads used for detecting link changes in two-phase 
+	 * connectivity updates -setting id ({@value}). Integer value.
+	 * Default is {@link #DEF_CONNECTIVITY_THREADS}.
+	 */
+	public static final String CONNECTIVITY_THREADS_S = "connectivityThreads";
+	/**
+	 * Should the link changes be predicted from the hosts' movement 
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, the
+	 * exact times when the hosts come within and go out of range during an
+	 * update interval are solved from their piecewise-linear movement and 
+	 * the links are changed at those times (see {@link ContactPredictor}).
+	 * This keeps the contact times exact with long update intervals.
+	 * Overrides {@link #TWO_PHASE_CONNECTIVITY_S}. 
+	 * Default is {@link #DEF_ANALYTIC_CONTACTS}.
+	 */
+	public static final String ANALYTIC_CONTACTS_S = "analyticContacts";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should idle update intervals be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_NEXT_EVENT_ADVANCE = false;
+	/** should hosts be updated on demand -setting's default value 
+	 * ({@value}) */
+	public static final boolean DEF_DEMAND_DRIVEN_UPDATES = false;
+	/** number of threads used for moving the hosts -setting's default value
+	 * ({@value}) */
+	public static final int DEF_MOVEMENT_THREADS = 1;
+	/** should connectivity be updated in two phases -setting's default 
+	 * value ({@value}) */
+	public static final boolean DEF_TWO_PHASE_CONNECTIVITY = false;
+	/** number of threads used for detecting link changes -setting's 
+	 * default value ({@value}) */
+	public static final int DEF_CONNECTIVITY_THREADS = 1;
+	/** should the link changes be predicted -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_ANALYTIC_CONTACTS = false;
+	/** how many host moving tasks are created for each thread */
+	private static final int MOVE_TASKS_PER_THREAD = 8;
+	/** times that are multiples of this are summed without rounding errors
+	 * (if they aren't too big) */
+	private static final double EXACT_STEP = 1.0 / 1024;
+	/** max nrof {@link #EXACT_STEP}s in a time that is summed exactly */
+	private static final double MAX_EXACT_STEPS = 1L << 52;
 
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;
+	/** all the event queues (except scheduled updates) merged */
+	private MergedEventQueue eventQueues;
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
@@ -65,6 +169,40 @@ public class World {
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
 
+	/** should idle update intervals be skipped */
+	private boolean nextEventAdvance;
+	/** simulation end time (upper limit for skipping intervals) */
+	private double endTime;
+	/** did the previous update interval leave all hosts unchanged */
+	private boolean lastIntervalIdle;
+	/** listener that notices the state changes of the hosts (or null if
+	 * idle intervals are not skipped) */
+	private StateChangeListener stateChanges;
+	/** hosts that need an update (or null if all hosts are always updated)*/
+	private HostWakeUpSet wakeUps;
+	/** pool for moving hosts in parallel (or null if hosts are moved by
+	 * the calling thread) */
+	private ForkJoinPool movementPool;
+	/** hosts that can be moved in parallel */
+	private DTNHost[] parallelMovers;
+	/** hosts that must be moved one by one (in address order) */
+	private DTNHost[] serialMovers;
+	/** max nrof hosts moved by a single task */
+	private int moveTaskSize;
+	/** updater of connectivity in two phases (or null if the interfaces
+	 * are updated together with the routers) */
+	private ContactDetector contactDetector;
+	/** updater of connectivity based on predicted contact times (or null
+	 * if connectivity is not predicted) */
+	private ContactPredictor contactPredictor;
+	/** router planes that are updated in lock-step with this world (or
+	 * null if this world is updated alone) */
+	private RouterPlanes routerPlanes;
+	/** number of host updates done (for the flight recorder events) */
+	private int nrofHostUpdates;
+	/** number of external events processed (for the flight recorder) */
+	private int nrofEventsProcessed;
+
 	/**
 	 * Constructor.
 	 */
@@ -77,7 +215,7 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
+		this.eventQueues = new MergedEventQueue(eventQueues);
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
@@ -117,6 +255,94 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		if (s.contains(NEXT_EVENT_ADVANCE_S)) {
+			nextEventAdvance = s.getBoolean(NEXT_EVENT_ADVANCE_S) && 
+				!simulateConnections;
+		}
+		else {
+			nextEventAdvance = DEF_NEXT_EVENT_ADVANCE;
+		}
+
+		if (nextEventAdvance) {
+			Settings scen = new Settings(SimScenario.SCENARIO_NS);
+			this.endTime = scen.getDouble(SimScenario.END_TIME_S);
+			this.stateChanges = new StateChangeListener();
+		}
+		this.lastIntervalIdle = false;
+
+		boolean demandDriven = DEF_DEMAND_DRIVEN_UPDATES;
+		if (s.contains(DEMAND_DRIVEN_UPDATES_S)) {
+			demandDriven = s.getBoolean(DEMAND_DRIVEN_UPDATES_S);
+		}
+		if (demandDriven && !simulateConnections) {
+			this.wakeUps = new HostWakeUpSet(this.hosts);
+		}
+		else {
+			this.wakeUps = null;
+		}
+
+		int movementThreads = DEF_MOVEMENT_THREADS;
+		if (s.contains(MOVEMENT_THREADS_S)) {
+			movementThreads = s.getInt(MOVEMENT_THREADS_S);
+		}
+		if (movementThreads < 1) {
+			throw new SettingsError("Too small value (" + movementThreads +
+					") for " + SETTINGS_NS + "." + MOVEMENT_THREADS_S);
+		}
+		if (movementThreads > 1) {
+			initParallelMovement(movementThreads);
+		}
+
+		boolean twoPhase = DEF_TWO_PHASE_CONNECTIVITY;
+		if (s.contains(TWO_PHASE_CONNECTIVITY_S)) {
+			twoPhase = s.getBoolean(TWO_PHASE_CONNECTIVITY_S);
+		}
+		int connectivityThreads = DEF_CONNECTIVITY_THREADS;
+		if (s.contains(CONNECTIVITY_THREADS_S)) {
+			connectivityThreads = s.getInt(CONNECTIVITY_THREADS_S);
+		}
+		if (connectivityThreads < 1) {
+			throw new SettingsError("Too small value (" + connectivityThreads
+					+ ") for " + SETTINGS_NS + "." + CONNECTIVITY_THREADS_S);
+		}
+		boolean analyticContacts = DEF_ANALYTIC_CONTACTS;
+		if (s.contains(ANALYTIC_CONTACTS_S)) {
+			analyticContacts = s.getBoolean(ANALYTIC_CONTACTS_S);
+		}
+		if (analyticContacts && simulateConnections) {
+			this.contactPredictor = new ContactPredictor(this.hosts);
+		}
+		else if (twoPhase && simulateConnections) {
+			this.contactDetector = new ContactDetector(this.hosts, 
+					connectivityThreads);
+		}
+	}
+
+	/**
+	 * Sets up moving the hosts in parallel
+	 * @param nrofThreads Number of threads to use
+	 */
+	private void initParallelMovement(int nrofThreads) {
+		List<DTNHost> parallel = new ArrayList<DTNHost>();
+		List<DTNHost> serial = new ArrayList<DTNHost>();
+
+		for (DTNHost host : this.hosts) {
+			if (host.canMoveInParallel()) {
+				parallel.add(host);
+			}
+			else {
+				serial.add(host);
+			}
+			/* listeners are informed in address order after moving */
+			host.setMovementEventBuffering(true);
+		}
+
+		this.parallelMovers = parallel.toArray(new DTNHost[0]);
+		this.serialMovers = serial.toArray(new DTNHost[0]);
+		this.moveTaskSize = Math.max(1, 
+				parallelMovers.length / (nrofThreads * MOVE_TASKS_PER_THREAD));
+		this.movementPool = new ForkJoinPool(nrofThreads);
 	}
 
 	/**
@@ -142,19 +368,18 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Sets the event queue that has the next event. Scheduled updates 
+	 * come first if they happen at the same time as the next event of
+	 * the other queues.
 	 */
 	public void setNextEventQueue() {
 		EventQueue nextQueue = scheduledUpdates;
 		double earliest = nextQueue.nextEventsTime();
 
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
+		double queuesTime = eventQueues.nextEventsTime();
+		if (queuesTime < earliest) {
+			nextQueue = eventQueues;
+			earliest = queuesTime;
 		}
 
 		this.nextEventQueue = nextQueue;
@@ -167,28 +392,180 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		FlightRecorderEvents.SimTick tick = new FlightRecorderEvents.SimTick();
+		int hostUpdates = this.nrofHostUpdates;
+		int events = this.nrofEventsProcessed;
+		tick.begin();
+
+		if (this.routerPlanes != null) {
+			this.routerPlanes.update(this.updateInterval);
+		}
+		else {
+			updateWorld();
+		}
+
+		if (tick.shouldCommit()) {
+			tick.simTime = SimClock.getTime();
+			tick.hostsUpdated = this.nrofHostUpdates - hostUpdates;
+			tick.eventsProcessed = this.nrofEventsProcessed - events;
+			tick.commit();
+		}
+	}
+
+	/**
+	 * Updates this world for one update interval (see {@link #update()})
+	 */
+	private void updateWorld() {
+		if (this.nextEventAdvance && this.lastIntervalIdle) {
+			skipIdleIntervals();
+		}
+
 		double runUntil = SimClock.getTime() + this.updateInterval;
+		int nrofEvents = 0;
 
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
+			processNextEvent();
 			updateHosts(); // update all hosts after every event
 			setNextEventQueue();
+			nrofEvents++;
 		}
 
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
 
+		if (this.contactPredictor != null) {
+			int previous = SimProfiler.enter(SimProfiler.CONNECTIVITY);
+			this.contactPredictor.update(this.updateInterval);
+			SimProfiler.exit(previous);
+		}
 		updateHosts();
+		informUpdateListeners();
+
+		if (this.nextEventAdvance) {
+			/* the changes are taken always to start the next interval with
+			 * a clean slate */
+			boolean stateChanged = this.stateChanges.takeChanged();
+			this.lastIntervalIdle = nrofEvents == 0 && !stateChanged;
+		}
+	}
+
+	/**
+	 * Returns the time of the next event (after setting the queue that has
+	 * it as the next event queue)
+	 * @return The time of the next event
+	 */
+	double getNextEventTime() {
+		setNextEventQueue();
+		return this.nextQueueEventTime;
+	}
+
+	/**
+	 * Processes the next event of the next event queue (see 
+	 * {@link #setNextEventQueue()})
+	 */
+	void processNextEvent() {
+		int previous = SimProfiler.enter(SimProfiler.EVENTS);
+		ExternalEvent ee = this.nextEventQueue.nextEvent();
+		if (this.wakeUps != null && 
+				this.nextEventQueue == this.scheduledUpdates) {
+			this.wakeUps.wakeUpAll(); // update request to all hosts
+		}
+		ee.processEvent(this);
+		this.nrofEventsProcessed++;
+		SimProfiler.exit(previous);
+	}
 
-		/* inform all update listeners */
+	/**
+	 * Informs all update listeners about the end of an update interval
+	 */
+	void informUpdateListeners() {
+		int previous = SimProfiler.enter(SimProfiler.UPDATE_LISTENERS);
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
+		SimProfiler.exit(previous);
+	}
+
+	/**
+	 * Advances the clock over all the update intervals in which nothing 
+	 * can happen, i.e., until the next interval would contain the next 
+	 * event, transfer completion, host activity or the end of simulation.
+	 * The update listeners are informed of every skipped interval. If
+	 * there are no listeners, the clock is set straight to the time the
+	 * skipped intervals would have advanced it to.
+	 */
+	private void skipIdleIntervals() {
+		setNextEventQueue();
+		double wakeUp = Math.min(this.nextQueueEventTime, this.endTime);
+		if (this.wakeUps != null) {
+			wakeUp = Math.min(wakeUp, this.wakeUps.nextWakeUpTime());
+		}
+
+		for (int i=0, n = hosts.size(); i < n && 
+				wakeUp > SimClock.getTime(); i++) {
+			DTNHost host = hosts.get(i);
+			wakeUp = Math.min(wakeUp, host.nextActivityTime());
+
+			for (Connection con : host.getConnections()) {
+				if (con.getMessage() == null) {
+					continue;
+				}
+				if (con instanceof CBRConnection) {
+					wakeUp = Math.min(wakeUp, 
+							((CBRConnection)con).getTransferDoneTime());
+				}
+				else { /* transfer progresses only in updates */
+					wakeUp = SimClock.getTime();
+				}
+			}
+		}
+
+		double now = SimClock.getTime();
+		if (now + this.updateInterval >= wakeUp) {
+			return; // the next interval isn't idle
+		}
+
+		if (this.updateListeners.isEmpty() && isExactStep(now) &&
+				isExactStep(this.updateInterval) &&
+				Math.abs(wakeUp) < MAX_EXACT_STEPS * EXACT_STEP) {
+			/* the intervals would be added without rounding errors, so
+			 * the time after them can be computed directly */
+			double dt = this.updateInterval;
+			long nrofIdle = (long)Math.ceil((wakeUp - now) / dt) - 1;
+			/* correct the possible rounding error of the division */
+			while (now + (nrofIdle + 1) * dt < wakeUp) {
+				nrofIdle++;
+			}
+			while (now + nrofIdle * dt >= wakeUp) {
+				nrofIdle--;
+			}
+			simClock.setTime(now + nrofIdle * dt);
+			return;
+		}
+
+		/* the clock is advanced like in normal updates to get the same
+		 * rounding errors */
+		while (SimClock.getTime() + this.updateInterval < wakeUp) {
+			simClock.advance(this.updateInterval);
+			if (!this.updateListeners.isEmpty()) {
+				informUpdateListeners();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a time is a multiple of {@link #EXACT_STEP} small
+	 * enough that the sums of such times are exact
+	 * @param time The time
+	 * @return True if the time can be summed without rounding errors
+	 */
+	private static boolean isExactStep(double time) {
+		double steps = time / EXACT_STEP;
+		return steps == Math.rint(steps) && Math.abs(steps) < MAX_EXACT_STEPS;
 	}
 
 	/**
@@ -197,37 +574,161 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
-		if (this.updateOrder == null) { // randomizing is off
+		updateHosts(updateConnectivity());
+	}
+
+	/**
+	 * Updates the connectivity of all hosts if it is not updated together
+	 * with the routers
+	 * @return True if the hosts should update their interfaces when they
+	 * are updated, false if the connectivity was already updated
+	 */
+	boolean updateConnectivity() {
+		if (this.contactDetector != null) {
+			int previous = SimProfiler.enter(SimProfiler.CONNECTIVITY);
+			this.contactDetector.update();
+			SimProfiler.exit(previous);
+			return false;
+		}
+		return this.simulateConnections && this.contactPredictor == null;
+	}
+
+	/**
+	 * Updates all hosts (see {@link #updateHosts()})
+	 * @param updateInterfaces Should the hosts update their interfaces
+	 */
+	void updateHosts(boolean updateInterfaces) {
+		int previous = SimProfiler.enter(SimProfiler.ROUTERS);
+		if (this.wakeUps != null) {
+			updateAwakeHosts();
+		}
+		else if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				hosts.get(i).update(updateInterfaces);
 			}
+			this.nrofHostUpdates += hosts.size();
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() : 
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
+			shuffleUpdateOrder();
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
-			}			
+				this.updateOrder.get(i).update(updateInterfaces);
+			}
+			this.nrofHostUpdates += hosts.size();
 		}
+		SimProfiler.exit(previous);
+	}
+
+	/**
+	 * Updates the hosts that are awake and schedules their next wake up.
+	 * If update order randomizing is on, the hosts are updated in random 
+	 * order.
+	 */
+	private void updateAwakeHosts() {
+		List<DTNHost> awake = this.wakeUps.takeAwakeHosts();
+		this.nrofHostUpdates += awake.size();
+		if (this.updateOrder != null) {
+			Collections.shuffle(awake, new Random(SimClock.getIntTime()));
+		}
+
+		for (int i=0, n = awake.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			DTNHost host = awake.get(i);
+			host.update(simulateConnections);
+			scheduleWakeUp(host);
+		}
+	}
+
+	/**
+	 * Schedules the next wake up of a host based on its ongoing transfers 
+	 * and the update time requested by the host
+	 * @param host The host whose wake up is scheduled
+	 */
+	private void scheduleWakeUp(DTNHost host) {
+		double now = SimClock.getTime();
+		double time = host.nextUpdateTime();
+
+		for (Connection con : host.getConnections()) {
+			if (con.getMessage() == null) {
+				continue;
+			}
+			if (con instanceof CBRConnection) {
+				time = Math.min(time, 
+						((CBRConnection)con).getTransferDoneTime());
+			}
+			else { /* transfer progresses only in updates */
+				time = now;
+			}
+		}
+
+		if (time <= now) {
+			this.wakeUps.wakeUp(host); // update again in the next round
+		}
+		else if (time < Double.MAX_VALUE) {
+			this.wakeUps.wakeUpAt(host, time);
+		}
+	}
+
+	/**
+	 * Shuffles the update order of hosts using the current sim time as
+	 * the seed. If idle intervals are skipped, the hosts are shuffled
+	 * starting from the address order, so the order depends only on the
+	 * time.
+	 */
+	private void shuffleUpdateOrder() {
+		if (this.nextEventAdvance) {
+			for (int i=0, n = hosts.size(); i < n; i++) {
+				this.updateOrder.set(i, hosts.get(i));
+			}
+		}
+		Random rng = new Random(SimClock.getIntTime());
+		Collections.shuffle(this.updateOrder, rng);
 	}
 
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
-	private void moveHosts(double timeIncrement) {
+	void moveHosts(double timeIncrement) {
+		int previous = SimProfiler.enter(SimProfiler.MOVEMENT);
+		if (this.movementPool != null) {
+			moveHostsInParallel(timeIncrement);
+		}
+		else {
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				DTNHost host = hosts.get(i);
+				host.move(timeIncrement);			
+			}
+		}
+		SimProfiler.exit(previous);
+	}
+
+	/**
+	 * Moves the hosts that can be moved in parallel using the movement 
+	 * thread pool, then the rest of the hosts, and finally informs the 
+	 * movement listeners in host address order.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(double timeIncrement) {
+		this.movementPool.invoke(new MoveTask(0, parallelMovers.length,
+				timeIncrement));
+
+		for (DTNHost host : this.serialMovers) {
+			host.move(timeIncrement);
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
-			host.move(timeIncrement);			
-		}		
+			hosts.get(i).flushMovementEvents();
+		}
 	}
 
 	/**
@@ -279,6 +780,139 @@ public class World {
 		return node; 
 	}
 
+	/**
+	 * Returns the set of hosts that need an update if hosts are updated on
+	 * demand
+	 * @return The wake up set or null if all hosts are always updated
+	 * @see #DEMAND_DRIVEN_UPDATES_S
+	 */
+	public HostWakeUpSet getWakeUpSet() {
+		return this.wakeUps;
+	}
+
+	/**
+	 * Returns the listener that must be informed of the connection and
+	 * message events for skipping idle update intervals
+	 * @return The listener or null if idle intervals are not skipped
+	 * @see #NEXT_EVENT_ADVANCE_S
+	 */
+	public StateChangeListener getStateChangeListener() {
+		return this.stateChanges;
+	}
+
+	/**
+	 * Makes this world the first router plane: the update intervals are
+	 * run by the router planes, and the link changes of this world are
+	 * recorded so that the other planes can follow them
+	 * @param planes The router planes
+	 * @throws SettingsError if the connectivity settings don't support
+	 * router planes
+	 */
+	void setRouterPlanes(RouterPlanes planes) {
+		leadContacts().setRecording(true);
+		this.routerPlanes = planes;
+	}
+
+	/**
+	 * Makes this world an additional router plane that applies the link
+	 * changes of the first plane instead of detecting them
+	 * @param leader The world of the first plane
+	 */
+	void followContacts(World leader) {
+		if (this.contactDetector != null) {
+			this.contactDetector.shutdown();
+		}
+		this.contactDetector = new ContactDetector(this.hosts,
+				leader.leadContacts());
+		this.contactPredictor = null;
+	}
+
+	/**
+	 * Returns the two-phase contact detector of this world and creates a
+	 * single-threaded one if two-phase connectivity is not used
+	 * @return The contact detector
+	 * @throws SettingsError if connections are not simulated or their
+	 * changes are predicted
+	 */
+	private ContactDetector leadContacts() {
+		if (!this.simulateConnections) {
+			throw new SettingsError("Router planes require simulated " +
+					"connections (" + SimScenario.SCENARIO_NS + "." +
+					SimScenario.SIM_CON_S + ")");
+		}
+		if (this.contactPredictor != null) {
+			throw new SettingsError("Router planes don't support " +
+					SETTINGS_NS + "." + ANALYTIC_CONTACTS_S);
+		}
+		if (this.contactDetector == null) {
+			this.contactDetector = new ContactDetector(this.hosts, 1);
+		}
+		return this.contactDetector;
+	}
+
+	/**
+	 * Returns the current update order of the hosts
+	 * @return The update order or null if the order is not randomized
+	 */
+	List<DTNHost> getUpdateOrder() {
+		return this.updateOrder;
+	}
+
+	/**
+	 * Returns the queue of scheduled updates
+	 * @return The queue of scheduled updates
+	 */
+	ScheduledUpdatesQueue getScheduledUpdates() {
+		return this.scheduledUpdates;
+	}
+
+	/**
+	 * Replaces the state of this world with a state restored from a 
+	 * snapshot (see {@link Snapshot}). The hosts list of this world must
+	 * already contain the restored hosts.
+	 * @param updateOrder The update order of the restored hosts (or null if
+	 * the order is not randomized)
+	 * @param scheduledUpdates The restored scheduled updates
+	 * @param eventQueues The restored event queues
+	 */
+	void restore(List<DTNHost> updateOrder, 
+			ScheduledUpdatesQueue scheduledUpdates, 
+			List<EventQueue> eventQueues) {
+		if (this.updateOrder != null) {
+			if (updateOrder == null) {
+				updateOrder = this.hosts;
+			}
+			this.updateOrder = new ArrayList<DTNHost>(updateOrder);
+		}
+		this.scheduledUpdates = scheduledUpdates;
+		this.eventQueues = new MergedEventQueue(eventQueues);
+		this.lastIntervalIdle = false;
+
+		if (this.wakeUps != null) {
+			this.wakeUps.replaceHosts(this.hosts);
+		}
+		if (this.movementPool != null) {
+			int nrofThreads = this.movementPool.getParallelism();
+			this.movementPool.shutdown();
+			initParallelMovement(nrofThreads);
+		}
+
+		setNextEventQueue();
+	}
+
+	/**
+	 * Stops the threads that move the hosts and detect the contacts in
+	 * parallel. The world can't be updated after this.
+	 */
+	public void shutdown() {
+		if (this.movementPool != null) {
+			this.movementPool.shutdown();
+		}
+		if (this.contactDetector != null) {
+			this.contactDetector.shutdown();
+		}
+	}
+
 	/**
 	 * Schedules an update request to all nodes to happen at the specified 
 	 * simulation time.
@@ -287,4 +921,97 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Task that moves a range of the parallel movers, splitting the range
+	 * into subtasks if it is too big.
+	 */
+	private class MoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int start;
+		private int end;
+		private double timeIncrement;
+
+		/**
+		 * Constructor.
+		 * @param start Index of the first host to move
+		 * @param end Index after the last host to move
+		 * @param timeIncrement The time how long the hosts should move
+		 */
+		public MoveTask(int start, int end, double timeIncrement) {
+			this.start = start;
+			this.end = end;
+			this.timeIncrement = timeIncrement;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= moveTaskSize) {
+				for (int i = start; i < end; i++) {
+					parallelMovers[i].move(timeIncrement);
+				}
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new MoveTask(start, middle, timeIncrement),
+					new MoveTask(middle, end, timeIncrement));
+		}
+	}
+
+	/**
+	 * Listener that notices if a connection or message event changed the
+	 * state of some host. An update interval without such changes and
+	 * external events is idle.
+	 */
+	public static class StateChangeListener implements ConnectionListener,
+			MessageListener {
+		/** has some event happened since the last check */
+		private boolean changed;
+
+		/**
+		 * Returns true if some event has happened since the previous call
+		 * of this method
+		 * @return True if the state of some host may have changed
+		 */
+		private boolean takeChanged() {
+			boolean wasChanged = this.changed;
+			this.changed = false;
+			return wasChanged;
+		}
+
+		// ConnectionListener and MessageListener implementations
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			this.changed = true;
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			this.changed = true;
+		}
+
+		public void newMessage(Message m) {
+			this.changed = true;
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			this.changed = true;
+		}
+
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {
+			this.changed = true;
+		}
+
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			this.changed = true;
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			this.changed = true;
+		}
+	}
 }
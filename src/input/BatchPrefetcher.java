@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * Reads batches of input in a background thread ahead of their use. The
+ * batches are handed over to the simulation thread through a bounded queue,
+ * so at most the given number of batches are read ahead. All the reading
+ * (and closing) of the underlying source happens in the background thread,
+ * so the source doesn't have to be thread safe.
+ * <P>Errors thrown by the source are passed to the simulation thread and
+ * re-thrown there when the failed batch would have been returned.</P>
+ * @param <T> Type of the batches
+ */
+public abstract class BatchPrefetcher<T> implements Runnable {
+	/** how long (ms) the reader waits for space before checking closing */
+	private static final long OFFER_TIMEOUT = 100;
+	/** marks the end of the input in the queue */
+	private static final Object END = new Object();
+
+	/** all prefetchers that haven't been closed */
+	private static List<BatchPrefetcher<?>> prefetchers;
+
+	private BlockingQueue<Object> queue;
+	private Thread thread;
+	private volatile boolean closed;
+	private boolean endReached;
+
+	static {
+		DTNSim.registerForReset(BatchPrefetcher.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Wrapper for errors thrown in the reader thread
+	 */
+	private static class Failure {
+		private Throwable cause;
+
+		private Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	/**
+	 * Constructor. The reading starts only after {@link #start()} is called.
+	 * @param name Name of the reader thread
+	 * @param nrofBatches How many batches are read ahead at most
+	 */
+	public BatchPrefetcher(String name, int nrofBatches) {
+		if (nrofBatches < 1) {
+			throw new SimError("Invalid number of prefetched batches: " +
+					nrofBatches);
+		}
+		this.queue = new ArrayBlockingQueue<Object>(nrofBatches);
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Reads the next batch from the source. Called from the reader thread.
+	 * @return The next batch or null if there's no more input
+	 */
+	protected abstract T readBatch();
+
+	/**
+	 * Closes the source. Called from the reader thread once the reading has
+	 * ended (at the end of input, on an error or when the prefetcher is
+	 * closed). Default implementation does nothing.
+	 */
+	protected void closeSource() { }
+
+	/**
+	 * Starts reading batches in the background
+	 */
+	public void start() {
+		synchronized (prefetchers) {
+			prefetchers.add(this);
+		}
+		thread.start();
+	}
+
+	public void run() {
+		try {
+			while (!closed) {
+				T batch = readBatch();
+				if (batch == null) {
+					put(END);
+					break;
+				}
+				put(batch);
+			}
+		} catch (InterruptedException e) {
+			/* stop reading */
+		} catch (Throwable t) {
+			try {
+				put(new Failure(t));
+			} catch (InterruptedException e) {
+				/* stop reading */
+			}
+		} finally {
+			closeSource();
+		}
+	}
+
+	/**
+	 * Puts an item to the hand-off queue, waiting for space unless the
+	 * prefetcher is closed
+	 */
+	private void put(Object item) throws InterruptedException {
+		while (!closed &&
+				!queue.offer(item, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			/* wait for the simulation to use some batches */
+		}
+	}
+
+	/**
+	 * Returns the next batch, waiting for it to be read if necessary
+	 * @return The next batch or null if there's no more input
+	 * @throws SimError if the prefetcher was closed or it was interrupted
+	 * while waiting
+	 */
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (endReached) {
+			return null;
+		}
+		if (closed) {
+			throw new SimError("Reading from a closed prefetcher");
+		}
+
+		Object item;
+		try {
+			item = queue.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for input", e);
+		}
+
+		if (item == END) {
+			endReached = true;
+			close();
+			return null;
+		}
+		else if (item instanceof Failure) {
+			endReached = true;
+			close();
+			Throwable cause = ((Failure)item).cause;
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError((Exception)cause);
+		}
+		return (T)item;
+	}
+
+	/**
+	 * Stops the reading and waits for the reader thread to close the source
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		queue.clear();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (prefetchers) {
+			prefetchers.remove(this);
+		}
+	}
+
+	/**
+	 * Closes all prefetchers that are still running
+	 */
+	public static void reset() {
+		if (prefetchers != null) {
+			List<BatchPrefetcher<?>> running;
+			synchronized (prefetchers) {
+				running = new ArrayList<BatchPrefetcher<?>>(prefetchers);
+			}
+			for (BatchPrefetcher<?> p : running) {
+				p.close();
+			}
+		}
+		prefetchers = new ArrayList<BatchPrefetcher<?>>();
+	}
+}
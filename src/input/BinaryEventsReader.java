@@ -17,7 +17,8 @@ import core.SimError;
 
 /**
  * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * from a list of external events. For large traces, the compact format
+ * of {@link CompactEventsReader} is smaller and much faster to read.
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
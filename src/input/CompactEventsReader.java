@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>Reads external events from a compact binary events file created with
+ * {@link CompactEventsWriter}. The records are read through memory mapped
+ * windows of the file, so the file is streamed without copying.</P>
+ * <P>File format (all values are big-endian):<BR>
+ * <TT>header</TT>: magic number ({@link #MAGIC}, int), format version
+ * (short), record size (short), number of events (long), offset of the
+ * string table (long), offset of the time index (long), padding up to
+ * {@value #HEADER_SIZE} bytes.<BR>
+ * <TT>records</TT>: one fixed-width ({@value #RECORD_SIZE} bytes) record
+ * per event, in time order: time (double), type (byte), subtype (byte:
+ * relay stage, 1 for drop / 0 for remove, or 1 for up / 0 for down),
+ * unused (short), host1 address (int), host2 address (int), index of the
+ * message (or interface) ID in the string table (int, -1 if none), size
+ * (int) and response size (int).<BR>
+ * <TT>string table</TT>: number of strings (int), and for each string its
+ * length (int) and UTF-8 bytes.<BR>
+ * <TT>time index</TT>: index interval (int), number of entries (int) and
+ * the time of every interval'th event (double) for seeking.</P>
+ */
+public class CompactEventsReader implements ExternalEventsReader {
+	/** Magic number at the start of compact events files ("ONEC") */
+	public static final int MAGIC = 0x4F4E4543;
+	/** Version of the format this class reads and writes */
+	public static final int VERSION = 1;
+	/** Size of the header in bytes */
+	public static final int HEADER_SIZE = 64;
+	/** Size of an event record in bytes */
+	public static final int RECORD_SIZE = 32;
+	/** How often (every nth event) the time is stored in the time index */
+	public static final int INDEX_INTERVAL = 4096;
+
+	/** record type for message create events */
+	static final int TYPE_CREATE = 1;
+	/** record type for message relay events */
+	static final int TYPE_RELAY = 2;
+	/** record type for message delete events */
+	static final int TYPE_DELETE = 3;
+	/** record type for connection events */
+	static final int TYPE_CONNECTION = 4;
+	/** character set of the strings */
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** max number of records in one mapped window */
+	private static final int WINDOW_RECORDS = 1 << 22;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long nrofEvents;
+	/** index of the next record to read */
+	private long nextRecord;
+	/** currently mapped records */
+	private MappedByteBuffer window;
+	/** index of the first record in the window */
+	private long windowStart;
+	/** number of records in the window */
+	private int windowSize;
+	/** the string table */
+	private String[] strings;
+	private int indexInterval;
+	private double[] indexTimes;
+
+	/**
+	 * Opens a compact events file for reading
+	 * @param eventsFile The file
+	 * @throws SimError if the file can't be read or is not a valid compact
+	 * events file of a supported version
+	 */
+	public CompactEventsReader(File eventsFile) {
+		try {
+			this.file = new RandomAccessFile(eventsFile, "r");
+			this.channel = file.getChannel();
+			readHeader(eventsFile);
+		} catch (BufferUnderflowException e) {
+			throw new SimError("Truncated compact events file " + eventsFile);
+		} catch (IOException e) {
+			throw new SimError("Can't read compact events file " +
+					eventsFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the header, the string table and the time index
+	 */
+	private void readHeader(File eventsFile) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+			throw new SimError(eventsFile + " is not a compact events file");
+		}
+		int version = header.getShort();
+		int recordSize = header.getShort();
+		if (version != VERSION || recordSize != RECORD_SIZE) {
+			throw new SimError("Unsupported compact events file version " +
+					version + " (record size " + recordSize + ") in " +
+					eventsFile);
+		}
+		this.nrofEvents = header.getLong();
+		long stringTableOffset = header.getLong();
+		long indexOffset = header.getLong();
+
+		if (stringTableOffset != HEADER_SIZE + nrofEvents * RECORD_SIZE ||
+				indexOffset < stringTableOffset ||
+				indexOffset > channel.size()) {
+			throw new SimError("Corrupted compact events file " + eventsFile);
+		}
+
+		ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+				stringTableOffset, indexOffset - stringTableOffset);
+		this.strings = new String[buf.getInt()];
+		for (int i=0; i < strings.length; i++) {
+			byte[] bytes = new byte[buf.getInt()];
+			buf.get(bytes);
+			strings[i] = new String(bytes, CHARSET);
+		}
+
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+				channel.size() - indexOffset);
+		this.indexInterval = buf.getInt();
+		this.indexTimes = new double[buf.getInt()];
+		for (int i=0; i < indexTimes.length; i++) {
+			indexTimes[i] = buf.getDouble();
+		}
+	}
+
+	/**
+	 * Checks if the given file is a compact events file (i.e., starts with
+	 * the {@link #MAGIC} number)
+	 * @param file The file to check
+	 * @return True if the file is a compact events file
+	 */
+	public static boolean isCompactEventsFile(File file) {
+		if (!file.isFile() || file.length() < HEADER_SIZE) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Makes sure the given record is in the mapped window
+	 * @param record Index of the record
+	 */
+	private void mapWindowFor(long record) throws IOException {
+		if (window != null && record >= windowStart &&
+				record < windowStart + windowSize) {
+			return;
+		}
+		windowStart = record;
+		windowSize = (int)Math.min(WINDOW_RECORDS, nrofEvents - record);
+		window = channel.map(FileChannel.MapMode.READ_ONLY,
+				HEADER_SIZE + record * RECORD_SIZE,
+				(long)windowSize * RECORD_SIZE);
+	}
+
+	/**
+	 * Returns the time of the given record
+	 * @param record Index of the record
+	 * @return The time
+	 */
+	private double recordTime(long record) throws IOException {
+		mapWindowFor(record);
+		return window.getDouble((int)(record - windowStart) * RECORD_SIZE);
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.min(nrof, nrofEvents - nextRecord);
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+
+		try {
+			for (int i=0; i < count; i++) {
+				mapWindowFor(nextRecord);
+				window.position((int)(nextRecord - windowStart) * RECORD_SIZE);
+				events.add(readRecord(window));
+				nextRecord++;
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read compact events: " +
+					e.getMessage(), e);
+		}
+		return events;
+	}
+
+	/**
+	 * Creates an event from the record at the buffer's position
+	 * @param buf The buffer
+	 * @return The event
+	 */
+	private ExternalEvent readRecord(ByteBuffer buf) {
+		double time = buf.getDouble();
+		int type = buf.get();
+		int subtype = buf.get();
+		buf.getShort();
+		int from = buf.getInt();
+		int to = buf.getInt();
+		int stringIndex = buf.getInt();
+		int size = buf.getInt();
+		int responseSize = buf.getInt();
+		String id = (stringIndex < 0 ? null : strings[stringIndex]);
+
+		switch (type) {
+		case TYPE_CREATE:
+			return new MessageCreateEvent(from, to, id, size, responseSize,
+					time);
+		case TYPE_RELAY:
+			return new MessageRelayEvent(from, to, id, time, subtype);
+		case TYPE_DELETE:
+			return new MessageDeleteEvent(from, id, time, subtype == 1);
+		case TYPE_CONNECTION:
+			return new ConnectionEvent(from, to, id, subtype == 1, time);
+		default:
+			throw new SimError("Invalid event type " + type +
+					" in compact events record " + nextRecord);
+		}
+	}
+
+	/**
+	 * Moves the reading position to the first event whose time is at
+	 * least the given time. The time index is used to find the right
+	 * interval of events, which is then binary searched.
+	 * @param time The time
+	 */
+	public void seek(double time) {
+		int entry = 0;
+		while (entry + 1 < indexTimes.length &&
+				indexTimes[entry + 1] < time) {
+			entry++;
+		}
+		long low = (long)entry * indexInterval;
+		long high = Math.min(nrofEvents, low + indexInterval + 1);
+
+		try {
+			while (low < high) {
+				long middle = (low + high) >>> 1;
+				if (recordTime(middle) < time) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read compact events: " +
+					e.getMessage(), e);
+		}
+		this.nextRecord = low;
+	}
+
+	/**
+	 * Returns the total number of events in the file
+	 * @return the total number of events in the file
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	public void close() {
+		try {
+			this.window = null;
+			this.file.close();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+}
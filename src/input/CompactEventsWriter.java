@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import static input.CompactEventsReader.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * Writes external events to a compact binary events file (see
+ * {@link CompactEventsReader} for the format). The events are written one
+ * at a time so files of any size can be created. Can be also run from the
+ * command line for converting an events file (in the standard text format
+ * or in the old binary format) to a compact file:<BR>
+ * <CODE>java input.CompactEventsWriter &lt;events file&gt;
+ * &lt;compact file&gt;</CODE>
+ */
+public class CompactEventsWriter {
+	/** how many events are read at a time when converting */
+	private static final int CONVERT_CHUNK = 10000;
+
+	private File file;
+	private DataOutputStream out;
+	private long nrofEvents;
+	private double lastTime;
+	/** index of each string in the string table */
+	private HashMap<String, Integer> stringIndexes;
+	private List<String> strings;
+	/** time of every {@link CompactEventsReader#INDEX_INTERVAL}th event */
+	private List<Double> indexTimes;
+
+	/**
+	 * Creates a writer for a new compact events file
+	 * @param file The file to write to (overwritten if it exists)
+	 * @throws IOException if the file can't be opened
+	 */
+	public CompactEventsWriter(File file) throws IOException {
+		this.file = file;
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		this.stringIndexes = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		this.indexTimes = new ArrayList<Double>();
+		this.lastTime = -Double.MAX_VALUE;
+
+		/* the header is written when the file is closed */
+		out.write(new byte[HEADER_SIZE]);
+	}
+
+	/**
+	 * Writes an event to the file. The events must be written in time
+	 * order.
+	 * @param ee The event to write
+	 * @throws IOException if the writing fails
+	 * @throws SimError if the event is of unsupported type or out of order
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		if (ee.getTime() < lastTime) {
+			throw new SimError("Event " + ee + " is out of time order");
+		}
+		int type;
+		int subtype;
+		int from;
+		int to;
+		String id;
+		int size = 0;
+		int responseSize = 0;
+
+		if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent mce = (MessageCreateEvent)ee;
+			type = TYPE_CREATE;
+			subtype = 0;
+			size = mce.getSize();
+			responseSize = mce.getResponseSize();
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			type = TYPE_RELAY;
+			subtype = ((MessageRelayEvent)ee).getStage();
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			type = TYPE_DELETE;
+			subtype = ((MessageDeleteEvent)ee).isDrop() ? 1 : 0;
+		}
+		else if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			type = TYPE_CONNECTION;
+			subtype = ce.isUp ? 1 : 0;
+			from = ce.fromAddr;
+			to = ce.toAddr;
+			id = ce.interfaceId;
+			writeRecord(ee.getTime(), type, subtype, from, to, id, 0, 0);
+			return;
+		}
+		else {
+			throw new SimError("Can't store event " + ee + " of type " +
+					ee.getClass().getName() + " in a compact events file");
+		}
+
+		MessageEvent me = (MessageEvent)ee;
+		writeRecord(ee.getTime(), type, subtype, me.fromAddr, me.toAddr,
+				me.id, size, responseSize);
+	}
+
+	/**
+	 * Writes a fixed-width event record
+	 */
+	private void writeRecord(double time, int type, int subtype, int from,
+			int to, String id, int size, int responseSize)
+		throws IOException {
+		if (nrofEvents % INDEX_INTERVAL == 0) {
+			indexTimes.add(time);
+		}
+
+		out.writeDouble(time);
+		out.writeByte(type);
+		out.writeByte(subtype);
+		out.writeShort(0);
+		out.writeInt(from);
+		out.writeInt(to);
+		out.writeInt(stringIndex(id));
+		out.writeInt(size);
+		out.writeInt(responseSize);
+
+		nrofEvents++;
+		lastTime = time;
+	}
+
+	/**
+	 * Returns the index of the string in the string table, adding it to
+	 * the table if it's not there yet
+	 * @param s The string (or null)
+	 * @return Index of the string or -1 for null
+	 */
+	private int stringIndex(String s) {
+		if (s == null) {
+			return -1;
+		}
+		Integer index = stringIndexes.get(s);
+		if (index == null) {
+			index = strings.size();
+			stringIndexes.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the string table, the time index and the header, and closes
+	 * the file
+	 * @throws IOException if the writing fails
+	 */
+	public void close() throws IOException {
+		long stringTableOffset = HEADER_SIZE + nrofEvents * RECORD_SIZE;
+		out.writeInt(strings.size());
+		long indexOffset = stringTableOffset + 4;
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(CHARSET);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			indexOffset += 4 + bytes.length;
+		}
+
+		out.writeInt(INDEX_INTERVAL);
+		out.writeInt(indexTimes.size());
+		for (double time : indexTimes) {
+			out.writeDouble(time);
+		}
+		out.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.writeInt(MAGIC);
+			raf.writeShort(VERSION);
+			raf.writeShort(RECORD_SIZE);
+			raf.writeLong(nrofEvents);
+			raf.writeLong(stringTableOffset);
+			raf.writeLong(indexOffset);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the number of events written so far
+	 * @return the number of events written so far
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Converts an events file to a compact events file
+	 * @param reader The reader for the events to convert
+	 * @param target The compact file to create
+	 * @return Number of events converted
+	 * @throws IOException if writing the file fails
+	 */
+	public static long convert(ExternalEventsReader reader, File target)
+		throws IOException {
+		CompactEventsWriter writer = new CompactEventsWriter(target);
+		List<ExternalEvent> events = reader.readEvents(CONVERT_CHUNK);
+		while (!events.isEmpty()) {
+			for (ExternalEvent ee : events) {
+				writer.write(ee);
+			}
+			events = reader.readEvents(CONVERT_CHUNK);
+		}
+		reader.close();
+		writer.close();
+		return writer.getNrofEvents();
+	}
+
+	/**
+	 * Converts the events file given as the first argument to a compact
+	 * events file given as the second argument
+	 * @param args The command line arguments
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java " +
+					CompactEventsWriter.class.getName() +
+					" <events file> <compact file>");
+			System.exit(-1);
+		}
+		java.util.Locale.setDefault(java.util.Locale.US);
+
+		File source = new File(args[0]);
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(source)) {
+			reader = new BinaryEventsReader(source);
+		}
+		else {
+			reader = new FastStandardEventsReader(source);
+		}
+
+		long start = System.currentTimeMillis();
+		long nrof = convert(reader, new File(args[1]));
+		System.out.println("Converted " + nrof + " events to " + args[1] +
+				" in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -5,45 +5,76 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import core.Settings;
+import core.SettingsError;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
  * the events and preloading only a proper amount of them.
  */
-public class ExternalEventsQueue implements EventQueue {
+public class ExternalEventsQueue implements PredictableEventQueue {
+	private static final long serialVersionUID = 1L;
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/**
+	 * number of preload batches to read ahead in a background thread
+	 * -setting id ({@value}). Zero (the default) disables the background
+	 * reading and the events are read when the preloaded ones run out. */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 	
 	private File eventsFile;
-	private ExternalEventsReader reader;
-	private int nextEventIndex;
+	private transient ExternalEventsReader reader;
+	private transient int nextEventIndex;
 	private int nrofPreload;
-	private List<ExternalEvent> queue;
-	private boolean allEventsRead = false;
+	private transient List<ExternalEvent> queue;
+	private transient boolean allEventsRead = false;
+	/** background reader of the preload batches (null if not used) */
+	private transient BatchPrefetcher<List<ExternalEvent>> prefetcher;
+	/** how many preload batches are read ahead in the background */
+	private int nrofPrefetch;
+	/** how many events have been returned by {@link #nextEvent()} */
+	private int nrofEventsRead;
 	
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file. Compact events files (see
+	 * {@link CompactEventsReader}) are detected from their content.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 0);
+	}
+	
+	/**
+	 * Creates a new Queue from a file and reads the events in a background
+	 * thread.
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload (per batch)
+	 * @param nrofPrefetch How many preload batches are read ahead in the 
+	 * background. If 0, the events are read without a background thread.
+	 * @see #ExternalEventsQueue(String, int)
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload, 
+			int nrofPrefetch) {
 		setNrofPreload(nrofPreload);
-		init(filePath);
+		init(filePath, nrofPrefetch);
 	}
 	
 	/**
@@ -58,14 +89,23 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		int nrofPrefetch = 0;
+		if (s.contains(PREFETCH_SETTING)) {
+			nrofPrefetch = s.getInt(PREFETCH_SETTING);
+			if (nrofPrefetch < 0) {
+				throw new SettingsError("Negative value for " +
+						s.getFullPropertyName(PREFETCH_SETTING));
+			}
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
-        init(eeFilePath);
+        init(eeFilePath, nrofPrefetch);
     }
 
 	/**
 	 * Sets maximum number of events that are read when the next preload occurs
 	 * @param nrof Maximum number of events to read. If less than 1, default
-	 * value ( {@value DEFAULT_NROF_PRELOAD} ) is used.
+	 * value ( {@value DEFAULT_NROF_PRELOAD} ) is used. Has no effect on
+	 * background reading that has already started.
 	 */
 	public void setNrofPreload(int nrof) {
 		if (nrof < 1) {
@@ -74,14 +114,23 @@ public class ExternalEventsQueue implements EventQueue {
 		this.nrofPreload = nrof;
 	}
 	
-	private void init(String eeFilePath) {
+	private void init(String eeFilePath, int nrofPrefetch) {
 		this.eventsFile = new File(eeFilePath);
+		this.nrofPrefetch = nrofPrefetch;
+		this.nrofEventsRead = 0;
 		
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+		if (CompactEventsReader.isCompactEventsFile(eventsFile)) {
+			this.reader = new CompactEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
-			this.reader = new StandardEventsReader(eventsFile);
+			this.reader = new FastStandardEventsReader(eventsFile);
+		}
+		
+		if (nrofPrefetch > 0) {
+			startPrefetching(nrofPrefetch);
 		}
 		
 		this.queue = readEvents(nrofPreload);
@@ -115,6 +164,7 @@ public class ExternalEventsQueue implements EventQueue {
 		
 		ExternalEvent ee = queue.get(nextEventIndex);
 		nextEventIndex++;
+		nrofEventsRead++;
 		
 		if (nextEventIndex >= queue.size()) { // ran out of events
 			queue = readEvents(nrofPreload);
@@ -139,6 +189,47 @@ public class ExternalEventsQueue implements EventQueue {
 	}
 		
 	
+	/**
+	 * Starts reading the events in a background thread. After this, the
+	 * reader is used only by the background thread.
+	 * @param nrofPrefetch How many batches are read ahead at most
+	 */
+	private void startPrefetching(int nrofPrefetch) {
+		final int batchSize = nrofPreload;
+		this.prefetcher = new BatchPrefetcher<List<ExternalEvent>>(
+				"ExternalEventsQueue " + eventsFile.getName(), nrofPrefetch) {
+			protected List<ExternalEvent> readBatch() {
+				List<ExternalEvent> events = reader.readEvents(batchSize);
+				return events.size() > 0 ? events : null;
+			}
+			
+			protected void closeSource() {
+				reader.close();
+			}
+		};
+		prefetcher.start();
+	}
+	
+	/**
+	 * Restores the queue from a snapshot. Only the position in the events
+	 * file is saved, so the file is opened again and the events that were
+	 * already returned before the snapshot are skipped.
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int nrofRead = this.nrofEventsRead;
+		init(eventsFile.getPath(), nrofPrefetch);
+		while (nrofEventsRead < nrofRead && eventsLeftInBuffer() > 0) {
+			nextEvent();
+		}
+		if (nrofEventsRead < nrofRead) {
+			throw new SimError("Events file " + eventsFile + " has only " +
+					nrofEventsRead + " events but " + nrofRead + 
+					" were read before the snapshot");
+		}
+	}
+	
 	/**
 	 * Read some events from the external events reader
 	 * @param nrof Maximum number of events to read
@@ -150,6 +241,15 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 		
+		if (prefetcher != null) {
+			List<ExternalEvent> events = prefetcher.next();
+			if (events == null) { /* the reader is closed by prefetcher */
+				allEventsRead = true;
+				return new ArrayList<ExternalEvent>(0);
+			}
+			return events;
+		}
+		
 		List<ExternalEvent> events = reader.readEvents(nrof);
 		
 		if (nrof > 0 && events.size() == 0) {
@@ -0,0 +1,589 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import core.SimError;
+
+/**
+ * External events reader for standard-format events that produces the same
+ * events as {@link StandardEventsReader} but parses the file much faster.
+ * The file is read in large blocks to a byte buffer and the lines are
+ * tokenized directly from the buffer. Numbers and host addresses are
+ * parsed from the bytes without creating Strings, and the Strings for
+ * message and interface identifiers are taken from a small cache when the
+ * same identifier was seen recently (as is the case with e.g. the relay
+ * events of a message). Numbers in any other format than plain decimal
+ * (e.g., with grouping separators) are parsed with a {@link Scanner} like
+ * StandardEventsReader does. See StandardEventsReader for the syntax.
+ */
+public class FastStandardEventsReader implements ExternalEventsReader {
+	/** size of the read buffer (grows if a line is longer) */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** number of entries in the identifier cache (a power of two) */
+	private static final int ID_CACHE_SIZE = 4096;
+	/** max nrof significant digits in a double that is parsed directly */
+	private static final int MAX_FAST_DIGITS = 15;
+	/** exact powers of ten as doubles */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private static final byte[] CREATE = bytes(StandardEventsReader.CREATE);
+	private static final byte[] SEND = bytes(StandardEventsReader.SEND);
+	private static final byte[] DELIVERED =
+		bytes(StandardEventsReader.DELIVERED);
+	private static final byte[] ABORT = bytes(StandardEventsReader.ABORT);
+	private static final byte[] DROP = bytes(StandardEventsReader.DROP);
+	private static final byte[] REMOVE = bytes(StandardEventsReader.REMOVE);
+	private static final byte[] CONNECTION =
+		bytes(StandardEventsReader.CONNECTION);
+
+	private InputStream in;
+	private byte[] buffer;
+	/** index of the first unread byte in the buffer */
+	private int pos;
+	/** index after the last valid byte in the buffer */
+	private int limit;
+	/** has the whole file been read to the buffer */
+	private boolean eof;
+
+	/** start index of the current line */
+	private int lineStart;
+	/** index after the current line's last character */
+	private int lineEnd;
+	/** start index of the current token */
+	private int tokenStart;
+	/** index after the current token */
+	private int tokenEnd;
+
+	/** recently created identifier Strings */
+	private String[] idCache;
+
+	/**
+	 * Creates a new reader for the given file
+	 * @param eventsFile The file to read the events from
+	 */
+	public FastStandardEventsReader(File eventsFile) {
+		try {
+			this.in = new FileInputStream(eventsFile);
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+		this.buffer = new byte[BUFFER_SIZE];
+		this.idCache = new String[ID_CACHE_SIZE];
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(Charset.forName("US-ASCII"));
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		int eventsRead = 0;
+
+		while (eventsRead < nrof && nextLine()) {
+			if (isSkippedLine()) {
+				continue;
+			}
+
+			try {
+				events.add(parseEvent());
+				eventsRead++;
+			} catch (Exception e) {
+				throw new SimError("Can't parse external event " +
+						(eventsRead+1) + " from '" + lineString() + "'", e);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Parses an event from the current line
+	 * @return The event
+	 */
+	private ExternalEvent parseEvent() {
+		double time = nextDouble();
+		nextToken();
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		if (tokenEquals(DROP) || tokenEquals(REMOVE)) {
+			boolean drop = tokenEquals(DROP);
+			msgId = nextId();
+			hostAddr = nextHostAddress();
+			return new MessageDeleteEvent(hostAddr, msgId, time, drop);
+		}
+		else if (tokenEquals(CONNECTION)) {
+			boolean isUp;
+			hostAddr = nextHostAddress();
+			host2Addr = nextHostAddress();
+			nextToken();
+			if (tokenEqualsIgnoreCase(StandardEventsReader.CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (tokenEqualsIgnoreCase(
+					StandardEventsReader.CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						tokenString() + "'");
+			}
+
+			String interfaceId = null;
+			if (hasNextToken()) {
+				interfaceId = nextId();
+			}
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		boolean create = tokenEquals(CREATE);
+		int stage = -1;
+		if (tokenEquals(SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (tokenEquals(DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (tokenEquals(ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		String unknownAction = (create || stage != -1 ? null : tokenString());
+
+		msgId = nextId();
+		hostAddr = nextHostAddress();
+		host2Addr = nextHostAddress();
+
+		if (create) {
+			int size = nextInt();
+			int respSize = 0;
+			if (hasNextToken()) {
+				nextToken();
+				if (isIntToken()) {
+					respSize = tokenInt();
+				}
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		if (unknownAction != null) {
+			throw new SimError("Unknown action '" + unknownAction +
+					"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Moves to the next line in the file. The buffer is refilled if the
+	 * line doesn't end in it.
+	 * @return true if there was a line, false if the end of file was reached
+	 */
+	private boolean nextLine() {
+		int i = pos;
+		while (true) {
+			while (i < limit && buffer[i] != '\n' && buffer[i] != '\r') {
+				i++;
+			}
+			if (i + 1 < limit || (i < limit && (buffer[i] == '\n' || eof))) {
+				break; /* line end and the byte after it are in the buffer */
+			}
+			if (eof) {
+				if (pos == limit) {
+					return false;
+				}
+				break; /* last line without a line terminator */
+			}
+			int offset = fill();
+			i -= offset;
+		}
+
+		lineStart = pos;
+		lineEnd = i;
+		tokenStart = tokenEnd = lineStart;
+		if (i < limit && buffer[i] == '\r' && i + 1 < limit &&
+				buffer[i + 1] == '\n') {
+			i++; /* "\r\n" line terminator */
+		}
+		pos = Math.min(i + 1, limit);
+		return true;
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer (growing it if it's
+	 * full) and reads more bytes after them
+	 * @return How many bytes the unread bytes were moved backwards
+	 */
+	private int fill() {
+		int offset = pos;
+		int unread = limit - pos;
+		if (offset > 0) {
+			System.arraycopy(buffer, pos, buffer, 0, unread);
+		}
+		else if (unread == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		pos = 0;
+		limit = unread;
+
+		try {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				eof = true;
+			}
+			else {
+				limit += read;
+			}
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns true if the current line is empty, contains only whitespace
+	 * or is a comment line (starts with #)
+	 * @return true if the line should be skipped
+	 */
+	private boolean isSkippedLine() {
+		if (lineStart < lineEnd && buffer[lineStart] == '#') {
+			return true;
+		}
+		for (int i = lineStart; i < lineEnd; i++) {
+			byte b = buffer[i];
+			if (b != ' ' && b != '\t' && b != 0x0B && b != '\f') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDelimiter(byte b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f' ||
+			(b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Returns true if the current line has more tokens
+	 * @return true if the line has more tokens
+	 */
+	private boolean hasNextToken() {
+		int i = tokenEnd;
+		while (i < lineEnd && isDelimiter(buffer[i])) {
+			i++;
+		}
+		return i < lineEnd;
+	}
+
+	/**
+	 * Moves to the next token of the current line
+	 * @throws SimError if there are no more tokens
+	 */
+	private void nextToken() {
+		int i = tokenEnd;
+		while (i < lineEnd && isDelimiter(buffer[i])) {
+			i++;
+		}
+		if (i == lineEnd) {
+			throw new SimError("Missing field");
+		}
+		tokenStart = i;
+		while (i < lineEnd && !isDelimiter(buffer[i])) {
+			i++;
+		}
+		tokenEnd = i;
+	}
+
+	private boolean tokenEquals(byte[] value) {
+		if (tokenEnd - tokenStart != value.length) {
+			return false;
+		}
+		for (int i=0; i < value.length; i++) {
+			if (buffer[tokenStart + i] != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean tokenEqualsIgnoreCase(String value) {
+		if (tokenEnd - tokenStart != value.length()) {
+			return false;
+		}
+		for (int i=0; i < value.length(); i++) {
+			if (Character.toLowerCase((char)buffer[tokenStart + i]) !=
+				Character.toLowerCase(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the current token as a new String
+	 * @return The token
+	 */
+	private String tokenString() {
+		return new String(buffer, tokenStart, tokenEnd - tokenStart,
+				Charset.defaultCharset());
+	}
+
+	/**
+	 * Returns the current line as a new String
+	 * @return The line
+	 */
+	private String lineString() {
+		return new String(buffer, lineStart, lineEnd - lineStart,
+				Charset.defaultCharset());
+	}
+
+	/**
+	 * Reads the next token as an identifier. If the same (ASCII)
+	 * identifier is in the cache, the cached String is returned.
+	 * @return The identifier
+	 */
+	private String nextId() {
+		nextToken();
+		int hash = 0;
+		for (int i = tokenStart; i < tokenEnd; i++) {
+			if (buffer[i] < 0) {
+				return tokenString(); /* non-ASCII, not cached */
+			}
+			hash = 31 * hash + buffer[i];
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & (ID_CACHE_SIZE - 1);
+		String cached = idCache[slot];
+		int length = tokenEnd - tokenStart;
+		if (cached != null && cached.length() == length) {
+			int i = 0;
+			while (i < length && cached.charAt(i) == buffer[tokenStart + i]) {
+				i++;
+			}
+			if (i == length) {
+				return cached;
+			}
+		}
+
+		String id = tokenString();
+		idCache[slot] = id;
+		return id;
+	}
+
+	/**
+	 * Reads the next token as a host ID and parses the host address from it
+	 * (the numeric part after optional non-numeric part)
+	 * @return The address
+	 * @throws SimError if no address could be parsed from the id
+	 */
+	private int nextHostAddress() {
+		nextToken();
+		int digitsStart = tokenEnd;
+		while (digitsStart > tokenStart && isDigit(buffer[digitsStart - 1])) {
+			digitsStart--;
+		}
+		boolean valid = digitsStart < tokenEnd;
+		for (int i = tokenStart; valid && i < digitsStart; i++) {
+			valid = !isDigit(buffer[i]);
+		}
+		if (!valid) {
+			throw new SimError("Invalid host ID '" + tokenString() + "'");
+		}
+
+		long address = 0;
+		for (int i = digitsStart; i < tokenEnd; i++) {
+			address = address * 10 + (buffer[i] - '0');
+			if (address > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Too large address in '" +
+						tokenString() + "'");
+			}
+		}
+		return (int)address;
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Reads the next token as an integer
+	 * @return The integer
+	 */
+	private int nextInt() {
+		nextToken();
+		return tokenInt();
+	}
+
+	/**
+	 * Returns true if the current token is an integer (as with
+	 * {@link Scanner#hasNextInt()})
+	 * @return true if the token is an integer
+	 */
+	private boolean isIntToken() {
+		if (parsePlainInt() != Long.MIN_VALUE) {
+			return true;
+		}
+		return new Scanner(tokenString()).hasNextInt();
+	}
+
+	/**
+	 * Parses the current token as an integer
+	 * @return The integer
+	 */
+	private int tokenInt() {
+		long value = parsePlainInt();
+		if (value != Long.MIN_VALUE) {
+			return (int)value;
+		}
+		return new Scanner(tokenString()).nextInt();
+	}
+
+	/**
+	 * Parses the current token if it is a plain integer (optional sign and
+	 * 1-10 digits) that fits in an int
+	 * @return The value or Long.MIN_VALUE if the token is not such integer
+	 */
+	private long parsePlainInt() {
+		int i = tokenStart;
+		boolean negative = false;
+		if (i < tokenEnd && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		if (i == tokenEnd || tokenEnd - i > 10) {
+			return Long.MIN_VALUE;
+		}
+
+		long value = 0;
+		for (; i < tokenEnd; i++) {
+			if (!isDigit(buffer[i])) {
+				return Long.MIN_VALUE;
+			}
+			value = value * 10 + (buffer[i] - '0');
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			return Long.MIN_VALUE;
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the next token as a double. Plain decimal numbers with few
+	 * enough digits are calculated exactly from the digits, other numbers
+	 * are parsed with a Scanner.
+	 * @return The value
+	 */
+	private double nextDouble() {
+		nextToken();
+		int i = tokenStart;
+		boolean negative = false;
+		if (i < tokenEnd && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0; /* significant digits in the mantissa */
+		int allDigits = 0;
+		int exponent = 0;
+		boolean dot = false;
+		for (; i < tokenEnd; i++) {
+			byte b = buffer[i];
+			if (isDigit(b)) {
+				allDigits++;
+				if (mantissa == 0 && b == '0') {
+					if (dot) {
+						exponent--;
+					}
+					continue;
+				}
+				if (++digits > MAX_FAST_DIGITS) {
+					return slowDouble();
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (dot) {
+					exponent--;
+				}
+			}
+			else if (b == '.' && !dot) {
+				dot = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (allDigits == 0) {
+			return slowDouble();
+		}
+
+		if (i < tokenEnd) { /* exponent part */
+			if (buffer[i] != 'e' && buffer[i] != 'E') {
+				return slowDouble();
+			}
+			i++;
+			boolean negativeExp = false;
+			if (i < tokenEnd && (buffer[i] == '-' || buffer[i] == '+')) {
+				negativeExp = buffer[i] == '-';
+				i++;
+			}
+			if (i == tokenEnd || tokenEnd - i > 3) {
+				return slowDouble();
+			}
+			int exp = 0;
+			for (; i < tokenEnd; i++) {
+				if (!isDigit(buffer[i])) {
+					return slowDouble();
+				}
+				exp = exp * 10 + (buffer[i] - '0');
+			}
+			exponent += negativeExp ? -exp : exp;
+		}
+
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		}
+		else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}
+		else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		}
+		else {
+			return slowDouble();
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses the current token as a double with a Scanner
+	 * @return The value
+	 */
+	private double slowDouble() {
+		return new Scanner(tokenString()).nextDouble();
+	}
+
+	public void close() {
+		try {
+			this.in.close();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+}
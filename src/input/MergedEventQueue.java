@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.List;
+
+/**
+ * Event queue that merges the events of multiple event queues in time
+ * order. The queues implementing {@link PredictableEventQueue} are kept in
+ * an indexed min-heap keyed by their next event's time, so finding the
+ * next event takes O(log n) time instead of asking every queue. The other
+ * queues are checked every time, since their next event's time can change
+ * at any point.
+ * <P>Events with equal times are returned in the order of their queues in
+ * the list given to the constructor. The member queues must not be read
+ * directly while they're in this queue; if the time of a member queue
+ * changes some other way than by reading its events,
+ * {@link #queueChanged(EventQueue)} must be called.</P>
+ */
+public class MergedEventQueue implements EventQueue {
+	private static final long serialVersionUID = 1L;
+	private EventQueue[] queues;
+	/** next event times of the queues (valid for heap queues) */
+	private double[] times;
+	/** indexes of the queues in heap order */
+	private int[] heap;
+	/** position of each queue in the heap (-1 if not in the heap) */
+	private int[] positions;
+	private int heapSize;
+	/** indexes of the queues that are not in the heap */
+	private int[] unindexed;
+
+	/**
+	 * Creates a merged queue of the given queues
+	 * @param queues The queues to merge. The order of the queues defines
+	 * the order of simultaneous events.
+	 */
+	public MergedEventQueue(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+
+		int nrofUnindexed = 0;
+		for (int i=0; i < n; i++) {
+			if (!(this.queues[i] instanceof PredictableEventQueue)) {
+				nrofUnindexed++;
+			}
+		}
+		this.unindexed = new int[nrofUnindexed];
+
+		nrofUnindexed = 0;
+		for (int i=0; i < n; i++) {
+			if (this.queues[i] instanceof PredictableEventQueue) {
+				times[i] = this.queues[i].nextEventsTime();
+				positions[i] = heapSize;
+				heap[heapSize++] = i;
+				siftUp(positions[i]);
+			}
+			else {
+				positions[i] = -1;
+				unindexed[nrofUnindexed++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the queue that has the next event or -1 if
+	 * there are no queues
+	 */
+	private int nextQueue() {
+		int next = -1;
+		double earliest = Double.MAX_VALUE;
+		if (heapSize > 0) {
+			next = heap[0];
+			earliest = times[next];
+		}
+
+		for (int i : unindexed) {
+			double time = queues[i].nextEventsTime();
+			if (next == -1 || time < earliest ||
+					(time == earliest && i < next)) {
+				next = i;
+				earliest = time;
+			}
+		}
+		return next;
+	}
+
+	public ExternalEvent nextEvent() {
+		int next = nextQueue();
+		if (next == -1) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		ExternalEvent ee = queues[next].nextEvent();
+		if (positions[next] != -1) {
+			times[next] = queues[next].nextEventsTime();
+			siftDown(positions[next]);
+		}
+		return ee;
+	}
+
+	public double nextEventsTime() {
+		int next = nextQueue();
+		if (next == -1) {
+			return Double.MAX_VALUE;
+		}
+		return positions[next] != -1 ? times[next] :
+			queues[next].nextEventsTime();
+	}
+
+	/**
+	 * Updates the position of a queue whose next event time has changed
+	 * without reading its events through this queue
+	 * @param queue The queue that has changed
+	 */
+	public void queueChanged(EventQueue queue) {
+		for (int i=0; i < queues.length; i++) {
+			if (queues[i] == queue && positions[i] != -1) {
+				times[i] = queue.nextEventsTime();
+				siftUp(positions[i]);
+				siftDown(positions[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if queue a's next event is before queue b's
+	 */
+	private boolean isBefore(int a, int b) {
+		return times[a] < times[b] || (times[a] == times[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int q = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(q, heap[parent])) {
+				break;
+			}
+			place(heap[parent], pos);
+			pos = parent;
+		}
+		place(q, pos);
+	}
+
+	private void siftDown(int pos) {
+		int q = heap[pos];
+		int half = heapSize >>> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], q)) {
+				break;
+			}
+			place(heap[child], pos);
+			pos = child;
+		}
+		place(q, pos);
+	}
+
+	private void place(int q, int pos) {
+		heap[pos] = q;
+		positions[q] = pos;
+	}
+}
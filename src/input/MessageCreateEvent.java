@@ -12,6 +12,7 @@ import core.World;
  * External event for creating a message.
  */
 public class MessageCreateEvent extends MessageEvent {
+	private static final long serialVersionUID = 1L;
 	private int size;
 	private int responseSize;
 	
@@ -46,6 +47,22 @@ public class MessageCreateEvent extends MessageEvent {
 		from.createNewMessage(m);
 	}
 	
+	/**
+	 * Returns the size of the message
+	 * @return the size of the message
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the requested response
+	 * @return the size of the response or 0 if no response is requested
+	 */
+	public int getResponseSize() {
+		return this.responseSize;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
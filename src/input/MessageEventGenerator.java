@@ -14,7 +14,8 @@ import core.SettingsError;
  * message creation patterns whose message size and inter-message intervals can
  * be configured.
  */
-public class MessageEventGenerator implements EventQueue {
+public class MessageEventGenerator implements PredictableEventQueue {
+	private static final long serialVersionUID = 1L;
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
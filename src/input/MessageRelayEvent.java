@@ -12,6 +12,7 @@ import core.World;
  * hosts (start and possible abort or delivery).
  */
 public class MessageRelayEvent extends MessageEvent {
+	private static final long serialVersionUID = 1L;
 	private int stage;
 	
 	/** Message relay stage constant for start of sending */
@@ -38,6 +39,14 @@ public class MessageRelayEvent extends MessageEvent {
 		this.stage = stage;
 	}
 	
+	/**
+	 * Returns the stage of the event
+	 * @return {@link #SENDING}, {@link #TRANSFERRED}, or {@link #ABORTED}
+	 */
+	public int getStage() {
+		return this.stage;
+	}
+
 	/**
 	 * Relays the message
 	 */
@@ -23,6 +23,7 @@ import core.SettingsError;
  * @see MessageEventGenerator
  */
 public class OneFromEachMessageGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 1L;
 	private List<Integer> fromIds;
 	
 	public OneFromEachMessageGenerator(Settings s) {
@@ -0,0 +1,16 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+/**
+ * Marker interface for event queues whose next event's time changes only
+ * when {@link #nextEvent()} is called. {@link MergedEventQueue} keeps these
+ * queues in a heap instead of asking their next event time after every
+ * event. Queues that can get new events from elsewhere (e.g., from other
+ * threads or from simulation objects) must not implement this interface.
+ */
+public interface PredictableEventQueue extends EventQueue {
+
+}
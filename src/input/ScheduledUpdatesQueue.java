@@ -1,55 +1,57 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
- * at the specified simulation time. Multiple updates at the same time 
+ * at the specified simulation time. Multiple updates at the same time
  * are merged to a single update.
+ * <P>The update times are kept in a binary min-heap of primitive doubles.
+ * A request for a time that is already in the queue is ignored, so the
+ * heap contains every time only once.</P>
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
-	
+	private static final long serialVersionUID = 1L;
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** the update times in heap order */
+	private double[] heap;
+	/** number of times in the heap */
+	private int size;
+
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.heap = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
-	
+
 	/**
 	 * Returns the next scheduled event or event with time Double.MAX_VALUE
-	 * if there aren't any. 
+	 * if there aren't any.
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
-		}
-		
-		return event;
+
+		return new ExternalEvent(removeFirst());
 	}
-	
+
 	/**
 	 * Returns the next scheduled event's time or Double.MAX_VALUE if there
 	 * aren't any events left
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return this.size == 0 ? Double.MAX_VALUE : this.heap[0];
 	}
 
 	/**
@@ -57,49 +59,81 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		if (contains(simTime, 0)) {
+			return; // update with the given time exists -> no need for new
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, this.size * 2);
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+
+		/* sift up */
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.heap[parent] <= simTime) {
+				break;
+			}
+			this.heap[i] = this.heap[parent];
+			i = parent;
 		}
+		this.heap[i] = simTime;
 	}
-	
+
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Removes the first (earliest) time from the heap
+	 * @return The removed time
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+	private double removeFirst() {
+		double first = this.heap[0];
+		double last = this.heap[--this.size];
+
+		/* sift down */
+		int i = 0;
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < this.size &&
+					this.heap[child + 1] < this.heap[child]) {
+				child++;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (last <= this.heap[child]) {
+				break;
 			}
+			this.heap[i] = this.heap[child];
+			i = child;
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		this.heap[i] = last;
+
+		return first;
 	}
-	
+
+	/**
+	 * Checks if the given time is in the sub-heap rooted at the given
+	 * index. Sub-heaps whose root is later than the time are skipped.
+	 * @param time The time to look for
+	 * @param i Index of the sub-heap's root
+	 * @return True if the time is in the sub-heap, false if not
+	 */
+	private boolean contains(double time, int i) {
+		if (i >= this.size || this.heap[i] > time) {
+			return false;
+		}
+		if (this.heap[i] == time) {
+			return true;
+		}
+		return contains(time, 2 * i + 1) || contains(time, 2 * i + 2);
+	}
+
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
-		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		double[] times = Arrays.copyOf(this.heap, this.size);
+		Arrays.sort(times);
+		String str = "updates @ " + nextEventsTime();
+
+		for (int i=1; i < times.length; i++) {
+			str += ", " + times[i];
 		}
-		
-		return times;
+
+		return str;
 	}
 }
@@ -5,8 +5,11 @@
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -33,13 +36,43 @@ import core.Settings;
  * connectivity. 
  * </P>
  * <P>
+ * <P>The cells are indexed by a single integer (row-major order) and each
+ * cell keeps its interfaces in an array where an interface is removed by
+ * moving the cell's last interface to its slot. The cell and slot of every
+ * interface are stored in arrays indexed by the interface's address, so
+ * updating the location of an interface doesn't need any lookups or
+ * allocations. The visitor queries
+ * ({@link #visitNearInterfaces(NetworkInterface, InterfaceVisitor)} and
+ * {@link #visitNearPairs(InterfacePairVisitor)}) don't allocate anything;
+ * the latter goes through only half of the neighbor cells of each cell
+ * so every pair is found exactly once.
+ * </P>
+ * <P>
  * <strong>Note:</strong> this class does NOT support negative
  * coordinates. Also, it makes sense to normalize the coordinates to start
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	private static final long serialVersionUID = 1L;
+	/** how large array is initially chosen for a cell */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+	/** cell index value of interfaces that are not in the grid */
+	private static final int NO_CELL = -1;
+
+	/** interfaces of each cell (null for cells that have never had any) */
+	private NetworkInterface[][] cellInterfaces;
+	/** number of interfaces in each cell */
+	private int[] cellSizes;
+	/** cell index of each interface, indexed by the interface's address */
+	private int[] interfaceCells;
+	/** slot of each interface in its cell, indexed by the address */
+	private int[] interfaceSlots;
+	/** all interfaces in the grid */
+	private List<NetworkInterface> allInterfaces;
+	/** offsets from a cell's index to the cell itself and all its neighbors*/
+	private int[] fullStencil;
+	/** offsets to the neighbors that come after the cell in the index order*/
+	private int[] halfStencil;
 	private int cellSize;
 	private int rows;
 	private int cols;
@@ -68,19 +101,27 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param cellSize Cell's edge's length (must be larger than the largest
 	 * 	radio coverage's diameter)
 	 */
-	private ConnectivityGrid(int cellSize) {
+	ConnectivityGrid(int cellSize) {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
-		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
 		this.cellSize = cellSize;
 
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		// leave empty cells on both sides to make neighbor search easier 
+		int width = cols + 2;
+		int nrofCells = (rows + 2) * width;
+		this.cellInterfaces = new NetworkInterface[nrofCells][];
+		this.cellSizes = new int[nrofCells];
+
+		this.fullStencil = new int[] {
+			-width - 1, -width, -width + 1,
+			-1, 0, 1,
+			width - 1, width, width + 1
+		};
+		this.halfStencil = new int[] {1, width - 1, width, width + 1};
+
+		this.interfaceCells = new int[0];
+		this.interfaceSlots = new int[0];
+		this.allInterfaces = new ArrayList<NetworkInterface>();
 	}
 
 	/**
@@ -107,9 +148,20 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		int address = ni.getAddress();
+		if (address >= interfaceCells.length) {
+			int newSize = Math.max(address + 1, interfaceCells.length * 2);
+			int oldSize = interfaceCells.length;
+			interfaceCells = Arrays.copyOf(interfaceCells, newSize);
+			interfaceSlots = Arrays.copyOf(interfaceSlots, newSize);
+			Arrays.fill(interfaceCells, oldSize, newSize, NO_CELL);
+		}
+		else if (interfaceCells[address] != NO_CELL) {
+			return; /* already in the grid */
+		}
+
+		addToCell(ni, cellFromCoord(ni.getLocation()));
+		allInterfaces.add(ni);
 	}
 
 	/** 
@@ -117,11 +169,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		if (!contains(ni)) {
+			return;
 		}
-		ginterfaces.remove(ni);
+		removeFromCell(ni);
+		interfaceCells[ni.getAddress()] = NO_CELL;
+		allInterfaces.remove(ni);
 	}
 
 	/**
@@ -139,48 +192,75 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int newCell = cellFromCoord(ni.getLocation());
 
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		if (newCell != interfaceCells[ni.getAddress()]) {
+			removeFromCell(ni);
+			addToCell(ni, newCell);
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Returns true if the interface is in the grid
+	 * @param ni The interface
+	 * @return true if the interface is in the grid
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	private boolean contains(NetworkInterface ni) {
+		int address = ni.getAddress();
+		return address < interfaceCells.length &&
+			interfaceCells[address] != NO_CELL;
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Puts an interface to the last slot of a cell
+	 * @param ni The interface
+	 * @param cell Index of the cell
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	private void addToCell(NetworkInterface ni, int cell) {
+		NetworkInterface[] slots = cellInterfaces[cell];
+		int size = cellSizes[cell];
+		if (slots == null) {
+			slots = new NetworkInterface[EXPECTED_INTERFACE_COUNT];
+			cellInterfaces[cell] = slots;
+		}
+		else if (size == slots.length) {
+			slots = Arrays.copyOf(slots, size * 2);
+			cellInterfaces[cell] = slots;
+		}
+
+		slots[size] = ni;
+		cellSizes[cell] = size + 1;
+		interfaceCells[ni.getAddress()] = cell;
+		interfaceSlots[ni.getAddress()] = size;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
+	 * Removes an interface from its current cell by moving the last
+	 * interface of the cell to its slot
+	 * @param ni The interface
+	 */
+	private void removeFromCell(NetworkInterface ni) {
+		int cell = interfaceCells[ni.getAddress()];
+		int slot = interfaceSlots[ni.getAddress()];
+		NetworkInterface[] slots = cellInterfaces[cell];
+		int last = cellSizes[cell] - 1;
+
+		assert slots[slot] == ni : "interface " + ni + 
+			" not found from cell " + cell;
+
+		NetworkInterface moved = slots[last];
+		slots[slot] = moved;
+		interfaceSlots[moved.getAddress()] = slot;
+		slots[last] = null;
+		cellSizes[cell] = last;
+	}
+
+	/**
+	 * Get the index of the cell having the specific coordinates
 	 * @param c Coordinates
-	 * @return The cell
+	 * @return Index of the cell
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellFromCoord(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1; 
 		int col = (int)(c.getX()/cellSize) + 1;
@@ -188,104 +268,103 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * (cols + 2) + col;
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		return Collections.unmodifiableList(allInterfaces);
 	}
 
 	/**
 	 * Returns all interfaces using the same technology and channel that are in
-	 * neighboring cells
+	 * neighboring cells. This creates a new collection on every call; use
+	 * {@link #visitNearInterfaces(NetworkInterface, InterfaceVisitor)} in
+	 * performance critical code.
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
-		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+		final ArrayList<NetworkInterface> ni = 
+			new ArrayList<NetworkInterface>();
+
+		visitNearInterfaces(netinterf, new InterfaceVisitor() {
+			public void visit(NetworkInterface other) {
+				ni.add(other);
 			}
-		}
+		});
 		return ni;
 	}
 
-
 	/**
-	 * Returns a string representation of the ConnectivityCells object
-	 * @return a string representation of the ConnectivityCells object
+	 * Calls the visitor for all interfaces using the same technology and
+	 * channel that are in the cell of the given interface's location or in
+	 * the neighboring cells (including the interface itself). Nothing is
+	 * done if the interface is not in the grid.
 	 */
-	public String toString() {
-		return getClass().getSimpleName() + " of size " + 
-			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	@Override
+	public void visitNearInterfaces(NetworkInterface netinterf,
+			InterfaceVisitor visitor) {
+		if (!contains(netinterf)) {
+			return;
+		}
+		visitInterfacesNear(netinterf.getLocation(), visitor);
 	}
 
 	/**
-	 * A single cell in the cell grid. Contains the interfaces that are 
-	 * currently in that part of the grid.
+	 * Calls the visitor for all interfaces in the grid that are in the cell
+	 * of the given location or in the neighboring cells
+	 * @param c The location
+	 * @param visitor The visitor
 	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
+	void visitInterfacesNear(Coord c, InterfaceVisitor visitor) {
+		int center = cellFromCoord(c);
+		for (int i=0; i < fullStencil.length; i++) {
+			int cell = center + fullStencil[i];
+			NetworkInterface[] slots = cellInterfaces[cell];
+			for (int j=0, n = cellSizes[cell]; j < n; j++) {
+				visitor.visit(slots[j]);
+			}
 		}
+	}
 
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
-		}
+	/**
+	 * Calls the visitor once for every pair of interfaces that are in the
+	 * same or neighboring cells. Every interface is paired only with the
+	 * interfaces after it in the same cell and with the interfaces in the
+	 * neighbor cells that come after its cell in the index order, so each
+	 * pair is visited exactly once. The interfaces' cells are the ones
+	 * they were put in the last time their location was updated.
+	 */
+	@Override
+	public void visitNearPairs(InterfacePairVisitor visitor) {
+		for (int k=0, nrof = allInterfaces.size(); k < nrof; k++) {
+			NetworkInterface ni = allInterfaces.get(k);
+			int center = interfaceCells[ni.getAddress()];
 
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
-		}
+			NetworkInterface[] slots = cellInterfaces[center];
+			for (int j = interfaceSlots[ni.getAddress()] + 1, 
+					n = cellSizes[center]; j < n; j++) {
+				visitor.visit(ni, slots[j]);
+			}
 
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
-			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces.toString();
+			for (int i=0; i < halfStencil.length; i++) {
+				int cell = center + halfStencil[i];
+				slots = cellInterfaces[cell];
+				for (int j=0, n = cellSizes[cell]; j < n; j++) {
+					visitor.visit(ni, slots[j]);
+				}
+			}
 		}
+	}
 
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
-		}
+	/**
+	 * Returns a string representation of the ConnectivityCells object
+	 * @return a string representation of the ConnectivityCells object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " + 
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
 	}
-	
-}
\ No newline at end of file
+}
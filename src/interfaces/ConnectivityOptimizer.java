@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import core.NetworkInterface;
@@ -12,7 +13,8 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -45,4 +47,38 @@ abstract public class ConnectivityOptimizer {
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Calls the visitor for all network interfaces that might be located so
+	 * that they can be connected with the network interface (i.e., the same
+	 * interfaces {@link #getNearInterfaces(NetworkInterface)} returns).
+	 * This implementation uses getNearInterfaces; subclasses should override
+	 * this if they can do it without creating a new collection.
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call for each interface within proximity
+	 */
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			visitor.visit(other);
+		}
+	}
+
+	/**
+	 * Calls the visitor once for every unordered pair of registered network
+	 * interfaces that might be located so that they can be connected. This
+	 * implementation goes through the near interfaces of every interface
+	 * and skips the pairs that are found from the other end (i.e., where
+	 * the other interface has a smaller address).
+	 * @param visitor The visitor to call for each pair
+	 */
+	public void visitNearPairs(InterfacePairVisitor visitor) {
+		for (NetworkInterface ni : getAllInterfaces()) {
+			for (NetworkInterface other : getNearInterfaces(ni)) {
+				if (ni.getAddress() < other.getAddress()) {
+					visitor.visit(ni, other);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import core.NetworkInterface;
+
+/**
+ * Connectivity optimizer for interfaces with different transmit ranges.
+ * Consists of levels of {@link ConnectivityGrid}s whose cell size doubles
+ * from level to level, starting from the smallest range. Every interface
+ * is put in the finest level whose cell size is at least the interface's
+ * transmit range, so an interface with a short range is not compared with
+ * all the interfaces a long range cell contains. Since two interfaces can
+ * be connected only if they are within the smaller range of the two, the
+ * interfaces near an interface are found from the neighboring cells of its
+ * location on every level.
+ */
+public class HierarchicalGridOptimizer extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
+	/** the grids from the finest to the coarsest */
+	private List<ConnectivityGrid> levels;
+	/** cell size of the coarsest level */
+	private double maxCellSize;
+	/** level of each interface, indexed by the interface's address */
+	private int[] interfaceLevels;
+	/** all interfaces in the order they were added */
+	private List<NetworkInterface> allInterfaces;
+
+	/**
+	 * Creates a new hierarchical grid with the levels for the given ranges.
+	 * More levels are added if interfaces with larger ranges are added.
+	 * @param minRange The smallest transmit range
+	 * @param maxRange The largest transmit range
+	 */
+	public HierarchicalGridOptimizer(double minRange, double maxRange) {
+		this.levels = new ArrayList<ConnectivityGrid>();
+		this.interfaceLevels = new int[0];
+		this.allInterfaces = new ArrayList<NetworkInterface>();
+		this.maxCellSize = Math.ceil(Math.max(minRange, 1));
+		this.levels.add(new ConnectivityGrid((int)maxCellSize));
+		ensureLevelFor(maxRange);
+	}
+
+	/**
+	 * Adds coarser levels until the coarsest level's cells are at least
+	 * as large as the given range
+	 * @param range The range
+	 */
+	private void ensureLevelFor(double range) {
+		while (maxCellSize < range) {
+			maxCellSize *= 2;
+			levels.add(new ConnectivityGrid((int)maxCellSize));
+		}
+	}
+
+	/**
+	 * Returns the finest level whose cell size is at least the given range
+	 * @param range The range
+	 * @return Index of the level
+	 */
+	private int levelFor(double range) {
+		ensureLevelFor(range);
+		int level = levels.size() - 1;
+		double cellSize = maxCellSize;
+		while (level > 0 && cellSize / 2 >= range) {
+			cellSize /= 2;
+			level--;
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the level of the interface
+	 * @param ni The interface
+	 * @return Index of the level or -1 if the interface hasn't been added
+	 */
+	private int levelOf(NetworkInterface ni) {
+		int address = ni.getAddress();
+		return (address < interfaceLevels.length ? 
+				interfaceLevels[address] : -1);
+	}
+
+	@Override
+	public void addInterface(NetworkInterface ni) {
+		if (levelOf(ni) != -1) {
+			return;
+		}
+		int address = ni.getAddress();
+		if (address >= interfaceLevels.length) {
+			int oldSize = interfaceLevels.length;
+			interfaceLevels = Arrays.copyOf(interfaceLevels,
+					Math.max(address + 1, oldSize * 2));
+			Arrays.fill(interfaceLevels, oldSize, interfaceLevels.length, -1);
+		}
+
+		int level = levelFor(ni.getTransmitRange());
+		levels.get(level).addInterface(ni);
+		interfaceLevels[address] = level;
+		allInterfaces.add(ni);
+	}
+
+	@Override
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface ni : interfaces) {
+			addInterface(ni);
+		}
+	}
+
+	/**
+	 * Updates the interface's location in its grid, and moves it to another
+	 * level if its transmit range has changed so that it belongs there
+	 */
+	@Override
+	public void updateLocation(NetworkInterface ni) {
+		int oldLevel = levelOf(ni);
+		int level = levelFor(ni.getTransmitRange());
+		if (level == oldLevel) {
+			levels.get(level).updateLocation(ni);
+		}
+		else {
+			levels.get(oldLevel).removeInterface(ni);
+			levels.get(level).addInterface(ni);
+			interfaceLevels[ni.getAddress()] = level;
+		}
+	}
+
+	@Override
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		final List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+		visitNearInterfaces(ni, new InterfaceVisitor() {
+			public void visit(NetworkInterface other) {
+				near.add(other);
+			}
+		});
+		return near;
+	}
+
+	/**
+	 * Calls the visitor for the interfaces in the cell of the interface's
+	 * location and the neighboring cells on every level (including the
+	 * interface itself)
+	 */
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		if (levelOf(ni) == -1) {
+			return;
+		}
+		for (int i=0, n = levels.size(); i < n; i++) {
+			levels.get(i).visitInterfacesNear(ni.getLocation(), visitor);
+		}
+	}
+
+	/**
+	 * Calls the visitor once for every near pair of interfaces. The pairs
+	 * within a level are found with the level grid's half-neighborhood
+	 * search, and the pairs across levels by searching the coarser levels
+	 * around the location of every interface on a finer level.
+	 */
+	@Override
+	public void visitNearPairs(InterfacePairVisitor visitor) {
+		PairingVisitor pairing = new PairingVisitor(visitor);
+
+		for (int level=0, n = levels.size(); level < n; level++) {
+			ConnectivityGrid grid = levels.get(level);
+			grid.visitNearPairs(visitor);
+
+			for (NetworkInterface ni : grid.getAllInterfaces()) {
+				pairing.first = ni;
+				for (int coarser = level + 1; coarser < n; coarser++) {
+					levels.get(coarser).visitInterfacesNear(ni.getLocation(),
+							pairing);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(allInterfaces);
+	}
+
+	/**
+	 * Returns a string representation of the optimizer
+	 * @return a string representation of the optimizer
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + levels.size() + 
+			" levels: " + levels;
+	}
+
+	/**
+	 * Visitor that pairs the visited interfaces with a fixed interface
+	 */
+	private static class PairingVisitor implements InterfaceVisitor {
+		private InterfacePairVisitor pairVisitor;
+		private NetworkInterface first;
+
+		public PairingVisitor(InterfacePairVisitor pairVisitor) {
+			this.pairVisitor = pairVisitor;
+		}
+
+		public void visit(NetworkInterface ni) {
+			pairVisitor.visit(first, ni);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import core.NetworkInterface;
+
+/**
+ * Callback interface for going through the pairs of network interfaces
+ * that are close enough to be possibly connected
+ * (see {@link ConnectivityOptimizer#visitNearPairs(InterfacePairVisitor)}).
+ */
+public interface InterfacePairVisitor {
+
+	/**
+	 * Method is called once for every unordered pair of interfaces the
+	 * query finds. The order of the two interfaces carries no meaning.
+	 * @param ni1 The first interface of the pair
+	 * @param ni2 The second interface of the pair
+	 */
+	public void visit(NetworkInterface ni1, NetworkInterface ni2);
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import core.NetworkInterface;
+
+/**
+ * Callback interface for going through the network interfaces found by a
+ * {@link ConnectivityOptimizer} query without collecting them to a
+ * temporary collection.
+ */
+public interface InterfaceVisitor {
+
+	/**
+	 * Method is called for every interface the query finds
+	 * @param ni The found interface
+	 */
+	public void visit(NetworkInterface ni);
+}
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
@@ -19,6 +17,7 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
 
@@ -95,11 +94,34 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		connectToNearInterfaces();
+
+		updateTransmitSpeed();
+	}
+
+	/**
+	 * Returns true; the connectivity can be updated in two phases
+	 * @return true
+	 */
+	@Override
+	public boolean supportsTwoPhaseUpdate() {
+		return true;
+	}
 
+	/**
+	 * Updates the transmit speed after the connections have been updated
+	 */
+	@Override
+	public void finishLinkUpdate() {
+		super.finishLinkUpdate();
+		updateTransmitSpeed();
+	}
+
+	/**
+	 * Calculates the current transmit speed based on the number of ongoing
+	 * transmissions and updates the connections' speeds.
+	 */
+	private void updateTransmitSpeed() {
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
 		numberOfTransmissions = 0;
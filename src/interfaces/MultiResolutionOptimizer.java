@@ -0,0 +1,311 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import movement.MovementModel;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
+
+/**
+ * Connectivity optimizer that picks the structure used for finding the
+ * near interfaces separately for every interface type. The structure is
+ * either a uniform grid ({@link ConnectivityGrid}), a hierarchical grid
+ * for interfaces with different ranges ({@link HierarchicalGridOptimizer})
+ * or a sweep and prune over the interfaces sorted by their x coordinate
+ * for ranges that are large compared to the world
+ * ({@link SweepAndPruneOptimizer}). The structure is chosen when the
+ * optimizer is used for the first time (i.e., after all the hosts have
+ * been created) and again if an interface's range grows larger than any
+ * range was then.
+ */
+public class MultiResolutionOptimizer extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Connectivity index -setting id ({@value}) in the
+	 * {@link World#SETTINGS_NS} name space. Defines which structure is used
+	 * for finding the interfaces that are close enough to be connected.
+	 * Valid values are {@link #INDEX_GRID} (the per interface type
+	 * {@link ConnectivityGrid} sized by the range of the first interface),
+	 * {@link #INDEX_AUTO} (the structure is chosen separately for every 
+	 * interface type based on the transmit ranges and the host density), 
+	 * {@link #INDEX_UNIFORM_GRID}, {@link #INDEX_HIERARCHICAL_GRID} and 
+	 * {@link #INDEX_SWEEP_AND_PRUNE}. Default is {@link #DEF_INDEX}.
+	 */
+	public static final String CONNECTIVITY_INDEX_S = "connectivityIndex";
+	/** connectivity index value for the default grid ({@value}) */
+	public static final String INDEX_GRID = "grid";
+	/** connectivity index value for automatic choice ({@value}) */
+	public static final String INDEX_AUTO = "auto";
+	/** connectivity index value for a uniform grid sized by the largest
+	 * range and {@link World#CELL_SIZE_MULT_S} ({@value}) */
+	public static final String INDEX_UNIFORM_GRID = "uniformGrid";
+	/** connectivity index value for a hierarchical grid ({@value}) */
+	public static final String INDEX_HIERARCHICAL_GRID = "hierarchicalGrid";
+	/** connectivity index value for sweep and prune ({@value}) */
+	public static final String INDEX_SWEEP_AND_PRUNE = "sweepAndPrune";
+	/** default value for the connectivity index setting ({@value}) */
+	public static final String DEF_INDEX = INDEX_GRID;
+
+	/** if the largest range is more than this many times the smallest
+	 * range, a hierarchical grid is chosen automatically */
+	public static final double HIERARCHY_RANGE_RATIO = 2.0;
+	/** max number of cells in an automatically chosen uniform grid */
+	public static final double MAX_GRID_CELLS = 1 << 22;
+
+	private static String indexType;
+	/** the cell size multiplier or 0 if it is not set */
+	private static int cellSizeMult;
+	private static int worldSizeX;
+	private static int worldSizeY;
+	/** optimizers for each interface type */
+	private static HashMap<String, MultiResolutionOptimizer> optimizers;
+
+	static {
+		DTNSim.registerForReset(
+				MultiResolutionOptimizer.class.getCanonicalName());
+		reset();
+	}
+
+	/** the structure type to use (or auto) */
+	private String type;
+	/** the structure in use, or null if it hasn't been chosen yet */
+	private ConnectivityOptimizer index;
+	/** largest transmit range when the structure was chosen */
+	private double indexedRange;
+	/** all interfaces in the order they were added */
+	private List<NetworkInterface> allInterfaces;
+	/** the same interfaces as a set (for ignoring repeated additions) */
+	private Set<NetworkInterface> addedInterfaces;
+
+	public static void reset() {
+		optimizers = new HashMap<String, MultiResolutionOptimizer>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+
+		s.setNameSpace(World.SETTINGS_NS);
+		indexType = s.contains(CONNECTIVITY_INDEX_S) ? 
+				s.getSetting(CONNECTIVITY_INDEX_S) : DEF_INDEX;
+		cellSizeMult = 0;
+		if (s.contains(World.CELL_SIZE_MULT_S)) {
+			cellSizeMult = s.getInt(World.CELL_SIZE_MULT_S);
+			if (cellSizeMult < 2) {
+				throw new SettingsError("Too small value (" + cellSizeMult +
+						") for " + World.SETTINGS_NS + "." +
+						World.CELL_SIZE_MULT_S);
+			}
+		}
+
+		if (!indexType.equals(INDEX_GRID)) {
+			checkType(indexType);
+		}
+	}
+
+	/**
+	 * Checks that the index type is one of the structures or auto
+	 * @param type The type
+	 * @throws SettingsError if the type is not valid
+	 */
+	private static void checkType(String type) {
+		if (!type.equals(INDEX_AUTO) && !type.equals(INDEX_UNIFORM_GRID) &&
+				!type.equals(INDEX_HIERARCHICAL_GRID) &&
+				!type.equals(INDEX_SWEEP_AND_PRUNE)) {
+			throw new SettingsError("Invalid value '" + type + "' for " + 
+					World.SETTINGS_NS + "." + CONNECTIVITY_INDEX_S);
+		}
+	}
+
+	/**
+	 * Returns the connectivity optimizer that the interfaces of the given
+	 * type should use, according to the connectivity index setting
+	 * @param interfaceType The type of the interface
+	 * @param range Transmit range of the interface
+	 * @return The connectivity optimizer for the interface type
+	 */
+	public static ConnectivityOptimizer getOptimizer(String interfaceType,
+			double range) {
+		if (indexType.equals(INDEX_GRID)) {
+			return ConnectivityGrid.ConnectivityGridFactory(
+					interfaceType.hashCode(), range);
+		}
+
+		MultiResolutionOptimizer mro = optimizers.get(interfaceType);
+		if (mro == null) {
+			mro = new MultiResolutionOptimizer(indexType);
+			optimizers.put(interfaceType, mro);
+		}
+		return mro;
+	}
+
+	/**
+	 * Creates a new optimizer
+	 * @param type Type of the structure to use, or {@link #INDEX_AUTO}
+	 */
+	public MultiResolutionOptimizer(String type) {
+		checkType(type);
+		this.type = type;
+		this.allInterfaces = new ArrayList<NetworkInterface>();
+		this.addedInterfaces = Collections.newSetFromMap(
+				new IdentityHashMap<NetworkInterface, Boolean>());
+	}
+
+	/**
+	 * Returns the structure in use (chooses it if it hasn't been chosen yet)
+	 * @return The structure
+	 */
+	public ConnectivityOptimizer getIndex() {
+		if (this.index == null) {
+			buildIndex();
+		}
+		return this.index;
+	}
+
+	/**
+	 * Chooses the structure and adds all the interfaces to it
+	 */
+	private void buildIndex() {
+		double minRange = Double.MAX_VALUE;
+		double maxRange = 0;
+		for (NetworkInterface ni : allInterfaces) {
+			minRange = Math.min(minRange, ni.getTransmitRange());
+			maxRange = Math.max(maxRange, ni.getTransmitRange());
+		}
+		if (allInterfaces.isEmpty()) {
+			minRange = maxRange = 1;
+		}
+
+		String chosen = this.type;
+		if (chosen.equals(INDEX_AUTO)) {
+			chosen = chooseType(minRange, maxRange, allInterfaces.size());
+		}
+
+		if (chosen.equals(INDEX_HIERARCHICAL_GRID)) {
+			this.index = new HierarchicalGridOptimizer(minRange, maxRange);
+		}
+		else if (chosen.equals(INDEX_SWEEP_AND_PRUNE)) {
+			this.index = new SweepAndPruneOptimizer();
+		}
+		else {
+			this.index = new ConnectivityGrid(
+					(int)Math.ceil(uniformCellSize(maxRange)));
+		}
+		this.indexedRange = maxRange;
+		this.index.addInterfaces(allInterfaces);
+	}
+
+	/**
+	 * Returns the cell size of a uniform grid for the given range
+	 * @param maxRange The largest transmit range
+	 * @return The range multiplied by the cell size multiplier setting, if
+	 * it is set, or the range itself otherwise
+	 */
+	private static double uniformCellSize(double maxRange) {
+		double size = Math.max(maxRange, 1);
+		return (cellSizeMult > 0 ? size * cellSizeMult : size);
+	}
+
+	/**
+	 * Chooses the structure for the given ranges and number of interfaces.
+	 * A hierarchical grid is chosen if the ranges differ more than
+	 * {@link #HIERARCHY_RANGE_RATIO}. Otherwise the expected number of
+	 * interfaces checked per query is compared: a uniform grid checks the
+	 * 3x3 cells around the interface and sweep and prune checks the band
+	 * of the world the range covers on the x axis.
+	 * @param minRange The smallest transmit range
+	 * @param maxRange The largest transmit range
+	 * @param nrofInterfaces Number of interfaces
+	 * @return The structure type
+	 */
+	public static String chooseType(double minRange, double maxRange,
+			int nrofInterfaces) {
+		if (maxRange > HIERARCHY_RANGE_RATIO * minRange) {
+			return INDEX_HIERARCHICAL_GRID;
+		}
+
+		double cellSize = uniformCellSize(maxRange);
+		double area = (double)worldSizeX * worldSizeY;
+		double nrofCells = (worldSizeX / cellSize + 3) * 
+			(worldSizeY / cellSize + 3);
+		double gridCost = 9 + 
+			nrofInterfaces * Math.min(1, 9 * cellSize * cellSize / area);
+		double sweepCost = Math.log(nrofInterfaces + 1) / Math.log(2) + 
+			nrofInterfaces * Math.min(1, 2 * maxRange / worldSizeX);
+
+		if (nrofCells > MAX_GRID_CELLS || sweepCost < gridCost) {
+			return INDEX_SWEEP_AND_PRUNE;
+		}
+		return INDEX_UNIFORM_GRID;
+	}
+
+	@Override
+	public void addInterface(NetworkInterface ni) {
+		if (!addedInterfaces.add(ni)) {
+			return;
+		}
+		allInterfaces.add(ni);
+		if (this.index != null) {
+			this.index.addInterface(ni);
+		}
+	}
+
+	@Override
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface ni : interfaces) {
+			addInterface(ni);
+		}
+	}
+
+	@Override
+	public void updateLocation(NetworkInterface ni) {
+		if (this.index != null && ni.getTransmitRange() > indexedRange) {
+			this.index = null; /* choose again for the new ranges */
+		}
+		getIndex().updateLocation(ni);
+	}
+
+	@Override
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		return getIndex().getNearInterfaces(ni);
+	}
+
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		getIndex().visitNearInterfaces(ni, visitor);
+	}
+
+	@Override
+	public void visitNearPairs(InterfacePairVisitor visitor) {
+		getIndex().visitNearPairs(visitor);
+	}
+
+	@Override
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(allInterfaces);
+	}
+
+	/**
+	 * Returns a string representation of the optimizer
+	 * @return a string representation of the optimizer
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " (" + type + ") using " + 
+			this.index;
+	}
+}
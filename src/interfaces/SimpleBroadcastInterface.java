@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
@@ -17,6 +15,7 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
@@ -84,11 +83,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		connectToNearInterfaces();
 	}
 
 	/** 
@@ -110,6 +105,15 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Returns true; the connectivity can be updated in two phases
+	 * @return true
+	 */
+	@Override
+	public boolean supportsTwoPhaseUpdate() {
+		return true;
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import core.Coord;
+import core.NetworkInterface;
+
+/**
+ * Connectivity optimizer that keeps the interfaces sorted by their x
+ * coordinate. The interfaces near an interface are found with a binary
+ * search of the x coordinate band the interface's transmit range covers
+ * (and pruning the ones whose y coordinate is too far). When an interface
+ * moves, it is moved to its new place in the order by shifting its
+ * neighbors in the array, which is cheap since interfaces move only
+ * a little between updates. This works better than a grid when the
+ * transmit range is large compared to the world size (i.e., when grid
+ * cells would contain most of the interfaces anyway).
+ */
+public class SweepAndPruneOptimizer extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
+	/** how large arrays are initially chosen */
+	private static final int INITIAL_SIZE = 16;
+
+	/** the interfaces ordered by their x coordinate */
+	private NetworkInterface[] sorted;
+	/** the x coordinates of the sorted interfaces at their last update */
+	private double[] xs;
+	/** the y coordinates of the sorted interfaces at their last update */
+	private double[] ys;
+	/** number of interfaces */
+	private int size;
+	/** index of each interface in the sorted array, by address (or -1) */
+	private int[] positions;
+	/** all interfaces in the order they were added */
+	private List<NetworkInterface> allInterfaces;
+
+	/**
+	 * Creates a new empty sweep and prune optimizer
+	 */
+	public SweepAndPruneOptimizer() {
+		this.sorted = new NetworkInterface[INITIAL_SIZE];
+		this.xs = new double[INITIAL_SIZE];
+		this.ys = new double[INITIAL_SIZE];
+		this.positions = new int[0];
+		this.size = 0;
+		this.allInterfaces = new ArrayList<NetworkInterface>();
+	}
+
+	@Override
+	public void addInterface(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address >= positions.length) {
+			int oldSize = positions.length;
+			positions = Arrays.copyOf(positions,
+					Math.max(address + 1, oldSize * 2));
+			Arrays.fill(positions, oldSize, positions.length, -1);
+		}
+		else if (positions[address] != -1) {
+			return; /* already added */
+		}
+
+		if (size == sorted.length) {
+			sorted = Arrays.copyOf(sorted, size * 2);
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		sorted[size] = ni;
+		xs[size] = ni.getLocation().getX();
+		ys[size] = ni.getLocation().getY();
+		positions[address] = size;
+		size++;
+		allInterfaces.add(ni);
+		shiftToPlace(size - 1);
+	}
+
+	@Override
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface ni : interfaces) {
+			addInterface(ni);
+		}
+	}
+
+	@Override
+	public void updateLocation(NetworkInterface ni) {
+		int index = positions[ni.getAddress()];
+		double x = ni.getLocation().getX();
+		ys[index] = ni.getLocation().getY();
+		if (xs[index] != x) {
+			xs[index] = x;
+			shiftToPlace(index);
+		}
+	}
+
+	/**
+	 * Moves the interface at the given index to its place in the order by
+	 * shifting the interfaces between the old and new places
+	 * @param index Index of the interface whose x coordinate has changed
+	 */
+	private void shiftToPlace(int index) {
+		NetworkInterface ni = sorted[index];
+		double x = xs[index];
+		double y = ys[index];
+		int i = index;
+
+		while (i > 0 && xs[i - 1] > x) {
+			sorted[i] = sorted[i - 1];
+			xs[i] = xs[i - 1];
+			ys[i] = ys[i - 1];
+			positions[sorted[i].getAddress()] = i;
+			i--;
+		}
+		while (i < size - 1 && xs[i + 1] < x) {
+			sorted[i] = sorted[i + 1];
+			xs[i] = xs[i + 1];
+			ys[i] = ys[i + 1];
+			positions[sorted[i].getAddress()] = i;
+			i++;
+		}
+
+		sorted[i] = ni;
+		xs[i] = x;
+		ys[i] = y;
+		positions[ni.getAddress()] = i;
+	}
+
+	/**
+	 * Returns the index of the first interface whose x coordinate is at
+	 * least the given value
+	 * @param x The x coordinate
+	 * @return The index (or size if there are no such interfaces)
+	 */
+	private int firstIndexFrom(double x) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (xs[middle] < x) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		final List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+		visitNearInterfaces(ni, new InterfaceVisitor() {
+			public void visit(NetworkInterface other) {
+				near.add(other);
+			}
+		});
+		return near;
+	}
+
+	/**
+	 * Calls the visitor for all interfaces whose location (at their last
+	 * update) differs from the interface's location by no more than the
+	 * interface's transmit range in both axes (including the interface
+	 * itself). Nothing is done if the interface has not been added.
+	 */
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		if (ni.getAddress() >= positions.length ||
+				positions[ni.getAddress()] == -1) {
+			return;
+		}
+		visitInterfacesNear(ni.getLocation(), ni.getTransmitRange(), visitor);
+	}
+
+	/**
+	 * Calls the visitor for all interfaces whose location at their last
+	 * update is within the square around the given location
+	 * @param c The location
+	 * @param range Half of the square's edge's length
+	 * @param visitor The visitor
+	 */
+	void visitInterfacesNear(Coord c, double range, InterfaceVisitor visitor) {
+		double maxX = c.getX() + range;
+		double minY = c.getY() - range;
+		double maxY = c.getY() + range;
+
+		for (int i = firstIndexFrom(c.getX() - range); 
+				i < size && xs[i] <= maxX; i++) {
+			if (ys[i] >= minY && ys[i] <= maxY) {
+				visitor.visit(sorted[i]);
+			}
+		}
+	}
+
+	/**
+	 * Calls the visitor once for every pair of interfaces whose locations
+	 * differ by no more than the smaller transmit range of the two in both
+	 * axes. The interfaces are swept in the x order and every interface is
+	 * paired with the interfaces after it that are within its range.
+	 */
+	@Override
+	public void visitNearPairs(InterfacePairVisitor visitor) {
+		for (int i=0; i < size; i++) {
+			NetworkInterface ni = sorted[i];
+			double range = ni.getTransmitRange();
+			double maxX = xs[i] + range;
+			double y = ys[i];
+
+			for (int j = i + 1; j < size && xs[j] <= maxX; j++) {
+				NetworkInterface other = sorted[j];
+				double otherRange = other.getTransmitRange();
+				if (xs[j] - xs[i] <= otherRange && 
+						Math.abs(ys[j] - y) <= 
+							Math.min(range, otherRange)) {
+					visitor.visit(ni, other);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(allInterfaces);
+	}
+
+	/**
+	 * Returns a string representation of the optimizer
+	 * @return a string representation of the optimizer
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + size + " interfaces";
+	}
+}
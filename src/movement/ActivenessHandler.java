@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the movement models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** 
 	 * Active times -setting id ({@value}).<BR>
 	 * Syntax: <CODE>start, end</CODE><BR>
@@ -73,7 +75,7 @@ public class ActivenessHandler {
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
 	 */
-	public boolean isActive() {
+	public synchronized boolean isActive() {
 		if (this.activeTimes == null) {
 			return true; // no inactive times 
 		}
@@ -94,10 +96,34 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the next sim time when the activeness may change (i.e., the
+	 * start or the end of the current active time range)
+	 * @return The time of the next change, the current time if the change
+	 * is due already, or Double.MAX_VALUE if there are no more changes 
+	 */
+	public synchronized double nextChangeTime() {
+		if (this.activeTimes == null || this.curRange == null) {
+			return Double.MAX_VALUE; // activeness doesn't change anymore
+		}
+		
+		double time = SimClock.getTime();
+		
+		if (this.curRange.isOut(time)) {
+			return time; // next range is taken into use at the next check 
+		}
+		if (time < this.curRange.start) {
+			return this.curRange.start;
+		}
+		
+		return this.curRange.end;
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
-	private class TimeRange {
+	private class TimeRange implements Serializable {
+		private static final long serialVersionUID = 1L;
 		private double start;
 		private double end;
 		
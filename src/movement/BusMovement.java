@@ -18,6 +18,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class BusMovement extends MapRouteMovement {
+	private static final long serialVersionUID = 1L;
 	
 	private BusControlSystem controlSystem;
 	private int id;
@@ -78,6 +79,15 @@ public class BusMovement extends MapRouteMovement {
 		return new BusMovement(this);
 	}
 
+	/**
+	 * Returns false; busses inform the shared bus control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return false;
+	}
+
 	/**
 	 * Returns unique ID of the bus
 	 * @return unique ID of the bus
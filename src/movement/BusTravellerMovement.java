@@ -27,6 +27,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements 
 	SwitchableMovement, TransportMovement {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -167,6 +168,15 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return new BusTravellerMovement(this);
 	}
 
+	/**
+	 * Returns false; travellers are informed by the shared bus control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return false;
+	}
+
 	public int getState() {
 		return state;
 	}
@@ -12,6 +12,7 @@ import core.Settings;
  * area.
  */
 public class CrowdMovement extends MovementModel {
+    private static final long serialVersionUID = 1L;
 
     /**
      * how many waypoints should there be per path
@@ -72,6 +73,15 @@ public class CrowdMovement extends MovementModel {
         return new CrowdMovement(this);
     }
 
+    /**
+     * Returns true; hosts using this model don't share any modifiable state
+     * @return true
+     */
+    @Override
+    public boolean canMoveInParallel() {
+        return true;
+    }
+
     protected Coord randomCoord() {
         double x = 0, y = 0;
 
@@ -26,6 +26,7 @@ import core.Settings;
  */
 public class EveningActivityMovement extends MapBasedMovement 
 	implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -227,6 +228,15 @@ public class EveningActivityMovement extends MapBasedMovement
 		return new EveningActivityMovement(this);
 	}
 
+	/**
+	 * Returns false; the nodes are grouped by the shared control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return false;
+	}
+
 	/**
 	 * @see SwitchableMovement
 	 */
@@ -4,8 +4,10 @@
  */
 package movement;
 
+import input.BatchPrefetcher;
 import input.ExternalMovementReader;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Queue;
 import core.Coord;
 import core.DTNSim;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.Tuple;
 
@@ -22,17 +25,28 @@ import core.Tuple;
  * Movement model that uses external data of node locations.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/**
+	 * number of time instances to read ahead in a background thread
+	 * -setting id ({@value}). Zero (the default) disables the background
+	 * reading. */
+	public static final String NROF_PREFETCH_S = "nrofPrefetch";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
 	private static String inputFileName;
+	/** background reader of the time instances (null if not used) */
+	private static BatchPrefetcher<Tuple<Double, 
+		List<Tuple<String, Coord>>>> prefetcher;
+	/** time stamp of the latest time instance read by the prefetcher */
+	private static double prefetchedTime;
 	
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
@@ -95,6 +109,16 @@ public class ExternalMovement extends MovementModel {
 					nrofPreload = 1;
 				}
 			}
+			if (s.contains(NROF_PREFETCH_S)) {
+				int nrofPrefetch = s.getInt(NROF_PREFETCH_S);
+				if (nrofPrefetch < 0) {
+					throw new SettingsError("Negative value for " + 
+							s.getFullPropertyName(NROF_PREFETCH_S));
+				}
+				if (nrofPrefetch > 0) {
+					startPrefetching(nrofPrefetch);
+				}
+			}
 		}
 	}
 	
@@ -237,14 +261,53 @@ public class ExternalMovement extends MovementModel {
 		return new ExternalMovement(this);
 	}
 	
+	/**
+	 * Starts reading the time instances in a background thread. After this,
+	 * the reader's movements are read only by the background thread.
+	 * @param nrofPrefetch How many time instances are read ahead at most
+	 */
+	private static void startPrefetching(int nrofPrefetch) {
+		prefetchedTime = initTime;
+		prefetcher = new BatchPrefetcher<Tuple<Double, 
+				List<Tuple<String, Coord>>>>("ExternalMovement " +
+						inputFileName, nrofPrefetch) {
+			protected Tuple<Double, List<Tuple<String, Coord>>> readBatch() {
+				List<Tuple<String, Coord>> list = reader.readNextMovements();
+				if (list.size() == 0) {
+					return null;
+				}
+				return new Tuple<Double, List<Tuple<String, Coord>>>(
+						reader.getLastTimeStamp(), list);
+			}
+		};
+		prefetcher.start();
+	}
+	
 	/**
 	 * Reads paths for the next time instance from the reader
 	 * @return The time stamp of the reading or Double.NaN if no movements
 	 * were read.
 	 */
 	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		List<Tuple<String, Coord>> list;
+		double time;
+		
+		if (prefetcher != null) {
+			Tuple<Double, List<Tuple<String, Coord>>> moves = 
+				prefetcher.next();
+			if (moves != null) {
+				prefetchedTime = moves.getKey();
+				list = moves.getValue();
+			}
+			else {
+				list = new ArrayList<Tuple<String, Coord>>(0);
+			}
+			time = prefetchedTime;
+		}
+		else {
+			list = reader.readNextMovements();
+			time = reader.getLastTimeStamp();
+		}
 		
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -271,6 +334,7 @@ public class ExternalMovement extends MovementModel {
 	 */
 	public static void reset() {
 		idMapping = null;
+		prefetcher = null;
 	}
 
 }
@@ -14,6 +14,7 @@ import movement.Path;
  * formation (i.e., in a line). 
  */
 public class LinearFormation extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** Name space of the settings (append to group name space) */
 	public static final String LINEAR_FORMATION_NS = "LinearFormation.";
 	/** Per node group setting for defining the start coordinates of 
@@ -113,4 +114,13 @@ public class LinearFormation extends MovementModel {
 		return new LinearFormation(this);
 	}
 
+	/**
+	 * Returns true; hosts using this model don't share any modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
+
 }
@@ -29,6 +29,7 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -400,6 +401,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
 	}
+
+	/**
+	 * Returns true; hosts using this model don't share any modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
 	
 	public Coord getLastLocation() {
 		if (lastMapNode != null) {
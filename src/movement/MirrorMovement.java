@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.util.List;
+
+import core.Coord;
+import core.DTNHost;
+import core.SimError;
+
+/**
+ * Movement model for the hosts of the additional router planes (see
+ * {@link core.RouterPlanes}). The hosts don't move by themselves: their
+ * locations are copied from the hosts with the same address in the first
+ * plane, and they are active whenever those hosts are active.
+ */
+public class MirrorMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
+	/** hosts of the first plane (indexed by their address) */
+	private List<DTNHost> hosts;
+	/** the mirrored host (null for the prototype) */
+	private DTNHost host;
+
+	/**
+	 * Creates a prototype that mirrors the given hosts
+	 * @param hosts The hosts of the first plane
+	 */
+	public MirrorMovement(List<DTNHost> hosts) {
+		super();
+		this.hosts = hosts;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype
+	 * @param host The host to mirror
+	 */
+	protected MirrorMovement(MirrorMovement proto, DTNHost host) {
+		super(proto);
+		this.hosts = proto.hosts;
+		this.host = host;
+	}
+
+	/**
+	 * Returns a copy of the mirrored host's current location
+	 * @return The location of the mirrored host
+	 */
+	@Override
+	public Coord getInitialLocation() {
+		return host.getLocation().clone();
+	}
+
+	/**
+	 * Returns null; the hosts never move by themselves
+	 * @return null
+	 */
+	@Override
+	public Path getPath() {
+		return null;
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns true if the mirrored host is active
+	 * @return true if the mirrored host is active
+	 */
+	@Override
+	public boolean isActive() {
+		return host.isActive();
+	}
+
+	@Override
+	public MirrorMovement replicate() {
+		return new MirrorMovement(this, this.host);
+	}
+
+	/**
+	 * Creates a model that mirrors the first plane's host with the given
+	 * address
+	 * @param address Address of the host
+	 * @return The model for the host
+	 */
+	@Override
+	public MirrorMovement replicate(int address) {
+		if (address >= hosts.size()) {
+			throw new SimError("No host with address " + address +
+					" in the first router plane");
+		}
+		return new MirrorMovement(this, hosts.get(address));
+	}
+
+	/**
+	 * Returns true; the model doesn't have modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
+}
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.Coord;
@@ -23,7 +24,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -42,8 +44,18 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 	
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	/** seed of the movement models' rngs (see {@link #RNG_SEED}) */
+	private static long rngSeed;
+	/** common rng for the prototype movement models */
+	private static Random protoRng;
+	/** rng stream the models that are replicated for a host take into use
+	 * (or null if the prototype's rng should be used) */
+	private static Random replicaRng;
+	
+	/** random number generator of this movement model. All the movement 
+	 * models of a host share the same stream but the streams of different
+	 * hosts are independent of each other. */
+	protected Random rng;
 	
 	private ActivenessHandler ah;
 		
@@ -87,6 +99,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = protoRng;
 	}
 	
 	/**
@@ -97,6 +110,7 @@ public abstract class MovementModel {
 		double[] speeds;
 		double[] times;
 		
+		this.rng = protoRng;
 		ah = new ActivenessHandler(settings);
 		
 		if (settings.contains(SPEED)) {
@@ -143,6 +157,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = (replicaRng != null ? replicaRng : mm.rng);
 	}
 		
 	/**
@@ -211,6 +226,18 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 		
+	/**
+	 * Returns the next sim time when the result of {@link #isActive()} may
+	 * change, or Double.MAX_VALUE if it won't change anymore.
+	 * @return The sim time of the next activeness change
+	 */
+	public double nextActivenessChange() {
+		if (ah == null) {
+			return Double.MAX_VALUE;
+		}
+		return ah.nextChangeTime();
+	}
+		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
@@ -250,18 +277,63 @@ public abstract class MovementModel {
 	 */
 	public abstract MovementModel replicate();
 	
+	/**
+	 * Creates a replicate of the movement model for a host. The replicate
+	 * (and all the movement models it replicates in turn) use the host's own
+	 * random number stream (see {@link #createRngStream(int)}).
+	 * @param address Address of the host the model is replicated for
+	 * @return A new movement model with the same settings as this model
+	 */
+	public MovementModel replicate(int address) {
+		replicaRng = createRngStream(address);
+		try {
+			return replicate();
+		} finally {
+			replicaRng = null;
+		}
+	}
+	
+	/**
+	 * Returns true if hosts using this movement model can be moved
+	 * concurrently with other hosts, i.e., the model doesn't modify any state
+	 * that is shared with the movement models of other hosts. Movement 
+	 * listeners are informed by the caller, so they don't need to be 
+	 * considered. This implementation returns false.
+	 * @return true if the model can be moved in parallel with other hosts
+	 */
+	public boolean canMoveInParallel() {
+		return false;
+	}
+	
+	/**
+	 * Creates a new random number generator stream for a host. The stream
+	 * depends only on the {@link #RNG_SEED} setting and the address of the 
+	 * host, so the results don't depend on the order in which the hosts 
+	 * are moved.
+	 * @param address Address of the host
+	 * @return A new random number generator
+	 */
+	public static Random createRngStream(int address) {
+		/* SplitMix64 finalizer over the seed and the address */
+		long z = rngSeed + (address + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return new Random(z ^ (z >>> 31));
+	}
+	
 	/**
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rngSeed = s.getInt(RNG_SEED);
 		}
 		else {
-			rng = new Random(0);
+			rngSeed = 0;
 		}
+		protoRng = new Random(rngSeed);
+		replicaRng = null;
 	}
 	
 }
@@ -29,6 +29,7 @@ import core.SimClock;
  */
 public class OfficeActivityMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_OFFICE_MODE = 0;
 	private static final int AT_OFFICE_MODE = 1;
@@ -139,7 +140,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		this.workDayLength = proto.workDayLength;
 		startedWorkingTime = -1;
 		this.distance = proto.distance;
-		this.pathFinder = proto.pathFinder;
+		this.pathFinder = new DijkstraPathFinder(null);
 		this.mode = proto.mode;
 		
 		if (proto.allOffices == null) {
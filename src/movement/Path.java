@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +13,8 @@ import core.Coord;
 /**
  * A Path between multiple Coordinates.
  */
-public class Path  {
+public class Path implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** coordinates of the path */
 	private List<Coord> coords;
 	/** speeds in the path legs */
@@ -39,6 +41,19 @@ public class Path  {
 		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
 	}
 	
+	/**
+	 * Creates a path from lists of coordinates and speeds (used for
+	 * replaying recorded paths, see {@link ReplayMovement})
+	 * @param coords The coordinates of the path
+	 * @param speeds The speeds of the path (one constant speed or a speed
+	 * towards every waypoint)
+	 */
+	Path(List<Coord> coords, List<Double> speeds) {
+		this.nextWpIndex = 0;
+		this.coords = coords;
+		this.speeds = speeds;
+	}
+
 	/**
 	 * Creates a path with constant speed
 	 * @param speed The speed on the path
@@ -13,6 +13,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class RandomWalk extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private Coord lastWaypoint;
 	private double minDistance;
@@ -81,6 +82,15 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return new RandomWalk(this);
 	}
 
+	/**
+	 * Returns true; hosts using this model don't share any modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
+
 	public Coord getLastLocation() {
 		return lastWaypoint;
 	}
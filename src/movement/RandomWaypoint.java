@@ -12,6 +12,7 @@ import core.Settings;
  * simulation area.
  */
 public class RandomWaypoint extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** how many waypoints should there be per path */
 	private static final int PATH_LENGTH = 1;
 	private Coord lastWaypoint;
@@ -57,6 +58,15 @@ public class RandomWaypoint extends MovementModel {
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
 	}
+
+	/**
+	 * Returns true; hosts using this model don't share any modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
 	
 	protected Coord randomCoord() {
 		return new Coord(rng.nextDouble() * getMaxX(),
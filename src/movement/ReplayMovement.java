@@ -0,0 +1,267 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.Coord;
+import core.Settings;
+import core.SimError;
+
+/**
+ * <P>Movement model that replays trajectories recorded with
+ * {@link TrajectoryRecorder}. Each host gets the initial location, paths
+ * and next path availability times that the recorded model gave to the
+ * host with the same address, in the same order, so the hosts move exactly
+ * like in the recorded simulation as long as the update interval is the
+ * same. Unlike {@link ExternalMovement}, the movement is replayed as paths,
+ * so the movement listeners see the same waypoints. The activeness of the
+ * hosts is defined by the settings of this model (like with any other
+ * model). Hosts that run out of recorded entries stop moving.</P>
+ * <P>The track of each host is memory mapped from the file when the host
+ * is created, so the entries are loaded from the disk only when they are
+ * used.</P>
+ * <P>File format (all values are big-endian):<BR>
+ * <TT>header</TT>: magic number ({@link #MAGIC}, int), format version
+ * (short), unused (short), number of hosts (int), unused (int).<BR>
+ * <TT>index</TT>: for every host address, the offset (long) and length
+ * (int) of the host's track.<BR>
+ * <TT>tracks</TT>: entries in the order the host asked for them. Every
+ * entry starts with its type (byte). Initial location: x and y (double).
+ * Path: number of coordinates (int), number of speeds (int), the
+ * coordinates (x and y, double) and the speeds (double). No path: no data.
+ * Next path availability: the time (double).</P>
+ */
+public class ReplayMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
+	/** replay movement settings namespace ({@value}) */
+	public static final String REPLAY_NS = "ReplayMovement";
+	/**
+	 * Trajectory file to replay -setting id ({@value}). The value supports
+	 * value filling.
+	 */
+	public static final String FILE_S = "file";
+
+	/** Magic number at the start of trajectory files ("ONET") */
+	public static final int MAGIC = 0x4F4E4554;
+	/** Version of the format this class reads */
+	public static final int VERSION = 1;
+	/** Size of the header in bytes */
+	public static final int HEADER_SIZE = 16;
+	/** Size of a host's index entry in bytes */
+	public static final int INDEX_ENTRY_SIZE = 12;
+
+	/** entry type for initial locations */
+	static final int TYPE_LOCATION = 1;
+	/** entry type for paths */
+	static final int TYPE_PATH = 2;
+	/** entry type for not getting a path */
+	static final int TYPE_NO_PATH = 3;
+	/** entry type for next path availability times */
+	static final int TYPE_WAIT = 4;
+
+	private File file;
+	private int nrofHosts;
+	/** address of the replayed host (-1 for the prototype) */
+	private int address;
+	/** the host's track (mapped when needed) */
+	private transient ByteBuffer track;
+	/** position of the next entry in the track */
+	private int position;
+
+	/**
+	 * Creates a prototype based on the settings
+	 * @param s The settings
+	 */
+	public ReplayMovement(Settings s) {
+		super(s);
+		Settings rs = new Settings(REPLAY_NS);
+		this.file = new File(rs.valueFillString(rs.getSetting(FILE_S)));
+		this.nrofHosts = readNrofHosts(file);
+		this.address = -1;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype
+	 * @param address Address of the replayed host
+	 */
+	protected ReplayMovement(ReplayMovement proto, int address) {
+		super(proto);
+		this.file = proto.file;
+		this.nrofHosts = proto.nrofHosts;
+		this.address = address;
+		this.position = 0;
+	}
+
+	/**
+	 * Reads the header of a trajectory file
+	 * @param file The file
+	 * @return Number of hosts in the file
+	 * @throws SimError if the file is not a valid trajectory file
+	 */
+	private static int readNrofHosts(File file) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				raf.getChannel().read(header, 0);
+				header.flip();
+				if (header.remaining() < HEADER_SIZE ||
+						header.getInt() != MAGIC) {
+					throw new SimError(file + " is not a trajectory file");
+				}
+				int version = header.getShort();
+				if (version != VERSION) {
+					throw new SimError("Unsupported trajectory file version " +
+							version + " in " + file);
+				}
+				header.getShort();
+				return header.getInt();
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read trajectory file " + file + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the host's track positioned at the next entry. The track is
+	 * mapped from the file on the first call.
+	 * @return The track
+	 */
+	private ByteBuffer getTrack() {
+		if (this.track != null) {
+			return this.track;
+		}
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try { /* the mapping stays valid after closing the file */
+				FileChannel channel = raf.getChannel();
+				ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+				channel.read(entry, HEADER_SIZE +
+						(long)address * INDEX_ENTRY_SIZE);
+				entry.flip();
+				long offset = entry.getLong();
+				int length = entry.getInt();
+				this.track = channel.map(FileChannel.MapMode.READ_ONLY,
+						offset, length);
+			} finally {
+				raf.close();
+			}
+		} catch (BufferUnderflowException e) {
+			throw new SimError("Truncated trajectory file " + file);
+		} catch (IOException e) {
+			throw new SimError("Can't read trajectory file " + file + ": " +
+					e.getMessage(), e);
+		}
+		this.track.position(this.position);
+		return this.track;
+	}
+
+	/**
+	 * Reads the type of the next entry and checks that it is the expected
+	 * one
+	 * @param expected The expected type
+	 * @param alternative Another accepted type (or the expected type)
+	 * @return The type or -1 if the track has no more entries
+	 * @throws SimError if the type is not the expected one
+	 */
+	private int nextEntry(int expected, int alternative) {
+		ByteBuffer t = getTrack();
+		if (!t.hasRemaining()) {
+			return -1;
+		}
+		int type = t.get();
+		if (type != expected && type != alternative) {
+			throw new SimError("The movement of host " + address + " doesn't" +
+					" match the recorded entry " + (t.position() - 1) +
+					" in trajectory file " + file);
+		}
+		return type;
+	}
+
+	@Override
+	public Coord getInitialLocation() {
+		if (nextEntry(TYPE_LOCATION, TYPE_LOCATION) < 0) {
+			throw new SimError("No trajectory for host " + address +
+					" in trajectory file " + file);
+		}
+		Coord c = new Coord(track.getDouble(), track.getDouble());
+		this.position = track.position();
+		return c;
+	}
+
+	@Override
+	public Path getPath() {
+		if (nextEntry(TYPE_PATH, TYPE_NO_PATH) != TYPE_PATH) {
+			this.position = track.position();
+			return null;
+		}
+
+		int nrofCoords = track.getInt();
+		int nrofSpeeds = track.getInt();
+		List<Coord> coords = new ArrayList<Coord>(nrofCoords);
+		for (int i=0; i < nrofCoords; i++) {
+			coords.add(new Coord(track.getDouble(), track.getDouble()));
+		}
+		List<Double> speeds = new ArrayList<Double>(nrofSpeeds);
+		for (int i=0; i < nrofSpeeds; i++) {
+			speeds.add(track.getDouble());
+		}
+		this.position = track.position();
+		return new Path(coords, speeds);
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		if (nextEntry(TYPE_WAIT, TYPE_WAIT) < 0) {
+			return Double.MAX_VALUE; /* end of the recording */
+		}
+		double time = track.getDouble();
+		this.position = track.position();
+		return time;
+	}
+
+	/**
+	 * Returns true; every host reads only its own track
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
+
+	@Override
+	public ReplayMovement replicate() {
+		return new ReplayMovement(this, this.address);
+	}
+
+	/**
+	 * Creates a model that replays the track of the host with the given
+	 * address
+	 * @param address Address of the host
+	 * @return The model for the host
+	 * @throws SimError if the file has no track for the address
+	 */
+	@Override
+	public ReplayMovement replicate(int address) {
+		if (address >= nrofHosts) {
+			throw new SimError("Trajectory file " + file + " has only " +
+					nrofHosts + " hosts (no host " + address + ")");
+		}
+		return new ReplayMovement(this, address);
+	}
+}
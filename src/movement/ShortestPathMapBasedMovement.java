@@ -17,6 +17,7 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
 
@@ -41,14 +42,14 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
-		this.pathFinder = mbm.pathFinder;
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = mbm.pois;
 	}
 	
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		MapNode to = pois.selectDestination(rng);
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 		
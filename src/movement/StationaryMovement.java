@@ -12,6 +12,7 @@ import core.Settings;
  * Might be useful for simulations with only external connection events. 
  */
 public class StationaryMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** Per node group setting for setting the location ({@value}) */
 	public static final String LOCATION_S = "nodeLocation";
 	private Coord loc; /** The location of the nodes */
@@ -67,4 +68,13 @@ public class StationaryMovement extends MovementModel {
 		return new StationaryMovement(this);
 	}
 
+	/**
+	 * Returns true; hosts using this model don't share any modifiable state
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveInParallel() {
+		return true;
+	}
+
 }
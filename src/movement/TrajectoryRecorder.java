@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import static movement.ReplayMovement.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.Coord;
+import core.ModuleCommunicationBus;
+import core.SimError;
+
+/**
+ * Records the trajectories the movement models give to the hosts, so that
+ * the same movement can be replayed later with {@link ReplayMovement}
+ * without running the (possibly expensive) movement models again. The
+ * recorder wraps the movement model prototypes of the scenario (see
+ * {@link #record(MovementModel)}) and records every initial location,
+ * path and next path availability time the models return, in the order
+ * the hosts ask for them. The trajectories are written to a file (see
+ * {@link ReplayMovement} for the format) when the simulation is done.
+ * <P>Recording is enabled with the {@link #FILE_S} setting.</P>
+ */
+public class TrajectoryRecorder implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** trajectory recorder settings namespace ({@value}) */
+	public static final String RECORDER_NS = "TrajectoryRecorder";
+	/**
+	 * File where the trajectories are written -setting id ({@value}). If
+	 * defined, the trajectories of all hosts are recorded. The value
+	 * supports value filling.
+	 */
+	public static final String FILE_S = "file";
+
+	private File file;
+	/** recorded tracks indexed by the host address (null if none) */
+	private List<Track> tracks;
+
+	/**
+	 * Constructor.
+	 * @param file The file where the trajectories are written
+	 */
+	public TrajectoryRecorder(File file) {
+		this.file = file;
+		this.tracks = new ArrayList<Track>();
+	}
+
+	/**
+	 * Returns a movement model prototype that records the trajectories of
+	 * the given prototype's replicates
+	 * @param proto The prototype of the recorded movement model
+	 * @return The recording prototype
+	 */
+	public MovementModel record(MovementModel proto) {
+		return new RecordingMovement(proto, null);
+	}
+
+	/**
+	 * Returns a new track for the host with the given address
+	 * @param address The address
+	 * @return The track
+	 */
+	private Track newTrack(int address) {
+		while (tracks.size() <= address) {
+			tracks.add(null);
+		}
+		Track t = new Track();
+		tracks.set(address, t);
+		return t;
+	}
+
+	/**
+	 * Writes the recorded trajectories to the file
+	 * @throws SimError if the file can't be written
+	 */
+	public void write() {
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file),
+							1 << 16));
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(0);
+			out.writeInt(tracks.size());
+			out.writeInt(0);
+
+			long offset = HEADER_SIZE + (long)tracks.size() * INDEX_ENTRY_SIZE;
+			for (Track t : tracks) {
+				int length = t == null ? 0 : t.size;
+				out.writeLong(offset);
+				out.writeInt(length);
+				offset += length;
+			}
+			for (Track t : tracks) {
+				if (t != null) {
+					out.write(t.data, 0, t.size);
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Can't write trajectory file " + file + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Recorded entries of one host
+	 */
+	private static class Track implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private byte[] data = new byte[256];
+		private int size;
+
+		private void ensureSpace(int nrofBytes) {
+			if (size + nrofBytes > data.length) {
+				byte[] bigger = new byte[Math.max(data.length * 2,
+						size + nrofBytes)];
+				System.arraycopy(data, 0, bigger, 0, size);
+				this.data = bigger;
+			}
+		}
+
+		private void putByte(int value) {
+			ensureSpace(1);
+			data[size++] = (byte)value;
+		}
+
+		private void putInt(int value) {
+			ensureSpace(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				data[size++] = (byte)(value >>> shift);
+			}
+		}
+
+		private void putDouble(double value) {
+			long bits = Double.doubleToRawLongBits(value);
+			ensureSpace(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				data[size++] = (byte)(bits >>> shift);
+			}
+		}
+
+		private void location(Coord c) {
+			putByte(TYPE_LOCATION);
+			putDouble(c.getX());
+			putDouble(c.getY());
+		}
+
+		private void path(Path p) {
+			if (p == null) {
+				putByte(TYPE_NO_PATH);
+				return;
+			}
+			List<Coord> coords = p.getCoords();
+			List<Double> speeds = p.getSpeeds();
+			putByte(TYPE_PATH);
+			putInt(coords.size());
+			putInt(speeds.size());
+			for (int i=0, n = coords.size(); i < n; i++) {
+				putDouble(coords.get(i).getX());
+				putDouble(coords.get(i).getY());
+			}
+			for (int i=0, n = speeds.size(); i < n; i++) {
+				putDouble(speeds.get(i));
+			}
+		}
+
+		private void nextPath(double time) {
+			putByte(TYPE_WAIT);
+			putDouble(time);
+		}
+	}
+
+	/**
+	 * Movement model that passes the calls to the recorded model and
+	 * records the results
+	 */
+	private class RecordingMovement extends MovementModel {
+		private static final long serialVersionUID = 1L;
+		private MovementModel model;
+		/** track of the host (null for the prototype) */
+		private Track track;
+
+		private RecordingMovement(MovementModel model, Track track) {
+			super();
+			this.model = model;
+			this.track = track;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			Coord c = model.getInitialLocation();
+			track.location(c);
+			return c;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = model.getPath();
+			track.path(p);
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			double time = model.nextPathAvailable();
+			track.nextPath(time);
+			return time;
+		}
+
+		@Override
+		public boolean isActive() {
+			return model.isActive();
+		}
+
+		@Override
+		public double nextActivenessChange() {
+			return model.nextActivenessChange();
+		}
+
+		@Override
+		public void setComBus(ModuleCommunicationBus comBus) {
+			super.setComBus(comBus);
+			model.setComBus(comBus);
+		}
+
+		@Override
+		public boolean canMoveInParallel() {
+			return model.canMoveInParallel();
+		}
+
+		@Override
+		public MovementModel replicate() {
+			throw new SimError("Recorded movement models can only be " +
+					"replicated for a host");
+		}
+
+		@Override
+		public MovementModel replicate(int address) {
+			return new RecordingMovement(model.replicate(address),
+					newTrack(address));
+		}
+
+		@Override
+		public String toString() {
+			return model.toString();
+		}
+	}
+}
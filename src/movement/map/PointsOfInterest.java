@@ -8,6 +8,7 @@ import input.WKTReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -21,7 +22,8 @@ import core.Tuple;
 /**
  * Handler for points of interest data.
  */
-public class PointsOfInterest {
+public class PointsOfInterest implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Points Of Interest settings namespace ({@value})*/
 	public static final String POI_NS = "PointsOfInterest";
 	/** Points Of Interest file path -prefix id ({@value})*/
@@ -74,6 +76,16 @@ public class PointsOfInterest {
 	 * @return A destination among POIs or all MapNodes
 	 */
 	public MapNode selectDestination() {
+		return selectDestination(this.rng);
+	}
+	
+	/**
+	 * Selects a random destination like {@link #selectDestination()} but 
+	 * draws the random values from the given random number generator.
+	 * @param rng The random number generator to use
+	 * @return A destination among POIs or all MapNodes
+	 */
+	public MapNode selectDestination(Random rng) {
 		double random = rng.nextDouble();
 		double acc = 0;
 		
@@ -15,6 +15,7 @@ import core.Coord;
  * A simulation map for node movement.
  */
 public class SimMap implements Serializable {
+	private static final long serialVersionUID = 1L;
 	private Coord minBound;
 	private Coord maxBound;
 	/** list representation of the map for efficient list-returning */
@@ -13,6 +13,7 @@ import reinforcement.utils.IndexValue;
  * Created by xschen on 9/27/2015 0027.
  */
 public abstract class AbstractActionSelectionStrategy implements ActionSelectionStrategy {
+    private static final long serialVersionUID = 1L;
 
     private String prototype;
     protected Map<String, String> attributes = new HashMap<String, String>();
@@ -10,6 +10,7 @@ import reinforcement.utils.IndexValue;
  * Created by xschen on 9/27/2015 0027.
  */
 public class EpsilonGreedyActionSelectionStrategy extends AbstractActionSelectionStrategy {
+    private static final long serialVersionUID = 1L;
     public static final String EPSILON = "epsilon";
     private Random random = new Random();
 
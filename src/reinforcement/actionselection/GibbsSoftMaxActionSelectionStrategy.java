@@ -13,6 +13,7 @@ import reinforcement.utils.IndexValue;
  * Created by xschen on 9/28/2015 0028.
  */
 public class GibbsSoftMaxActionSelectionStrategy extends AbstractActionSelectionStrategy {
+    private static final long serialVersionUID = 1L;
 
     private Random random = null;
     public GibbsSoftMaxActionSelectionStrategy(){
@@ -10,6 +10,7 @@ import reinforcement.utils.IndexValue;
  * Created by xschen on 9/27/2015 0027.
  */
 public class GreedyActionSelectionStrategy extends AbstractActionSelectionStrategy {
+    private static final long serialVersionUID = 1L;
     @Override
     public IndexValue selectAction(int stateId, QModel model, Set<Integer> actionsAtState) {
         return model.actionWithMaxQAtState(stateId, actionsAtState);
@@ -21,6 +21,7 @@ import java.io.Serializable;
 @Getter
 @Setter
 public class UtilityModel implements Serializable {
+    private static final long serialVersionUID = 1L;
     private Vec U;
     private int stateCount;
     private int actionCount;
@@ -11,6 +11,7 @@ import reinforcement.utils.IndexValue;
  * Created by xschen on 9/27/2015 0027.
  */
 public class QAgent implements Serializable{
+    private static final long serialVersionUID = 1L;
     private QLearner learner;
     private int currentState;
     private int prevState;
@@ -11,6 +11,7 @@ import reinforcement.utils.Matrix;
  * Created by xschen on 9/28/2015 0028.
  */
 public class QLambdaLearner extends QLearner {
+    private static final long serialVersionUID = 1L;
     private double lambda = 0.9;
     private Matrix e;
     private EligibilityTraceUpdateMode traceUpdateMode = EligibilityTraceUpdateMode.ReplaceTrace;
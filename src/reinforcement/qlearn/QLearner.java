@@ -23,6 +23,7 @@ import java.util.Set;
  * Q is known as the quality of state-action combination, note that it is different from utility of a state
  */
 public class QLearner implements Serializable,Cloneable {
+    private static final long serialVersionUID = 1L;
     protected QModel model;
 
     private ActionSelectionStrategy actionSelectionStrategy = new EpsilonGreedyActionSelectionStrategy();
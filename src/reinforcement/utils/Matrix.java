@@ -17,6 +17,7 @@ import java.util.Map;
 @Getter
 @Setter
 public class Matrix implements Serializable {
+    private static final long serialVersionUID = 1L;
     private Map<Integer, Vec> rows = new HashMap<>();
     private int rowCount;
     private int columnCount;
@@ -16,6 +16,7 @@ import java.util.Set;
 @Getter
 @Setter
 public class Vec implements Serializable {
+    private static final long serialVersionUID = 1L;
     private Map<Integer, Double> data = new HashMap<Integer, Double>();
     private int dimension;
     private double defaultValue;
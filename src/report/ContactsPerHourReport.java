@@ -9,7 +9,6 @@ import java.util.LinkedList;
 
 import core.ConnectionListener;
 import core.DTNHost;
-import core.SimClock;
 
 /**
  * This report counts the number of contacts each hour
@@ -33,7 +32,7 @@ public class ContactsPerHourReport extends Report implements ConnectionListener
 	}
 	
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		int time = SimClock.getIntTime() / 3600;
+		int time = (int)Math.round(getSimTime()) / 3600;
 		while (Math.floor(time) > currentHour) {
 			contactCounts.add(new Integer(currentHourCount));
 			currentHourCount = 0;
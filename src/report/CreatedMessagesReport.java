@@ -49,6 +49,16 @@ public class CreatedMessagesReport extends Report implements MessageListener {
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
 
+	/**
+	 * Returns true; the remaining TTL of a message depends on the
+	 * current time of the SimClock
+	 * @return true
+	 */
+	@Override
+	public boolean isSynchronousOnly() {
+		return true;
+	}
+
 	@Override
 	public void done() {
 		super.done();
@@ -50,7 +50,7 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 	
 	public void messageTransferred(Message m, DTNHost from, DTNHost to, 
 			boolean firstDelivery) {
-		if (!isWarmupID(m.getId()) && firstDelivery) {
+		if (!isWarmupID(m) && firstDelivery) {
 			int ttl = m.getTtl();
 			write(format(getSimTime()) + " " + m.getId() + " " + 
 					m.getSize() + " " + m.getHopCount() + " " + 
@@ -63,7 +63,7 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 		}
 	}
 	
@@ -72,6 +72,16 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
 
+	/**
+	 * Returns true; the remaining TTL of a message depends on the
+	 * current time of the SimClock
+	 * @return true
+	 */
+	@Override
+	public boolean isSynchronousOnly() {
+		return true;
+	}
+
 	@Override
 	public void done() {
 		super.done();
@@ -42,7 +42,7 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	 */
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
-		if (isWarmupID(m.getId()) || !firstDelivery) {
+		if (isWarmupID(m) || !firstDelivery) {
 			return; // report is only interested of first deliveries  
 		}
 		
@@ -60,7 +60,7 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	 */
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 			return;
 		}
 		
@@ -96,6 +96,16 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
 
+	/**
+	 * Returns true; the report reads the hosts' current locations
+	 * when a message is created
+	 * @return true
+	 */
+	@Override
+	public boolean isSynchronousOnly() {
+		return true;
+	}
+
 	public void done() {
 		// report rest of the messages as 'not delivered' (time == -1)
 		for (String id : creationInfos.keySet()) {
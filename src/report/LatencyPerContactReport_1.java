@@ -7,6 +7,7 @@ package report;
 
 import core.ConnectionListener;
 import core.DTNHost;
+import core.IntHashMap;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
@@ -24,7 +25,7 @@ public class LatencyPerContactReport_1 extends Report implements MessageListener
     private int lastRecord;
     private int interval;
     private Map<Integer, String> nrofLatency;
-    private Map<String, Double> creationTimes;
+    private IntHashMap<Double> creationTimes;
     private List<Double> latencies;
 
     /**
@@ -46,7 +47,7 @@ public class LatencyPerContactReport_1 extends Report implements MessageListener
         this.interval = 0;
         this.lastRecord = 0;
         this.totalContact = 0;
-        this.creationTimes = new HashMap<String, Double>();
+        this.creationTimes = new IntHashMap<Double>();
         this.latencies = new ArrayList<Double>();
         this.nrofLatency = new HashMap<>();
     }
@@ -60,13 +61,13 @@ public class LatencyPerContactReport_1 extends Report implements MessageListener
     public void messageTransferred(Message m, DTNHost from, DTNHost to, boolean finalTarget) {
         if (finalTarget) {
             double latenciesValue = getSimTime()
-                    - this.creationTimes.get(m.getId());
+                    - this.creationTimes.get(m.getIndex());
             this.latencies.add(latenciesValue);
         }
     }
 
     public void newMessage(Message m) {
-        this.creationTimes.put(m.getId(), getSimTime());
+        this.creationTimes.put(m.getIndex(), getSimTime());
     }
 
     public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
@@ -40,7 +40,7 @@ public class MessageDelayReport extends Report implements MessageListener {
 	
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 		}
 		else {
 			this.nrofCreated++;
@@ -49,7 +49,7 @@ public class MessageDelayReport extends Report implements MessageListener {
 	
 	public void messageTransferred(Message m, DTNHost from, DTNHost to, 
 			boolean firstDelivery) {
-		if (firstDelivery && !isWarmupID(m.getId())) {
+		if (firstDelivery && !isWarmupID(m)) {
 			this.delays.add(getSimTime() - m.getCreationTime());
 		}
 		
@@ -36,7 +36,7 @@ public class MessageDeliveryReport extends Report implements MessageListener {
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to, 
 			boolean firstDelivery) {
-		if (firstDelivery && !isWarmup() && !isWarmupID(m.getId())) {
+		if (firstDelivery && !isWarmup() && !isWarmupID(m)) {
 			delivered++;
 			reportValues();
 		}
@@ -44,7 +44,7 @@ public class MessageDeliveryReport extends Report implements MessageListener {
 
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 			return;
 		}
 		created++;
@@ -5,11 +5,10 @@
 package report;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import core.DTNHost;
+import core.IntHashMap;
 import core.Message;
 import core.MessageListener;
 
@@ -22,7 +21,7 @@ import core.MessageListener;
  * double values and zero for integer median(s).
  */
 public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
+	private IntHashMap<Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
 	private List<Double> msgBufferTime;
@@ -48,7 +47,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
+		this.creationTimes = new IntHashMap<Double>();
 		this.latencies = new ArrayList<Double>();
 		this.msgBufferTime = new ArrayList<Double>();
 		this.hopCounts = new ArrayList<Integer>();
@@ -67,7 +66,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 	
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 		
@@ -83,7 +82,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 	
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 		
@@ -93,13 +92,13 @@ public class MessageStatsReport extends Report implements MessageListener {
 	
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 		          boolean finalTarget) {
-        if (isWarmupID(m.getId())) {
+        if (isWarmupID(m)) {
             return;
         }
 
         this.nrofRelayed++;
         if (finalTarget) {
-            this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
+            this.latencies.add(getSimTime() - this.creationTimes.get(m.getIndex()));
             this.nrofDelivered++;
             this.hopCounts.add(m.getHops().size() - 1);
 
@@ -113,11 +112,11 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 			return;
 		}
 		
-		this.creationTimes.put(m.getId(), getSimTime());
+		this.creationTimes.put(m.getIndex(), getSimTime());
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
@@ -126,7 +125,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 	
 	
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 
@@ -20,12 +20,12 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 	private double lastRecord = Double.MIN_VALUE;
 	private int interval;
 
-	private Map<String, Double> creationTimes;
+	private IntHashMap<Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
 	private List<Double> msgBufferTime;
 	private List<Double> rtt; // round trip times
-	private Map<String, Integer> messageCopies;
+	private IntHashMap<Integer> messageCopies;
 
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -58,12 +58,12 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 			interval = DEFAULT_UPDATE_INTERVAL;
 		}
 
-		this.creationTimes = new HashMap<String, Double>();
+		this.creationTimes = new IntHashMap<Double>();
 		this.latencies = new ArrayList<Double>();
 		this.msgBufferTime = new ArrayList<Double>();
 		this.hopCounts = new ArrayList<Integer>();
 		this.rtt = new ArrayList<Double>();
-		this.messageCopies = new HashMap<>();
+		this.messageCopies = new IntHashMap<Integer>();
 
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -92,11 +92,11 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 	@Override
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupID(m);
 			return;
 		}
 
-		this.creationTimes.put(m.getId(), getSimTime());
+		this.creationTimes.put(m.getIndex(), getSimTime());
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
@@ -105,7 +105,7 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 
 	@Override
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 
@@ -114,7 +114,7 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 
 	@Override
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 
@@ -129,7 +129,7 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 
 	@Override
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 
@@ -139,19 +139,19 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 	@Override
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 								   boolean finalTarget) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupID(m)) {
 			return;
 		}
 
 		this.nrofRelayed++;
 		if (finalTarget) {
 			this.latencies.add(getSimTime() -
-			this.creationTimes.get(m.getId()));
+			this.creationTimes.get(m.getIndex()));
 			this.nrofDelivered++;
 			this.hopCounts.add(m.getHops().size() - 1);
 
 			// Used to see the average messages number of copies
-			this.messageCopies.put(m.getId(), (int) m.getProperty(SprayAndWaitDERouter.MSG_COUNT_PROPERTY));
+			this.messageCopies.put(m.getIndex(), (int) m.getProperty(SprayAndWaitDERouter.MSG_COUNT_PROPERTY));
 
 			if (m.isResponse()) {
 				this.rtt.add(getSimTime() - m.getRequest().getCreationTime());
@@ -160,6 +160,16 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 		}
 	}
 
+	/**
+	 * Returns true; the copy count of a delivered message is read from the
+	 * message's properties, which the routers keep changing
+	 * @return true
+	 */
+	@Override
+	public boolean isSynchronousOnly() {
+		return true;
+	}
+
 	/**
 	 * Used to trigger the processes with the defined intervals.
 	 * Uses hostsConnected instead because of updated's method inconsistencies on large intervals.
@@ -213,7 +223,7 @@ public class PeriodicStatsReporter extends ContactTimesReport implements Message
 
 		// simclock, conncetions/total contacts, delivery prob, overheads, avg latency, total forwards
 		String currentReport = String.format("%.2f;%d;%.4f;%.4f;%s;%d;%f",
-			SimClock.getTime(), totalContacts, deliveryProb, overHead, getAverage(this.latencies), nrofRelayed, averageMessageCopies);
+			getSimTime(), totalContacts, deliveryProb, overHead, getAverage(this.latencies), nrofRelayed, averageMessageCopies);
 
 		write(currentReport);
 		System.out.println(currentReport);
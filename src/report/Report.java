@@ -14,10 +14,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import core.IntHashSet;
+import core.Message;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
+import core.UpdateListener;
 
 /**
  * Abstract superclass for all reports. All settings defined in this class
@@ -61,6 +64,8 @@ public abstract class Report {
 	private int precision;
 	protected int warmupTime;
 	protected Set<String> warmupIDs;
+	/** indexes of the messages created during the warm up period */
+	protected IntHashSet warmupMessages;
 	
 	
 	private int lastOutputSuffix;
@@ -68,6 +73,9 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	/** time of the event being passed by a {@link ReportPipeline} (or NaN
+	 * if the report gets its events directly) */
+	private double eventTime = Double.NaN;
 	
 	/**
 	 * Constructor.
@@ -80,6 +88,7 @@ public abstract class Report {
 		this.outputInterval = -1;
 		
 		this.warmupIDs = null;
+		this.warmupMessages = null;
 
 		Settings settings = new Settings();
 		scenarioName = settings.valueFillString(settings.getSetting(
@@ -267,19 +276,46 @@ public abstract class Report {
 	}
 	
 	/**
-	 * Returns the current simulation time from the SimClock
-	 * @return the current simulation time from the SimClock
+	 * Returns the current simulation time from the SimClock or, if the
+	 * report gets its events from a {@link ReportPipeline}, the simulation
+	 * time of the event that is being handled
+	 * @return the current simulation time
 	 */
 	protected double getSimTime() {
+		if (!Double.isNaN(this.eventTime)) {
+			return this.eventTime;
+		}
 		return SimClock.getTime();
 	}
 	
+	/**
+	 * Sets the simulation time of the event a report pipeline is passing
+	 * to this report
+	 * @param time The time of the event or NaN to use the SimClock's time
+	 */
+	void setEventTime(double time) {
+		this.eventTime = time;
+	}
+	
+	/**
+	 * Returns true if the report must get its events on the simulation
+	 * thread, i.e., it can't be run through a {@link ReportPipeline}. Reports
+	 * that read live simulation state (e.g., routers, buffers or locations
+	 * of the hosts, or the SimClock) when handling an event must return
+	 * true. By default, update listeners are synchronous only since they
+	 * get the live hosts.
+	 * @return true if the report is synchronous only
+	 */
+	public boolean isSynchronousOnly() {
+		return this instanceof UpdateListener;
+	}
+	
 	/**
 	 * Returns true if the warm up period is still ongoing (simTime < warmup)
 	 * @return true if the warm up period is still ongoing, false if not
 	 */
 	protected boolean isWarmup() {
-		return this.warmupTime > SimClock.getTime();
+		return this.warmupTime > getSimTime();
 	}
 	
 	/**
@@ -315,6 +351,42 @@ public abstract class Report {
 		return this.warmupIDs.contains(id);
 	}
 	
+	/**
+	 * Adds a message to the warm up message set
+	 * @param m The message
+	 */
+	protected void addWarmupID(Message m) {
+		if (this.warmupMessages == null) { // lazy creation of the set
+			this.warmupMessages = new IntHashSet();
+		}
+		
+		this.warmupMessages.add(m.getIndex());
+	}
+	
+	/**
+	 * Removes a message from the warm up message set
+	 * @param m The message to remove
+	 */
+	protected void removeWarmupID(Message m) {
+		if (this.warmupMessages != null) {
+			this.warmupMessages.remove(m.getIndex());
+		}
+	}
+	
+	/**
+	 * Returns true if the given message (or another replicate of it) is in
+	 * the warm up message set
+	 * @param m The message
+	 * @return true if the message is in the warm up message set
+	 */
+	protected boolean isWarmupID(Message m) {
+		if (this.warmupMessages == null) {
+			return false;
+		}
+		
+		return this.warmupMessages.contains(m.getIndex());
+	}
+	
 	/**
 	 * Returns a Settings object initialized for the report class' name space
 	 * that uses {@value REPORT_NS} as the secondary name space.
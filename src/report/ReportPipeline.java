@@ -0,0 +1,486 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import core.Application;
+import core.ApplicationListener;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * <P>Asynchronous report pipeline. The pipeline listens to the simulation
+ * events on behalf of its reports and records every event as a small
+ * immutable record into a bounded ring buffer. Consumer threads drain the
+ * buffer and pass the events to the reports, so the reports' bookkeeping,
+ * string building and writing happen outside the simulation thread. The
+ * reports are divided between the consumer threads and each report always
+ * gets its events from the same thread in the order they happened.</P>
+ * <P>If the buffer is full, the simulation thread waits for the consumers
+ * (back-pressure). {@link #flush()} waits until the consumers have passed
+ * all the recorded events to the reports; it must be called before the
+ * reports are {@link Report#done() done}.</P>
+ * <P>A report that is dispatched through the pipeline sees the simulation
+ * time of the event from {@link Report#getSimTime()}, but everything else
+ * it reads may already have changed. Reports that read live state (e.g., the
+ * routers, buffers or locations of the hosts) must return true from
+ * {@link Report#isSynchronousOnly()}; they are not accepted to the
+ * pipeline. The pipeline is enabled with the {@link #ASYNC_S} setting.</P>
+ */
+public class ReportPipeline implements MessageListener, ConnectionListener,
+		MovementListener, ApplicationListener {
+	/** Asynchronous reports -setting id ({@value}). Boolean. If true,
+	 * the reports that are not synchronous only are run through a
+	 * report pipeline. Default is false. */
+	public static final String ASYNC_S = "Report.async";
+	/** Size of the pipeline's ring buffer -setting id ({@value}). Number
+	 * of events that can wait for the consumers; rounded up to a power of
+	 * two. Default is {@value #DEF_BUFFER_SIZE}. */
+	public static final String BUFFER_SIZE_S = "Report.asyncBufferSize";
+	/** Number of consumer threads -setting id ({@value}). Default is
+	 * {@value #DEF_NROF_THREADS}. */
+	public static final String NROF_THREADS_S = "Report.asyncThreads";
+	/** default size of the ring buffer ({@value}) */
+	public static final int DEF_BUFFER_SIZE = 8192;
+	/** default number of consumer threads ({@value}) */
+	public static final int DEF_NROF_THREADS = 1;
+
+	/** how long (ns) a waiting thread sleeps at most between checks */
+	private static final long MAX_PARK = 100000;
+
+	private static final int NEW_MESSAGE = 0;
+	private static final int TRANSFER_STARTED = 1;
+	private static final int MESSAGE_DELETED = 2;
+	private static final int TRANSFER_ABORTED = 3;
+	private static final int MESSAGE_TRANSFERRED = 4;
+	private static final int HOSTS_CONNECTED = 5;
+	private static final int HOSTS_DISCONNECTED = 6;
+	private static final int NEW_DESTINATION = 7;
+	private static final int INITIAL_LOCATION = 8;
+	private static final int APPLICATION_EVENT = 9;
+
+	private SimScenario scen;
+	private Event[] ring;
+	private int mask;
+	/** sequence number of the last recorded event */
+	private volatile long published;
+	/** smallest consumed sequence number seen by the simulation thread */
+	private long minConsumed;
+	private Consumer[] consumers;
+	private boolean started;
+	private volatile boolean running;
+	/** first failure of a report in a consumer thread (or null) */
+	private volatile Throwable failure;
+	private Report failedReport;
+
+	private boolean messageEvents;
+	private boolean connectionEvents;
+	private boolean movementEvents;
+	private boolean applicationEvents;
+
+	/**
+	 * Constructor. Reads the buffer size and the number of consumer threads
+	 * from the settings.
+	 * @param scen The scenario whose events the pipeline listens to
+	 */
+	public ReportPipeline(SimScenario scen) {
+		this(scen, getSetting(BUFFER_SIZE_S, DEF_BUFFER_SIZE),
+				getSetting(NROF_THREADS_S, DEF_NROF_THREADS));
+	}
+
+	/**
+	 * Constructor.
+	 * @param scen The scenario whose events the pipeline listens to or
+	 * null if the events are passed to the pipeline by other means
+	 * @param bufferSize Minimum size of the ring buffer
+	 * @param nrofThreads Number of consumer threads
+	 */
+	public ReportPipeline(SimScenario scen, int bufferSize, int nrofThreads) {
+		if (bufferSize < 1 || nrofThreads < 1) {
+			throw new SimError("Invalid report pipeline size " + bufferSize +
+					" or thread count " + nrofThreads);
+		}
+		int size = Integer.highestOneBit(bufferSize);
+		if (size < bufferSize) {
+			size <<= 1;
+		}
+		this.scen = scen;
+		this.ring = new Event[size];
+		this.mask = size - 1;
+		this.published = -1;
+		this.minConsumed = -1;
+		this.consumers = new Consumer[nrofThreads];
+		for (int i=0; i < nrofThreads; i++) {
+			this.consumers[i] = new Consumer(i);
+		}
+	}
+
+	private static int getSetting(String name, int defValue) {
+		Settings s = new Settings();
+		return s.contains(name) ? s.getInt(name) : defValue;
+	}
+
+	/**
+	 * Returns true if the settings request asynchronous reports
+	 * @return true if {@link #ASYNC_S} is set to true
+	 */
+	public static boolean isRequested() {
+		Settings s = new Settings();
+		return s.contains(ASYNC_S) && s.getBoolean(ASYNC_S);
+	}
+
+	/**
+	 * Returns the scenario whose events the pipeline listens to
+	 * @return the scenario
+	 */
+	public SimScenario getScenario() {
+		return this.scen;
+	}
+
+	/**
+	 * Adds a report to the pipeline and registers the pipeline to the
+	 * scenario (if any) for the listener types of the report. Reports can't
+	 * be added after the pipeline has recorded its first event.
+	 * @param r The report
+	 * @return true if the report was added, false if it is synchronous only
+	 */
+	public boolean addReport(Report r) {
+		if (r.isSynchronousOnly()) {
+			return false;
+		}
+		if (this.started) {
+			throw new SimError("Can't add report " + r + " to a running " +
+					"report pipeline");
+		}
+
+		Consumer leastLoaded = this.consumers[0];
+		for (Consumer c : this.consumers) {
+			if (c.reports.size() < leastLoaded.reports.size()) {
+				leastLoaded = c;
+			}
+		}
+		leastLoaded.reports.add(r);
+		if (scen == null) {
+			return true;
+		}
+
+		if (r instanceof MessageListener && !messageEvents) {
+			scen.addMessageListener(this);
+			messageEvents = true;
+		}
+		if (r instanceof ConnectionListener && !connectionEvents) {
+			scen.addConnectionListener(this);
+			connectionEvents = true;
+		}
+		if (r instanceof MovementListener && !movementEvents) {
+			scen.addMovementListener(this);
+			movementEvents = true;
+		}
+		if (r instanceof ApplicationListener && !applicationEvents) {
+			scen.addApplicationListener(this);
+			applicationEvents = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Records an event into the ring buffer. Waits if the buffer is full.
+	 * @param e The event
+	 */
+	private void publish(Event e) {
+		if (!started) {
+			start();
+		}
+		long next = published + 1;
+		while (next - minConsumed > ring.length) {
+			minConsumed = getMinConsumed();
+			if (next - minConsumed > ring.length) {
+				checkFailure();
+				LockSupport.parkNanos(MAX_PARK);
+			}
+		}
+		ring[(int)(next & mask)] = e;
+		published = next;
+	}
+
+	/**
+	 * Returns the smallest sequence number the consumers have consumed
+	 */
+	private long getMinConsumed() {
+		long min = Long.MAX_VALUE;
+		for (Consumer c : consumers) {
+			min = Math.min(min, c.consumed);
+		}
+		return min;
+	}
+
+	private void start() {
+		this.started = true;
+		this.running = true;
+		for (Consumer c : consumers) {
+			c.setDaemon(true);
+			c.start();
+		}
+	}
+
+	/**
+	 * Throws the failure of a report if one has happened
+	 */
+	private void checkFailure() {
+		Throwable t = this.failure;
+		if (t == null) {
+			return;
+		}
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new SimError("Report " + failedReport.getClass().getSimpleName()
+				+ " failed in the report pipeline: " + t, (Exception)t);
+	}
+
+	/**
+	 * Waits until the consumers have passed all the recorded events to the
+	 * reports
+	 */
+	public void flush() {
+		if (!started) {
+			return;
+		}
+		long last = published;
+		while ((minConsumed = getMinConsumed()) < last) {
+			checkFailure();
+			LockSupport.parkNanos(MAX_PARK);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Flushes the pipeline and stops the consumer threads. The reports get
+	 * the time from the {@link SimClock} again after this, so they can be
+	 * {@link Report#done() done}.
+	 */
+	public void close() {
+		flush();
+		this.running = false;
+		for (Consumer c : consumers) {
+			if (started) {
+				LockSupport.unpark(c);
+				try {
+					c.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			for (Report r : c.reports) {
+				r.setEventTime(Double.NaN);
+			}
+		}
+	}
+
+	public void newMessage(Message m) {
+		publish(new Event(NEW_MESSAGE, m, null, null, false, null));
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		publish(new Event(TRANSFER_STARTED, m, from, to, false, null));
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		publish(new Event(MESSAGE_DELETED, m, where, null, dropped, null));
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		publish(new Event(TRANSFER_ABORTED, m, from, to, false, null));
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		publish(new Event(MESSAGE_TRANSFERRED, m, from, to, firstDelivery,
+				null));
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		publish(new Event(HOSTS_CONNECTED, null, host1, host2, false, null));
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		publish(new Event(HOSTS_DISCONNECTED, null, host1, host2, false,
+				null));
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		/* coordinates may be reused by the movement, record a copy */
+		publish(new Event(NEW_DESTINATION, destination.clone(), host, null,
+				false, Double.valueOf(speed)));
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		publish(new Event(INITIAL_LOCATION, location.clone(), host, null,
+				false, null));
+	}
+
+	public void gotEvent(String event, Object params, Application app,
+			DTNHost host) {
+		publish(new Event(APPLICATION_EVENT, event, host, null, false,
+				new Object[] {params, app}));
+	}
+
+	/**
+	 * Passes an event to a report if the report listens to its type
+	 * @param e The event
+	 * @param r The report
+	 */
+	private static void dispatch(Event e, Report r) {
+		switch (e.type) {
+		case NEW_MESSAGE:
+		case TRANSFER_STARTED:
+		case MESSAGE_DELETED:
+		case TRANSFER_ABORTED:
+		case MESSAGE_TRANSFERRED:
+			if (!(r instanceof MessageListener)) {
+				return;
+			}
+			break;
+		case HOSTS_CONNECTED:
+		case HOSTS_DISCONNECTED:
+			if (!(r instanceof ConnectionListener)) {
+				return;
+			}
+			break;
+		case NEW_DESTINATION:
+		case INITIAL_LOCATION:
+			if (!(r instanceof MovementListener)) {
+				return;
+			}
+			break;
+		default:
+			if (!(r instanceof ApplicationListener)) {
+				return;
+			}
+		}
+
+		r.setEventTime(e.time);
+		switch (e.type) {
+		case NEW_MESSAGE:
+			((MessageListener)r).newMessage((Message)e.subject);
+			break;
+		case TRANSFER_STARTED:
+			((MessageListener)r).messageTransferStarted((Message)e.subject,
+					e.host1, e.host2);
+			break;
+		case MESSAGE_DELETED:
+			((MessageListener)r).messageDeleted((Message)e.subject,
+					e.host1, e.flag);
+			break;
+		case TRANSFER_ABORTED:
+			((MessageListener)r).messageTransferAborted((Message)e.subject,
+					e.host1, e.host2);
+			break;
+		case MESSAGE_TRANSFERRED:
+			((MessageListener)r).messageTransferred((Message)e.subject,
+					e.host1, e.host2, e.flag);
+			break;
+		case HOSTS_CONNECTED:
+			((ConnectionListener)r).hostsConnected(e.host1, e.host2);
+			break;
+		case HOSTS_DISCONNECTED:
+			((ConnectionListener)r).hostsDisconnected(e.host1, e.host2);
+			break;
+		case NEW_DESTINATION:
+			((MovementListener)r).newDestination(e.host1, (Coord)e.subject,
+					(Double)e.extra);
+			break;
+		case INITIAL_LOCATION:
+			((MovementListener)r).initialLocation(e.host1, (Coord)e.subject);
+			break;
+		default:
+			Object[] params = (Object[])e.extra;
+			((ApplicationListener)r).gotEvent((String)e.subject, params[0],
+					(Application)params[1], e.host1);
+		}
+	}
+
+	/**
+	 * An immutable record of a listener event
+	 */
+	private static final class Event {
+		private final int type;
+		private final double time;
+		/** the message, coordinate or application event name */
+		private final Object subject;
+		private final DTNHost host1;
+		private final DTNHost host2;
+		private final boolean flag;
+		/** speed or application parameters */
+		private final Object extra;
+
+		private Event(int type, Object subject, DTNHost host1, DTNHost host2,
+				boolean flag, Object extra) {
+			this.type = type;
+			this.time = SimClock.getTime();
+			this.subject = subject;
+			this.host1 = host1;
+			this.host2 = host2;
+			this.flag = flag;
+			this.extra = extra;
+		}
+	}
+
+	/**
+	 * Consumer thread that passes the events to its share of the reports
+	 */
+	private class Consumer extends Thread {
+		/** sequence number of the last consumed event */
+		private volatile long consumed = -1;
+		private List<Report> reports = new ArrayList<Report>();
+
+		private Consumer(int index) {
+			super("ReportPipeline-" + index);
+		}
+
+		public void run() {
+			long next = 0;
+			long park = 1000;
+			while (true) {
+				long available = published;
+				if (available < next) {
+					if (!running) {
+						return;
+					}
+					LockSupport.parkNanos(park); /* back off while idle */
+					park = Math.min(park * 2, MAX_PARK);
+					continue;
+				}
+				park = 1000;
+				for (; next <= available; next++) {
+					Event e = ring[(int)(next & mask)];
+					for (int i=0, n = reports.size(); i < n; i++) {
+						Report r = reports.get(i);
+						try {
+							dispatch(e, r);
+						} catch (Throwable t) {
+							failedReport = r;
+							failure = t;
+							return;
+						}
+					}
+				}
+				consumed = available;
+			}
+		}
+	}
+}
@@ -7,6 +7,7 @@ package report;
 
 import core.ConnectionListener;
 import core.DTNHost;
+import core.IntHashMap;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
@@ -23,7 +24,7 @@ import java.util.Map;
 public class TotalContactListener extends Report implements UpdateListener, ConnectionListener, MessageListener {
     
     
-    private Map<String, Double> creationTimes;
+    private IntHashMap<Double> creationTimes;
     private Map<Integer, Double> connected;
 //    private Map<Integer, List<DTNHost>> update;
 
@@ -43,7 +44,7 @@ public class TotalContactListener extends Report implements UpdateListener, Conn
     protected void init() {
         super.init();
         
-        this.creationTimes = new HashMap<String, Double>();
+        this.creationTimes = new IntHashMap<Double>();
         this.connected = new HashMap<Integer, Double>();
         this.nrofCreated = 0;       
         this.Jinterval = 0;       
@@ -85,12 +86,12 @@ public class TotalContactListener extends Report implements UpdateListener, Conn
     @Override
     public void newMessage(Message m) {
         if (isWarmup()) {
-            addWarmupID(m.getId());
+            addWarmupID(m);
             return;
         }
         nrofCreated++;
 
-        this.creationTimes.put(m.getId(), getSimTime());
+        this.creationTimes.put(m.getIndex(), getSimTime());
 
     }
 
@@ -112,7 +113,7 @@ public class TotalContactListener extends Report implements UpdateListener, Conn
     @Override
     public void messageTransferred(Message m, DTNHost from, DTNHost to, boolean firstDelivery) {
       
-     connected.put(nrofContact, (getSimTime()-this.creationTimes.get(m.getId())));
+     connected.put(nrofContact, (getSimTime()-this.creationTimes.get(m.getIndex())));
         
 
     }
@@ -4,14 +4,17 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 import core.Connection;
 import core.DTNHost;
+import core.FlightRecorderEvents;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
@@ -21,9 +24,11 @@ import core.Tuple;
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
  * {@link #getOldestMessage(boolean)}) and watching of sending connections (see
- * {@link #update()}).
+ * {@link #update()}). Active routers drop the messages whose TTL has
+ * expired (see {@link #dropExpiredMessages()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 1L;
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -31,15 +36,30 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Buffer drop policy -setting id ({@value}). Name of the policy that
+	 * chooses the messages dropped when the buffer is full (see
+	 * {@link DropPolicy#create(String)}): fifo, lifo, mofo, shli (shortest
+	 * remaining TTL) or largest. By default, the oldest received message
+	 * is found by scanning the buffer (see {@link #getOldestMessage(boolean)})
+	 * or the router uses a policy of its own. */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	/** name of the drop policy from the settings (or null) */
+	private String dropPolicyName;
+	/** drop policy of the buffer (or null if the buffer is scanned) */
+	protected DropPolicy dropPolicy;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
+	/** how often TTL check (discarding old messages) was performed
+	 * @deprecated Messages are dropped when their TTL expires (on the
+	 * first update after that); the interval is not used */
+	@Deprecated
 	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** expiry times of the buffered messages (may contain messages that
+	 * are no longer in the buffer) */
+	private PriorityQueue<Expiry> expiries;
 	
 
 	/**
@@ -56,6 +76,11 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		if (s.contains(DROP_POLICY_S)) {
+			this.dropPolicyName = s.getSetting(DROP_POLICY_S);
+			DropPolicy.create(this.dropPolicyName); // check the name
+		}
 	}
 	
 	/**
@@ -65,13 +90,73 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.dropPolicyName = r.dropPolicyName;
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiries = new PriorityQueue<Expiry>();
+		this.dropPolicy = createDropPolicy();
+	}
+	
+	/**
+	 * Creates the drop policy of the buffer. This implementation creates
+	 * the policy defined with the {@link #DROP_POLICY_S} setting. Routers
+	 * with a drop order of their own can override this.
+	 * @return The policy or null if the oldest message should be found by
+	 * scanning the buffer
+	 */
+	protected DropPolicy createDropPolicy() {
+		if (this.dropPolicyName == null) {
+			return null;
+		}
+		return DropPolicy.create(this.dropPolicyName);
+	}
+	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		if (this.dropPolicy != null) {
+			Message old = getMessage(m.getId());
+			if (old != null) {
+				this.dropPolicy.removed(old);
+			}
+			this.dropPolicy.added(m);
+		}
+		super.addToMessages(m, newMessage);
+
+		double expiry = m.getExpiryTime();
+		if (expiry != Double.MAX_VALUE) {
+			if (this.expiries.size() >= 2 * getNrofMessages() + 64) {
+				purgeExpiries();
+			}
+			this.expiries.add(new Expiry(m, expiry));
+		}
+	}
+	
+	/**
+	 * Removes the expiry times of the messages that are no longer in the
+	 * buffer from the expiry queue
+	 */
+	private void purgeExpiries() {
+		PriorityQueue<Expiry> valid = new PriorityQueue<Expiry>(
+				getNrofMessages() + 1);
+		for (Expiry e : this.expiries) {
+			if (getMessage(e.message.getId()) == e.message) {
+				valid.add(e);
+			}
+		}
+		this.expiries = valid;
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.dropPolicy != null) {
+			this.dropPolicy.removed(m);
+		}
+		return m;
 	}
 	
 	/**
@@ -247,6 +332,18 @@ public abstract class ActiveRouter extends MessageRouter {
 				return false; // couldn't remove any more messages
 			}			
 			
+			FlightRecorderEvents.BufferEviction event =
+				new FlightRecorderEvents.BufferEviction();
+			if (event.shouldCommit()) {
+				event.simTime = SimClock.getTime();
+				event.host = getHost().getAddress();
+				event.messageId = m.getId();
+				event.size = m.getSize();
+				event.needed = size;
+				event.freeBuffer = freeBuffer;
+				event.commit();
+			}
+
 			/* delete message from the buffer as "drop" */
 			deleteMessage(m.getId(), true);
 			freeBuffer += m.getSize();
@@ -256,15 +353,31 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops the messages whose TTL has expired, except the ones that are
+	 * being sent (they are dropped on a later call, when the transfer is
+	 * over). The messages are kept in a queue ordered by their expiry
+	 * time, so only the expired messages are looked at.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		double now = SimClock.getTime();
+		List<Expiry> beingSent = null;
+		while (!this.expiries.isEmpty() && this.expiries.peek().time <= now) {
+			Expiry e = this.expiries.poll();
+			String id = e.message.getId();
+			if (getMessage(id) != e.message) {
+				continue; // the message has already been removed
 			}
+			if (isSending(id)) {
+				if (beingSent == null) {
+					beingSent = new ArrayList<Expiry>(1);
+				}
+				beingSent.add(e);
+				continue;
+			}
+			deleteMessage(id, true);
+		}
+		if (beingSent != null) {
+			this.expiries.addAll(beingSent);
 		}
 	}
 	
@@ -282,7 +395,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true). If the
+	 * router has a {@link DropPolicy}, returns the next message to drop
+	 * according to the policy instead.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -291,6 +406,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
+		if (this.dropPolicy != null) {
+			return this.dropPolicy.getNextToDrop(this, excludeMsgBeingSent);
+		}
+		
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
 		for (Message m : messages) {
@@ -551,6 +670,12 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					if (this.dropPolicy != null) {
+						Message m = getMessage(con.getMessage().getId());
+						if (m != null) {
+							this.dropPolicy.forwarded(m);
+						}
+					}
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
@@ -578,12 +703,21 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
+		/* drop the messages whose TTL has expired */
+		dropExpiredMessages();
+	}
+	
+	/**
+	 * Returns the time when the next message expires, or an earlier time if
+	 * the superclass requests so.
+	 */
+	@Override
+	public double nextUpdateTime() {
+		double next = super.nextUpdateTime();
+		if (!this.expiries.isEmpty()) {
+			next = Math.min(next, this.expiries.peek().time);
 		}
+		return next;
 	}
 	
 	/**
@@ -602,4 +736,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected void transferDone(Connection con) { }
 	
+	/**
+	 * Expiry time of a buffered message
+	 */
+	private static class Expiry implements Comparable<Expiry>, Serializable {
+		private static final long serialVersionUID = 1L;
+		private Message message;
+		private double time;
+
+		private Expiry(Message message, double time) {
+			this.message = message;
+			this.time = time;
+		}
+
+		public int compareTo(Expiry other) {
+			return Double.compare(this.time, other.time);
+		}
+	}
 }
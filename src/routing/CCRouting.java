@@ -6,6 +6,7 @@ import routing.community.Duration;
 // import reinforcement.qlearn.QLearner;
 
 public class CCRouting extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	// private QLearner tessss;
 	private Map<DTNHost, Map<List<Duration>, Integer>> amountDataPerDuration;
 
@@ -80,6 +80,7 @@ import core.*;
  * @author PJ Dillon, University of Pittsburgh
  */
 public class DecisionEngineRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PUBSUB_NS = "DecisionEngineRouter";
 	public static final String ENGINE_SETTING = "decisionEngine";
@@ -91,7 +92,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 	protected RoutingDecisionEngine decider;
 	protected List<Tuple<Message, Connection>> outgoingMessages;
 
-	protected Set<String> tombstones;
+	protected SeenMessageStore tombstones;
 
 	/**
 	 * Used to save state machine when new connections are made. See comment in
@@ -116,7 +117,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 		}
 
 		if (tombstoning) {
-			tombstones = new HashSet<String>(10);
+			tombstones = createSeenMessageStore(false);
 		}
 		conStates = new HashMap<Connection, Integer>(4);
 	}
@@ -128,7 +129,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 		tombstoning = r.tombstoning;
 
 		if (this.tombstoning) {
-			tombstones = new HashSet<String>(10);
+			tombstones = createSeenMessageStore(false);
 		}
 		conStates = new HashMap<Connection, Integer>(4);
 	}
@@ -243,7 +244,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 			addToSendingConnections(con);
 		} else if (tombstoning && retVal == DENIED_DELIVERED) {
 			this.deleteMessage(m.getId(), false);
-			tombstones.add(m.getId());
+			tombstones.add(m);
 		} else if (deleteDelivered && (retVal == DENIED_OLD || retVal == DENIED_DELIVERED)
 			&& decider.shouldDeleteOldMessage(m, con.getOtherNode(getHost()))) {
 			/* final recipient has already received the msg -> delete it */
@@ -257,7 +258,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
 	@Override
 	public int receiveMessage(Message m, DTNHost from) {
-		if (isDeliveredMessage(m) || (tombstoning && tombstones.contains(m.getId()))) {
+		if (isDeliveredMessage(m) || (tombstoning && tombstones.contains(m))) {
 			return DENIED_DELIVERED;
 		}
 
@@ -301,7 +302,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 		}
 
 		if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.add(aMessage);
 		}
 
 		for (MessageListener ml : this.mListeners) {
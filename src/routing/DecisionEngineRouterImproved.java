@@ -18,6 +18,7 @@ import static routing.MessageRouter.TRY_LATER_BUSY;
  * @author Jarkom
  */
 public class DecisionEngineRouterImproved extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     public static final String PUBSUB_NS = "DecisionEngineRouterImproved";
     public static final String ENGINE_SETTING = "decisionEngineImproved";
@@ -28,7 +29,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
     protected RoutingDecisionEngineImproved decider;
     protected List<Tuple<Message, Connection>> outgoingMessages;
 
-    protected Set<String> tombstones;
+    protected SeenMessageStore tombstones;
 
     protected Map<Connection, Integer> conStates;
 
@@ -49,7 +50,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         if (tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createSeenMessageStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
     }
@@ -61,7 +62,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         tombstoning = r.tombstoning;
 
         if (this.tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createSeenMessageStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
     }
@@ -141,7 +142,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
             addToSendingConnections(con);
         } else if (tombstoning && retVal == DENIED_DELIVERED) {
             this.deleteMessage(m.getId(), false);
-            tombstones.add(m.getId());
+            tombstones.add(m);
         } else if (deleteDelivered && (retVal == DENIED_OLD || retVal == DENIED_DELIVERED)
                 && decider.shouldDeleteOldMessage(m, con.getOtherNode(getHost()))) {
             this.deleteMessage(m.getId(), false);
@@ -152,7 +153,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
     @Override
     public int receiveMessage(Message m, DTNHost from) {
-        if (isDeliveredMessage(m) || (tombstoning && tombstones.contains(m.getId()))) {
+        if (isDeliveredMessage(m) || (tombstoning && tombstones.contains(m))) {
             return DENIED_DELIVERED;
         }
 
@@ -194,7 +195,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         if (isFirstDelivery) {
-            this.deliveredMessages.put(id, aMessage);
+            this.deliveredMessages.add(aMessage);
         }
 
         for (MessageListener ml : this.mListeners) {
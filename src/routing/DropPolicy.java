@@ -0,0 +1,275 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import core.Message;
+import core.SettingsError;
+
+/**
+ * <P>Buffer management policy of an {@link ActiveRouter}: decides which
+ * message is dropped next when the router needs room in its buffer. The
+ * router tells the policy about the messages that are added to and removed
+ * from its buffer and about the messages it forwarded, so a policy can keep
+ * an index of the buffer instead of scanning it for every drop.</P>
+ * <P>The indexed policies available by name (see {@link #create(String)})
+ * keep the messages in a balanced tree ordered by the policy's key, so
+ * adding, removing and finding the next message to drop take O(log n)
+ * time. Messages with equal keys are dropped in the order they were added
+ * to the buffer.</P>
+ */
+public abstract class DropPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Name of the policy that drops the oldest received message first
+	 * ({@value}) */
+	public static final String FIFO = "fifo";
+	/** Name of the policy that drops the newest received message first
+	 * ({@value}) */
+	public static final String LIFO = "lifo";
+	/** Name of the policy that drops the message this host has forwarded
+	 * most times first ({@value}) */
+	public static final String MOFO = "mofo";
+	/** Name of the policy that drops the message with the shortest
+	 * remaining TTL first ({@value}) */
+	public static final String SHORTEST_TTL = "shli";
+	/** Name of the policy that drops the largest message first ({@value}) */
+	public static final String LARGEST = "largest";
+
+	/**
+	 * Creates a new policy by name
+	 * @param name Name of the policy (case insensitive), one of
+	 * {@link #FIFO}, {@link #LIFO}, {@link #MOFO}, {@link #SHORTEST_TTL} or
+	 * {@link #LARGEST}
+	 * @return The new policy
+	 * @throws SettingsError if there's no policy with the name
+	 */
+	public static DropPolicy create(String name) {
+		String n = name.trim().toLowerCase();
+		if (n.equals(FIFO)) {
+			return new Fifo();
+		}
+		else if (n.equals(LIFO)) {
+			return new Lifo();
+		}
+		else if (n.equals(MOFO)) {
+			return new Mofo();
+		}
+		else if (n.equals(SHORTEST_TTL)) {
+			return new ShortestTtl();
+		}
+		else if (n.equals(LARGEST)) {
+			return new Largest();
+		}
+		throw new SettingsError("Unknown drop policy '" + name + "'");
+	}
+
+	/**
+	 * Called when a message is added to the router's buffer
+	 * @param m The message
+	 */
+	public void added(Message m) { }
+
+	/**
+	 * Called when a message is removed from the router's buffer
+	 * @param m The message
+	 */
+	public void removed(Message m) { }
+
+	/**
+	 * Called when the router has forwarded a message of its buffer to
+	 * another host
+	 * @param m The message (in the router's buffer)
+	 */
+	public void forwarded(Message m) { }
+
+	/**
+	 * Returns the message that should be dropped next from the router's
+	 * buffer
+	 * @param router The router whose buffer the policy manages
+	 * @param excludeMsgBeingSent If true, the messages the router is sending
+	 * are skipped
+	 * @return The message to drop or null if no message can be dropped
+	 */
+	public abstract Message getNextToDrop(ActiveRouter router,
+			boolean excludeMsgBeingSent);
+
+	/**
+	 * Superclass of the policies that keep the messages in a tree ordered by
+	 * a key of the message
+	 */
+	public abstract static class Indexed extends DropPolicy {
+		private static final long serialVersionUID = 1L;
+		private TreeSet<Entry> index =
+			new TreeSet<Entry>(new EntryComparator());
+		private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+		private long nextSeq;
+
+		/**
+		 * Returns the key of a message. Messages with smaller keys are
+		 * dropped first.
+		 * @param m The message
+		 * @param e The index entry of the message
+		 * @return The key
+		 */
+		protected abstract double getKey(Message m, Entry e);
+
+		@Override
+		public void added(Message m) {
+			Entry e = new Entry(m, nextSeq++);
+			e.key = getKey(m, e);
+			Entry old = entries.put(m.getId(), e);
+			if (old != null) {
+				index.remove(old);
+			}
+			index.add(e);
+		}
+
+		@Override
+		public void removed(Message m) {
+			Entry e = entries.remove(m.getId());
+			if (e != null) {
+				index.remove(e);
+			}
+		}
+
+		/**
+		 * Returns the index entry of a message
+		 * @param m The message
+		 * @return The entry or null if the message is not in the index
+		 */
+		protected Entry getEntry(Message m) {
+			return entries.get(m.getId());
+		}
+
+		/**
+		 * Recalculates the key of a message in the index
+		 * @param m The message
+		 */
+		protected void update(Message m) {
+			Entry e = entries.get(m.getId());
+			if (e != null) {
+				index.remove(e);
+				e.key = getKey(m, e);
+				index.add(e);
+			}
+		}
+
+		@Override
+		public Message getNextToDrop(ActiveRouter router,
+				boolean excludeMsgBeingSent) {
+			for (Entry e : index) {
+				if (excludeMsgBeingSent &&
+						router.isSending(e.message.getId())) {
+					continue; // skip the message(s) that router is sending
+				}
+				return e.message;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Index entry of a message
+	 */
+	protected static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private Message message;
+		/** insertion order; breaks the ties of the keys */
+		private long seq;
+		private double key;
+		/** number of times the message was forwarded (used by MOFO) */
+		private int forwards;
+
+		private Entry(Message message, long seq) {
+			this.message = message;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Orders the entries by their key and insertion order
+	 */
+	private static class EntryComparator implements Comparator<Entry>,
+			Serializable {
+		private static final long serialVersionUID = 1L;
+
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.key, e2.key);
+			if (c != 0) {
+				return c;
+			}
+			return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Drops the oldest received message first
+	 */
+	public static class Fifo extends Indexed {
+		private static final long serialVersionUID = 1L;
+
+		protected double getKey(Message m, Entry e) {
+			return m.getReceiveTime();
+		}
+	}
+
+	/**
+	 * Drops the newest received message first
+	 */
+	public static class Lifo extends Indexed {
+		private static final long serialVersionUID = 1L;
+
+		protected double getKey(Message m, Entry e) {
+			return -m.getReceiveTime();
+		}
+	}
+
+	/**
+	 * Drops the message this host has forwarded most times first
+	 */
+	public static class Mofo extends Indexed {
+		private static final long serialVersionUID = 1L;
+
+		protected double getKey(Message m, Entry e) {
+			return -e.forwards;
+		}
+
+		@Override
+		public void forwarded(Message m) {
+			Entry e = getEntry(m);
+			if (e != null) {
+				e.forwards++;
+				update(m);
+			}
+		}
+	}
+
+	/**
+	 * Drops the message with the shortest remaining TTL first
+	 */
+	public static class ShortestTtl extends Indexed {
+		private static final long serialVersionUID = 1L;
+
+		protected double getKey(Message m, Entry e) {
+			return m.getExpiryTime();
+		}
+	}
+
+	/**
+	 * Drops the largest message first
+	 */
+	public static class Largest extends Indexed {
+		private static final long serialVersionUID = 1L;
+
+		protected double getKey(Message m, Entry e) {
+			return -m.getSize();
+		}
+	}
+}
@@ -18,6 +18,7 @@ import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
 import core.Connection;
 import core.DTNHost;
+import core.IntHashSet;
 import core.Message;
 import core.Settings;
 import core.Tuple;
@@ -35,6 +36,7 @@ import core.Tuple;
  * Protocols</I> Chants, 2008 
  */
 public class MaxPropRouter extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
     /** Router's setting namespace ({@value})*/
 	public static final String MAXPROP_NS = "MaxPropRouter";
 	/**
@@ -53,7 +55,7 @@ public class MaxPropRouter extends ActiveRouter {
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;	
 	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
+	private IntHashSet ackedMessageIds;
 	/** mapping of the current costs for all messages. This should be set to
 	 * null always when the costs should be updated (a host is met or a new
 	 * message is received) */
@@ -111,7 +113,7 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessageIds = new IntHashSet();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 	}	
 
@@ -176,11 +178,16 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
-				this.deleteMessage(id, false);
+		List<String> ackedInBuffer = new ArrayList<String>();
+		for (Message m : getMessageCollection()) {
+			if (this.ackedMessageIds.contains(m.getIndex()) &&
+					!isSending(m.getId())) {
+				ackedInBuffer.add(m.getId());
 			}
 		}
+		for (String id : ackedInBuffer) {
+			this.deleteMessage(id, false);
+		}
 	}
 	
 	@Override
@@ -189,7 +196,7 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessageIds.add(m.getIndex());
 		}
 		return m;
 	}
@@ -205,7 +212,7 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = con.getMessage();
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == con.getOtherNode(getHost())) { 
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.ackedMessageIds.add(m.getIndex()); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 	}
@@ -240,31 +247,13 @@ public class MaxPropRouter extends ActiveRouter {
 	}
 	
 	/**
-	 * Returns the next message that should be dropped, according to MaxProp's
-	 * message ordering scheme (see {@link MaxPropTupleComparator}). 
-	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the next-to-be-dropped check (i.e., if next message to
-	 * drop is being sent, the following message is returned)
-	 * @return The oldest message or null if no message could be returned
-	 * (no messages in buffer or all messages in buffer are being sent and
-	 * exludeMsgBeingSent is true)
+	 * Creates MaxProp's drop policy ({@link MaxPropDropPolicy}) unless
+	 * another policy is defined in the settings
 	 */
-    @Override
-	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		List<Message> validMessages = new ArrayList<Message>();
-
-		for (Message m : messages) {	
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-			validMessages.add(m);
-		}
-		
-		Collections.sort(validMessages, 
-				new MaxPropComparator(this.calcThreshold())); 
-		
-		return validMessages.get(validMessages.size()-1); // return last message
+	@Override
+	protected DropPolicy createDropPolicy() {
+		DropPolicy policy = super.createDropPolicy();
+		return policy != null ? policy : new MaxPropDropPolicy();
 	}
 	
 	@Override
@@ -421,6 +410,38 @@ public class MaxPropRouter extends ActiveRouter {
 		return msgs.get(i).getHopCount() + 1;
 	}
 	
+	/**
+	 * Drop policy that drops the last message according to MaxProp's
+	 * message ordering scheme (see {@link MaxPropComparator}). The order
+	 * depends on the current path costs, so the buffer is sorted for every
+	 * drop.
+	 */
+	private class MaxPropDropPolicy extends DropPolicy {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Message getNextToDrop(ActiveRouter router,
+				boolean excludeMsgBeingSent) {
+			Collection<Message> messages = getMessageCollection();
+			List<Message> validMessages = new ArrayList<Message>();
+
+			for (Message m : messages) {
+				if (excludeMsgBeingSent && isSending(m.getId())) {
+					continue; // skip the message(s) that router is sending
+				}
+				validMessages.add(m);
+			}
+			if (validMessages.size() == 0) {
+				return null;
+			}
+
+			Collections.sort(validMessages,
+					new MaxPropComparator(calcThreshold()));
+
+			return validMessages.get(validMessages.size()-1); // the last one
+		}
+	}
+	
 	/**
 	 * Message comparator for the MaxProp routing module. 
 	 * Messages that have a hop count smaller than the given
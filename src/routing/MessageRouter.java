@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -13,9 +14,13 @@ import java.util.List;
 import java.util.Random;
 
 import core.Application;
+import core.ApplicationListener;
 import core.Connection;
 import core.DTNHost;
+import core.FlightRecorderEvents;
+import core.IntHashMap;
 import core.Message;
+import core.MessageIdInterner;
 import core.MessageListener;
 import core.Settings;
 import core.SettingsError;
@@ -26,7 +31,8 @@ import core.Tuple;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Message buffer size -setting id ({@value}). Integer value in bytes.
@@ -49,6 +55,33 @@ public abstract class MessageRouter {
      * </UL>
      */
     public static final String SEND_QUEUE_MODE_S = "sendQueue";
+    /**
+     * Delivered messages store -setting id ({@value}). Defines how the router
+     * remembers the messages delivered to its host (and how routers that
+     * keep tombstones remember them). Valid values are<BR>
+     * <UL>
+     * <LI/> {@value routing.SeenMessageStore#MESSAGES} : the delivered
+     * messages are kept, with their paths (default option)
+     * <LI/> {@value routing.SeenMessageStore#EXACT} : only a bit per message
+     * ID is kept
+     * <LI/> {@value routing.SeenMessageStore#BLOOM} : a scalable Bloom
+     * filter of the message IDs is kept. Uses the least memory, but a
+     * message may be taken as delivered when it's not (see
+     * {@link #DELIVERED_FP_RATE_S}).
+     * </UL>
+     * @see SeenMessageStore
+     */
+    public static final String DELIVERED_STORE_S = "deliveredStore";
+    /**
+     * False positive rate of the Bloom filter delivered messages store
+     * -setting id ({@value}). Maximum probability that a message that
+     * wasn't delivered is taken as delivered. Default is
+     * {@link #DEF_DELIVERED_FP_RATE}.
+     */
+    public static final String DELIVERED_FP_RATE_S = "deliveredFpRate";
+    /** Default value for the {@link #DELIVERED_FP_RATE_S} setting
+     * ({@value}) */
+    public static final double DEF_DELIVERED_FP_RATE = 0.001;
 
     /**
      *
@@ -90,19 +123,23 @@ public abstract class MessageRouter {
      */
     public static final int DENIED_UNSPECIFIED = -999;
     public static final int DENIED_DELIVERED = -4;
-    protected List<MessageListener> mListeners;
+    protected transient List<MessageListener> mListeners;
     /**
-     * The messages being transferred with msgID_hostName keys
+     * The messages being transferred, keyed by the message indexes (see
+     * {@link Message#getIndex()}). Messages with the same ID from different
+     * hosts are chained.
      */
-    private HashMap<String, Message> incomingMessages;
+    private IntHashMap<Incoming> incomingMessages;
     /**
-     * The messages this router is carrying
+     * The messages this router is carrying. The buffer stays keyed by the
+     * message IDs: its iteration order feeds the send-queue ordering, so
+     * keying it by the indexes would change the simulation results.
      */
     private HashMap<String, Message> messages;
     /**
      * The messages this router has received as the final recipient
      */
-    protected HashMap<String, Message> deliveredMessages;
+    protected SeenMessageStore deliveredMessages;
     /**
      * Host where this router belongs to
      */
@@ -111,6 +148,10 @@ public abstract class MessageRouter {
      * size of the buffer
      */
     private int bufferSize;
+    /**
+     * sum of the sizes of the messages in the buffer
+     */
+    private int bufferOccupancy;
     /**
      * TTL for all messages
      */
@@ -119,6 +160,14 @@ public abstract class MessageRouter {
      * Queue mode for sending messages
      */
     private int sendQueueMode;
+    /**
+     * Name of the store type for the delivered messages
+     */
+    private String deliveredStore;
+    /**
+     * False positive rate of Bloom filter stores
+     */
+    private double deliveredFpRate;
 
     /**
      * applications attached to the host
@@ -160,6 +209,17 @@ public abstract class MessageRouter {
             sendQueueMode = Q_MODE_RANDOM;
         }
 
+        this.deliveredStore = SeenMessageStore.MESSAGES;
+        this.deliveredFpRate = DEF_DELIVERED_FP_RATE;
+        if (s.contains(DELIVERED_STORE_S)) {
+            this.deliveredStore = s.getSetting(DELIVERED_STORE_S);
+        }
+        if (s.contains(DELIVERED_FP_RATE_S)) {
+            this.deliveredFpRate = s.getDouble(DELIVERED_FP_RATE_S);
+        }
+        SeenMessageStore.create(this.deliveredStore,
+                this.deliveredFpRate); // check the settings
+
     }
 
     /**
@@ -170,9 +230,10 @@ public abstract class MessageRouter {
      * @param mListeners The message listeners
      */
     public void init(DTNHost host, List<MessageListener> mListeners) {
-        this.incomingMessages = new HashMap<String, Message>();
+        this.incomingMessages = new IntHashMap<Incoming>();
         this.messages = new HashMap<String, Message>();
-        this.deliveredMessages = new HashMap<String, Message>();
+        this.deliveredMessages = createSeenMessageStore(true);
+        this.bufferOccupancy = 0;
         this.mListeners = mListeners;
         this.host = host;
 //        Random rnd = new Random();
@@ -195,6 +256,8 @@ public abstract class MessageRouter {
         this.bufferSize = r.bufferSize;
         this.msgTtl = r.msgTtl;
         this.sendQueueMode = r.sendQueueMode;
+        this.deliveredStore = r.deliveredStore;
+        this.deliveredFpRate = r.deliveredFpRate;
         this.nodeSelfish = r.nodeSelfish;
         this.nodeList = r.nodeList;
         this.applications = new HashMap<String, Collection<Application>>();
@@ -217,6 +280,22 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns the next simulation time when this router must be updated
+     * even if no connection or message event happens before that. The World
+     * uses this when it skips idle update intervals. This implementation
+     * returns the current time if there are applications attached (they may
+     * need an update on every interval) and Double.MAX_VALUE otherwise.
+     *
+     * @return The next time this router needs an update
+     */
+    public double nextUpdateTime() {
+        if (this.applications.isEmpty()) {
+            return Double.MAX_VALUE;
+        }
+        return SimClock.getTime();
+    }
+
     /**
      * Informs the router about change in connections state.
      *
@@ -254,7 +333,24 @@ public abstract class MessageRouter {
      * as the final recipient.
      */
     protected boolean isDeliveredMessage(Message m) {
-        return (this.deliveredMessages.containsKey(m.getId()));
+        return (this.deliveredMessages.contains(m));
+    }
+
+    /**
+     * Creates a new store for remembering messages, as defined by the
+     * {@link #DELIVERED_STORE_S} setting.
+     *
+     * @param keepMessages If false, the message objects are not needed, so
+     * a store that keeps only the message IDs is created even if the
+     * setting asks for a store that keeps the messages
+     * @return The new store
+     */
+    protected SeenMessageStore createSeenMessageStore(boolean keepMessages) {
+        String type = this.deliveredStore;
+        if (!keepMessages && type.equalsIgnoreCase(SeenMessageStore.MESSAGES)) {
+            type = SeenMessageStore.EXACT;
+        }
+        return SeenMessageStore.create(type, this.deliveredFpRate);
     }
 
     /**
@@ -291,23 +387,18 @@ public abstract class MessageRouter {
     /**
      * Returns the amount of free space in the buffer. May return a negative
      * value if there are more messages in the buffer than should fit there
-     * (because of creating new messages).
+     * (because of creating new messages). The occupied space is kept up to
+     * date when messages are added to and removed from the buffer.
      *
      * @return The amount of free space (Integer.MAX_VALUE if the buffer size
      * isn't defined)
      */
     public int getFreeBufferSize() {
-        int occupancy = 0;
-
         if (this.getBufferSize() == Integer.MAX_VALUE) {
             return Integer.MAX_VALUE;
         }
 
-        for (Message m : getMessageCollection()) {
-            occupancy += m.getSize();
-        }
-
-        return this.getBufferSize() - occupancy;
+        return this.getBufferSize() - this.bufferOccupancy;
     }
 
     /**
@@ -414,7 +505,7 @@ public abstract class MessageRouter {
             // -> put to buffer
             addToMessages(aMessage, false);
         } else if (isFirstDelivery) {
-            this.deliveredMessages.put(id, aMessage);
+            this.deliveredMessages.add(aMessage);
         }
 
         for (MessageListener ml : this.mListeners) {
@@ -433,7 +524,8 @@ public abstract class MessageRouter {
      * @param from Who the message was from (previous hop).
      */
     protected void putToIncomingBuffer(Message m, DTNHost from) {
-        this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+        Incoming first = this.incomingMessages.get(m.getIndex());
+        this.incomingMessages.put(m.getIndex(), new Incoming(m, from, first));
     }
 
     /**
@@ -445,7 +537,23 @@ public abstract class MessageRouter {
      * @return The found message or null if such message wasn't found
      */
     protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-        return this.incomingMessages.remove(id + "_" + from.toString());
+        int index = MessageIdInterner.indexOf(id);
+        Incoming first = index < 0 ? null : this.incomingMessages.get(index);
+        Incoming prev = null;
+
+        for (Incoming in = first; in != null; prev = in, in = in.next) {
+            if (in.from == from) {
+                if (prev != null) {
+                    prev.next = in.next;
+                } else if (in.next != null) {
+                    this.incomingMessages.put(index, in.next);
+                } else {
+                    this.incomingMessages.remove(index);
+                }
+                return in.message;
+            }
+        }
+        return null;
     }
 
     /**
@@ -456,7 +564,8 @@ public abstract class MessageRouter {
      * @return True if such message is incoming right now
      */
     protected boolean isIncomingMessage(String id) {
-        return this.incomingMessages.containsKey(id);
+        int index = MessageIdInterner.indexOf(id);
+        return index >= 0 && this.incomingMessages.containsKey(index);
     }
 
     /**
@@ -468,7 +577,11 @@ public abstract class MessageRouter {
      * message, if false, nothing is informed.
      */
     protected void addToMessages(Message m, boolean newMessage) {
-        this.messages.put(m.getId(), m);
+        Message old = this.messages.put(m.getId(), m);
+        if (old != null) {
+            this.bufferOccupancy -= old.getSize();
+        }
+        this.bufferOccupancy += m.getSize();
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -485,6 +598,9 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        if (m != null) {
+            this.bufferOccupancy -= m.getSize();
+        }
         return m;
     }
 
@@ -504,6 +620,18 @@ public abstract class MessageRouter {
                     + " to abort in " + this.host);
         }
 
+        FlightRecorderEvents.TransferAbort event =
+                new FlightRecorderEvents.TransferAbort();
+        if (event.shouldCommit()) {
+            event.simTime = SimClock.getTime();
+            event.messageId = id;
+            event.size = incoming.getSize();
+            event.from = from.getAddress();
+            event.to = this.host.getAddress();
+            event.bytesRemaining = bytesRemaining;
+            event.commit();
+        }
+
         for (MessageListener ml : this.mListeners) {
             ml.messageTransferAborted(incoming, from, this.host);
         }
@@ -628,7 +756,13 @@ public abstract class MessageRouter {
      */
     public RoutingInfo getRoutingInfo() {
         RoutingInfo ri = new RoutingInfo(this);
-        RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size()
+        int nrofIncoming = 0;
+        for (Incoming in : this.incomingMessages.values()) {
+            for (; in != null; in = in.next) {
+                nrofIncoming++;
+            }
+        }
+        RoutingInfo incoming = new RoutingInfo(nrofIncoming
                 + " incoming message(s)");
         RoutingInfo delivered = new RoutingInfo(this.deliveredMessages.size()
                 + " delivered message(s)");
@@ -640,11 +774,13 @@ public abstract class MessageRouter {
         ri.addMoreInfo(delivered);
         ri.addMoreInfo(cons);
 
-        for (Message m : this.incomingMessages.values()) {
-            incoming.addMoreInfo(new RoutingInfo(m));
+        for (Incoming in : this.incomingMessages.values()) {
+            for (; in != null; in = in.next) {
+                incoming.addMoreInfo(new RoutingInfo(in.message));
+            }
         }
 
-        for (Message m : this.deliveredMessages.values()) {
+        for (Message m : this.deliveredMessages.getMessages()) {
             delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
         }
 
@@ -668,6 +804,24 @@ public abstract class MessageRouter {
         this.applications.get(app.getAppID()).add(app);
     }
 
+    /**
+     * Sets the message listeners of this router and the application
+     * listeners of its applications. Used when the router is restored from
+     * a snapshot, since the listeners are not saved in snapshots.
+     *
+     * @param mListeners The message listeners
+     * @param aListeners The application listeners
+     */
+    public void setListeners(List<MessageListener> mListeners,
+            List<ApplicationListener> aListeners) {
+        this.mListeners = mListeners;
+        for (Collection<Application> apps : this.applications.values()) {
+            for (Application app : apps) {
+                app.setAppListeners(aListeners);
+            }
+        }
+    }
+
     /**
      * Returns all the applications that want to receive messages for the given
      * application ID.
@@ -710,4 +864,22 @@ public abstract class MessageRouter {
                 + this.getHost().toString() + " with " + getNrofMessages()
                 + " messages";
     }
+
+    /**
+     * A message in the incoming messages buffer
+     */
+    private static class Incoming implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Message message;
+        /** the host the message is from (previous hop) */
+        private DTNHost from;
+        /** next incoming message with the same ID (from another host) */
+        private Incoming next;
+
+        private Incoming(Message message, DTNHost from, Incoming next) {
+            this.message = message;
+            this.from = from;
+            this.next = next;
+        }
+    }
 }
@@ -25,6 +25,7 @@ import java.util.Random;
  * Anders Lindgren et al.
  */
 public class ProphetRandomRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** delivery predictability initialization constant*/
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
@@ -25,6 +25,7 @@ import java.util.Random;
  * Lindgren et al.
  */
 public class ProphetRouter extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     /**
      * delivery predictability initialization constant
@@ -24,6 +24,7 @@ import java.util.Map;
  * Anders Lindgren et al.
  */
 public class ProphetUnknownRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** delivery predictability initialization constant*/
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import core.IntHashMap;
+import core.Message;
+import core.SettingsError;
+
+/**
+ * <P>Set of messages a router has seen, e.g., the messages delivered to the
+ * router's host or the tombstones of a {@link DecisionEngineRouter}. The
+ * store remembers the IDs of the messages (by their indexes, see
+ * {@link Message#getIndex()}) for the rest of the simulation.</P>
+ * <P>The stores available by name (see {@link #create(String, double)})
+ * are:</P>
+ * <UL>
+ * <LI/> {@link #MESSAGES}: keeps the message objects (with their paths)
+ * <LI/> {@link #EXACT}: keeps one bit per message index
+ * <LI/> {@link #BLOOM}: keeps a scalable Bloom filter of the indexes. The
+ * store can claim that it contains a message it doesn't contain, but the
+ * probability of such false positives stays below the given rate no matter
+ * how many messages are added.
+ * </UL>
+ */
+public abstract class SeenMessageStore implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Name of the store that keeps the message objects ({@value}) */
+	public static final String MESSAGES = "messages";
+	/** Name of the store that keeps a bit set of the message indexes
+	 * ({@value}) */
+	public static final String EXACT = "exact";
+	/** Name of the store that keeps a Bloom filter of the message indexes
+	 * ({@value}) */
+	public static final String BLOOM = "bloom";
+
+	/**
+	 * Creates a new store by name
+	 * @param name Name of the store (case insensitive), one of
+	 * {@link #MESSAGES}, {@link #EXACT} or {@link #BLOOM}
+	 * @param fpRate The maximum false positive rate of a {@link #BLOOM}
+	 * store (not used by the other stores)
+	 * @return The new store
+	 * @throws SettingsError if there's no store with the name
+	 */
+	public static SeenMessageStore create(String name, double fpRate) {
+		String n = name.trim().toLowerCase();
+		if (n.equals(MESSAGES)) {
+			return new Messages();
+		}
+		else if (n.equals(EXACT)) {
+			return new Exact();
+		}
+		else if (n.equals(BLOOM)) {
+			return new Bloom(fpRate);
+		}
+		throw new SettingsError("Unknown seen message store '" + name + "'");
+	}
+
+	/**
+	 * Adds a message to the store
+	 * @param m The message
+	 */
+	public abstract void add(Message m);
+
+	/**
+	 * Returns true if the store contains a message with the same ID as the
+	 * given message
+	 * @param m The message
+	 * @return true if the store contains the message
+	 */
+	public abstract boolean contains(Message m);
+
+	/**
+	 * Returns the number of messages in the store
+	 * @return The number of messages
+	 */
+	public abstract int size();
+
+	/**
+	 * Returns the messages in the store, if the store keeps them
+	 * @return The messages or an empty collection if the store keeps only
+	 * the IDs of the messages
+	 */
+	public Collection<Message> getMessages() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Store that keeps the message objects
+	 */
+	public static class Messages extends SeenMessageStore {
+		private static final long serialVersionUID = 1L;
+		private IntHashMap<Message> messages = new IntHashMap<Message>();
+
+		@Override
+		public void add(Message m) {
+			this.messages.put(m.getIndex(), m);
+		}
+
+		@Override
+		public boolean contains(Message m) {
+			return this.messages.containsKey(m.getIndex());
+		}
+
+		@Override
+		public int size() {
+			return this.messages.size();
+		}
+
+		@Override
+		public Collection<Message> getMessages() {
+			return this.messages.values();
+		}
+	}
+
+	/**
+	 * Store that keeps one bit per message index
+	 */
+	public static class Exact extends SeenMessageStore {
+		private static final long serialVersionUID = 1L;
+		private BitSet indexes = new BitSet();
+		private int size;
+
+		@Override
+		public void add(Message m) {
+			if (!this.indexes.get(m.getIndex())) {
+				this.indexes.set(m.getIndex());
+				this.size++;
+			}
+		}
+
+		@Override
+		public boolean contains(Message m) {
+			return this.indexes.get(m.getIndex());
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+	}
+
+	/**
+	 * Store that keeps a scalable Bloom filter of the message indexes. The
+	 * filter is a series of Bloom filters: when a filter has as many
+	 * messages as it was sized for, a new filter with twice the capacity
+	 * and half the false positive rate is started. The false positive rates
+	 * of the filters sum up to at most the rate of the whole store.
+	 */
+	public static class Bloom extends SeenMessageStore {
+		private static final long serialVersionUID = 1L;
+		/** capacity of the first filter */
+		private static final int INITIAL_CAPACITY = 1024;
+		/** false positive rate of a filter relative to the previous one */
+		private static final double TIGHTENING_RATIO = 0.5;
+
+		private double fpRate;
+		private List<BloomFilter> filters = new ArrayList<BloomFilter>();
+		private int size;
+
+		/**
+		 * Creates a new store
+		 * @param fpRate The maximum false positive rate (0 < rate < 1)
+		 * @throws SettingsError if the rate is not in the range
+		 */
+		public Bloom(double fpRate) {
+			if (!(fpRate > 0 && fpRate < 1)) {
+				throw new SettingsError("Invalid false positive rate " +
+						fpRate + " for a Bloom filter");
+			}
+			this.fpRate = fpRate;
+		}
+
+		@Override
+		public void add(Message m) {
+			int index = m.getIndex();
+			if (contains(index)) {
+				return;
+			}
+			BloomFilter last = this.filters.isEmpty() ? null :
+				this.filters.get(this.filters.size() - 1);
+			if (last == null || last.isFull()) {
+				int i = this.filters.size();
+				int capacity = INITIAL_CAPACITY << Math.min(i, 20);
+				double rate = this.fpRate * (1 - TIGHTENING_RATIO) *
+					Math.pow(TIGHTENING_RATIO, i);
+				last = new BloomFilter(capacity, rate);
+				this.filters.add(last);
+			}
+			last.add(index);
+			this.size++;
+		}
+
+		@Override
+		public boolean contains(Message m) {
+			return contains(m.getIndex());
+		}
+
+		private boolean contains(int index) {
+			for (int i = 0, n = this.filters.size(); i < n; i++) {
+				if (this.filters.get(i).contains(index)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the number of messages that were added to the store. Since
+		 * a message that is a false positive isn't added, this can be
+		 * smaller than the number of messages given to
+		 * {@link #add(Message)}.
+		 */
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Returns the number of filters in the series
+		 * @return The number of filters
+		 */
+		public int getNrofFilters() {
+			return this.filters.size();
+		}
+	}
+
+	/**
+	 * A Bloom filter of int values
+	 */
+	private static class BloomFilter implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long[] bits;
+		private int nrofBits;
+		private int nrofHashes;
+		private int capacity;
+		private int count;
+
+		/**
+		 * Creates a filter that holds the given amount of values with the
+		 * given false positive rate
+		 */
+		private BloomFilter(int capacity, double fpRate) {
+			double ln2 = Math.log(2);
+			double m = Math.ceil(-capacity * Math.log(fpRate) / (ln2 * ln2));
+			this.nrofBits = (int)Math.min(m, Integer.MAX_VALUE - 64);
+			this.nrofHashes = Math.max(1,
+					(int)Math.round(this.nrofBits * ln2 / capacity));
+			this.bits = new long[(this.nrofBits + 63) >>> 6];
+			this.capacity = capacity;
+		}
+
+		private boolean isFull() {
+			return this.count >= this.capacity;
+		}
+
+		private void add(int value) {
+			long h1 = hash(value);
+			long h2 = hash(~value) | 1;
+			for (int i = 0; i < this.nrofHashes; i++) {
+				int bit = position(h1 + i * h2);
+				this.bits[bit >>> 6] |= 1L << bit;
+			}
+			this.count++;
+		}
+
+		private boolean contains(int value) {
+			long h1 = hash(value);
+			long h2 = hash(~value) | 1;
+			for (int i = 0; i < this.nrofHashes; i++) {
+				int bit = position(h1 + i * h2);
+				if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the bit of a hash value (of the double hashing scheme)
+		 */
+		private int position(long combinedHash) {
+			return (int)((combinedHash & Long.MAX_VALUE) % this.nrofBits);
+		}
+
+		/**
+		 * Spreads the bits of a value (the finalizer of MurmurHash3)
+		 */
+		private static long hash(int value) {
+			long h = value;
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= h >>> 33;
+			return h;
+		}
+	}
+}
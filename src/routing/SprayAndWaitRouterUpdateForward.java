@@ -5,6 +5,7 @@ import java.util.*;
 import core.*;
 
 public class SprayAndWaitRouterUpdateForward extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
     /** SprayAndFocus Router settings name space ({@value}) */
     public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
     /** Identifier for the initial number of copies setting ({@value}) */
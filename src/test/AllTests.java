@@ -25,19 +25,27 @@ public class AllTests {
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
 		suite.addTestSuite(ConnectionTest.class);
+		suite.addTestSuite(ContactPredictorTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(MultiResolutionOptimizerTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
 		suite.addTestSuite(WKTReaderTest.class);
 		suite.addTestSuite(WKTPointReaderTest.class);
 		suite.addTestSuite(MapNodeTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
+		suite.addTestSuite(ReplayMovementTest.class);
+		suite.addTestSuite(SimProfilerTest.class);
 		suite.addTestSuite(CoordTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
 		suite.addTestSuite(MessageGraphvizReportTest.class);
 		suite.addTestSuite(ExternalEventsQueueTest.class);
+		suite.addTestSuite(FastStandardEventsReaderTest.class);
+		suite.addTestSuite(CompactEventsReaderTest.class);
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
+		suite.addTestSuite(ReportPipelineTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
 		suite.addTestSuite(SettingsTest.class);
@@ -46,8 +54,12 @@ public class AllTests {
 		suite.addTestSuite(ActivenessHandlerTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
+		suite.addTestSuite(DropPolicyTest.class);
+		suite.addTestSuite(SeenMessageStoreTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
+		suite.addTestSuite(IntHashMapTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		//$JUnit-END$
 		return suite;
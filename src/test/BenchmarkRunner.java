@@ -0,0 +1,281 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <P>Runs the microbenchmarks of {@link CoreBenchmarks} the way JMH runs
+ * benchmarks: every benchmark is run in its own JVM (so the JIT profile of
+ * one benchmark doesn't affect the others), first for a number of warm up
+ * iterations and then for the measured iterations. An iteration calls the
+ * benchmark's operation repeatedly for a fixed time and the score is the
+ * average time of an operation over the measured iterations. The results
+ * of the operations are consumed, so the JIT can't remove the work.</P>
+ * <P>Usage: <code>java test.BenchmarkRunner [options] [regex]</code><BR>
+ * Only the benchmarks whose name (with the parameters) matches the regular
+ * expression are run. Options:<BR>
+ * <code>-w n</code> number of warm up iterations (default
+ * {@value #DEF_WARMUPS})<BR>
+ * <code>-i n</code> number of measured iterations (default
+ * {@value #DEF_ITERATIONS})<BR>
+ * <code>-t ms</code> length of an iteration (default
+ * {@value #DEF_ITERATION_TIME})<BR>
+ * <code>-f n</code> number of JVMs (forks) per benchmark; 0 runs the
+ * benchmarks in this JVM (default {@value #DEF_FORKS})<BR>
+ * <code>-o file</code> file where the results are written as tab separated
+ * lines (benchmark, parameters, score, error, unit), e.g. for comparing
+ * them against a baseline with <code>toolkit/compareBenchmarks.pl</code><BR>
+ * <code>-l</code> only list the benchmarks</P>
+ */
+public class BenchmarkRunner {
+	/** default number of warm up iterations ({@value}) */
+	public static final int DEF_WARMUPS = 5;
+	/** default number of measured iterations ({@value}) */
+	public static final int DEF_ITERATIONS = 10;
+	/** default length of an iteration in milliseconds ({@value}) */
+	public static final int DEF_ITERATION_TIME = 1000;
+	/** default number of forks per benchmark ({@value}) */
+	public static final int DEF_FORKS = 1;
+	/** unit of the scores */
+	public static final String UNIT = "us/op";
+
+	/** sink for the results of the operations */
+	private static volatile long sink;
+
+	private int warmups = DEF_WARMUPS;
+	private int iterations = DEF_ITERATIONS;
+	private int iterationTime = DEF_ITERATION_TIME;
+	private int forks = DEF_FORKS;
+	private String outFile;
+
+	/**
+	 * A microbenchmark: a fixture that is set up once and an operation
+	 * that is measured.
+	 */
+	public abstract static class Benchmark {
+		private String name;
+		private String params;
+
+		/**
+		 * Constructor.
+		 * @param name Name of the benchmark (typically the measured method)
+		 * @param params Parameters of the fixture (or null if none)
+		 */
+		protected Benchmark(String name, String params) {
+			this.name = name;
+			this.params = params;
+		}
+
+		/**
+		 * Sets up the fixture. Called once before the warm up.
+		 * @throws Exception if the fixture can't be set up
+		 */
+		public void setUp() throws Exception { }
+
+		/**
+		 * Runs the measured operation once
+		 * @return A value that depends on the work done (it is consumed
+		 * so that the work can't be optimized away)
+		 * @throws Exception if the operation fails
+		 */
+		public abstract long run() throws Exception;
+
+		/**
+		 * Returns the name of the benchmark
+		 * @return the name of the benchmark
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the parameters of the fixture
+		 * @return the parameters or "-" if there are none
+		 */
+		public String getParams() {
+			return this.params == null ? "-" : this.params;
+		}
+
+		public String toString() {
+			return this.params == null ? name : name + " " + params;
+		}
+	}
+
+	/**
+	 * Runs one iteration of a benchmark
+	 * @param b The benchmark
+	 * @param time Length of the iteration (ms)
+	 * @return Average time of an operation (ns)
+	 */
+	private static double iterate(Benchmark b, long time) throws Exception {
+		long result = 0;
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + time * 1000000;
+		long now;
+		do {
+			result += b.run();
+			ops++;
+			now = System.nanoTime();
+		} while (now < end);
+		sink += result;
+		return (now - start) / (double)ops;
+	}
+
+	/**
+	 * Runs a benchmark in this JVM and prints and writes the result
+	 * @param b The benchmark
+	 */
+	private void measure(Benchmark b) throws Exception {
+		b.setUp();
+		for (int i=0; i < warmups; i++) {
+			iterate(b, iterationTime);
+		}
+		double[] scores = new double[iterations];
+		double sum = 0;
+		for (int i=0; i < iterations; i++) {
+			scores[i] = iterate(b, iterationTime) / 1000;
+			sum += scores[i];
+		}
+		double mean = sum / iterations;
+		double squares = 0;
+		for (double s : scores) {
+			squares += (s - mean) * (s - mean);
+		}
+		double error = iterations > 1 ?
+				Math.sqrt(squares / (iterations - 1)) : 0;
+
+		printResult(b.getName(), b.getParams(), String.format("%.3f", mean),
+				String.format("%.3f", error));
+		if (outFile != null) {
+			PrintWriter out = new PrintWriter(new FileWriter(outFile, true));
+			out.println(b.getName() + "\t" + b.getParams() + "\t" + mean +
+					"\t" + error + "\t" + UNIT);
+			out.close();
+		}
+	}
+
+	private static void printResult(String name, String params, String score,
+			String error) {
+		System.out.printf("%-44s %-36s %12s %2s %10s %s%n", name, params,
+				score, error.length() == 0 ? "" : "+-", error,
+				error.length() == 0 ? "" : UNIT);
+	}
+
+	/**
+	 * Runs a benchmark in new JVMs
+	 * @param index Index of the benchmark in the list of all benchmarks
+	 */
+	private void fork(int index) throws IOException, InterruptedException {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java");
+		cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(BenchmarkRunner.class.getName());
+		cmd.add("-f");
+		cmd.add("0");
+		cmd.add("-w");
+		cmd.add("" + warmups);
+		cmd.add("-i");
+		cmd.add("" + iterations);
+		cmd.add("-t");
+		cmd.add("" + iterationTime);
+		if (outFile != null) {
+			cmd.add("-o");
+			cmd.add(outFile);
+		}
+		cmd.add("-n");
+		cmd.add("" + index);
+
+		for (int i=0; i < forks; i++) {
+			Process p = new ProcessBuilder(cmd).inheritIO().start();
+			if (p.waitFor() != 0) {
+				throw new IOException("Benchmark JVM failed with exit code " +
+						p.exitValue());
+			}
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java test.BenchmarkRunner [-w warmups] " +
+				"[-i iterations] [-t iterationMs] [-f forks] [-o file] [-l] " +
+				"[regex]");
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		Pattern filter = null;
+		int only = -1;
+		boolean list = false;
+
+		try {
+			for (int i=0; i < args.length; i++) {
+				String a = args[i];
+				if (a.equals("-w")) {
+					runner.warmups = Integer.parseInt(args[++i]);
+				} else if (a.equals("-i")) {
+					runner.iterations = Integer.parseInt(args[++i]);
+				} else if (a.equals("-t")) {
+					runner.iterationTime = Integer.parseInt(args[++i]);
+				} else if (a.equals("-f")) {
+					runner.forks = Integer.parseInt(args[++i]);
+				} else if (a.equals("-o")) {
+					runner.outFile = args[++i];
+				} else if (a.equals("-n")) { /* a forked run */
+					only = Integer.parseInt(args[++i]);
+				} else if (a.equals("-l")) {
+					list = true;
+				} else if (a.startsWith("-")) {
+					usage();
+				} else {
+					filter = Pattern.compile(a);
+				}
+			}
+		} catch (RuntimeException e) {
+			usage();
+		}
+
+		List<Benchmark> benchmarks = CoreBenchmarks.getBenchmarks();
+		if (only >= 0) {
+			runner.measure(benchmarks.get(only));
+			System.exit(0); // fixtures may have left threads running
+		}
+
+		if (runner.outFile != null && !list) {
+			new File(runner.outFile).delete();
+		}
+		if (!list) {
+			printResult("Benchmark", "Params", "Score", "");
+		}
+		for (int i=0, n = benchmarks.size(); i < n; i++) {
+			Benchmark b = benchmarks.get(i);
+			if (filter != null && !filter.matcher(b.toString()).find()) {
+				continue;
+			}
+			if (list) {
+				System.out.println(b);
+			} else if (runner.forks > 0) {
+				runner.fork(i);
+			} else {
+				runner.measure(b);
+			}
+		}
+		if (sink == 42) {
+			System.out.println(); // never happens, just reads the sink
+		}
+		System.exit(0);
+	}
+}
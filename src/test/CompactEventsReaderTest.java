@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.CompactEventsReader;
+import input.CompactEventsWriter;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.FastStandardEventsReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests for the compact binary external events format
+ */
+public class CompactEventsReaderTest extends TestCase {
+	private static final String[] LINES = {
+		"0.5 C M1 p1 p2 1000 500",
+		"1 S M1 p1 p0",
+		"1 A M1 p1 p0",
+		"2 CONN 1 2 up",
+		"2.25 CONN 1 2 down btInterface",
+		"3 DE M1 p1 p10",
+		"4 DR M1 p10",
+		"5 R * c70",
+		"6 C M2 p3 p4 10",
+	};
+
+	private File textFile;
+	private File compactFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		java.util.Locale.setDefault(java.util.Locale.US);
+		textFile = File.createTempFile("compactEventsTest", ".txt");
+		textFile.deleteOnExit();
+		compactFile = File.createTempFile("compactEventsTest", ".cee");
+		compactFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		textFile.delete();
+		compactFile.delete();
+	}
+
+	private void writeText(String[] lines) throws IOException {
+		FileOutputStream out = new FileOutputStream(textFile);
+		for (String line : lines) {
+			out.write((line + "\n").getBytes("UTF-8"));
+		}
+		out.close();
+	}
+
+	private void convert() throws IOException {
+		CompactEventsWriter.convert(new FastStandardEventsReader(textFile),
+				compactFile);
+	}
+
+	private static byte[] serialize(ExternalEvent ee) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(ee);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private void assertSameEvents(List<ExternalEvent> expected,
+			List<ExternalEvent> actual) throws IOException {
+		assertEquals(expected.size(), actual.size());
+		for (int i=0; i < expected.size(); i++) {
+			assertTrue("Different event " + expected.get(i) + " and " +
+					actual.get(i), Arrays.equals(serialize(expected.get(i)),
+							serialize(actual.get(i))));
+		}
+	}
+
+	public void testRoundTrip() throws IOException {
+		writeText(LINES);
+		convert();
+		assertTrue(CompactEventsReader.isCompactEventsFile(compactFile));
+		assertFalse(CompactEventsReader.isCompactEventsFile(textFile));
+
+		List<ExternalEvent> expected =
+			new FastStandardEventsReader(textFile).readEvents(100);
+		CompactEventsReader reader = new CompactEventsReader(compactFile);
+		assertEquals(LINES.length, reader.getNrofEvents());
+		assertSameEvents(expected, reader.readEvents(100));
+		assertEquals(0, reader.readEvents(100).size());
+		reader.close();
+
+		/* read in small chunks */
+		reader = new CompactEventsReader(compactFile);
+		for (int i=0; i < expected.size(); i += 2) {
+			assertSameEvents(expected.subList(i,
+					Math.min(i + 2, expected.size())), reader.readEvents(2));
+		}
+		reader.close();
+	}
+
+	public void testSeek() throws IOException {
+		int nrof = CompactEventsReader.INDEX_INTERVAL * 3 + 10;
+		String[] lines = new String[nrof];
+		for (int i=0; i < nrof; i++) {
+			lines[i] = (i / 2) + " S M" + (i % 50) + " p" + (i % 7) + " p3";
+		}
+		writeText(lines);
+		convert();
+
+		CompactEventsReader reader = new CompactEventsReader(compactFile);
+		double[] times = {-1, 0, 0.5, 1000, 2048, 4100.5, nrof / 2 - 1, 1e9};
+		for (double time : times) {
+			reader.seek(time);
+			List<ExternalEvent> events = reader.readEvents(1);
+			double expected = Math.ceil(Math.max(time, 0));
+			if (expected > (nrof - 1) / 2) {
+				assertEquals(0, events.size());
+			}
+			else {
+				assertEquals(expected, events.get(0).getTime());
+				/* the first event of the same time */
+				assertEquals("M" + ((int)expected * 2 % 50),
+						events.get(0).toString().split(" ")[2]);
+			}
+		}
+		reader.close();
+	}
+
+	public void testExternalEventsQueue() throws IOException {
+		writeText(LINES);
+		convert();
+		ExternalEventsQueue eeq = new ExternalEventsQueue(
+				compactFile.getAbsolutePath(), 3);
+		int count = 0;
+		while (eeq.nextEventsTime() != Double.MAX_VALUE) {
+			eeq.nextEvent();
+			count++;
+		}
+		assertEquals(LINES.length, count);
+	}
+
+	public void testInvalidFile() throws IOException {
+		writeText(LINES);
+		convert();
+		RandomAccessFile raf = new RandomAccessFile(compactFile, "rw");
+		raf.seek(4);
+		raf.writeShort(CompactEventsReader.VERSION + 1);
+		raf.close();
+
+		try {
+			new CompactEventsReader(compactFile);
+			fail("Unsupported version was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+
+		try {
+			new CompactEventsReader(textFile);
+			fail("Text file was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
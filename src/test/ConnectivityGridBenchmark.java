@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.InterfacePairVisitor;
+import interfaces.InterfaceVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Microbenchmark for comparing the ConnectivityGrid's neighbor queries:
+ * the collection returning getNearInterfaces (every pair is checked from
+ * both ends), the allocation-free visitNearInterfaces and the half-stencil
+ * visitNearPairs (every pair is checked once). Every round, the hosts
+ * move a bit and all pairs within the range are counted using each query.
+ * Usage: <code>java test.ConnectivityGridBenchmark [rounds]</code>
+ */
+public class ConnectivityGridBenchmark {
+	private static final int[] NROF_HOSTS = {500, 1000, 2000};
+	private static final double WORLD_SIZE = 1000;
+	private static final double RANGE = 25;
+	private static final double MAX_STEP = 5;
+	private static final int DEF_ROUNDS = 2000;
+	private static final int GRID_KEY = -4242;
+
+	private List<NetworkInterface> interfaces;
+	private ConnectivityGrid grid;
+	private Random rng;
+	private int inRange;
+
+	private ConnectivityGridBenchmark(int nrofHosts) {
+		ConnectivityGrid.reset();
+		this.grid = ConnectivityGrid.ConnectivityGridFactory(GRID_KEY, RANGE);
+		this.rng = new Random(nrofHosts);
+		this.interfaces = new ArrayList<NetworkInterface>();
+
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		utils.setTransmitRange(RANGE);
+		for (int i=0; i < nrofHosts; i++) {
+			DTNHost h = utils.createHost(new Coord(
+					rng.nextDouble() * WORLD_SIZE,
+					rng.nextDouble() * WORLD_SIZE));
+			NetworkInterface ni = h.getInterfaces().get(0);
+			interfaces.add(ni);
+			grid.addInterface(ni);
+		}
+	}
+
+	/**
+	 * Moves all hosts a random step (staying inside the world)
+	 */
+	private void moveAll() {
+		for (NetworkInterface ni : interfaces) {
+			Coord c = ni.getLocation();
+			double x = c.getX() + (rng.nextDouble() * 2 - 1) * MAX_STEP;
+			double y = c.getY() + (rng.nextDouble() * 2 - 1) * MAX_STEP;
+			x = Math.min(Math.max(x, 0), WORLD_SIZE);
+			y = Math.min(Math.max(y, 0), WORLD_SIZE);
+			ni.getHost().setLocation(new Coord(x, y));
+			grid.updateLocation(ni);
+		}
+	}
+
+	private static boolean isWithinRange(NetworkInterface a,
+			NetworkInterface b) {
+		return a.getLocation().distance(b.getLocation()) <= RANGE;
+	}
+
+	private int countWithCollections() {
+		int count = 0;
+		for (NetworkInterface ni : interfaces) {
+			for (NetworkInterface other : grid.getNearInterfaces(ni)) {
+				if (other != ni && isWithinRange(ni, other)) {
+					count++;
+				}
+			}
+		}
+		return count / 2;
+	}
+
+	private int countWithVisitor() {
+		inRange = 0;
+		for (final NetworkInterface ni : interfaces) {
+			grid.visitNearInterfaces(ni, new InterfaceVisitor() {
+				public void visit(NetworkInterface other) {
+					if (other != ni && isWithinRange(ni, other)) {
+						inRange++;
+					}
+				}
+			});
+		}
+		return inRange / 2;
+	}
+
+	private int countWithPairs() {
+		inRange = 0;
+		grid.visitNearPairs(new InterfacePairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				if (isWithinRange(ni1, ni2)) {
+					inRange++;
+				}
+			}
+		});
+		return inRange;
+	}
+
+	/**
+	 * Runs the rounds and prints the average time of each query type
+	 * @param rounds Number of rounds to run
+	 * @param print If false, the results are not printed (for warm up)
+	 */
+	private void run(int rounds, boolean print) {
+		long[] times = new long[3];
+		long checksum = 0;
+
+		for (int r=0; r < rounds; r++) {
+			moveAll();
+			long start = System.nanoTime();
+			int c1 = countWithCollections();
+			long t1 = System.nanoTime();
+			int c2 = countWithVisitor();
+			long t2 = System.nanoTime();
+			int c3 = countWithPairs();
+			long t3 = System.nanoTime();
+
+			if (c1 != c2 || c1 != c3) {
+				throw new AssertionError("Different pair counts: " + c1 +
+						", " + c2 + ", " + c3);
+			}
+			times[0] += t1 - start;
+			times[1] += t2 - t1;
+			times[2] += t3 - t2;
+			checksum += c1;
+		}
+
+		if (!print) {
+			return;
+		}
+		System.out.printf("%6d hosts: getNearInterfaces %8.1f us, " +
+				"visitNearInterfaces %8.1f us, visitNearPairs %8.1f us " +
+				"(%.1f pairs in range)%n", interfaces.size(),
+				times[0] / 1000.0 / rounds, times[1] / 1000.0 / rounds,
+				times[2] / 1000.0 / rounds, checksum / (double)rounds);
+	}
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEF_ROUNDS;
+		TestSettings.init(null);
+		new TestSettings();
+
+		/* warm up with the largest setup before measuring */
+		new ConnectivityGridBenchmark(NROF_HOSTS[NROF_HOSTS.length - 1]).run(
+				Math.max(1, rounds / 4), false);
+		for (int n : NROF_HOSTS) {
+			new ConnectivityGridBenchmark(n).run(rounds, true);
+		}
+	}
+}
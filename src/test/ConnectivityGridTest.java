@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.InterfacePairVisitor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the ConnectivityGrid's near interface and near pair queries
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final int CELL_SIZE = 10;
+	private static final int GRID_KEY = -42;
+	private static final int NROF_HOSTS = 60;
+	private static final double AREA_SIZE = 100;
+
+	private ConnectivityGrid grid;
+	private TestUtils utils;
+	private List<NetworkInterface> interfaces;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		new TestSettings();
+		ConnectivityGrid.reset();
+		grid = ConnectivityGrid.ConnectivityGridFactory(GRID_KEY, CELL_SIZE);
+		utils = new TestUtils(null, null, new TestSettings());
+		interfaces = new ArrayList<NetworkInterface>();
+		rng = new Random(1);
+
+		for (int i=0; i < NROF_HOSTS; i++) {
+			DTNHost h = utils.createHost(randomCoord());
+			NetworkInterface ni = h.getInterfaces().get(0);
+			interfaces.add(ni);
+			grid.addInterface(ni);
+		}
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * AREA_SIZE,
+				rng.nextDouble() * AREA_SIZE);
+	}
+
+	/**
+	 * Moves a random half of the interfaces to new random locations
+	 */
+	private void moveSome() {
+		for (NetworkInterface ni : interfaces) {
+			if (rng.nextBoolean()) {
+				ni.getHost().setLocation(randomCoord());
+				grid.updateLocation(ni);
+			}
+		}
+	}
+
+	private static String pairKey(NetworkInterface a, NetworkInterface b) {
+		int min = Math.min(a.getAddress(), b.getAddress());
+		int max = Math.max(a.getAddress(), b.getAddress());
+		return min + "-" + max;
+	}
+
+	/**
+	 * Returns the pairs that are in the same or neighboring cells,
+	 * calculated from the locations
+	 */
+	private Set<String> expectedPairs() {
+		Set<String> pairs = new HashSet<String>();
+		for (NetworkInterface a : grid.getAllInterfaces()) {
+			for (NetworkInterface b : grid.getAllInterfaces()) {
+				if (a == b) {
+					continue;
+				}
+				int dx = Math.abs((int)(a.getLocation().getX() / CELL_SIZE) -
+						(int)(b.getLocation().getX() / CELL_SIZE));
+				int dy = Math.abs((int)(a.getLocation().getY() / CELL_SIZE) -
+						(int)(b.getLocation().getY() / CELL_SIZE));
+				if (dx <= 1 && dy <= 1) {
+					pairs.add(pairKey(a, b));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private Set<String> visitedPairs() {
+		final Set<String> pairs = new HashSet<String>();
+		grid.visitNearPairs(new InterfacePairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				assertTrue(ni1 != ni2);
+				assertTrue("Pair visited twice", pairs.add(pairKey(ni1, ni2)));
+			}
+		});
+		return pairs;
+	}
+
+	public void testNearInterfaces() {
+		moveSome();
+		Set<String> expected = expectedPairs();
+
+		for (NetworkInterface a : interfaces) {
+			int count = 0;
+			for (NetworkInterface b : grid.getNearInterfaces(a)) {
+				if (a == b) {
+					count++;
+				}
+				else {
+					assertTrue(expected.contains(pairKey(a, b)));
+				}
+			}
+			assertEquals("Interface itself not found once", 1, count);
+		}
+	}
+
+	public void testNearPairs() {
+		assertEquals(expectedPairs(), visitedPairs());
+		for (int i=0; i < 5; i++) {
+			moveSome();
+			assertEquals(expectedPairs(), visitedPairs());
+		}
+	}
+
+	public void testRemoveInterface() {
+		NetworkInterface removed = interfaces.get(0);
+		grid.removeInterface(removed);
+		grid.removeInterface(removed);
+
+		assertEquals(NROF_HOSTS - 1, grid.getAllInterfaces().size());
+		assertTrue(grid.getNearInterfaces(removed).isEmpty());
+		for (NetworkInterface ni : interfaces.subList(1, NROF_HOSTS)) {
+			assertFalse(grid.getNearInterfaces(ni).contains(removed));
+		}
+		assertEquals(expectedPairs(), visitedPairs());
+
+		grid.addInterface(removed);
+		grid.addInterface(removed);
+		assertEquals(NROF_HOSTS, grid.getAllInterfaces().size());
+		assertEquals(expectedPairs(), visitedPairs());
+	}
+}
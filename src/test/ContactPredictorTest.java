@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.ContactPredictor;
+import core.Coord;
+import core.MoveTrace;
+
+/**
+ * Tests for the range crossing time calculation of ContactPredictor
+ */
+public class ContactPredictorTest extends TestCase {
+	private static final double DELTA = 0.00001;
+	private static final double STEP = 10;
+	private static final double RANGE = 10;
+
+	private List<Double> times;
+	private List<Boolean> ups;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		times = new ArrayList<Double>();
+		ups = new ArrayList<Boolean>();
+	}
+
+	private MoveTrace stationary(double x, double y) {
+		MoveTrace t = new MoveTrace();
+		t.start(new Coord(x, y));
+		return t;
+	}
+
+	public void testPassBy() {
+		/* moves 10 m/s along the x axis past a host at (50,0) */
+		MoveTrace a = stationary(0, 0);
+		a.add(STEP, new Coord(100, 0));
+		MoveTrace b = stationary(50, 0);
+
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, false, true,
+				times, ups);
+		assertEquals(2, times.size());
+		assertEquals(4.0, times.get(0), DELTA);
+		assertTrue(ups.get(0));
+		assertEquals(6.0, times.get(1), DELTA);
+		assertFalse(ups.get(1));
+	}
+
+	public void testExitOnly() {
+		MoveTrace a = stationary(0, 0);
+		a.add(STEP, new Coord(0, 30));
+		MoveTrace b = stationary(0, 0);
+
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, true, true,
+				times, ups);
+		assertEquals(1, times.size());
+		assertEquals(10.0 / 3, times.get(0), DELTA);
+		assertFalse(ups.get(0));
+	}
+
+	public void testTurningPoint() {
+		/* goes towards b, turns at (30,0) and goes back */
+		MoveTrace a = stationary(0, 0);
+		a.add(3, new Coord(30, 0));
+		a.add(STEP - 1, new Coord(0, 0));
+		MoveTrace b = stationary(45, 0);
+
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, false, true,
+				times, ups);
+		assertEquals(0, times.size());
+
+		b = stationary(35, 0);
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, false, true,
+				times, ups);
+		assertEquals(2, times.size());
+		assertEquals(2.5, times.get(0), DELTA);
+		assertTrue(ups.get(0));
+		assertEquals(4.0, times.get(1), DELTA);
+		assertFalse(ups.get(1));
+	}
+
+	public void testBothMoving() {
+		/* head-on approach, both 5 m/s, stop after meeting */
+		MoveTrace a = stationary(0, 0);
+		a.add(5, new Coord(25, 0));
+		MoveTrace b = stationary(60, 0);
+		b.add(5, new Coord(35, 0));
+
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, false, true,
+				times, ups);
+		assertEquals(1, times.size());
+		assertEquals(5.0, times.get(0), DELTA);
+		assertTrue(ups.get(0));
+	}
+
+	public void testCantConnect() {
+		MoveTrace a = stationary(0, 0);
+		a.add(STEP, new Coord(100, 0));
+		MoveTrace b = stationary(50, 0);
+
+		ContactPredictor.findRangeCrossings(a, b, RANGE, STEP, false, false,
+				times, ups);
+		assertEquals(0, times.size());
+	}
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueueHandler;
+import input.StandardEventsReader;
+import input.WKTMapReader;
+import interfaces.ConnectivityGrid;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import routing.ActiveRouter;
+import routing.DropPolicy;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.ProphetRouter;
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+import test.BenchmarkRunner.Benchmark;
+import core.CBRConnection;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Microbenchmarks of the simulator's hot paths (see {@link BenchmarkRunner}
+ * for running them). All the fixtures use fixed random seeds, so every run
+ * measures exactly the same work.
+ */
+public class CoreBenchmarks {
+	/** seed of the random numbers of the fixtures */
+	private static final long SEED = 1;
+	/** number of hosts per 1000m x 1000m in the scenario fixtures */
+	private static final int HOSTS_PER_KM2 = 100;
+	/** transmit range of the scenario fixtures' interfaces */
+	private static final String SCENARIO_RANGE = "30";
+	/** number of updates run before measuring the scenario fixtures */
+	private static final int SCENARIO_WARMUP_UPDATES = 1000;
+	/** events file of the events reader benchmark */
+	private static final String EVENTS_FILE =
+		"ee/1400_events_2000_nodes_700ks.txt";
+	/** map of the path finder benchmark */
+	private static final String MAP_FILE = "data/roads.wkt";
+
+	/**
+	 * Returns all the benchmarks
+	 * @return The benchmarks
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new NearInterfaces(500));
+		list.add(new NearInterfaces(2000));
+		list.add(new InterfaceUpdate(500));
+		list.add(new InterfaceUpdate(2000));
+		list.add(new HostMove(1000));
+		list.add(new ShortestPath());
+		list.add(new TryAllMessages(1000));
+		list.add(new MakeRoom(2000, null));
+		list.add(new MakeRoom(2000, DropPolicy.FIFO));
+		list.add(new ProphetTransitivity(1000));
+		list.add(new MaxPropCosts(200));
+		list.add(new ReadEvents());
+		list.add(new WorldUpdate(100));
+		list.add(new WorldUpdate(500));
+		list.add(new WorldUpdate(2000));
+		return list;
+	}
+
+	/**
+	 * Resets the static state of the simulator for a new fixture
+	 */
+	private static void resetAll() {
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		MovementModel.reset();
+		SimScenario.reset();
+	}
+
+	/**
+	 * Creates a scenario where the hosts move with the random waypoint
+	 * model, create messages and route them with epidemic routing. The size
+	 * of the world grows with the number of hosts.
+	 * @param nrofHosts Number of hosts
+	 * @return The world of the scenario
+	 */
+	private static World createScenario(int nrofHosts) {
+		TestSettings ts = new TestSettings();
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+		int size = (int)(1000 * Math.sqrt(nrofHosts / (double)HOSTS_PER_KM2));
+
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.END_TIME_S,
+				"" + Integer.MAX_VALUE);
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "" + nrofHosts);
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "radio");
+		ts.putSetting(gns + MessageRouter.B_SIZE_S, "5M");
+		ts.putSetting(gns + MessageRouter.MSG_TTL_S, "300");
+		ts.putSetting(gns + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(gns + MovementModel.WAIT_TIME, "0,120");
+		ts.putSetting("radio." + SimScenario.INTTYPE_S,
+				"SimpleBroadcastInterface");
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_RANGE_S,
+				SCENARIO_RANGE);
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_SPEED_S, "250k");
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ens + "1.class", "MessageEventGenerator");
+		ts.putSetting(ens + "1.interval", "25,35");
+		ts.putSetting(ens + "1.size", "500k,1M");
+		ts.putSetting(ens + "1.hosts", "0," + nrofHosts);
+		ts.putSetting(ens + "1.prefix", "M");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, size + "," + size);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "" + SEED);
+
+		resetAll();
+		World world = SimScenario.getInstance().getWorld();
+		world.warmupMovementModel(0);
+		for (int i=0; i < SCENARIO_WARMUP_UPDATES; i++) {
+			world.update();
+		}
+		return world;
+	}
+
+	/**
+	 * Creates stationary hosts to random locations. The hosts' interfaces
+	 * are not added to any connectivity grid.
+	 * @param utils The utils that create the hosts
+	 * @param nrofHosts Number of hosts
+	 * @param range Transmit range of the hosts
+	 * @param worldSize Size of the (square) world
+	 * @return The hosts
+	 */
+	private static List<DTNHost> createStationaryHosts(TestUtils utils,
+			int nrofHosts, double range, double worldSize) {
+		Random rng = new Random(SEED);
+		utils.setTransmitRange(range);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i < nrofHosts; i++) {
+			hosts.add(utils.createHost(new Coord(rng.nextDouble() * worldSize,
+					rng.nextDouble() * worldSize)));
+		}
+		return hosts;
+	}
+
+	/**
+	 * ConnectivityGrid.getNearInterfaces for every interface of a world
+	 * with uniformly distributed hosts
+	 */
+	private static class NearInterfaces extends Benchmark {
+		private static final double RANGE = 25;
+		private int nrofHosts;
+		private ConnectivityGrid grid;
+		private List<NetworkInterface> interfaces;
+
+		private NearInterfaces(int nrofHosts) {
+			super("ConnectivityGrid.getNearInterfaces", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		public void setUp() {
+			resetAll();
+			this.grid = ConnectivityGrid.ConnectivityGridFactory(1, RANGE);
+			this.interfaces = new ArrayList<NetworkInterface>();
+			TestUtils utils = new TestUtils(null, null, new TestSettings());
+			for (DTNHost h : createStationaryHosts(utils, nrofHosts, RANGE,
+					1000)) {
+				NetworkInterface ni = h.getInterfaces().get(0);
+				interfaces.add(ni);
+				grid.addInterface(ni);
+			}
+		}
+
+		public long run() {
+			long count = 0;
+			for (int i=0, n = interfaces.size(); i < n; i++) {
+				count += grid.getNearInterfaces(interfaces.get(i)).size();
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * SimpleBroadcastInterface.update for every host of a scenario (see
+	 * {@link CoreBenchmarks#createScenario(int)})
+	 */
+	private static class InterfaceUpdate extends Benchmark {
+		private int nrofHosts;
+		private List<NetworkInterface> interfaces;
+
+		private InterfaceUpdate(int nrofHosts) {
+			super("SimpleBroadcastInterface.update", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		public void setUp() {
+			this.interfaces = new ArrayList<NetworkInterface>();
+			for (DTNHost h : createScenario(nrofHosts).getHosts()) {
+				interfaces.addAll(h.getInterfaces());
+			}
+		}
+
+		public long run() {
+			long count = 0;
+			for (int i=0, n = interfaces.size(); i < n; i++) {
+				NetworkInterface ni = interfaces.get(i);
+				ni.update();
+				count += ni.getConnections().size();
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * DTNHost.move for hosts that move with the random waypoint model
+	 */
+	private static class HostMove extends Benchmark {
+		private static final double INTERVAL = 0.1;
+		private int nrofHosts;
+		private List<DTNHost> hosts;
+		private SimClock clock;
+
+		private HostMove(int nrofHosts) {
+			super("DTNHost.move", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		public void setUp() {
+			TestSettings ts = new TestSettings();
+			ts.putSetting(MovementModel.SPEED, "0.5,1.5");
+			ts.putSetting(MovementModel.WAIT_TIME, "0,120");
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+					MovementModel.RNG_SEED, "" + SEED);
+			resetAll();
+			this.clock = SimClock.getInstance();
+			TestUtils utils = new TestUtils(null, null, ts);
+			MovementModel proto = new RandomWaypoint(ts);
+			this.hosts = new ArrayList<DTNHost>();
+			for (int i=0; i < nrofHosts; i++) {
+				hosts.add(utils.createHost(proto, null));
+			}
+		}
+
+		public long run() {
+			for (int i=0, n = hosts.size(); i < n; i++) {
+				hosts.get(i).move(INTERVAL);
+			}
+			clock.advance(INTERVAL);
+			return (long)hosts.get(0).getLocation().getX();
+		}
+	}
+
+	/**
+	 * DijkstraPathFinder.getShortestPath between random nodes of the
+	 * Helsinki road map
+	 */
+	private static class ShortestPath extends Benchmark {
+		private static final int NROF_PAIRS = 1000;
+		private DijkstraPathFinder finder;
+		private MapNode[] from;
+		private MapNode[] to;
+		private int next;
+
+		private ShortestPath() {
+			super("DijkstraPathFinder.getShortestPath", MAP_FILE);
+		}
+
+		public void setUp() throws Exception {
+			WKTMapReader reader = new WKTMapReader(true);
+			reader.addPaths(new File(MAP_FILE), 1);
+			List<MapNode> nodes = reader.getMap().getNodes();
+			Random rng = new Random(SEED);
+			this.from = new MapNode[NROF_PAIRS];
+			this.to = new MapNode[NROF_PAIRS];
+			for (int i=0; i < NROF_PAIRS; i++) {
+				from[i] = nodes.get(rng.nextInt(nodes.size()));
+				to[i] = nodes.get(rng.nextInt(nodes.size()));
+			}
+			this.finder = new DijkstraPathFinder(null);
+		}
+
+		public long run() {
+			List<MapNode> path = finder.getShortestPath(from[next], to[next]);
+			next = (next + 1) % NROF_PAIRS;
+			return path.size();
+		}
+	}
+
+	/**
+	 * Router that lets the benchmark call
+	 * ActiveRouter.tryAllMessagesToAllConnections
+	 */
+	private static class OfferingRouter extends EpidemicRouter {
+		private static final long serialVersionUID = 1L;
+		private OfferingRouter(Settings s) {
+			super(s);
+		}
+
+		private OfferingRouter(OfferingRouter r) {
+			super(r);
+		}
+
+		private Connection offerAll() {
+			return tryAllMessagesToAllConnections();
+		}
+
+		@Override
+		public OfferingRouter replicate() {
+			return new OfferingRouter(this);
+		}
+	}
+
+	/**
+	 * ActiveRouter.tryAllMessagesToAllConnections for a host that has a
+	 * full buffer of messages that the connected host already has (so every
+	 * message is offered and denied)
+	 */
+	private static class TryAllMessages extends Benchmark {
+		private int nrofMessages;
+		private OfferingRouter router;
+
+		private TryAllMessages(int nrofMessages) {
+			super("ActiveRouter.tryAllMessagesToAllConnections",
+					"messages=" + nrofMessages);
+			this.nrofMessages = nrofMessages;
+		}
+
+		public void setUp() {
+			TestSettings ts = new TestSettings();
+			ts.putSetting(MessageRouter.B_SIZE_S, "" + Integer.MAX_VALUE);
+			ts.putSetting(MessageRouter.MSG_TTL_S, "" + Integer.MAX_VALUE);
+			resetAll();
+			TestUtils utils = new TestUtils(null,
+					new ArrayList<MessageListener>(), ts);
+			utils.setMessageRouterProto(new OfferingRouter(ts));
+			DTNHost from = utils.createHost();
+			DTNHost peer = utils.createHost();
+			DTNHost to = utils.createHost(new Coord(1000, 1000));
+			from.getInterfaces().get(0).connect(peer.getInterfaces().get(0));
+
+			for (int i=0; i < nrofMessages; i++) {
+				from.createNewMessage(new Message(from, to, "M" + i, 1000));
+				peer.createNewMessage(new Message(from, to, "M" + i, 1000));
+			}
+			this.router = (OfferingRouter)from.getRouter();
+		}
+
+		public long run() {
+			return router.offerAll() == null ? 0 : 1;
+		}
+	}
+
+	/**
+	 * Creating a message to a host whose buffer is full, so that the router
+	 * has to drop a message (found by scanning the buffer or with a drop
+	 * policy) to make room for it
+	 */
+	private static class MakeRoom extends Benchmark {
+		private static final int SIZE = 1000;
+		private int nrofMessages;
+		private String policy;
+		private DTNHost host;
+		private DTNHost to;
+		private int next;
+
+		private MakeRoom(int nrofMessages, String policy) {
+			super("ActiveRouter.makeRoomForMessage", "messages=" +
+					nrofMessages + " policy=" + (policy == null ? "scan" :
+						policy));
+			this.nrofMessages = nrofMessages;
+			this.policy = policy;
+		}
+
+		public void setUp() {
+			TestSettings ts = new TestSettings();
+			ts.putSetting(MessageRouter.B_SIZE_S, "" + nrofMessages * SIZE);
+			if (policy != null) {
+				ts.putSetting(ActiveRouter.DROP_POLICY_S, policy);
+			}
+			resetAll();
+			TestUtils utils = new TestUtils(null,
+					new ArrayList<MessageListener>(), ts);
+			utils.setMessageRouterProto(new EpidemicRouter(ts));
+			this.host = utils.createHost();
+			this.to = utils.createHost(new Coord(1000, 1000));
+			for (next=0; next < nrofMessages; next++) {
+				host.createNewMessage(new Message(host, to, "M" + next, SIZE));
+			}
+		}
+
+		public long run() {
+			host.createNewMessage(new Message(host, to, "M" + next++, SIZE));
+			return host.getRouter().getFreeBufferSize();
+		}
+	}
+
+	/**
+	 * ProphetRouter's delivery predictability update when two hosts that
+	 * both know many other hosts meet
+	 */
+	private static class ProphetTransitivity extends Benchmark {
+		private int nrofHosts;
+		private MessageRouter router;
+		private Connection con;
+
+		private ProphetTransitivity(int nrofHosts) {
+			super("ProphetRouter.changedConnection", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		/**
+		 * Tells the router of the first host that it met the second host
+		 */
+		private static Connection meet(DTNHost host, DTNHost other) {
+			Connection c = new CBRConnection(host, host.getInterfaces().get(0),
+					other, other.getInterfaces().get(0), 1);
+			host.getRouter().changedConnection(c);
+			return c;
+		}
+
+		public void setUp() {
+			TestSettings ts = new TestSettings();
+			ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+					ProphetRouter.SECONDS_IN_UNIT_S, "30");
+			resetAll();
+			TestUtils utils = new TestUtils(null, null, ts);
+			utils.setMessageRouterProto(new ProphetRouter(ts));
+			List<DTNHost> hosts = new ArrayList<DTNHost>();
+			for (int i=0; i < nrofHosts; i++) {
+				hosts.add(utils.createHost());
+			}
+
+			/* both hosts have met a random half of the others */
+			DTNHost host = hosts.get(0);
+			DTNHost other = hosts.get(1);
+			Random rng = new Random(SEED);
+			for (int i=2; i < nrofHosts; i++) {
+				if (rng.nextBoolean()) {
+					meet(host, hosts.get(i));
+				}
+				if (rng.nextBoolean()) {
+					meet(other, hosts.get(i));
+				}
+			}
+			this.con = meet(host, other);
+			this.router = host.getRouter();
+		}
+
+		public long run() {
+			router.changedConnection(con);
+			return 1;
+		}
+	}
+
+	/**
+	 * MaxPropDijkstra.getCosts from one host to all other hosts when every
+	 * host has met a few random hosts
+	 */
+	private static class MaxPropCosts extends Benchmark {
+		private static final int NROF_MEETINGS = 20;
+		private int nrofHosts;
+		private MaxPropDijkstra dijkstra;
+		private Set<Integer> targets;
+		private int next;
+
+		private MaxPropCosts(int nrofHosts) {
+			super("MaxPropDijkstra.getCosts", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		public void setUp() {
+			resetAll();
+			Random rng = new Random(SEED);
+			Map<Integer, MeetingProbabilitySet> probs =
+				new HashMap<Integer, MeetingProbabilitySet>();
+			this.targets = new HashSet<Integer>();
+			for (int i=0; i < nrofHosts; i++) {
+				MeetingProbabilitySet set = new MeetingProbabilitySet(
+						MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+				for (int j=0; j < NROF_MEETINGS; j++) {
+					set.updateMeetingProbFor(rng.nextInt(nrofHosts));
+				}
+				probs.put(i, set);
+				targets.add(i);
+			}
+			this.dijkstra = new MaxPropDijkstra(probs);
+		}
+
+		public long run() {
+			Map<Integer, Double> costs = dijkstra.getCosts(next, targets);
+			next = (next + 1) % nrofHosts;
+			return costs.size();
+		}
+	}
+
+	/**
+	 * StandardEventsReader.readEvents for a whole external events file
+	 */
+	private static class ReadEvents extends Benchmark {
+		private static final int MAX_EVENTS = 10000;
+		private File file;
+
+		private ReadEvents() {
+			super("StandardEventsReader.readEvents", EVENTS_FILE);
+		}
+
+		public void setUp() {
+			this.file = new File(EVENTS_FILE);
+		}
+
+		public long run() {
+			StandardEventsReader reader = new StandardEventsReader(file);
+			long count = reader.readEvents(MAX_EVENTS).size();
+			reader.close();
+			return count;
+		}
+	}
+
+	/**
+	 * World.update of a scenario (see
+	 * {@link CoreBenchmarks#createScenario(int)})
+	 */
+	private static class WorldUpdate extends Benchmark {
+		private int nrofHosts;
+		private World world;
+
+		private WorldUpdate(int nrofHosts) {
+			super("World.update", "hosts=" + nrofHosts);
+			this.nrofHosts = nrofHosts;
+		}
+
+		public void setUp() {
+			this.world = createScenario(nrofHosts);
+		}
+
+		public long run() {
+			world.update();
+			return (long)SimClock.getTime();
+		}
+	}
+}
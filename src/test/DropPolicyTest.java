@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.ActiveRouter;
+import routing.DropPolicy;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Tests for the buffer drop policies and the buffer occupancy bookkeeping
+ * of the routers.
+ */
+public class DropPolicyTest extends TestCase {
+	private static final String NS = "DropPolicyTest";
+	private static final int BUFFER_SIZE = 100;
+
+	private TestSettings ts;
+	private TestUtils utils;
+	private MessageChecker mc;
+	private SimClock clock;
+	private DTNHost h1;
+	private DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		mc = new MessageChecker();
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(mc);
+		utils = new TestUtils(null, ml, ts);
+		h1 = utils.createHost(new Coord(0,0));
+		h2 = utils.createHost(new Coord(0,0));
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		SimClock.reset();
+	}
+
+	private Message newMessage(String id, int size, double receiveTime) {
+		Message m = new Message(h1, h2, id, size);
+		m.setReceiveTime(receiveTime);
+		return m;
+	}
+
+	private void checkDropOrder(DropPolicy p, String... ids) {
+		for (String id : ids) {
+			Message m = p.getNextToDrop(null, false);
+			assertNotNull("No message to drop, expected " + id, m);
+			assertEquals(id, m.getId());
+			p.removed(m);
+		}
+		assertNull(p.getNextToDrop(null, false));
+	}
+
+	public void testFifo() {
+		DropPolicy p = DropPolicy.create(DropPolicy.FIFO);
+		p.added(newMessage("M1", 10, 5));
+		p.added(newMessage("M2", 10, 1));
+		p.added(newMessage("M3", 10, 5));
+		p.added(newMessage("M4", 10, 3));
+		checkDropOrder(p, "M2", "M4", "M1", "M3");
+	}
+
+	public void testLifo() {
+		DropPolicy p = DropPolicy.create("LIFO");
+		p.added(newMessage("M1", 10, 5));
+		p.added(newMessage("M2", 10, 1));
+		p.added(newMessage("M3", 10, 7));
+		checkDropOrder(p, "M3", "M1", "M2");
+	}
+
+	public void testLargest() {
+		DropPolicy p = DropPolicy.create(DropPolicy.LARGEST);
+		p.added(newMessage("M1", 20, 0));
+		p.added(newMessage("M2", 40, 0));
+		p.added(newMessage("M3", 30, 0));
+		p.added(newMessage("M4", 40, 0));
+		checkDropOrder(p, "M2", "M4", "M3", "M1");
+	}
+
+	public void testShortestTtl() {
+		DropPolicy p = DropPolicy.create(DropPolicy.SHORTEST_TTL);
+		Message m1 = newMessage("M1", 10, 0);
+		m1.setTtl(30);
+		clock.setTime(600);
+		Message m2 = newMessage("M2", 10, 0);
+		m2.setTtl(10); // expires at 1200, before M1
+		Message m3 = newMessage("M3", 10, 0); // infinite TTL
+		p.added(m3);
+		p.added(m1);
+		p.added(m2);
+		checkDropOrder(p, "M2", "M1", "M3");
+	}
+
+	public void testMofo() {
+		DropPolicy p = DropPolicy.create(DropPolicy.MOFO);
+		Message m1 = newMessage("M1", 10, 0);
+		Message m2 = newMessage("M2", 10, 0);
+		Message m3 = newMessage("M3", 10, 0);
+		p.added(m1);
+		p.added(m2);
+		p.added(m3);
+		p.forwarded(m3);
+		p.forwarded(m2);
+		p.forwarded(m2);
+		checkDropOrder(p, "M2", "M3", "M1");
+	}
+
+	public void testReplacedMessage() {
+		DropPolicy p = DropPolicy.create(DropPolicy.FIFO);
+		p.added(newMessage("M1", 10, 1));
+		p.added(newMessage("M2", 10, 2));
+		p.added(newMessage("M1", 10, 3));
+		checkDropOrder(p, "M2", "M1");
+	}
+
+	public void testUnknownPolicy() {
+		try {
+			DropPolicy.create("random");
+			fail("Unknown policy was accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testRouterDropsByPolicy() {
+		ts.putSetting(NS + "." + MessageRouter.B_SIZE_S, "" + BUFFER_SIZE);
+		ts.putSetting(NS + "." + ActiveRouter.DROP_POLICY_S,
+				DropPolicy.LARGEST);
+		utils.setMessageRouterProto(new EpidemicRouter(new TestSettings(NS)));
+		DTNHost h = utils.createHost(new Coord(0,0));
+		MessageRouter r = h.getRouter();
+
+		h.createNewMessage(new Message(h, h2, "M1", 20));
+		h.createNewMessage(new Message(h, h2, "M2", 40));
+		h.createNewMessage(new Message(h, h2, "M3", 30));
+		assertEquals(BUFFER_SIZE - 90, r.getFreeBufferSize());
+
+		h.createNewMessage(new Message(h, h2, "M4", 30));
+		assertEquals(3, r.getNrofMessages());
+		assertEquals(BUFFER_SIZE - 80, r.getFreeBufferSize());
+		for (Message m : r.getMessageCollection()) {
+			assertFalse(m.getId().equals("M2"));
+		}
+
+		r.deleteMessage("M1", false);
+		assertEquals(BUFFER_SIZE - 60, r.getFreeBufferSize());
+	}
+}
@@ -6,6 +6,7 @@ package test;
 
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import routing.SeenMessageStore;
 import core.DTNHost;
 import core.Message;
 
@@ -321,6 +322,33 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	/**
+	 * Tests rejecting already delivered message(s) when the routers keep
+	 * only a bit set of the delivered messages
+	 */
+	public void testDoubleDeliveryExactStore() throws Exception {
+		setUpWithDeliveredStore(SeenMessageStore.EXACT);
+		testDoubleDelivery();
+	}
+	
+	/**
+	 * Tests rejecting already delivered message(s) when the routers keep
+	 * a Bloom filter of the delivered messages
+	 */
+	public void testDoubleDeliveryBloomStore() throws Exception {
+		setUpWithDeliveredStore(SeenMessageStore.BLOOM);
+		testDoubleDelivery();
+	}
+	
+	private void setUpWithDeliveredStore(String store) throws Exception {
+		TestSettings s = new TestSettings();
+		s.putSetting(MessageRouter.MSG_TTL_S, ""+TTL);
+		s.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		s.putSetting(MessageRouter.DELIVERED_STORE_S, store);
+		setRouterProto(new EpidemicRouter(s));
+		super.setUp();
+	}
+	
 	/**
 	 * Tests if the FIFO queue management works
 	 */
@@ -499,6 +527,35 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	public void testTtlExpiryWhileSending() {
+		Message m1 = new Message(h1,h2, msgId1, BUFFER_SIZE);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+		
+		clock.advance(TTL*60 - 5);
+		h1.connect(h2);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		
+		clock.advance(6);
+		updateAllNodes();
+		assertFalse(mc.next()); // expired but still being sent
+		
+		h2.setLocation(farAway);
+		updateAllNodes(); // disconnect -> abort and drop the expired msg
+		
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_ABORT, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertTrue(mc.getLastDropped());
+		assertFalse(mc.next());
+		assertEquals(0, h1.getNrofMessages());
+	}
+	
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
 		m1.setResponseSize(1);
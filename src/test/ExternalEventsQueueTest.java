@@ -11,11 +11,16 @@ import input.ExternalEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -66,6 +71,60 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 	
+	public void testPrefetchEEQ() {
+		int preload = 3;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload, 1);
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, eeq.nextEvent().getTime());
+		
+		preload = 1;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload, 4);
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+	}
+	
+	public void testPrefetchError() throws Exception {
+		PrintWriter out = new PrintWriter(tempFile);
+		out.println("1 C M1 p1 p2 10");
+		out.println("2 X M1 p1 p2");
+		out.close();
+		
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 1, 2);
+		assertEquals(1.0, eeq.nextEventsTime());
+		try {
+			eeq.nextEvent();
+			fail("Invalid line was not reported");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+	
+	public void testSerializedEEQ() throws Exception {
+		int preload = 3;
+		int nrofRead = 4;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload);
+		for (int i=0; i < nrofRead; i++) {
+			eeq.nextEvent();
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(eeq);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		ExternalEventsQueue restored = (ExternalEventsQueue)in.readObject();
+
+		/* the restored queue continues from the same event */
+		for (int i=nrofRead; i < msgTimes.length; i++) {
+			assertEquals(msgTimes[i], restored.nextEventsTime());
+			assertEquals(msgTimes[i], restored.nextEvent().getTime());
+			assertEquals(msgTimes[i], eeq.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, restored.nextEventsTime());
+	}
+	
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest", 
@@ -49,6 +49,11 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 	
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, 0);
+	}
+	
+	protected void setUpUsing(String[] input, int nrofPrefetch) 
+		throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -66,6 +71,8 @@ public class ExternalMovementTest extends TestCase {
 		
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
+		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
+				ExternalMovement.NROF_PREFETCH_S, "" + nrofPrefetch);
 		
 		MovementModel emProto = (MovementModel)
 			ts.createIntializedObject("movement.ExternalMovement");
@@ -80,7 +87,15 @@ public class ExternalMovementTest extends TestCase {
 	
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
-
+		checkMovement();
+	}
+	
+	public void testPrefetchedMovement() throws Exception {
+		setUpUsing(INPUT, 1);
+		checkMovement();
+	}
+	
+	private void checkMovement() {
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
 		assertFalse(h3.isActive());
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.FastStandardEventsReader;
+import input.StandardEventsReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests that FastStandardEventsReader reads the same events as
+ * StandardEventsReader. The events are compared by their serialized form,
+ * so all the fields must be equal.
+ */
+public class FastStandardEventsReaderTest extends TestCase {
+	private static final String[] LINES = {
+		"# comment line",
+		"1000.000	C	MSG_365_D_1	p1	p2	100000",
+		"1000.5 C M2 p1 p2 1000 500",
+		"1001 C M3 12 host_4 1,000 2,000",
+		"1002 C M4 p1 p2 10 x",
+		"1533.405	S	MSG_365_D_1	p1	p0",
+		"1542.000	A	MSG_365_D_1	p1	p0",
+		"",
+		"   \t ",
+		"8071.608	DE	MSG_746_D_2	p1	p10 extra fields",
+		"100502.200	DR	MSG_365_D_1	p10",
+		"106202.613	R	*	c70",
+		"1.5e3 CONN 1 2 up",
+		"1.25E-1 CONN p1 p2 DOWN btInterface",
+		".5 CONN 3 4 Up",
+		"5. S M2 p3 p4",
+		"+7 S M2 p3 p4",
+		"0.1234567890123456789 S M2 p3 p4",
+		"12345678901234567890 S M2 p3 p4",
+		"1e-30 S M2 p3 p4",
+		"1,234.5 S M2 p3 p4",
+		"0.30000000000000004 S M2 p3 p4",
+		"123456.789012345 DE M2 p3 p4",
+		"-0 R M2 p3",
+	};
+
+	private File tempFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		java.util.Locale.setDefault(java.util.Locale.US);
+		tempFile = File.createTempFile("fastEventsTest", ".tmp");
+		tempFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		tempFile.delete();
+	}
+
+	private void write(List<String> lines, String lineEnd) throws IOException {
+		FileOutputStream out = new FileOutputStream(tempFile);
+		for (String line : lines) {
+			out.write((line + lineEnd).getBytes("UTF-8"));
+		}
+		out.close();
+	}
+
+	private static byte[] serialize(ExternalEvent ee) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(ee);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the file with both readers in chunks of the given size and
+	 * checks that the results are the same
+	 * @return Number of events read
+	 */
+	private int compareReaders(int chunk) throws IOException {
+		ExternalEventsReader expected = new StandardEventsReader(tempFile);
+		ExternalEventsReader actual = new FastStandardEventsReader(tempFile);
+		int count = 0;
+
+		while (true) {
+			List<ExternalEvent> e1 = expected.readEvents(chunk);
+			List<ExternalEvent> e2 = actual.readEvents(chunk);
+			assertEquals(e1.size(), e2.size());
+			for (int i=0; i < e1.size(); i++) {
+				assertEquals(e1.get(i).toString(), e2.get(i).toString());
+				assertTrue("Different event " + e1.get(i) + " and " + e2.get(i),
+						Arrays.equals(serialize(e1.get(i)),
+								serialize(e2.get(i))));
+			}
+			count += e1.size();
+			if (e1.isEmpty()) {
+				break;
+			}
+		}
+
+		expected.close();
+		actual.close();
+		return count;
+	}
+
+	public void testSameEvents() throws IOException {
+		write(Arrays.asList(LINES), "\n");
+		int count = compareReaders(100);
+		assertEquals(LINES.length - 3, count);
+		assertEquals(count, compareReaders(1));
+		assertEquals(count, compareReaders(7));
+	}
+
+	public void testLineTerminators() throws IOException {
+		write(Arrays.asList(LINES), "\r\n");
+		assertEquals(LINES.length - 3, compareReaders(5));
+		write(Arrays.asList(LINES), "\r");
+		assertEquals(LINES.length - 3, compareReaders(5));
+		write(Arrays.asList(LINES), ""); /* only one line */
+		assertEquals(0, compareReaders(5));
+	}
+
+	public void testLargeFile() throws IOException {
+		Random rng = new Random(42);
+		String[] actions = {"C", "S", "DE", "A", "DR", "R", "CONN"};
+		List<String> lines = new ArrayList<String>();
+		double time = 0;
+
+		for (int i=0; i < 30000; i++) {
+			time += rng.nextDouble() * 10;
+			String action = actions[rng.nextInt(actions.length)];
+			String msg = "MSG_" + rng.nextInt(500);
+			String h1 = "p" + rng.nextInt(100);
+			String h2 = "" + rng.nextInt(100);
+			String t = (i % 3 == 0 ? "" + time : String.format("%.3f", time));
+
+			if (action.equals("C")) {
+				lines.add(t + " C " + msg + " " + h1 + " " + h2 + " " +
+						rng.nextInt(1000000));
+			}
+			else if (action.equals("DR") || action.equals("R")) {
+				lines.add(t + "\t" + action + "\t" + msg + "\t" + h1);
+			}
+			else if (action.equals("CONN")) {
+				lines.add(t + " CONN " + h1 + " " + h2 + " " +
+						(rng.nextBoolean() ? "up" : "down"));
+			}
+			else {
+				lines.add(t + " " + action + " " + msg + " " + h1 + " " + h2);
+			}
+			if (rng.nextInt(100) == 0) {
+				lines.add("# comment " + i);
+			}
+		}
+
+		write(lines, "\n");
+		assertEquals(30000, compareReaders(500));
+	}
+
+	public void testErrors() throws IOException {
+		String[] invalid = {"1 C M1 p1", "1 X M1 p1 p2", "1 S M1 p1a p2",
+				"1 CONN 1 2 sideways", "x S M1 p1 p2", "1 DR M1 1p"};
+		for (String line : invalid) {
+			write(Arrays.asList(line), "\n");
+			try {
+				new FastStandardEventsReader(tempFile).readEvents(1);
+				fail("No error for '" + line + "'");
+			} catch (SimError e) {
+				// expected
+			}
+		}
+	}
+}
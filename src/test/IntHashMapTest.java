@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import core.IntHashMap;
+import core.IntHashSet;
+import core.Message;
+import core.MessageIdInterner;
+
+/**
+ * Tests for the primitive int keyed collections and the message ID
+ * interner.
+ */
+public class IntHashMapTest extends TestCase {
+	private static final int NROF_OPS = 20000;
+	/** keys are drawn from a small range so that there are collisions */
+	private static final int KEY_RANGE = 500;
+
+	public void testMapAgainstHashMap() {
+		Random rng = new Random(1);
+		IntHashMap<String> map = new IntHashMap<String>();
+		Map<Integer, String> reference = new LinkedHashMap<Integer, String>();
+
+		for (int i=0; i < NROF_OPS; i++) {
+			int key = rng.nextInt(KEY_RANGE) * (rng.nextBoolean() ? 1 : -7);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(key), map.remove(key));
+			} else {
+				String value = "v" + i;
+				assertEquals(reference.put(key, value), map.put(key, value));
+			}
+			assertEquals(reference.size(), map.size());
+		}
+
+		for (int key = -7 * KEY_RANGE; key < KEY_RANGE; key++) {
+			assertEquals(reference.get(key), map.get(key));
+			assertEquals(reference.containsKey(key), map.containsKey(key));
+		}
+
+		/* the values are in insertion order, like in a LinkedHashMap */
+		assertEquals(new ArrayList<String>(reference.values()),
+				new ArrayList<String>(map.values()));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.values().iterator().hasNext());
+	}
+
+	public void testMapModificationWhileIterating() {
+		IntHashMap<String> map = new IntHashMap<String>();
+		map.put(1, "a");
+		map.put(2, "b");
+		Iterator<String> i = map.values().iterator();
+		i.next();
+		map.remove(1);
+		try {
+			i.next();
+			fail("Modification while iterating wasn't detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	public void testNullValue() {
+		try {
+			new IntHashMap<String>().put(1, null);
+			fail("Null value was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSetAgainstHashSet() {
+		Random rng = new Random(2);
+		IntHashSet set = new IntHashSet();
+		Set<Integer> reference = new HashSet<Integer>();
+
+		for (int i=0; i < NROF_OPS; i++) {
+			int value = rng.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(value), set.remove(value));
+			} else {
+				assertEquals(reference.add(value), set.add(value));
+			}
+			assertEquals(reference.size(), set.size());
+		}
+
+		for (int v = -KEY_RANGE; v < KEY_RANGE; v++) {
+			assertEquals(reference.contains(v), set.contains(v));
+		}
+		assertEquals(reference.size(), set.toArray().length);
+
+		IntHashSet other = new IntHashSet();
+		other.add(KEY_RANGE * 10);
+		other.addAll(set);
+		assertEquals(reference.size() + 1, other.size());
+		assertTrue(other.contains(KEY_RANGE * 10));
+	}
+
+	public void testInterner() {
+		MessageIdInterner.reset();
+		Message m1 = new Message(null, null, "M1", 1);
+		Message m2 = new Message(null, null, "M2", 1);
+		assertEquals(0, m1.getIndex());
+		assertEquals(1, m2.getIndex());
+		assertEquals(0, m1.replicate().getIndex());
+		assertEquals(0, new Message(null, null, "M1", 1).getIndex());
+
+		assertEquals(1, MessageIdInterner.indexOf("M2"));
+		assertEquals(-1, MessageIdInterner.indexOf("M3"));
+		assertEquals("M2", MessageIdInterner.getId(1));
+		assertEquals(2, MessageIdInterner.size());
+	}
+}
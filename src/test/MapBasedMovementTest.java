@@ -54,6 +54,7 @@ public class MapBasedMovementTest extends TestCase {
 	
 	private void setupMapData(String okTypes, String speed, String wTime) {
 		Settings.init(null);
+		DTNHost.reset(); // host movement rng streams are seeded by address
 		StringReader input = new StringReader(WKT);
 		
 		WKTMapReader reader = new WKTMapReader(true);
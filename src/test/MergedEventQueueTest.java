@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.PredictableEventQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static final double MAX = Double.MAX_VALUE;
+
+	/**
+	 * Event queue that returns events at given times. The events remember
+	 * the queue they came from.
+	 */
+	private static class ListQueue implements EventQueue {
+		private static final long serialVersionUID = 1L;
+		protected List<Double> times = new ArrayList<Double>();
+		private int id;
+
+		public ListQueue(int id, double... times) {
+			this.id = id;
+			for (double t : times) {
+				this.times.add(t);
+			}
+		}
+
+		public ExternalEvent nextEvent() {
+			if (times.isEmpty()) {
+				return new ExternalEvent(MAX);
+			}
+			return new QueueEvent(times.remove(0), id);
+		}
+
+		public double nextEventsTime() {
+			return times.isEmpty() ? MAX : times.get(0);
+		}
+	}
+
+	private static class PredictableQueue extends ListQueue
+		implements PredictableEventQueue {
+		private static final long serialVersionUID = 1L;
+		public PredictableQueue(int id, double... times) {
+			super(id, times);
+		}
+	}
+
+	private static class QueueEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private int queue;
+
+		public QueueEvent(double time, int queue) {
+			super(time);
+			this.queue = queue;
+		}
+	}
+
+	public void testEmpty() {
+		MergedEventQueue meq = new MergedEventQueue(new ArrayList<EventQueue>());
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+	}
+
+	public void testOrder() {
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(new PredictableQueue(0, 1, 5, 5, 9));
+		queues.add(new ListQueue(1, 2, 5, 8));
+		queues.add(new PredictableQueue(2, 0, 5, 8, 10));
+		MergedEventQueue meq = new MergedEventQueue(queues);
+
+		double[] expTimes = {0, 1, 2, 5, 5, 5, 5, 8, 8, 9, 10};
+		int[] expQueues = {2, 0, 1, 0, 0, 1, 2, 1, 2, 0, 2};
+		for (int i=0; i < expTimes.length; i++) {
+			assertEquals(expTimes[i], meq.nextEventsTime());
+			QueueEvent ee = (QueueEvent)meq.nextEvent();
+			assertEquals(expTimes[i], ee.getTime());
+			assertEquals("Event " + i, expQueues[i], ee.queue);
+		}
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+	}
+
+	public void testChangingQueues() {
+		ListQueue unindexed = new ListQueue(0, 10);
+		PredictableQueue indexed = new PredictableQueue(1, 5, 20);
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(unindexed);
+		queues.add(indexed);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+
+		assertEquals(5.0, meq.nextEventsTime());
+		unindexed.times.add(0, 1.0); /* seen without notification */
+		assertEquals(1.0, meq.nextEventsTime());
+		assertEquals(0, ((QueueEvent)meq.nextEvent()).queue);
+
+		indexed.times.add(0, 2.0);
+		meq.queueChanged(indexed);
+		assertEquals(2.0, meq.nextEventsTime());
+		assertEquals(1, ((QueueEvent)meq.nextEvent()).queue);
+	}
+
+	public void testManyQueues() {
+		Random rng = new Random(3);
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		List<Double> all = new ArrayList<Double>();
+		for (int i=0; i < 40; i++) {
+			double[] times = new double[rng.nextInt(30)];
+			double t = 0;
+			for (int j=0; j < times.length; j++) {
+				t += rng.nextInt(5);
+				times[j] = t;
+				all.add(t);
+			}
+			queues.add(i % 5 == 0 ? new ListQueue(i, times) :
+				new PredictableQueue(i, times));
+		}
+		java.util.Collections.sort(all);
+
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		QueueEvent last = null;
+		for (double expected : all) {
+			QueueEvent ee = (QueueEvent)meq.nextEvent();
+			assertEquals(expected, ee.getTime());
+			if (last != null && last.getTime() == ee.getTime()) {
+				assertTrue(last.queue <= ee.queue);
+			}
+			last = ee;
+		}
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+}
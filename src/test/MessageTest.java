@@ -9,8 +9,13 @@ import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import core.Coord;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
 import core.SimClock;
 
 public class MessageTest extends TestCase {
@@ -60,5 +65,75 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicatePath() {
+		TestUtils utils = new TestUtils(null, new ArrayList<MessageListener>(),
+				new TestSettings());
+		DTNHost h1 = utils.createHost(new Coord(0,0));
+		DTNHost h2 = utils.createHost(new Coord(0,0));
+		DTNHost h3 = utils.createHost(new Coord(0,0));
+		Message m = new Message(h1, h2, "M", 10);
+		m.addNodeOnPath(h2);
+
+		Message r1 = m.replicate();
+		Message r2 = m.replicate();
+		r1.addNodeOnPath(h3);
+		List<DTNHost> hops = r1.getHops();
+		assertEquals(3, hops.size());
+		assertEquals(2, r1.getHopCount());
+		assertEquals(h1, hops.get(0));
+		assertEquals(h2, hops.get(1));
+		assertEquals(h3, hops.get(2));
+
+		/* adding a hop to a replicate doesn't change the others */
+		assertEquals(1, m.getHopCount());
+		assertEquals(1, r2.getHopCount());
+		r2.addNodeOnPath(h1);
+		assertEquals(h1, r2.getHops().get(2));
+		assertEquals(h3, r1.getHops().get(2));
+
+		try {
+			hops.remove(0);
+			fail("Path of a message was modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReplicateProperties() {
+		msg.addProperty("foo", "value1");
+		Message r = msg.replicate();
+		assertEquals("value1", r.getProperty("foo"));
+
+		r.updateProperty("foo", "value2");
+		r.addProperty("bar", "value3");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertNull(msg.getProperty("bar"));
+
+		msg.updateProperty("foo", "value4");
+		assertEquals("value2", r.getProperty("foo"));
+		assertEquals("value4", msg.getProperty("foo"));
+	}
+
+	@Test
+	public void testReplicateHeader() {
+		msg.setResponseSize(5);
+		Message r = msg.replicate();
+		assertEquals("M", r.getId());
+		assertEquals(100, r.getSize());
+		assertEquals(10.0, r.getCreationTime());
+		assertEquals(10, r.getTtl());
+		assertEquals(5, r.getResponseSize());
+		assertFalse(msg.getUniqueId() == r.getUniqueId());
+
+		/* changing the original after replication doesn't affect replicate */
+		msg.setTtl(20);
+		msg.setAppID("app");
+		assertEquals(10, r.getTtl());
+		assertNull(r.getAppID());
+		assertEquals(20, msg.getTtl());
+	}
+
 
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.HierarchicalGridOptimizer;
+import interfaces.InterfacePairVisitor;
+import interfaces.MultiResolutionOptimizer;
+import interfaces.SweepAndPruneOptimizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the structures of MultiResolutionOptimizer. All structures 
+ * must find every pair of interfaces that are within the smaller range of
+ * the two, and the pair query must not visit any pair twice.
+ */
+public class MultiResolutionOptimizerTest extends TestCase {
+	private static final double[] RANGES = {5, 12, 30};
+	private static final int NROF_HOSTS = 90;
+	private static final double AREA_SIZE = 150;
+
+	private List<NetworkInterface> interfaces;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		new TestSettings();
+		ConnectivityGrid.reset();
+		MultiResolutionOptimizer.reset();
+		interfaces = new ArrayList<NetworkInterface>();
+		rng = new Random(3);
+
+		/* hosts created with the same utils share the range setting */
+		TestUtils[] utils = new TestUtils[RANGES.length];
+		for (int i=0; i < RANGES.length; i++) {
+			utils[i] = new TestUtils(null, null, new TestSettings());
+			utils[i].setTransmitRange(RANGES[i]);
+		}
+		for (int i=0; i < NROF_HOSTS; i++) {
+			DTNHost h = utils[i % RANGES.length].createHost(randomCoord());
+			interfaces.add(h.getInterfaces().get(0));
+		}
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * AREA_SIZE,
+				rng.nextDouble() * AREA_SIZE);
+	}
+
+	private static boolean inRange(NetworkInterface a, NetworkInterface b) {
+		return a.getLocation().distance(b.getLocation()) <= 
+			Math.min(a.getTransmitRange(), b.getTransmitRange());
+	}
+
+	private static String pairKey(NetworkInterface a, NetworkInterface b) {
+		int min = Math.min(a.getAddress(), b.getAddress());
+		int max = Math.max(a.getAddress(), b.getAddress());
+		return min + "-" + max;
+	}
+
+	/**
+	 * Checks that the optimizer's queries find all interfaces in range
+	 */
+	private void checkQueries(MultiResolutionOptimizer mro) {
+		final Set<String> pairs = new HashSet<String>();
+		mro.visitNearPairs(new InterfacePairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				assertTrue(ni1 != ni2);
+				assertTrue("Pair visited twice", pairs.add(pairKey(ni1, ni2)));
+			}
+		});
+
+		for (NetworkInterface a : interfaces) {
+			Collection<NetworkInterface> near = mro.getNearInterfaces(a);
+			assertTrue(near.contains(a));
+			for (NetworkInterface b : interfaces) {
+				if (a != b && inRange(a, b)) {
+					assertTrue(b + " not near " + a, near.contains(b));
+					assertTrue(pairs.contains(pairKey(a, b)));
+				}
+			}
+		}
+	}
+
+	private MultiResolutionOptimizer checkType(String type) {
+		MultiResolutionOptimizer mro = new MultiResolutionOptimizer(type);
+		mro.addInterfaces(interfaces);
+		checkQueries(mro);
+
+		for (int i=0; i < 3; i++) {
+			for (NetworkInterface ni : interfaces) {
+				if (rng.nextBoolean()) {
+					ni.getHost().setLocation(randomCoord());
+				}
+				mro.updateLocation(ni);
+			}
+			checkQueries(mro);
+		}
+		return mro;
+	}
+
+	public void testUniformGrid() {
+		MultiResolutionOptimizer mro = 
+			checkType(MultiResolutionOptimizer.INDEX_UNIFORM_GRID);
+		assertTrue(mro.getIndex() instanceof ConnectivityGrid);
+	}
+
+	public void testHierarchicalGrid() {
+		MultiResolutionOptimizer mro = 
+			checkType(MultiResolutionOptimizer.INDEX_HIERARCHICAL_GRID);
+		assertTrue(mro.getIndex() instanceof HierarchicalGridOptimizer);
+	}
+
+	public void testSweepAndPrune() {
+		MultiResolutionOptimizer mro = 
+			checkType(MultiResolutionOptimizer.INDEX_SWEEP_AND_PRUNE);
+		assertTrue(mro.getIndex() instanceof SweepAndPruneOptimizer);
+	}
+
+	public void testAutoChoice() {
+		/* the test world is 1000x1000 */
+		assertEquals(MultiResolutionOptimizer.INDEX_UNIFORM_GRID,
+				MultiResolutionOptimizer.chooseType(10, 10, 1000));
+		assertEquals(MultiResolutionOptimizer.INDEX_SWEEP_AND_PRUNE,
+				MultiResolutionOptimizer.chooseType(300, 300, 1000));
+		assertEquals(MultiResolutionOptimizer.INDEX_HIERARCHICAL_GRID,
+				MultiResolutionOptimizer.chooseType(10, 100, 1000));
+
+		MultiResolutionOptimizer mro = 
+			checkType(MultiResolutionOptimizer.INDEX_AUTO);
+		assertTrue(mro.getIndex() instanceof HierarchicalGridOptimizer);
+	}
+
+	public void testRangeGrowth() {
+		MultiResolutionOptimizer mro = 
+			new MultiResolutionOptimizer(MultiResolutionOptimizer.INDEX_AUTO);
+		List<NetworkInterface> sameRange = new ArrayList<NetworkInterface>();
+		for (NetworkInterface ni : interfaces) {
+			if (ni.getTransmitRange() == RANGES[0]) {
+				sameRange.add(ni);
+			}
+		}
+		mro.addInterfaces(sameRange);
+		assertFalse(mro.getIndex() instanceof HierarchicalGridOptimizer);
+
+		/* adding longer range interfaces changes the structure */
+		mro.addInterfaces(interfaces);
+		mro.updateLocation(interfaces.get(RANGES.length - 1));
+		assertTrue(mro.getIndex() instanceof HierarchicalGridOptimizer);
+		checkQueries(mro);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import movement.ReplayMovement;
+import movement.TrajectoryRecorder;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests for recording trajectories with TrajectoryRecorder and replaying
+ * them with ReplayMovement
+ */
+public class ReplayMovementTest extends TestCase {
+	private static final int NROF_HOSTS = 3;
+	private static final double END_TIME = 2000;
+	private static final double STEP = 1;
+
+	private TestSettings ts;
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.SPEED, "0.5,2");
+		ts.putSetting(MovementModel.WAIT_TIME, "0,20");
+		file = File.createTempFile("replayMovementTest", ".bin");
+		file.deleteOnExit();
+		ts.putSetting(ReplayMovement.REPLAY_NS + "." + ReplayMovement.FILE_S,
+				file.getAbsolutePath());
+	}
+
+	/**
+	 * Creates hosts with the given movement model and moves them until
+	 * the given time
+	 * @return Locations of all hosts after every step
+	 */
+	private List<Coord> move(MovementModel proto, double endTime) {
+		SimClock.reset();
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost(proto, null));
+		}
+
+		List<Coord> locations = new ArrayList<Coord>();
+		SimClock clock = SimClock.getInstance();
+		while (SimClock.getTime() < endTime) {
+			for (DTNHost h : hosts) {
+				h.move(STEP);
+				locations.add(h.getLocation().clone());
+			}
+			clock.advance(STEP);
+		}
+		return locations;
+	}
+
+	public void testReplay() {
+		TrajectoryRecorder recorder = new TrajectoryRecorder(file);
+		List<Coord> recorded = move(recorder.record(new RandomWaypoint(ts)),
+				END_TIME);
+		recorder.write();
+
+		List<Coord> replayed = move(new ReplayMovement(ts), END_TIME);
+		assertEquals(recorded, replayed);
+	}
+
+	public void testEndOfRecording() {
+		TrajectoryRecorder recorder = new TrajectoryRecorder(file);
+		List<Coord> recorded = move(recorder.record(new RandomWaypoint(ts)),
+				END_TIME);
+		recorder.write();
+
+		/* hosts stop at the end of their last recorded path */
+		List<Coord> replayed = move(new ReplayMovement(ts), END_TIME * 3);
+		assertEquals(recorded, replayed.subList(0, recorded.size()));
+		int last = replayed.size() - NROF_HOSTS;
+		for (int i=0; i < NROF_HOSTS; i++) {
+			assertEquals(replayed.get(last - NROF_HOSTS * 10 + i),
+					replayed.get(last + i));
+		}
+	}
+
+	public void testTooFewHosts() {
+		TrajectoryRecorder recorder = new TrajectoryRecorder(file);
+		move(recorder.record(new RandomWaypoint(ts)), STEP);
+		recorder.write();
+
+		ReplayMovement proto = new ReplayMovement(ts);
+		try {
+			proto.replicate(NROF_HOSTS);
+			fail("Replicated a host that is not in the file");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
+
+	public void testNotTrajectoryFile() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[100]);
+		out.close();
+
+		try {
+			new ReplayMovement(ts);
+			fail("Accepted a file that is not a trajectory file");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
+}
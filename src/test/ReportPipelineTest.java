@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.Report;
+import report.ReportPipeline;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+import core.SimError;
+import core.UpdateListener;
+
+/**
+ * Tests for the asynchronous report pipeline.
+ */
+public class ReportPipelineTest extends TestCase {
+	private SimClock clock;
+	private DTNHost h1;
+	private DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(Report.REPORTDIR_SETTING,
+				System.getProperty("java.io.tmpdir"));
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		h1 = utils.createHost(new Coord(0,0));
+		h2 = utils.createHost(new Coord(1,0));
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		SimClock.reset();
+	}
+
+	/**
+	 * Generates messages and connections at different times
+	 * @return the events the reports should get
+	 */
+	private List<String> generateEvents(ReportPipeline p, int nrof) {
+		List<String> expected = new ArrayList<String>();
+		for (int i=0; i < nrof; i++) {
+			clock.advance(1.5);
+			Message m = new Message(h1, h2, "M" + i, 10);
+			p.newMessage(m);
+			expected.add(SimClock.getTime() + " new M" + i);
+			p.messageTransferred(m, h1, h2, i % 2 == 0);
+			expected.add(SimClock.getTime() + " transferred M" + i + " " +
+					(i % 2 == 0));
+			p.hostsConnected(h1, h2);
+			expected.add(SimClock.getTime() + " up " + h1 + " " + h2);
+		}
+		return expected;
+	}
+
+	public void testEventsInOrderWithEventTime() {
+		ReportPipeline p = new ReportPipeline(null, 16, 1);
+		RecordingReport r = new RecordingReport(0);
+		assertTrue(p.addReport(r));
+
+		List<String> expected = generateEvents(p, 10);
+		p.flush();
+		assertEquals(expected, r.events);
+		assertFalse(r.thread == Thread.currentThread());
+
+		p.close();
+		assertEquals(SimClock.getTime(), r.getTime());
+	}
+
+	public void testBackPressure() {
+		ReportPipeline p = new ReportPipeline(null, 2, 1);
+		RecordingReport r = new RecordingReport(1);
+		p.addReport(r);
+
+		List<String> expected = generateEvents(p, 20);
+		p.close();
+		assertEquals(expected, r.events);
+	}
+
+	public void testMultipleConsumers() {
+		ReportPipeline p = new ReportPipeline(null, 8, 2);
+		RecordingReport r1 = new RecordingReport(0);
+		RecordingReport r2 = new RecordingReport(0);
+		RecordingReport r3 = new RecordingReport(0);
+		p.addReport(r1);
+		p.addReport(r2);
+		p.addReport(r3);
+
+		List<String> expected = generateEvents(p, 50);
+		p.close();
+		assertEquals(expected, r1.events);
+		assertEquals(expected, r2.events);
+		assertEquals(expected, r3.events);
+		assertFalse(r1.thread == r2.thread);
+		assertTrue(r1.thread == r3.thread);
+	}
+
+	public void testSynchronousOnlyReportIsRejected() {
+		ReportPipeline p = new ReportPipeline(null, 8, 1);
+		assertFalse(p.addReport(new UpdatingReport()));
+	}
+
+	public void testReportFailureIsThrown() {
+		ReportPipeline p = new ReportPipeline(null, 4, 1);
+		RecordingReport r = new RecordingReport(0);
+		r.failAt = 3;
+		p.addReport(r);
+
+		try {
+			generateEvents(p, 10);
+			p.flush();
+			fail("Failure of the report was not thrown");
+		} catch (SimError e) {
+			assertTrue(e.getMessage().contains("RecordingReport"));
+		}
+	}
+
+	/**
+	 * Report that records the events it gets
+	 */
+	private static class RecordingReport extends Report
+			implements MessageListener, ConnectionListener {
+		private List<String> events = new ArrayList<String>();
+		private Thread thread;
+		private long delay;
+		private int failAt = -1;
+
+		private RecordingReport(long delay) {
+			this.delay = delay;
+		}
+
+		private double getTime() {
+			return getSimTime();
+		}
+
+		private void record(String event) {
+			if (events.size() == failAt) {
+				throw new IllegalStateException("test failure");
+			}
+			thread = Thread.currentThread();
+			events.add(getSimTime() + " " + event);
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			}
+		}
+
+		public void newMessage(Message m) {
+			record("new " + m);
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			record("transferred " + m + " " + firstDelivery);
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			record("up " + host1 + " " + host2);
+		}
+
+		public void messageTransferStarted(Message m, DTNHost f, DTNHost t) {}
+		public void messageDeleted(Message m, DTNHost where, boolean d) {}
+		public void messageTransferAborted(Message m, DTNHost f, DTNHost t) {}
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+	}
+
+	private static class UpdatingReport extends Report
+			implements UpdateListener {
+		public void updated(List<DTNHost> hosts) {}
+	}
+}
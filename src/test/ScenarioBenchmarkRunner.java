@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import core.DTNSim;
+import core.SimClock;
+
+/**
+ * <P>Runs the end-to-end benchmark scenarios (the settings files in
+ * {@link #SCENARIO_DIR}) headless, each in a JVM of its own, and reports
+ * for every scenario:</P>
+ * <UL>
+ * <LI>the throughput: simulated seconds per wall clock second (the wall
+ * clock time includes reading the scenario, e.g. the maps)</LI>
+ * <LI>the peak heap usage (sum of the peak usages of the heap memory
+ * pools)</LI>
+ * <LI>the allocation rate of the simulation thread</LI>
+ * <LI>the time spent in garbage collections</LI>
+ * <LI>a hash (SHA-256) of the MessageStatsReport output</LI>
+ * </UL>
+ * <P>The hash shows that an optimization didn't change the results of the
+ * simulation while the throughput shows the gain. The JVM options of the
+ * runner (e.g., <code>-Xmx</code>) are passed to the scenario JVMs.</P>
+ * <P>Usage: <code>java test.ScenarioBenchmarkRunner [-o file] [-r runs]
+ * [regex]</code><BR>
+ * Only the scenarios whose file name matches the regular expression are
+ * run. <code>-r</code> runs every scenario the given number of times
+ * (default 1). <code>-o</code> writes the results to the file as tab
+ * separated lines for comparing them against a baseline with
+ * <code>toolkit/compareScenarioBenchmarks.pl</code>.</P>
+ */
+public class ScenarioBenchmarkRunner {
+	/** directory of the benchmark scenarios ({@value}) */
+	public static final String SCENARIO_DIR = "settings/benchmark";
+	/** name of the report whose output is hashed ({@value}) */
+	public static final String HASHED_REPORT = "MessageStatsReport";
+	/** header of the results file */
+	public static final String HEADER = "scenario\tsimTime\twallTime\t" +
+		"simSecondsPerSecond\tpeakHeapMB\tallocMBPerSecond\tgcTimeMs\t" +
+		"gcCount\treportHash";
+
+	private static final String FORMAT = "%-28s %10s %9s %10s %9s %10s %8s  %s%n";
+
+	/**
+	 * Runs a scenario in this JVM and prints and writes the results
+	 * @param scenario The settings file of the scenario
+	 * @param outFile File where the results are appended (or null)
+	 */
+	private static void measure(File scenario, String outFile)
+			throws IOException {
+		File reportDir = createTempDir(scenario.getName());
+		File override = new File(reportDir, "benchmark_settings.txt");
+		PrintWriter settings = new PrintWriter(override);
+		settings.println("Report.reportDir = " +
+				reportDir.getAbsolutePath().replace('\\', '/') + "/");
+		settings.close();
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+		long gcTime = getGcTime();
+		long gcCount = getGcCount();
+		long allocated = getAllocatedBytes(threads);
+		long start = System.nanoTime();
+
+		/* the text UI's progress is not part of the results */
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(new NullOutputStream()));
+		try {
+			DTNSim.runIsolated(new String[] {scenario.getPath(),
+					override.getPath()}, 0, 0, false);
+		} finally {
+			System.setOut(stdout);
+		}
+
+		double wallTime = (System.nanoTime() - start) / 1e9;
+		double simTime = SimClock.getTime();
+		allocated = getAllocatedBytes(threads) - allocated;
+		gcTime = getGcTime() - gcTime;
+		gcCount = getGcCount() - gcCount;
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		String hash = hashReports(reportDir);
+
+		String name = scenario.getName().replaceFirst("\\.txt$", "");
+		System.out.printf(FORMAT, name, format(simTime, 0),
+				format(wallTime, 2), format(simTime / wallTime, 1),
+				format(peakHeap / 1e6, 1), format(allocated / 1e6 / wallTime, 1),
+				"" + gcTime, hash.substring(0, Math.min(16, hash.length())));
+		if (outFile != null) {
+			PrintWriter out = new PrintWriter(new FileWriter(outFile, true));
+			out.println(name + "\t" + simTime + "\t" + wallTime + "\t" +
+					(simTime / wallTime) + "\t" + (peakHeap / 1e6) + "\t" +
+					(allocated / 1e6 / wallTime) + "\t" + gcTime + "\t" +
+					gcCount + "\t" + hash);
+			out.close();
+		}
+	}
+
+	private static String format(double value, int decimals) {
+		return String.format("%." + decimals + "f", value);
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of bytes the current thread has allocated or 0 if
+	 * the JVM doesn't support measuring it
+	 */
+	private static long getAllocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)threads).
+				getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns a hash of the hashed report files in a directory
+	 * @param dir The directory
+	 * @return The hash as a hexadecimal string or "-" if there are no
+	 * report files
+	 */
+	private static String hashReports(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		Arrays.sort(files);
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		boolean found = false;
+		byte[] buffer = new byte[8192];
+		for (File f : files) {
+			if (!f.getName().endsWith(HASHED_REPORT + ".txt")) {
+				continue;
+			}
+			found = true;
+			InputStream in = new FileInputStream(f);
+			for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+				digest.update(buffer, 0, n);
+			}
+			in.close();
+		}
+		if (!found) {
+			return "-";
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	private static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, ".reports");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Can't create directory " + dir);
+		}
+		return dir;
+	}
+
+	/**
+	 * Runs a scenario in a new JVM
+	 */
+	private static void fork(File scenario, String outFile)
+			throws IOException, InterruptedException {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java");
+		cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(ScenarioBenchmarkRunner.class.getName());
+		if (outFile != null) {
+			cmd.add("-o");
+			cmd.add(outFile);
+		}
+		cmd.add("-n");
+		cmd.add(scenario.getPath());
+
+		Process p = new ProcessBuilder(cmd).inheritIO().start();
+		if (p.waitFor() != 0) {
+			System.out.printf(FORMAT, scenario.getName(), "FAILED", "", "",
+					"", "", "", "exit code " + p.exitValue());
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java test.ScenarioBenchmarkRunner " +
+				"[-o file] [-r runs] [regex]");
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws Exception {
+		String outFile = null;
+		String only = null;
+		int runs = 1;
+		Pattern filter = null;
+
+		try {
+			for (int i=0; i < args.length; i++) {
+				if (args[i].equals("-o")) {
+					outFile = args[++i];
+				} else if (args[i].equals("-r")) {
+					runs = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-n")) { /* a forked run */
+					only = args[++i];
+				} else if (args[i].startsWith("-")) {
+					usage();
+				} else {
+					filter = Pattern.compile(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			usage();
+		}
+
+		if (only != null) {
+			measure(new File(only), outFile);
+			System.exit(0); // the simulation may have left threads running
+		}
+
+		File[] scenarios = new File(SCENARIO_DIR).listFiles();
+		if (scenarios == null) {
+			System.err.println("No scenario directory " + SCENARIO_DIR);
+			System.exit(1);
+		}
+		Arrays.sort(scenarios);
+		if (outFile != null) {
+			PrintWriter out = new PrintWriter(outFile);
+			out.println(HEADER);
+			out.close();
+		}
+		System.out.printf(FORMAT, "scenario", "simTime", "wall (s)",
+				"sim s/s", "heap (MB)", "alloc MB/s", "GC (ms)", "report hash");
+		for (File f : scenarios) {
+			if (!f.getName().endsWith(".txt") || (filter != null &&
+					!filter.matcher(f.getName()).find())) {
+				continue;
+			}
+			for (int i=0; i < runs; i++) {
+				fork(f, outFile);
+			}
+		}
+	}
+
+	/**
+	 * Output stream that discards everything
+	 */
+	private static class NullOutputStream extends java.io.OutputStream {
+		public void write(int b) { }
+		public void write(byte[] b, int off, int len) { }
+	}
+}
@@ -101,10 +101,36 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		suq.addUpdate(1.0);
 		suq.addUpdate(1.0);
 		suq.addUpdate(8.0);
+		suq.addUpdate(0.0);
+		suq.addUpdate(-0.0); // the same time as 0.0
 		
+		assertEquals("updates @ 0.0, 1.0, 4.0, 5.0, 8.0", suq.toString());
+		assertEquals(0.0, suq.nextEvent().getTime());
 		assertEquals(1.0, suq.nextEvent().getTime());
 		assertEquals(4.0, suq.nextEvent().getTime());
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEventsTime());
+	}
+	
+	public void testRandomUpdates() {
+		java.util.Random rng = new java.util.Random(7);
+		java.util.TreeSet<Double> expected = new java.util.TreeSet<Double>();
+		
+		for (int round=0; round < 50; round++) {
+			for (int i=0; i < 40; i++) {
+				double time = rng.nextInt(100) / 4.0;
+				suq.addUpdate(time);
+				expected.add(time);
+			}
+			for (int i=0; i < 20 && !expected.isEmpty(); i++) {
+				assertEquals(expected.first(), suq.nextEventsTime());
+				assertEquals(expected.pollFirst(), suq.nextEvent().getTime());
+			}
+		}
+		while (!expected.isEmpty()) {
+			assertEquals(expected.pollFirst(), suq.nextEvent().getTime());
+		}
+		assertEquals(MAX, suq.nextEvent().getTime());
 	}
 }
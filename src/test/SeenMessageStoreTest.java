@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.SeenMessageStore;
+import core.Message;
+import core.SettingsError;
+
+/**
+ * Tests for the seen (delivered) message stores.
+ */
+public class SeenMessageStoreTest extends TestCase {
+	private static final int NROF_MESSAGES = 20000;
+
+	private Message[] createMessages(String prefix, int nrof) {
+		Message[] msgs = new Message[nrof];
+		for (int i=0; i < nrof; i++) {
+			msgs[i] = new Message(null, null, prefix + i, 1);
+		}
+		return msgs;
+	}
+
+	private void checkExact(SeenMessageStore store) {
+		Message[] added = createMessages("SeenA", 100);
+		Message[] other = createMessages("SeenB", 100);
+		for (Message m : added) {
+			store.add(m);
+			store.add(m.replicate());
+		}
+		assertEquals(added.length, store.size());
+		for (int i=0; i < added.length; i++) {
+			assertTrue(store.contains(added[i]));
+			assertTrue(store.contains(added[i].replicate()));
+			assertFalse(store.contains(other[i]));
+		}
+	}
+
+	public void testMessagesStore() {
+		SeenMessageStore store = SeenMessageStore.create(
+				SeenMessageStore.MESSAGES, 0.01);
+		checkExact(store);
+		assertEquals(store.size(), store.getMessages().size());
+	}
+
+	public void testExactStore() {
+		SeenMessageStore store = SeenMessageStore.create("Exact", 0.01);
+		checkExact(store);
+		assertTrue(store.getMessages().isEmpty());
+	}
+
+	public void testBloomStore() {
+		double fpRate = 0.01;
+		SeenMessageStore.Bloom store = (SeenMessageStore.Bloom)
+			SeenMessageStore.create(SeenMessageStore.BLOOM, fpRate);
+		Message[] added = createMessages("BloomA", NROF_MESSAGES);
+		Message[] other = createMessages("BloomB", NROF_MESSAGES);
+
+		for (Message m : added) {
+			store.add(m);
+		}
+		for (Message m : added) {
+			assertTrue(store.contains(m)); // no false negatives
+		}
+		assertTrue(store.getNrofFilters() > 1); // the filter scaled up
+		assertTrue(store.size() <= NROF_MESSAGES);
+
+		int falsePositives = 0;
+		for (Message m : other) {
+			if (store.contains(m)) {
+				falsePositives++;
+			}
+		}
+		/* the rate is a bound for the expected rate; leave some margin for
+		 * the variation of the sample */
+		assertTrue("Too many false positives: " + falsePositives,
+				falsePositives <= NROF_MESSAGES * fpRate * 1.5);
+	}
+
+	public void testInvalidSettings() {
+		try {
+			SeenMessageStore.create("all", 0.01);
+			fail("Unknown store was accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+		try {
+			SeenMessageStore.create(SeenMessageStore.BLOOM, 1.5);
+			fail("Invalid false positive rate was accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+
+import junit.framework.TestCase;
+import core.SimProfiler;
+
+/**
+ * Tests for the phase accounting of SimProfiler
+ */
+public class SimProfilerTest extends TestCase {
+	private static final long SLEEP_MS = 20;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		SimProfiler.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		SimProfiler.reset();
+		super.tearDown();
+	}
+
+	public void testDisabled() {
+		assertFalse(SimProfiler.isRequested());
+		int previous = SimProfiler.enter(SimProfiler.MOVEMENT);
+		assertEquals(SimProfiler.OTHER, previous);
+		SimProfiler.exit(previous);
+		assertFalse(SimProfiler.getTable().contains("movement"));
+	}
+
+	public void testNestedPhases() throws Exception {
+		int report = SimProfiler.addPhase("TestReport");
+		assertEquals(report, SimProfiler.addPhase("TestReport"));
+		SimProfiler.start();
+
+		int previous = SimProfiler.enter(SimProfiler.ROUTERS);
+		assertEquals(SimProfiler.OTHER, previous);
+		Thread.sleep(SLEEP_MS);
+		int inner = SimProfiler.enter(report);
+		assertEquals(SimProfiler.ROUTERS, inner);
+		Thread.sleep(SLEEP_MS);
+		SimProfiler.exit(inner);
+		SimProfiler.exit(previous);
+		SimProfiler.stop();
+
+		File out = File.createTempFile("simProfilerTest", ".tsv");
+		out.deleteOnExit();
+		ts.putSetting(SimProfiler.PROFILER_NS + "." + 
+				SimProfiler.OUTPUT_FILE_S, out.getAbsolutePath());
+		SimProfiler.writeOutput("test");
+
+		LineNumberReader reader = new LineNumberReader(new FileReader(out));
+		assertTrue(reader.readLine().startsWith("# scenario=test"));
+		assertEquals("phase\tcalls\ttimeNs\tshare", reader.readLine());
+		long routers = -1;
+		long reportTime = -1;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] fields = line.split("\t");
+			if (fields[0].equals("routers")) {
+				assertEquals("1", fields[1]);
+				routers = Long.parseLong(fields[2]);
+			}
+			else if (fields[0].equals("TestReport")) {
+				assertEquals("1", fields[1]);
+				reportTime = Long.parseLong(fields[2]);
+			}
+		}
+		reader.close();
+
+		/* the report's time is not included in the routers' time */
+		long min = SLEEP_MS * 1000000;
+		assertTrue(routers >= min && routers < 2 * min);
+		assertTrue(reportTime >= min);
+	}
+}
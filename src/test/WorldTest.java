@@ -98,6 +98,106 @@ public class WorldTest extends TestCase {
 
 	}
 	
+	public void testNextEventAdvance() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"true");
+		List<DTNHost> hosts = new ArrayList<DTNHost>(testHosts);
+		World w = new World(hosts, worldSizeX, worldSizeY, upInterval, 
+				new ArrayList<UpdateListener>(), false, eQueues);
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"false");
+		
+		w.scheduleUpdate(5.05);
+		w.update(); // nothing known about the state yet -> normal interval
+		assertEquals(0.1, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(1);
+		
+		w.update(); // skips straight to the interval of the scheduled update
+		assertEquals(5.1, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(3);
+		
+		w.update(); // event was processed -> normal interval
+		assertEquals(5.2, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(4);
+		
+		w.update(); // nothing left -> skips to the end of the simulation
+		assertEquals(100, SimClock.getTime(), upInterval + TIME_DELTA);
+		assertNrofUpdates(5);
+	}
+
+	public void testNextEventAdvanceInformsUpdateListeners() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"true");
+		final List<Double> times = new ArrayList<Double>();
+		List<UpdateListener> listeners = new ArrayList<UpdateListener>();
+		listeners.add(new UpdateListener() {
+			public void updated(List<DTNHost> hosts) {
+				times.add(SimClock.getTime());
+			}
+		});
+		World w = new World(new ArrayList<DTNHost>(testHosts), worldSizeX,
+				worldSizeY, upInterval, listeners, false, eQueues);
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"false");
+
+		w.scheduleUpdate(5.05);
+		w.update();
+		w.update(); // skips to the interval of the scheduled update
+		assertEquals(5.1, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(3);
+
+		/* the listeners were informed of every interval, skipped or not */
+		assertEquals(51, times.size());
+		for (int i=0; i < times.size(); i++) {
+			assertEquals((i + 1) * upInterval, times.get(i), TIME_DELTA);
+		}
+	}
+
+	public void testNextEventAdvanceExactSteps() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"true");
+		World w = new World(new ArrayList<DTNHost>(testHosts), worldSizeX,
+				worldSizeY, 0.5, new ArrayList<UpdateListener>(), false,
+				eQueues);
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"false");
+
+		w.scheduleUpdate(7.25);
+		w.update();
+		assertEquals(0.5, SimClock.getTime());
+		w.update(); // time is set directly to the start of the interval
+		assertEquals(7.5, SimClock.getTime());
+		assertNrofUpdates(3);
+	}
+	public void testDemandDrivenUpdates() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.DEMAND_DRIVEN_UPDATES_S,
+				"true");
+		List<DTNHost> hosts = new ArrayList<DTNHost>(testHosts);
+		World w = new World(hosts, worldSizeX, worldSizeY, upInterval, 
+				new ArrayList<UpdateListener>(), false, eQueues);
+		ts.putSetting(World.SETTINGS_NS + "." + World.DEMAND_DRIVEN_UPDATES_S,
+				"false");
+		
+		w.update(); // all hosts are awake in the beginning
+		assertNrofUpdates(1);
+		w.update(); // nobody was woken up
+		assertNrofUpdates(1);
+		
+		w.getWakeUpSet().wakeUp(testHosts.get(3));
+		w.update();
+		assertEquals(2, testHosts.get(3).nrofUpdate);
+		assertEquals(1, testHosts.get(4).nrofUpdate);
+		
+		w.scheduleUpdate(0.35); // scheduled updates wake up all hosts
+		w.update();
+		assertEquals(3, testHosts.get(3).nrofUpdate);
+		assertEquals(2, testHosts.get(4).nrofUpdate);
+		assertEquals(0.4, SimClock.getTime(), TIME_DELTA);
+	}
 
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
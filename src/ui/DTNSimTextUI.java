@@ -5,6 +5,7 @@
 package ui;
 
 import core.SimClock;
+import core.SimProfiler;
 
 /**
  * Simple text-based user interface.
@@ -28,6 +29,10 @@ public class DTNSimTextUI extends DTNSimUI {
 			try {
 				world.update();
 			} catch (AssertionError e) {
+				if (!exitOnError) {
+					done();
+					throw e; /* the caller reports the error */
+				}
 				e.printStackTrace();
 				done();
 				return;
@@ -43,6 +48,9 @@ public class DTNSimTextUI extends DTNSimUI {
 		this.update(true); // force final UI update
 		
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
+		if (this.profiling) {
+			print(SimProfiler.getTable());
+		}
 	
 	}
 	
@@ -61,6 +69,9 @@ public class DTNSimTextUI extends DTNSimUI {
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
 			print(String.format("%.1f %d: %.2f 1/s", dur, 
 					SimClock.getIntTime(),ssps));
+			if (this.profiling && !forced) {
+				print(SimProfiler.getTable());
+			}
 			
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();
@@ -4,18 +4,27 @@
  */
 package ui;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import report.Report;
+import report.ReportPipeline;
 import core.ApplicationListener;
 import core.ConnectionListener;
+import core.FlightRecorderEvents;
 import core.MessageListener;
 import core.MovementListener;
+import core.ProfiledListener;
+import core.RouterPlanes;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import core.SimScenario;
+import core.Snapshot;
 import core.UpdateListener;
 import core.World;
 
@@ -58,6 +67,22 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** is the simulation profiled (see {@link SimProfiler}) */
+	protected boolean profiling;
+	/** are reports run asynchronously (see {@link ReportPipeline}) */
+	protected boolean asyncReports;
+	/** report pipelines of the router planes (one per scenario) */
+	private List<ReportPipeline> pipelines;
+	/** first and last + 1 run index of the router planes (or null if the
+	 * simulation has only one plane) */
+	private int[] planeRuns;
+	/** router planes of the simulation (or null) */
+	private RouterPlanes planes;
+	/** index of the router plane of each report */
+	private List<Integer> reportPlanes;
+	/** are errors handled by the UI (or thrown to the caller of
+	 * {@link #start()}) */
+	protected boolean exitOnError;
 	
 	/**
 	 * Constructor.
@@ -65,16 +90,62 @@ public abstract class DTNSimUI {
 	public DTNSimUI() {
 		this.lastUpdate = 0;
 		this.reports = new Vector<Report>();
+		this.reportPlanes = new ArrayList<Integer>();
+		this.pipelines = new ArrayList<ReportPipeline>();
 		this.simDone = false;
 		this.simCancelled = false;
+		this.exitOnError = true;
 	}
 	
+	/**
+	 * Sets the simulation to run a range of run indexes as router planes
+	 * (see {@link RouterPlanes}). The run index of the first plane must be
+	 * the current run index of the settings.
+	 * @param firstRun Run index of the first plane
+	 * @param lastRun Run index of the last plane + 1
+	 */
+	public void setRouterPlaneRuns(int firstRun, int lastRun) {
+		this.planeRuns = new int[] {firstRun, lastRun};
+	}
+
+	/**
+	 * Sets whether the UI handles the errors that stop the simulation (the
+	 * default) or throws them to the caller of {@link #start()}. The UI
+	 * handles an error by reporting it, and exits the JVM if the
+	 * simulation couldn't be started. Runs that share the JVM with other
+	 * runs must not exit it.
+	 * @param exitOnError True to handle the errors, false to throw them
+	 */
+	public void setExitOnError(boolean exitOnError) {
+		this.exitOnError = exitOnError;
+	}
+
 	/**
 	 * Starts the simulation.
+	 * @throws SettingsError if the configuration has an error and the UI
+	 * doesn't exit on errors (see {@link #setExitOnError(boolean)})
+	 * @throws SimError if the simulation can't be started or run and the UI
+	 * doesn't exit on errors
 	 */
 	public void start() {
-		initModel();
-		runSim();
+		try {
+			initModel();
+			runSim();
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Stops the threads the worlds of the simulation use
+	 */
+	private void shutdown() {
+		if (this.planes != null) {
+			this.planes.shutdown();
+		}
+		if (this.world != null) {
+			this.world.shutdown();
+		}
 	}
 	
 	/**
@@ -90,45 +161,149 @@ public abstract class DTNSimUI {
 				
 		try {
 			settings = new Settings();
+			this.profiling = SimProfiler.isRequested();
+			this.asyncReports = ReportPipeline.isRequested();
 			this.scen = SimScenario.getInstance();
+			addReports(settings);
 
-			// add reports
-			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
-				String reportClass = settings.getSetting(REPORT_S + i);
-				addReport((Report)settings.createObject(REPORT_PAC + 
-						reportClass));	
+			Settings snapSettings = new Settings(Snapshot.SNAPSHOT_NS);
+			if (snapSettings.contains(Snapshot.LOAD_FILE_S)) {
+				this.world = this.scen.getWorld();
+				loadSnapshot(snapSettings);
 			}
-
-			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
-				warmupTime = settings.getDouble(MM_WARMUP_S);
-				if (warmupTime > 0) {
-					SimClock c = SimClock.getInstance();
-					c.setTime(-warmupTime);
+			else {
+				double warmupTime = 0;
+				if (settings.contains(MM_WARMUP_S)) {
+					warmupTime = settings.getDouble(MM_WARMUP_S);
+					if (warmupTime > 0) {
+						SimClock c = SimClock.getInstance();
+						c.setTime(-warmupTime);
+					}
 				}
+
+				this.world = this.scen.getWorld();
+				world.warmupMovementModel(warmupTime);
+			}
+
+			if (snapSettings.contains(Snapshot.SAVE_FILE_S)) {
+				initSnapshotSaving(snapSettings);
 			}
 
-			this.world = this.scen.getWorld();
-			world.warmupMovementModel(warmupTime);
+			if (this.planeRuns != null) {
+				createRouterPlanes();
+			}
+			if (this.profiling) {
+				SimProfiler.start();
+			}
 		}
 		catch (SettingsError se) {
+			if (!this.exitOnError) {
+				throw se;
+			}
 			System.err.println("Can't start: error in configuration file(s)");
 			System.err.println(se.getMessage());
 			System.exit(-1);			
 		}
 		catch (SimError er) {
+			if (!this.exitOnError) {
+				throw er;
+			}
 			System.err.println("Can't start: " + er.getMessage());
 			System.err.println("Caught at " + er.getStackTrace()[0]);
 			System.exit(-1);
 		}		
 	}
 	
+	/**
+	 * Creates and adds the reports defined in the settings
+	 * @param settings The settings
+	 */
+	private void addReports(Settings settings) {
+		for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
+			String reportClass = settings.getSetting(REPORT_S + i);
+			addReport((Report)settings.createObject(REPORT_PAC + 
+					reportClass));	
+		}
+	}
+
+	/**
+	 * Creates the router planes of the other run indexes and their reports.
+	 * The current scenario stays as the first plane.
+	 */
+	private void createRouterPlanes() {
+		SimScenario leader = this.scen;
+		this.planes = new RouterPlanes(leader, planeRuns[0]);
+		for (int i = planeRuns[0] + 1; i < planeRuns[1]; i++) {
+			this.scen = planes.addPlane(i);
+			addReports(new Settings());
+		}
+		planes.activate(0);
+		this.scen = leader;
+	}
+
+	/**
+	 * Restores the simulation from the snapshot file defined in the settings
+	 * @param s The snapshot settings
+	 */
+	private void loadSnapshot(Settings s) {
+		File file = new File(s.valueFillString(
+				s.getSetting(Snapshot.LOAD_FILE_S)));
+		boolean newRouters = Snapshot.DEF_NEW_ROUTERS;
+		if (s.contains(Snapshot.NEW_ROUTERS_S)) {
+			newRouters = s.getBoolean(Snapshot.NEW_ROUTERS_S);
+		}
+		Snapshot.read(file).restore(this.scen, newRouters);
+		this.lastUpdate = SimClock.getTime();
+	}
+
+	/**
+	 * Saves a snapshot now or sets up saving it later, as defined in the
+	 * settings
+	 * @param s The snapshot settings
+	 */
+	private void initSnapshotSaving(Settings s) {
+		File file = new File(s.valueFillString(
+				s.getSetting(Snapshot.SAVE_FILE_S)));
+		double saveTime = Snapshot.DEF_SAVE_TIME;
+		if (s.contains(Snapshot.SAVE_TIME_S)) {
+			saveTime = s.getDouble(Snapshot.SAVE_TIME_S);
+		}
+
+		if (saveTime <= SimClock.getTime()) {
+			new Snapshot(this.scen).write(file);
+		}
+		else {
+			this.scen.addUpdateListener(new Snapshot.Saver(file, saveTime));
+		}
+	}
+
 	/**
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
-		for (Report r : this.reports) {
+		SimProfiler.stop();
+		for (ReportPipeline p : this.pipelines) {
+			p.close();
+		}
+		for (int i=0, n = this.reports.size(); i < n; i++) {
+			if (this.planes != null) { /* reports query their own plane */
+				this.planes.activate(reportPlanes.get(i));
+			}
+			Report r = this.reports.get(i);
+			FlightRecorderEvents.ReportFlush event =
+				new FlightRecorderEvents.ReportFlush();
+			event.begin();
 			r.done();
+			if (event.shouldCommit()) {
+				event.report = r.getClass().getSimpleName();
+				event.commit();
+			}
+		}
+		if (this.scen.getTrajectoryRecorder() != null) {
+			this.scen.getTrajectoryRecorder().write();
+		}
+		if (this.profiling) {
+			SimProfiler.writeOutput(this.scen.getName());
 		}
 	}
 	
@@ -137,22 +312,49 @@ public abstract class DTNSimUI {
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
+		this.reports.add(r);
+		this.reportPlanes.add(this.planes == null ? 0 : 
+			this.planes.getNrofPlanes() - 1);
+
+		if (this.asyncReports && getPipeline().addReport(r)) {
+			return; /* the pipeline passes the events to the report */
+		}
+
+		Object listener = r;
+		if (this.profiling) { /* the report's time is measured separately */
+			listener = new ProfiledListener(r, r.getClass().getSimpleName());
+		}
+
 		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
+			scen.addMessageListener((MessageListener)listener);
 		}
 		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
+			scen.addConnectionListener((ConnectionListener)listener);
 		}
 		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+			scen.addMovementListener((MovementListener)listener);
 		}
 		if (r instanceof UpdateListener) {
-			scen.addUpdateListener((UpdateListener)r);
+			scen.addUpdateListener((UpdateListener)listener);
 		}
 		if (r instanceof ApplicationListener) {
-			scen.addApplicationListener((ApplicationListener)r);
+			scen.addApplicationListener((ApplicationListener)listener);
 		}
+	}
 
-		this.reports.add(r);
+	/**
+	 * Returns the report pipeline of the current scenario. Creates the
+	 * pipeline if the scenario doesn't have one yet.
+	 * @return the report pipeline of the current scenario
+	 */
+	private ReportPipeline getPipeline() {
+		for (ReportPipeline p : this.pipelines) {
+			if (p.getScenario() == this.scen) {
+				return p;
+			}
+		}
+		ReportPipeline p = new ReportPipeline(this.scen);
+		this.pipelines.add(p);
+		return p;
 	}
 }
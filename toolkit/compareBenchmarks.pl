@@ -0,0 +1,107 @@
+#! /usr/bin/perl
+
+# Compares benchmark results against a stored baseline
+
+package Toolkit;
+use strict;
+use warnings;
+use Getopt::Long;
+use FileHandle;
+
+my $threshold = 10;
+my $help;
+
+my $usage = '
+usage: [-threshold <percent>] [-help] <baseline file> <results file>
+';
+
+GetOptions("threshold=f" => \$threshold, "help|?!" => \$help);
+
+if ($help) {
+    print 'Benchmark result comparer. Compares the results of
+test.BenchmarkRunner (written with its -o option) against a baseline
+that was written the same way, e.g. before a change. Results of the same
+benchmark and parameters (from multiple forks) are averaged.
+Output syntax: <benchmark> <params> <baseline> <result> <change %> <verdict>
+A result is a regression (or an improvement) if it differs from the baseline
+by more than the threshold percentage and by more than the sum of the
+errors. Exits with status 1 if any benchmark regressed.';
+    print "\n$usage";
+    print '
+options:
+
+threshold  Percentage of change that is not reported as a regression or an
+           improvement. Default is 10.
+
+';
+    exit();
+}
+
+if (@ARGV != 2) {
+    print "Missing required parameter(s)\n";
+    print $usage;
+    exit(2);
+}
+
+my ($baseFile, $resultFile) = @ARGV;
+
+# Reads a results file and returns a hash of [score, error, unit] arrays
+# keyed by "<benchmark>\t<params>" and the keys in the order of the file
+sub readResults {
+    my $fileName = shift;
+    my $file = FileHandle->new($fileName, "r")
+        or die "Can't open $fileName: $!";
+    my (%sums, %counts, @keys);
+    while (<$file>) {
+        chomp;
+        next if m/^\s*(#.*)?$/;
+        my ($name, $params, $score, $error, $unit) = split /\t/;
+        die "Invalid line in $fileName: $_\n" unless defined $unit;
+        my $key = "$name\t$params";
+        if (not $counts{$key}) {
+            push(@keys, $key);
+            $sums{$key} = [0, 0, $unit];
+        }
+        $sums{$key}[0] += $score;
+        $sums{$key}[1] += $error;
+        $counts{$key}++;
+    }
+    $file->close();
+    foreach my $key (@keys) {
+        $sums{$key}[0] /= $counts{$key};
+        $sums{$key}[1] /= $counts{$key};
+    }
+    return (\%sums, \@keys);
+}
+
+my ($base) = readResults($baseFile);
+my ($results, $keys) = readResults($resultFile);
+my $regressions = 0;
+
+printf("%-44s %-20s %12s %12s %8s\n", "Benchmark", "Params", "Baseline",
+    "Result", "Change");
+foreach my $key (@$keys) {
+    my ($name, $params) = split(/\t/, $key);
+    my ($score, $error, $unit) = @{$results->{$key}};
+    if (not exists $base->{$key}) {
+        printf("%-44s %-20s %12s %12.3f %8s  new\n", $name, $params, "-",
+            $score, "");
+        next;
+    }
+
+    my ($baseScore, $baseError) = @{$base->{$key}};
+    my $change = $baseScore == 0 ? 0 : 100 * ($score - $baseScore) / $baseScore;
+    my $significant = abs($score - $baseScore) > $error + $baseError;
+    my $verdict = "";
+    if ($significant and $change > $threshold) {
+        $verdict = "REGRESSION";
+        $regressions++;
+    }
+    elsif ($significant and $change < -$threshold) {
+        $verdict = "improvement";
+    }
+    printf("%-44s %-20s %12.3f %12.3f %+7.1f%%  %s\n", $name, $params,
+        $baseScore, $score, $change, $verdict);
+}
+
+exit($regressions > 0 ? 1 : 0);
@@ -0,0 +1,116 @@
+#! /usr/bin/perl
+
+# Compares scenario benchmark results against a stored baseline
+
+package Toolkit;
+use strict;
+use warnings;
+use Getopt::Long;
+use FileHandle;
+
+my $threshold = 5;
+my $help;
+
+my $usage = '
+usage: [-threshold <percent>] [-help] <baseline file> <results file>
+';
+
+GetOptions("threshold=f" => \$threshold, "help|?!" => \$help);
+
+if ($help) {
+    print 'Scenario benchmark result comparer. Compares the results of
+test.ScenarioBenchmarkRunner (written with its -o option) against a
+baseline that was written the same way, e.g. before an optimization.
+Results of the same scenario (from multiple runs) are averaged.
+Output syntax: <scenario> <baseline sim s/s> <result sim s/s> <change %>
+<baseline alloc MB/s> <result alloc MB/s> <verdict>
+A scenario whose report hash differs from the baseline changed its results
+(the optimization was not transparent). A throughput drop larger than the
+threshold percentage is a regression. Exits with status 1 if any results
+changed or any scenario regressed.';
+    print "\n$usage";
+    print '
+options:
+
+threshold  Percentage of throughput change that is not reported as a
+           regression or an improvement. Default is 5.
+
+';
+    exit();
+}
+
+if (@ARGV != 2) {
+    print "Missing required parameter(s)\n";
+    print $usage;
+    exit(2);
+}
+
+my ($baseFile, $resultFile) = @ARGV;
+
+# Reads a results file and returns a hash of [throughput, allocation rate,
+# hash] arrays keyed by the scenario and the scenarios in the file's order.
+# If the runs of a scenario have different hashes, the hash is "unstable".
+sub readResults {
+    my $fileName = shift;
+    my $file = FileHandle->new($fileName, "r")
+        or die "Can't open $fileName: $!";
+    my (%results, %counts, @scenarios);
+    while (<$file>) {
+        chomp;
+        next if m/^scenario\t/ or m/^\s*$/;
+        my @fields = split /\t/;
+        die "Invalid line in $fileName: $_\n" unless @fields == 9;
+        my ($scenario, $throughput, $alloc, $hash) = @fields[0, 3, 5, 8];
+        if (not $counts{$scenario}) {
+            push(@scenarios, $scenario);
+            $results{$scenario} = [0, 0, $hash];
+        }
+        $results{$scenario}[0] += $throughput;
+        $results{$scenario}[1] += $alloc;
+        if ($results{$scenario}[2] ne $hash) {
+            $results{$scenario}[2] = "unstable";
+        }
+        $counts{$scenario}++;
+    }
+    $file->close();
+    foreach my $scenario (@scenarios) {
+        $results{$scenario}[0] /= $counts{$scenario};
+        $results{$scenario}[1] /= $counts{$scenario};
+    }
+    return (\%results, \@scenarios);
+}
+
+my ($base) = readResults($baseFile);
+my ($results, $scenarios) = readResults($resultFile);
+my $failures = 0;
+
+printf("%-28s %12s %12s %8s %12s %12s\n", "Scenario", "Base sim s/s",
+    "Result", "Change", "Base alloc", "Result");
+foreach my $scenario (@$scenarios) {
+    my ($throughput, $alloc, $hash) = @{$results->{$scenario}};
+    if (not exists $base->{$scenario}) {
+        printf("%-28s %12s %12.1f %8s %12s %12.1f  new\n", $scenario, "-",
+            $throughput, "", "-", $alloc);
+        next;
+    }
+
+    my ($baseThroughput, $baseAlloc, $baseHash) = @{$base->{$scenario}};
+    my $change = $baseThroughput == 0 ? 0 :
+        100 * ($throughput - $baseThroughput) / $baseThroughput;
+    my $verdict = "";
+    if ($hash ne $baseHash or $hash eq "unstable") {
+        $verdict = "RESULTS CHANGED";
+        $failures++;
+    }
+    elsif ($change < -$threshold) {
+        $verdict = "REGRESSION";
+        $failures++;
+    }
+    elsif ($change > $threshold) {
+        $verdict = "improvement";
+    }
+    printf("%-28s %12.1f %12.1f %+7.1f%% %12.1f %12.1f  %s\n", $scenario,
+        $baseThroughput, $throughput, $change, $baseAlloc, $alloc, $verdict);
+}
+
+exit($failures > 0 ? 1 : 0);